@@ -0,0 +1,51 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cache;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * {@link HttpCacheStorage} capable of retrieving several cache entries
+ * in one operation. Storage backends that do not implement this interface
+ * get their entries looked up one by one.
+ *
+ * @since 5.0
+ */
+public interface BulkHttpCacheStorage extends HttpCacheStorage {
+
+    /**
+     * Retrieves the cache entries stored under the given keys.
+     * @param keys cache keys
+     * @return a {@link java.util.Map} of cache keys to {@link HttpCacheEntry}s;
+     *   keys with no entry are not included in the result
+     * @throws IOException
+     */
+    Map<String, HttpCacheEntry> getEntries(Collection<String> keys) throws IOException;
+
+}
@@ -0,0 +1,260 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cache;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Freshness related metadata of a cached response. The {@code Cache-Control},
+ * {@code Age}, {@code Expires}, {@code Last-Modified} and {@code Content-Length}
+ * headers of the response are parsed once when the {@link HttpCacheEntry} is created
+ * so that cache hits can be evaluated without re-parsing header values.
+ *
+ * @since 5.0
+ */
+@Immutable
+public final class FreshnessInfo implements Serializable {
+
+    private static final long serialVersionUID = 2346573029347823716L;
+
+    /**
+     * Age value used when the {@code Age} header is malformed or negative.
+     */
+    public static final long MAX_AGE = 2147483648L;
+
+    private final Set<String> directives;
+    private final long maxAge;
+    private final int staleWhileRevalidate;
+    private final int staleIfError;
+    private final long age;
+    private final Date expires;
+    private final Date lastModified;
+    private final boolean contentLengthPresent;
+    private final long contentLength;
+
+    private FreshnessInfo(
+            final Set<String> directives,
+            final long maxAge,
+            final int staleWhileRevalidate,
+            final int staleIfError,
+            final long age,
+            final Date expires,
+            final Date lastModified,
+            final boolean contentLengthPresent,
+            final long contentLength) {
+        super();
+        this.directives = directives;
+        this.maxAge = maxAge;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.staleIfError = staleIfError;
+        this.age = age;
+        this.expires = expires;
+        this.lastModified = lastModified;
+        this.contentLengthPresent = contentLengthPresent;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Parses freshness metadata from the given response headers.
+     *
+     * @param headers the response headers.
+     * @return freshness metadata.
+     */
+    public static FreshnessInfo parse(final Header[] headers) {
+        Args.notNull(headers, "Headers");
+        final Set<String> directives = new HashSet<>();
+        long maxAge = -1;
+        int staleWhileRevalidate = -1;
+        int staleIfError = -1;
+        long age = 0;
+        Header expiresHeader = null;
+        Header lastModifiedHeader = null;
+        Header contentLengthHeader = null;
+        for (final Header header: headers) {
+            final String name = header.getName();
+            if (HeaderConstants.CACHE_CONTROL.equalsIgnoreCase(name)) {
+                for (final HeaderElement elt: header.getElements()) {
+                    final String directive = elt.getName();
+                    directives.add(directive.toLowerCase(Locale.ROOT));
+                    if (HeaderConstants.CACHE_CONTROL_MAX_AGE.equals(directive)
+                            || "s-maxage".equals(directive)) {
+                        try {
+                            final long currMaxAge = Long.parseLong(elt.getValue());
+                            if (maxAge == -1 || currMaxAge < maxAge) {
+                                maxAge = currMaxAge;
+                            }
+                        } catch (final NumberFormatException nfe) {
+                            // be conservative if can't parse
+                            maxAge = 0;
+                        }
+                    } else if (HeaderConstants.STALE_WHILE_REVALIDATE.equalsIgnoreCase(directive)) {
+                        staleWhileRevalidate = Math.max(staleWhileRevalidate, parseDeltaSeconds(elt));
+                    } else if (HeaderConstants.STALE_IF_ERROR.equals(directive)) {
+                        staleIfError = Math.max(staleIfError, parseDeltaSeconds(elt));
+                    }
+                }
+            } else if (HeaderConstants.AGE.equalsIgnoreCase(name)) {
+                long hdrAge;
+                try {
+                    hdrAge = Long.parseLong(header.getValue());
+                    if (hdrAge < 0) {
+                        hdrAge = MAX_AGE;
+                    }
+                } catch (final NumberFormatException nfe) {
+                    hdrAge = MAX_AGE;
+                }
+                age = (hdrAge > age) ? hdrAge : age;
+            } else if (expiresHeader == null && HeaderConstants.EXPIRES.equalsIgnoreCase(name)) {
+                expiresHeader = header;
+            } else if (lastModifiedHeader == null && HeaderConstants.LAST_MODIFIED.equalsIgnoreCase(name)) {
+                lastModifiedHeader = header;
+            } else if (contentLengthHeader == null && HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLengthHeader = header;
+            }
+        }
+        long contentLength = -1;
+        if (contentLengthHeader != null) {
+            try {
+                contentLength = Long.parseLong(contentLengthHeader.getValue());
+            } catch (final NumberFormatException ex) {
+                contentLength = -1;
+            }
+        }
+        return new FreshnessInfo(
+                directives.isEmpty() ? Collections.<String>emptySet() : directives,
+                maxAge,
+                staleWhileRevalidate,
+                staleIfError,
+                age,
+                expiresHeader != null ? DateUtils.parseDate(expiresHeader.getValue()) : null,
+                lastModifiedHeader != null ? DateUtils.parseDate(lastModifiedHeader.getValue()) : null,
+                contentLengthHeader != null,
+                contentLength);
+    }
+
+    private static int parseDeltaSeconds(final HeaderElement elt) {
+        try {
+            return Integer.parseInt(elt.getValue());
+        } catch (final NumberFormatException nfe) {
+            // skip malformed directive
+            return -1;
+        }
+    }
+
+    /**
+     * Determines whether the response carries the given {@code Cache-Control} directive.
+     * Directive names are compared case-insensitively.
+     */
+    public boolean hasDirective(final String directive) {
+        return directive != null && this.directives.contains(directive.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the smallest of {@code max-age} and {@code s-maxage} values in seconds,
+     * {@code 0} if either value is malformed, or {@code -1} if neither is present.
+     */
+    public long getMaxAge() {
+        return this.maxAge;
+    }
+
+    /**
+     * Returns the largest {@code stale-while-revalidate} value in seconds or {@code -1}
+     * if the directive is absent.
+     */
+    public int getStaleWhileRevalidate() {
+        return this.staleWhileRevalidate;
+    }
+
+    /**
+     * Returns the largest {@code stale-if-error} value in seconds or {@code -1}
+     * if the directive is absent.
+     */
+    public int getStaleIfError() {
+        return this.staleIfError;
+    }
+
+    /**
+     * Returns the largest {@code Age} header value in seconds or {@code 0}
+     * if the header is absent. Malformed values are treated as {@link #MAX_AGE}.
+     */
+    public long getAge() {
+        return this.age;
+    }
+
+    /**
+     * Returns the value of the {@code Expires} header or {@code null} if the header
+     * is absent or cannot be parsed.
+     */
+    public Date getExpires() {
+        return this.expires;
+    }
+
+    /**
+     * Returns the value of the {@code Last-Modified} header or {@code null} if the header
+     * is absent or cannot be parsed.
+     */
+    public Date getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Determines whether the response carries a {@code Content-Length} header.
+     */
+    public boolean hasContentLength() {
+        return this.contentLengthPresent;
+    }
+
+    /**
+     * Returns the value of the {@code Content-Length} header or {@code -1} if the header
+     * is absent or malformed.
+     */
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    @Override
+    public String toString() {
+        return "[directives=" + this.directives + "; max-age=" + this.maxAge
+                + "; stale-while-revalidate=" + this.staleWhileRevalidate
+                + "; stale-if-error=" + this.staleIfError + "; age=" + this.age
+                + "; expires=" + this.expires + "; last-modified=" + this.lastModified
+                + "; content-length=" + this.contentLength + "]";
+    }
+
+}
@@ -47,7 +47,9 @@ import org.apache.hc.core5.util.Args;
  * Some entries can optionally depend on system resources that may require
  * explicit deallocation. In such a case {@link #getResource()} should return
  * a non null instance of {@link Resource} that must be deallocated by calling
- * {@link Resource#dispose()} method when no longer used.
+ * {@link Resource#dispose()} method when no longer used. Several entries
+ * representing the same response body, such as successive revisions of an
+ * entry updated by a 304 response, may share the same {@link Resource} instance.
  *
  * @since 4.1
  */
@@ -64,6 +66,7 @@ public class HttpCacheEntry implements Serializable {
     private final Resource resource;
     private final Map<String,String> variantMap;
     private final Date date;
+    private final FreshnessInfo freshnessInfo;
 
     /**
      * Create a new {@link HttpCacheEntry} with variants.
@@ -107,6 +110,7 @@ public class HttpCacheEntry implements Serializable {
             ? new HashMap<>(variantMap)
             : null;
         this.date = parseDate();
+        this.freshnessInfo = FreshnessInfo.parse(responseHeaders);
     }
 
     /**
@@ -288,6 +292,19 @@ public class HttpCacheEntry implements Serializable {
         return date;
     }
 
+    /**
+     * Returns freshness metadata parsed from the origin response headers
+     * when this entry was created.
+     *
+     * @since 5.0
+     */
+    public FreshnessInfo getFreshnessInfo() {
+        // entries serialized by earlier versions do not carry the metadata
+        return this.freshnessInfo != null
+                ? this.freshnessInfo
+                : FreshnessInfo.parse(this.responseHeaders.getAllHeaders());
+    }
+
     /**
      * Returns the {@link Resource} containing the origin response body.
      */
@@ -315,6 +332,9 @@ public class HttpCacheEntry implements Serializable {
      * the "parent" entry to hold this index of the other variants.
      */
     public Map<String, String> getVariantMap() {
+        if (variantMap == null) {
+            return Collections.emptyMap();
+        }
         return Collections.unmodifiableMap(variantMap);
     }
 
@@ -0,0 +1,64 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cache;
+
+import java.io.Closeable;
+
+/**
+ * Broadcasts cache invalidations between cache instances that do not share
+ * their {@link HttpCacheStorage}, for instance the in-process caches of several
+ * application nodes talking to the same origins. Cache keys invalidated by
+ * one instance are published on the bus and delivered to the
+ * {@link HttpCacheInvalidationListener}s subscribed by the other instances.
+ * <p>
+ * Implementations are expected to batch and coalesce published keys and must
+ * not block the caller of {@link #publish(String)} on network I/O. Delivery is
+ * best effort; invalidations may be lost, in which case the affected entries
+ * remain in the remote caches until they expire.
+ * </p>
+ *
+ * @since 5.0
+ */
+public interface HttpCacheInvalidationBus extends Closeable {
+
+    /**
+     * Publishes a cache key that has been invalidated locally.
+     *
+     * @param cacheKey the cache key of the invalidated entry
+     */
+    void publish(String cacheKey);
+
+    /**
+     * Registers a listener for invalidations published by other cache
+     * instances. Invalidations published by this bus instance are not
+     * delivered to its own listeners.
+     *
+     * @param listener the listener to notify
+     */
+    void subscribe(HttpCacheInvalidationListener listener);
+
+}
@@ -43,9 +43,10 @@ import org.apache.hc.core5.http.HttpResponse;
 
 /**
  * Class used to represent an asynchronous revalidation event, such as with
- * "stale-while-revalidate"
+ * "stale-while-revalidate". Requests are ordered by their priority, highest
+ * first, when queued in a {@link java.util.concurrent.PriorityBlockingQueue}.
  */
-public class AsynchronousValidationRequest implements Runnable {
+public class AsynchronousValidationRequest implements Runnable, Comparable<AsynchronousValidationRequest> {
     private final AsynchronousValidator parent;
     private final CachingExec cachingExec;
     private final HttpRoute route;
@@ -55,6 +56,8 @@ public class AsynchronousValidationRequest implements Runnable {
     private final HttpCacheEntry cacheEntry;
     private final String identifier;
     private final int consecutiveFailedAttempts;
+    private final Runnable callback;
+    private final double priority;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -77,6 +80,22 @@ public class AsynchronousValidationRequest implements Runnable {
             final HttpCacheEntry cacheEntry,
             final String identifier,
             final int consecutiveFailedAttempts) {
+        this(parent, cachingExec, route, request, context, execAware, cacheEntry, identifier,
+                consecutiveFailedAttempts, null, 0d);
+    }
+
+    AsynchronousValidationRequest(
+            final AsynchronousValidator parent,
+            final CachingExec cachingExec,
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry cacheEntry,
+            final String identifier,
+            final int consecutiveFailedAttempts,
+            final Runnable callback,
+            final double priority) {
         this.parent = parent;
         this.cachingExec = cachingExec;
         this.route = route;
@@ -86,10 +105,13 @@ public class AsynchronousValidationRequest implements Runnable {
         this.cacheEntry = cacheEntry;
         this.identifier = identifier;
         this.consecutiveFailedAttempts = consecutiveFailedAttempts;
+        this.callback = callback;
+        this.priority = priority;
     }
 
     @Override
     public void run() {
+        parent.markStarted(identifier);
         try {
             if (revalidateCacheEntry()) {
                 parent.jobSuccessful(identifier);
@@ -98,6 +120,9 @@ public class AsynchronousValidationRequest implements Runnable {
             }
         } finally {
             parent.markComplete(identifier);
+            if (callback != null) {
+                callback.run();
+            }
         }
     }
 
@@ -173,4 +198,24 @@ public class AsynchronousValidationRequest implements Runnable {
         return consecutiveFailedAttempts;
     }
 
+    /**
+     * The priority of this revalidation, which is the recent hit rate of the
+     * cache entry in hits per minute.
+     * @return the priority of this revalidation
+     *
+     * @since 5.0
+     */
+    public double getPriority() {
+        return priority;
+    }
+
+    /**
+     * Orders revalidations by descending priority. Note that this ordering is
+     * inconsistent with {@code equals}.
+     */
+    @Override
+    public int compareTo(final AsynchronousValidationRequest other) {
+        return Double.compare(other.priority, this.priority);
+    }
+
 }
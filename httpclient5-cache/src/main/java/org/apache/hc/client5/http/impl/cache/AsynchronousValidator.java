@@ -29,9 +29,13 @@ package org.apache.hc.client5.http.impl.cache;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,16 +44,36 @@ import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.methods.HttpExecutionAware;
 import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
 
 /**
  * Class used for asynchronous revalidations to be used when the "stale-
  * while-revalidate" directive is present
+ * <p>
+ * Revalidations of the same cache entry are coalesced: while one is queued
+ * or in progress, further requests to revalidate the entry are dropped. The
+ * number of revalidations queued or in progress is bounded both overall and
+ * per route. Each revalidation carries the recent hit rate of its entry as
+ * its priority, so that scheduling strategies backed by a priority queue run
+ * the most requested revalidations first.
+ * </p>
  */
+@ThreadSafe
 class AsynchronousValidator implements Closeable {
     private final SchedulingStrategy schedulingStrategy;
-    private final Set<String> queued;
+    private final int maxQueueSize;
+    private final int maxPerRoute;
+    private final ConcurrentMap<String, Scheduled> queued;
+    private final ConcurrentMap<HttpRoute, AtomicInteger> routeCounts;
+    private final HitRateTracker hitRates;
     private final CacheKeyGenerator cacheKeyGenerator;
     private final FailureCache failureCache;
+    private final AtomicInteger queueDepth;
+    private final AtomicLong rejectedCount;
+    private final AtomicLong completedCount;
+    private final AtomicLong totalLatency;
+    private final AtomicLong maxLatency;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -61,10 +85,11 @@ class AsynchronousValidator implements Closeable {
      * {@link CacheConfig#getAsynchronousWorkersMax()},
      * {@link CacheConfig#getAsynchronousWorkersCore()},
      * {@link CacheConfig#getAsynchronousWorkerIdleLifetimeSecs()},
-     * and {@link CacheConfig#getRevalidationQueueSize()}.
+     * {@link CacheConfig#getRevalidationQueueSize()}
+     * and {@link CacheConfig#getRevalidationMaxPerRoute()}.
      */
     public AsynchronousValidator(final CacheConfig config) {
-        this(new ImmediateSchedulingStrategy(config));
+        this(new ImmediateSchedulingStrategy(config), config);
     }
 
     /**
@@ -73,12 +98,36 @@ class AsynchronousValidator implements Closeable {
      * will also close the given schedulingStrategy.
      * @param schedulingStrategy used to maintain a pool of worker threads and
      *                           schedules when requests are executed
+     * @param config specifies queue limits. See
+     * {@link CacheConfig#getRevalidationQueueSize()}
+     * and {@link CacheConfig#getRevalidationMaxPerRoute()}.
      */
-    AsynchronousValidator(final SchedulingStrategy schedulingStrategy) {
+    AsynchronousValidator(final SchedulingStrategy schedulingStrategy, final CacheConfig config) {
         this.schedulingStrategy = schedulingStrategy;
-        this.queued = new HashSet<>();
+        this.maxQueueSize = Args.positive(config.getRevalidationQueueSize(), "Revalidation queue size");
+        this.maxPerRoute = Args.positive(config.getRevalidationMaxPerRoute(), "Max revalidations per route");
+        this.queued = new ConcurrentHashMap<>();
+        this.routeCounts = new ConcurrentHashMap<>();
+        this.hitRates = new HitRateTracker();
         this.cacheKeyGenerator = new CacheKeyGenerator();
         this.failureCache = new DefaultFailureCache();
+        this.queueDepth = new AtomicInteger();
+        this.rejectedCount = new AtomicLong();
+        this.completedCount = new AtomicLong();
+        this.totalLatency = new AtomicLong();
+        this.maxLatency = new AtomicLong();
+    }
+
+    /**
+     * Create AsynchronousValidator which will make revalidation requests
+     * using the supplied {@link SchedulingStrategy} and the default queue
+     * limits. Closing the validator will also close the given
+     * schedulingStrategy.
+     * @param schedulingStrategy used to maintain a pool of worker threads and
+     *                           schedules when requests are executed
+     */
+    AsynchronousValidator(final SchedulingStrategy schedulingStrategy) {
+        this(schedulingStrategy, CacheConfig.DEFAULT);
     }
 
     @Override
@@ -89,31 +138,135 @@ class AsynchronousValidator implements Closeable {
     /**
      * Schedules an asynchronous revalidation
      */
-    public synchronized void revalidateCacheEntry(
+    public void revalidateCacheEntry(
             final CachingExec cachingExec,
             final HttpRoute route,
             final HttpRequestWrapper request,
             final HttpClientContext context,
             final HttpExecutionAware execAware,
             final HttpCacheEntry entry) {
+        revalidateCacheEntry(cachingExec, route, request, context, execAware, entry, null);
+    }
+
+    /**
+     * Schedules an asynchronous revalidation and runs the given callback, if
+     * any, once the revalidation has completed.
+     * @return {@code true} if the revalidation has been scheduled, {@code false}
+     *   if a revalidation of the same entry is already queued, a queue limit
+     *   has been reached or the scheduling strategy rejected it, in which case
+     *   the callback will not be run.
+     */
+    boolean revalidateCacheEntry(
+            final CachingExec cachingExec,
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry entry,
+            final Runnable callback) {
         // getVariantURI will fall back on getURI if no variants exist
         final String uri = cacheKeyGenerator.getVariantURI(context.getTargetHost(), request, entry);
+        final double hitRate = hitRates.hit(uri, System.currentTimeMillis());
 
-        if (!queued.contains(uri)) {
-            final int consecutiveFailedAttempts = failureCache.getErrorCount(uri);
-            final AsynchronousValidationRequest revalidationRequest =
-                new AsynchronousValidationRequest(
-                        this, cachingExec, route, request, context, execAware, entry, uri, consecutiveFailedAttempts);
-
-            try {
-                schedulingStrategy.schedule(revalidationRequest);
-                queued.add(uri);
-            } catch (final RejectedExecutionException ree) {
-                log.debug("Revalidation for [" + uri + "] not scheduled: " + ree);
+        if (queued.containsKey(uri)) {
+            return false;
+        }
+        if (!acquireQueueSlot()) {
+            rejectedCount.incrementAndGet();
+            log.debug("Revalidation for [" + uri + "] not scheduled: queue is full");
+            return false;
+        }
+        if (!acquireRouteSlot(route)) {
+            queueDepth.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            log.debug("Revalidation for [" + uri + "] not scheduled: limit for route " + route + " reached");
+            return false;
+        }
+        final Scheduled scheduled = new Scheduled(route, System.nanoTime());
+        if (queued.putIfAbsent(uri, scheduled) != null) {
+            queueDepth.decrementAndGet();
+            releaseRouteSlot(route);
+            return false;
+        }
+        final int consecutiveFailedAttempts = failureCache.getErrorCount(uri);
+        final AsynchronousValidationRequest revalidationRequest =
+            new AsynchronousValidationRequest(
+                    this, cachingExec, route, request, context, execAware, entry, uri, consecutiveFailedAttempts,
+                    callback, hitRate);
+
+        try {
+            schedulingStrategy.schedule(revalidationRequest);
+            return true;
+        } catch (final RejectedExecutionException ree) {
+            queueDepth.decrementAndGet();
+            queued.remove(uri, scheduled);
+            releaseRouteSlot(route);
+            rejectedCount.incrementAndGet();
+            log.debug("Revalidation for [" + uri + "] not scheduled: " + ree);
+            return false;
+        }
+    }
+
+    private boolean acquireQueueSlot() {
+        for (;;) {
+            final int current = queueDepth.get();
+            if (current >= maxQueueSize) {
+                return false;
+            }
+            if (queueDepth.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes a slot from the counter of the given route. Counters are removed
+     * once their last slot has been released; a counter on its way out is
+     * marked with a negative count so that no slot gets taken from it.
+     */
+    private boolean acquireRouteSlot(final HttpRoute route) {
+        for (;;) {
+            AtomicInteger count = routeCounts.get(route);
+            if (count == null) {
+                final AtomicInteger newCount = new AtomicInteger();
+                count = routeCounts.putIfAbsent(route, newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            final int current = count.get();
+            if (current < 0) {
+                routeCounts.remove(route, count);
+                continue;
+            }
+            if (current >= maxPerRoute) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
             }
         }
     }
 
+    private void releaseRouteSlot(final HttpRoute route) {
+        final AtomicInteger count = routeCounts.get(route);
+        if (count != null && count.decrementAndGet() == 0 && count.compareAndSet(0, -1)) {
+            routeCounts.remove(route, count);
+        }
+    }
+
+    /**
+     * Signals that the revalidation job with the given identifier has left
+     * the queue and started to execute. This is meant to be called by
+     * {@link AsynchronousValidationRequest#run()}.
+     * @param identifier the revalidation job's unique identifier
+     */
+    void markStarted(final String identifier) {
+        if (queued.containsKey(identifier)) {
+            queueDepth.decrementAndGet();
+        }
+    }
+
     /**
      * Removes an identifier from the internal list of revalidation jobs in
      * progress.  This is meant to be called by
@@ -121,10 +274,21 @@ class AsynchronousValidator implements Closeable {
      * complete, using the identifier passed in during constructions.
      * @param identifier
      */
-    synchronized void markComplete(final String identifier) {
-        queued.remove(identifier);
+    void markComplete(final String identifier) {
+        final Scheduled scheduled = queued.remove(identifier);
+        if (scheduled != null) {
+            releaseRouteSlot(scheduled.route);
+            final long latency = System.nanoTime() - scheduled.nanoTime;
+            completedCount.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            for (;;) {
+                final long current = maxLatency.get();
+                if (latency <= current || maxLatency.compareAndSet(current, latency)) {
+                    break;
+                }
+            }
+        }
     }
-
     /**
      * The revalidation job was successful thus the number of consecutive
      * failed attempts will be reset to zero. Should be called by
@@ -146,6 +310,71 @@ class AsynchronousValidator implements Closeable {
     }
 
     Set<String> getScheduledIdentifiers() {
-        return Collections.unmodifiableSet(queued);
+        return Collections.unmodifiableSet(queued.keySet());
     }
+
+    /**
+     * Returns the number of revalidations scheduled but not yet started.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the number of revalidations rejected because a queue limit was
+     * reached or the scheduling strategy refused them. Revalidations dropped
+     * because one for the same entry was already queued are not counted.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of revalidations completed so far.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Returns the average time in milliseconds from scheduling a revalidation
+     * to its completion, including time spent in the queue.
+     */
+    public long getAverageLatencyMillis() {
+        final long completed = completedCount.get();
+        return completed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatency.get() / completed) : 0;
+    }
+
+    /**
+     * Returns the longest time in milliseconds from scheduling a revalidation
+     * to its completion, including time spent in the queue.
+     */
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+    }
+
+    int getRouteCount(final HttpRoute route) {
+        final AtomicInteger count = routeCounts.get(route);
+        return count != null ? Math.max(0, count.get()) : 0;
+    }
+
+    /**
+     * Returns the number of routes with revalidations queued or in progress.
+     */
+    int getRouteCount() {
+        return routeCounts.size();
+    }
+
+    static final class Scheduled {
+
+        final HttpRoute route;
+        final long nanoTime;
+
+        Scheduled(final HttpRoute route, final long nanoTime) {
+            this.route = route;
+            this.nanoTime = nanoTime;
+        }
+
+    }
+
 }
@@ -27,7 +27,10 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -36,6 +39,7 @@ import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
@@ -47,6 +51,7 @@ import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
 import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
@@ -65,6 +70,7 @@ class BasicHttpCache implements HttpCache {
     private final CacheKeyGenerator uriExtractor;
     private final ResourceFactory resourceFactory;
     private final long maxObjectSizeBytes;
+    private final boolean streamingCachingEnabled;
     private final CacheEntryUpdater cacheEntryUpdater;
     private final CachedHttpResponseGenerator responseGenerator;
     private final HttpCacheInvalidator cacheInvalidator;
@@ -80,8 +86,9 @@ class BasicHttpCache implements HttpCache {
             final HttpCacheInvalidator cacheInvalidator) {
         this.resourceFactory = resourceFactory;
         this.uriExtractor = uriExtractor;
-        this.cacheEntryUpdater = new CacheEntryUpdater(resourceFactory);
+        this.cacheEntryUpdater = new CacheEntryUpdater();
         this.maxObjectSizeBytes = config.getMaxObjectSize();
+        this.streamingCachingEnabled = config.isStreamingCachingEnabled();
         this.responseGenerator = new CachedHttpResponseGenerator();
         this.storage = storage;
         this.cacheInvalidator = cacheInvalidator;
@@ -241,10 +248,8 @@ class BasicHttpCache implements HttpCache {
             src = entry;
         }
 
-        Resource resource = null;
-        if (src.getResource() != null) {
-            resource = resourceFactory.copy(requestId, src.getResource());
-        }
+        // The body of the parent entry does not change, so the resource is shared
+        // with the updated entry rather than copied
         final Map<String,String> variantMap = new HashMap<>(src.getVariantMap());
         variantMap.put(variantKey, variantCacheKey);
         return new HttpCacheEntry(
@@ -252,7 +257,7 @@ class BasicHttpCache implements HttpCache {
                 src.getResponseDate(),
                 src.getStatusLine(),
                 src.getAllHeaders(),
-                resource,
+                src.getResource(),
                 variantMap,
                 src.getRequestMethod());
     }
@@ -302,6 +307,9 @@ class BasicHttpCache implements HttpCache {
             final Date requestSent,
             final Date responseReceived) throws IOException {
 
+        if (streamingCachingEnabled && originResponse.getEntity() != null) {
+            return teeAndReturnResponse(host, request, originResponse, requestSent, responseReceived);
+        }
         boolean closeOriginResponse = true;
         final SizeLimitedResponseReader responseReader = getResponseReader(request, originResponse);
         try {
@@ -333,6 +341,68 @@ class BasicHttpCache implements HttpCache {
         }
     }
 
+    /**
+     * Returns a response whose body is written to a cache resource while
+     * it is being consumed by the caller. The cache entry is stored only after
+     * the body has been read to the end; it gets discarded if the response
+     * is closed prematurely, if reading fails or if the body exceeds the
+     * maximum object size.
+     */
+    CloseableHttpResponse teeAndReturnResponse(
+            final HttpHost host,
+            final HttpRequest request,
+            final CloseableHttpResponse originResponse,
+            final Date requestSent,
+            final Date responseReceived) throws IOException {
+        final HttpEntity entity = originResponse.getEntity();
+        final String uri = request.getRequestLine().getUri();
+        final InputStream instream = entity.getContent();
+        if (instream == null) {
+            return originResponse;
+        }
+        final CachingTeeInputStream teeStream = new CachingTeeInputStream(instream,
+                ResourceSink.open(resourceFactory, uri), maxObjectSizeBytes,
+                new CachingTeeInputStream.Callback() {
+
+            @Override
+            public void completed(final Resource resource) {
+                try {
+                    if (isIncompleteResponse(originResponse, resource)) {
+                        resource.dispose();
+                        return;
+                    }
+                    final HttpCacheEntry entry = new HttpCacheEntry(
+                            requestSent,
+                            responseReceived,
+                            originResponse.getStatusLine(),
+                            originResponse.getAllHeaders(),
+                            resource,
+                            request.getRequestLine().getMethod());
+                    storeInCache(host, request, entry);
+                } catch (final IOException ex) {
+                    log.warn("Unable to store streamed response in cache", ex);
+                }
+            }
+
+        });
+
+        final HttpResponse tee = new BasicHttpResponse(originResponse.getStatusLine());
+        tee.setHeaders(originResponse.getAllHeaders());
+        tee.setEntity(new CachingTeeEntity(entity, teeStream));
+        return (CloseableHttpResponse) Proxy.newProxyInstance(
+                ResponseProxyHandler.class.getClassLoader(),
+                new Class<?>[] { CloseableHttpResponse.class },
+                new ResponseProxyHandler(tee) {
+
+                    @Override
+                    public void close() throws IOException {
+                        teeStream.abort();
+                        originResponse.close();
+                    }
+
+                });
+    }
+
     SizeLimitedResponseReader getResponseReader(final HttpRequest request,
             final CloseableHttpResponse backEndResponse) {
         return new SizeLimitedResponseReader(
@@ -369,18 +439,38 @@ class BasicHttpCache implements HttpCache {
         if (root == null || !root.hasVariants()) {
             return variants;
         }
+        final Map<String, HttpCacheEntry> entries = getEntries(storage, root.getVariantMap().values());
         for(final Map.Entry<String, String> variant : root.getVariantMap().entrySet()) {
             final String variantKey = variant.getKey();
             final String variantCacheKey = variant.getValue();
-            addVariantWithEtag(variantKey, variantCacheKey, variants);
+            addVariantWithEtag(variantKey, variantCacheKey, entries.get(variantCacheKey), variants);
         }
         return variants;
     }
 
+    /**
+     * Retrieves the cache entries stored under the given keys, in one
+     * operation if the storage is a {@link BulkHttpCacheStorage} or by
+     * looking the keys up one by one otherwise.
+     */
+    static Map<String, HttpCacheEntry> getEntries(
+            final HttpCacheStorage storage, final Collection<String> keys) throws IOException {
+        if (storage instanceof BulkHttpCacheStorage) {
+            return ((BulkHttpCacheStorage) storage).getEntries(keys);
+        }
+        final Map<String, HttpCacheEntry> entries = new HashMap<>(keys.size());
+        for (final String key: keys) {
+            final HttpCacheEntry entry = storage.getEntry(key);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entries;
+    }
+
     private void addVariantWithEtag(final String variantKey,
-            final String variantCacheKey, final Map<String, Variant> variants)
-            throws IOException {
-        final HttpCacheEntry entry = storage.getEntry(variantCacheKey);
+            final String variantCacheKey, final HttpCacheEntry entry,
+            final Map<String, Variant> variants) {
         if (entry == null) {
             return;
         }
@@ -27,24 +27,30 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.core5.annotation.ThreadSafe;
 
 /**
- * Basic {@link HttpCacheStorage} implementation backed by an instance of
+ * Basic {@link org.apache.hc.client5.http.cache.HttpCacheStorage} implementation backed by an instance of
  * {@link java.util.LinkedHashMap}. In other words, cache entries and
  * the cached response bodies are held in-memory. This cache does NOT
- * deallocate resources associated with the cache entries; it is intended
+ * deallocate resources associated with the cache entries, except for those
+ * of expired entries removed by a {@link CacheExpirySweeper}; it is intended
  * for use with {@link HeapResource} and similar. This is the default cache
  * storage backend used by {@link CachingHttpClients}.
  *
  * @since 4.1
  */
 @ThreadSafe
-public class BasicHttpCacheStorage implements HttpCacheStorage {
+public class BasicHttpCacheStorage implements BulkHttpCacheStorage {
 
     private final CacheMap entries;
 
@@ -78,6 +84,18 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         return entries.get(url);
     }
 
+    @Override
+    public synchronized Map<String, HttpCacheEntry> getEntries(final Collection<String> urls) throws IOException {
+        final Map<String, HttpCacheEntry> result = new HashMap<>(urls.size());
+        for (final String url: urls) {
+            final HttpCacheEntry entry = entries.get(url);
+            if (entry != null) {
+                result.put(url, entry);
+            }
+        }
+        return result;
+    }
+
     /**
      * Removes a HttpCacheEntry from the cache
      *
@@ -97,4 +115,25 @@ public class BasicHttpCacheStorage implements HttpCacheStorage {
         entries.put(url, callback.update(existingEntry));
     }
 
+    /**
+     * Returns the next chunk of entries in key order without locking the storage.
+     */
+    List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+        return entries.nextEntries(fromKey, maxCount);
+    }
+
+    synchronized int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+        int removed = 0;
+        for (final Map.Entry<String, HttpCacheEntry> entry: expired) {
+            if (entries.removeIfUnchanged(entry.getKey(), entry.getValue())) {
+                final Resource resource = entry.getValue().getResource();
+                if (resource != null) {
+                    resource.dispose();
+                }
+                removed++;
+            }
+        }
+        return removed;
+    }
+
 }
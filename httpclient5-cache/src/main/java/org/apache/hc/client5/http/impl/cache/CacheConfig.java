@@ -158,6 +158,55 @@ public class CacheConfig implements Cloneable {
      */
     public static final int DEFAULT_REVALIDATION_QUEUE_SIZE = 100;
 
+    /** Default setting for streaming of cacheable origin responses
+     */
+    public static final boolean DEFAULT_STREAMING_CACHING_ENABLED = false;
+
+    /** Default setting for collapsing of concurrent cache misses and
+     * revalidations of the same resource.
+     */
+    public static final boolean DEFAULT_REQUEST_COLLAPSING_ENABLED = false;
+
+    /** Default maximum time in milliseconds a collapsed request waits for
+     * the origin request in flight for the same resource.
+     */
+    public static final long DEFAULT_REQUEST_COLLAPSING_TIMEOUT = 5000L;
+
+    /** Default setting for background refresh of frequently requested
+     * cache entries that are about to expire.
+     */
+    public static final boolean DEFAULT_REFRESH_AHEAD_ENABLED = false;
+
+    /** Default fraction of the freshness lifetime after which a hot cache
+     * entry gets refreshed in the background.
+     */
+    public static final float DEFAULT_REFRESH_AHEAD_FACTOR = 0.8f;
+
+    /** Default minimum number of hits per minute for a cache entry to be
+     * refreshed ahead of expiry.
+     */
+    public static final float DEFAULT_REFRESH_AHEAD_MIN_HIT_RATE = 6.0f;
+
+    /** Default maximum number of concurrent refresh-ahead revalidations per
+     * origin host.
+     */
+    public static final int DEFAULT_REFRESH_AHEAD_MAX_PER_HOST = 2;
+
+    /** Default maximum number of asynchronous revalidations queued or in
+     * progress per route.
+     */
+    public static final int DEFAULT_REVALIDATION_MAX_PER_ROUTE = 10;
+
+    /** Default interval in milliseconds between runs of the background expiry
+     * sweeper. The sweeper is disabled by default.
+     */
+    public static final long DEFAULT_EXPIRY_SWEEP_INTERVAL = 0L;
+
+    /** Default maximum time in milliseconds a single run of the background
+     * expiry sweeper may spend examining cache entries.
+     */
+    public static final long DEFAULT_EXPIRY_SWEEP_TIME_SLICE = 5L;
+
     public static final CacheConfig DEFAULT = new Builder().build();
 
     private final long maxObjectSize;
@@ -174,6 +223,16 @@ public class CacheConfig implements Cloneable {
     private final int asynchronousWorkerIdleLifetimeSecs;
     private final int revalidationQueueSize;
     private final boolean neverCacheHTTP10ResponsesWithQuery;
+    private final boolean streamingCachingEnabled;
+    private final boolean requestCollapsingEnabled;
+    private final long requestCollapsingTimeout;
+    private final boolean refreshAheadEnabled;
+    private final float refreshAheadFactor;
+    private final float refreshAheadMinHitRate;
+    private final int refreshAheadMaxPerHost;
+    private final int revalidationMaxPerRoute;
+    private final long expirySweepInterval;
+    private final long expirySweepTimeSlice;
 
     CacheConfig(
             final long maxObjectSize,
@@ -189,7 +248,17 @@ public class CacheConfig implements Cloneable {
             final int asynchronousWorkersCore,
             final int asynchronousWorkerIdleLifetimeSecs,
             final int revalidationQueueSize,
-            final boolean neverCacheHTTP10ResponsesWithQuery) {
+            final boolean neverCacheHTTP10ResponsesWithQuery,
+            final boolean streamingCachingEnabled,
+            final boolean requestCollapsingEnabled,
+            final long requestCollapsingTimeout,
+            final boolean refreshAheadEnabled,
+            final float refreshAheadFactor,
+            final float refreshAheadMinHitRate,
+            final int refreshAheadMaxPerHost,
+            final int revalidationMaxPerRoute,
+            final long expirySweepInterval,
+            final long expirySweepTimeSlice) {
         super();
         this.maxObjectSize = maxObjectSize;
         this.maxCacheEntries = maxCacheEntries;
@@ -205,6 +274,16 @@ public class CacheConfig implements Cloneable {
         this.asynchronousWorkerIdleLifetimeSecs = asynchronousWorkerIdleLifetimeSecs;
         this.revalidationQueueSize = revalidationQueueSize;
         this.neverCacheHTTP10ResponsesWithQuery = neverCacheHTTP10ResponsesWithQuery;
+        this.streamingCachingEnabled = streamingCachingEnabled;
+        this.requestCollapsingEnabled = requestCollapsingEnabled;
+        this.requestCollapsingTimeout = requestCollapsingTimeout;
+        this.refreshAheadEnabled = refreshAheadEnabled;
+        this.refreshAheadFactor = refreshAheadFactor;
+        this.refreshAheadMinHitRate = refreshAheadMinHitRate;
+        this.refreshAheadMaxPerHost = refreshAheadMaxPerHost;
+        this.revalidationMaxPerRoute = revalidationMaxPerRoute;
+        this.expirySweepInterval = expirySweepInterval;
+        this.expirySweepTimeSlice = expirySweepTimeSlice;
     }
 
     /**
@@ -322,6 +401,93 @@ public class CacheConfig implements Cloneable {
         return revalidationQueueSize;
     }
 
+    /**
+     * Returns whether cacheable origin responses are streamed to the caller
+     * while their body is being copied into the cache.
+     * @return {@code true} if it is enabled.
+     */
+    public boolean isStreamingCachingEnabled() {
+        return streamingCachingEnabled;
+    }
+
+    /**
+     * Returns whether concurrent cache misses and revalidations of the same
+     * resource are collapsed into a single origin request.
+     * @return {@code true} if it is enabled.
+     */
+    public boolean isRequestCollapsingEnabled() {
+        return requestCollapsingEnabled;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a collapsed request waits
+     * for the origin request in flight for the same resource before it falls
+     * back to a stale cache entry, if permitted, or contacts the origin itself.
+     */
+    public long getRequestCollapsingTimeout() {
+        return requestCollapsingTimeout;
+    }
+
+    /**
+     * Returns whether frequently requested cache entries are revalidated in
+     * the background shortly before they expire.
+     * @return {@code true} if it is enabled.
+     */
+    public boolean isRefreshAheadEnabled() {
+        return refreshAheadEnabled;
+    }
+
+    /**
+     * Returns the fraction of the freshness lifetime a cache entry must have
+     * used up before a hit may refresh it in the background.
+     */
+    public float getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    /**
+     * Returns the minimum recent hit rate, in hits per minute, a cache entry
+     * must have to be refreshed ahead of expiry.
+     */
+    public float getRefreshAheadMinHitRate() {
+        return refreshAheadMinHitRate;
+    }
+
+    /**
+     * Returns the maximum number of refresh-ahead revalidations that may be
+     * in progress for a single origin host at any time.
+     */
+    public int getRefreshAheadMaxPerHost() {
+        return refreshAheadMaxPerHost;
+    }
+
+    /**
+     * Returns the maximum number of asynchronous revalidations that may be
+     * queued or in progress for a single route at any time.
+     */
+    public int getRevalidationMaxPerRoute() {
+        return revalidationMaxPerRoute;
+    }
+
+    /**
+     * Returns the interval in milliseconds between runs of the background
+     * sweeper that evicts cache entries that can no longer be served or
+     * revalidated. A value of zero or less disables the sweeper.
+     * @see CacheExpirySweeper
+     */
+    public long getExpirySweepInterval() {
+        return expirySweepInterval;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a single run of the background
+     * expiry sweeper may spend examining cache entries. Entries not examined
+     * within the time slice are examined by subsequent runs.
+     */
+    public long getExpirySweepTimeSlice() {
+        return expirySweepTimeSlice;
+    }
+
     @Override
     protected CacheConfig clone() throws CloneNotSupportedException {
         return (CacheConfig) super.clone();
@@ -345,7 +511,17 @@ public class CacheConfig implements Cloneable {
             .setAsynchronousWorkersCore(config.getAsynchronousWorkersCore())
             .setAsynchronousWorkerIdleLifetimeSecs(config.getAsynchronousWorkerIdleLifetimeSecs())
             .setRevalidationQueueSize(config.getRevalidationQueueSize())
-            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery());
+            .setNeverCacheHTTP10ResponsesWithQueryString(config.isNeverCacheHTTP10ResponsesWithQuery())
+            .setStreamingCachingEnabled(config.isStreamingCachingEnabled())
+            .setRequestCollapsingEnabled(config.isRequestCollapsingEnabled())
+            .setRequestCollapsingTimeout(config.getRequestCollapsingTimeout())
+            .setRefreshAheadEnabled(config.isRefreshAheadEnabled())
+            .setRefreshAheadFactor(config.getRefreshAheadFactor())
+            .setRefreshAheadMinHitRate(config.getRefreshAheadMinHitRate())
+            .setRefreshAheadMaxPerHost(config.getRefreshAheadMaxPerHost())
+            .setRevalidationMaxPerRoute(config.getRevalidationMaxPerRoute())
+            .setExpirySweepInterval(config.getExpirySweepInterval())
+            .setExpirySweepTimeSlice(config.getExpirySweepTimeSlice());
     }
 
 
@@ -365,6 +541,16 @@ public class CacheConfig implements Cloneable {
         private int asynchronousWorkerIdleLifetimeSecs;
         private int revalidationQueueSize;
         private boolean neverCacheHTTP10ResponsesWithQuery;
+        private boolean streamingCachingEnabled;
+        private boolean requestCollapsingEnabled;
+        private long requestCollapsingTimeout;
+        private boolean refreshAheadEnabled;
+        private float refreshAheadFactor;
+        private float refreshAheadMinHitRate;
+        private int refreshAheadMaxPerHost;
+        private int revalidationMaxPerRoute;
+        private long expirySweepInterval;
+        private long expirySweepTimeSlice;
 
         Builder() {
             this.maxObjectSize = DEFAULT_MAX_OBJECT_SIZE_BYTES;
@@ -380,6 +566,16 @@ public class CacheConfig implements Cloneable {
             this.asynchronousWorkersCore = DEFAULT_ASYNCHRONOUS_WORKERS_CORE;
             this.asynchronousWorkerIdleLifetimeSecs = DEFAULT_ASYNCHRONOUS_WORKER_IDLE_LIFETIME_SECS;
             this.revalidationQueueSize = DEFAULT_REVALIDATION_QUEUE_SIZE;
+            this.streamingCachingEnabled = DEFAULT_STREAMING_CACHING_ENABLED;
+            this.requestCollapsingEnabled = DEFAULT_REQUEST_COLLAPSING_ENABLED;
+            this.requestCollapsingTimeout = DEFAULT_REQUEST_COLLAPSING_TIMEOUT;
+            this.refreshAheadEnabled = DEFAULT_REFRESH_AHEAD_ENABLED;
+            this.refreshAheadFactor = DEFAULT_REFRESH_AHEAD_FACTOR;
+            this.refreshAheadMinHitRate = DEFAULT_REFRESH_AHEAD_MIN_HIT_RATE;
+            this.refreshAheadMaxPerHost = DEFAULT_REFRESH_AHEAD_MAX_PER_HOST;
+            this.revalidationMaxPerRoute = DEFAULT_REVALIDATION_MAX_PER_ROUTE;
+            this.expirySweepInterval = DEFAULT_EXPIRY_SWEEP_INTERVAL;
+            this.expirySweepTimeSlice = DEFAULT_EXPIRY_SWEEP_TIME_SLICE;
         }
 
         /**
@@ -532,6 +728,129 @@ public class CacheConfig implements Cloneable {
             return this;
         }
 
+        /**
+         * Enables or disables streaming of cacheable origin responses. When
+         * enabled, the response body is handed to the caller as it arrives and
+         * copied into the cache as it is being read; the cache entry is only
+         * stored once the body has been read to the end without exceeding the
+         * {@link #setMaxObjectSize(long) maximum object size}.
+         * @param streamingCachingEnabled should be {@code true} to stream
+         *   response bodies, {@code false} to read them fully before returning.
+         */
+        public Builder setStreamingCachingEnabled(final boolean streamingCachingEnabled) {
+            this.streamingCachingEnabled = streamingCachingEnabled;
+            return this;
+        }
+
+        /**
+         * Enables or disables collapsing of concurrent cache misses and
+         * revalidations. When enabled, only one request per cache key is sent to
+         * the origin at a time; other requests for the same resource wait up to
+         * {@link #setRequestCollapsingTimeout(long) the collapsing timeout} and
+         * are then served from the freshly stored cache entry.
+         * @param requestCollapsingEnabled should be {@code true} to collapse
+         *   requests, {@code false} to send every request to the origin.
+         */
+        public Builder setRequestCollapsingEnabled(final boolean requestCollapsingEnabled) {
+            this.requestCollapsingEnabled = requestCollapsingEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time in milliseconds a collapsed request waits for
+         * the origin request in flight for the same resource before it falls back
+         * to a stale cache entry, if permitted by {@code stale-if-error}, or
+         * contacts the origin itself.
+         * @param requestCollapsingTimeout timeout in milliseconds
+         */
+        public Builder setRequestCollapsingTimeout(final long requestCollapsingTimeout) {
+            this.requestCollapsingTimeout = requestCollapsingTimeout;
+            return this;
+        }
+
+        /**
+         * Enables or disables refresh-ahead of hot cache entries. When enabled, a
+         * cache hit on an entry that has used up
+         * {@link #setRefreshAheadFactor(float) a given fraction} of its freshness
+         * lifetime and that is requested at least
+         * {@link #setRefreshAheadMinHitRate(float) a given number of times per minute}
+         * schedules a background conditional revalidation, so the entry does not
+         * expire in the request path. Requires an asynchronous validator, see
+         * {@link #setAsynchronousWorkersMax(int)}.
+         * @param refreshAheadEnabled should be {@code true} to refresh hot entries
+         *   ahead of expiry.
+         */
+        public Builder setRefreshAheadEnabled(final boolean refreshAheadEnabled) {
+            this.refreshAheadEnabled = refreshAheadEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the fraction of the freshness lifetime a cache entry must have used
+         * up before a hit may refresh it in the background.
+         * @param refreshAheadFactor a value between 0 and 1
+         */
+        public Builder setRefreshAheadFactor(final float refreshAheadFactor) {
+            this.refreshAheadFactor = refreshAheadFactor;
+            return this;
+        }
+
+        /**
+         * Sets the minimum recent hit rate, in hits per minute, a cache entry must
+         * have to be refreshed ahead of expiry.
+         * @param refreshAheadMinHitRate hits per minute
+         */
+        public Builder setRefreshAheadMinHitRate(final float refreshAheadMinHitRate) {
+            this.refreshAheadMinHitRate = refreshAheadMinHitRate;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of refresh-ahead revalidations that may be in
+         * progress for a single origin host at any time. Further refresh
+         * opportunities for the host are skipped until one completes.
+         * @param refreshAheadMaxPerHost maximum concurrent refreshes per host
+         */
+        public Builder setRefreshAheadMaxPerHost(final int refreshAheadMaxPerHost) {
+            this.refreshAheadMaxPerHost = refreshAheadMaxPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of asynchronous revalidations that may be queued
+         * or in progress for a single route at any time, so that a single slow
+         * origin cannot occupy all revalidation workers. Further revalidations for
+         * the route are rejected until one completes.
+         * @param revalidationMaxPerRoute maximum revalidations per route
+         */
+        public Builder setRevalidationMaxPerRoute(final int revalidationMaxPerRoute) {
+            this.revalidationMaxPerRoute = revalidationMaxPerRoute;
+            return this;
+        }
+
+        /**
+         * Sets the interval in milliseconds between runs of the background sweeper
+         * that evicts cache entries that can no longer be served or revalidated
+         * from {@link BasicHttpCacheStorage} and {@link ManagedHttpCacheStorage}.
+         * @param expirySweepInterval interval in milliseconds; zero or less disables
+         *   the sweeper.
+         */
+        public Builder setExpirySweepInterval(final long expirySweepInterval) {
+            this.expirySweepInterval = expirySweepInterval;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time in milliseconds a single run of the background
+         * expiry sweeper may spend examining cache entries. Entries not examined
+         * within the time slice are examined by subsequent runs.
+         * @param expirySweepTimeSlice time slice in milliseconds
+         */
+        public Builder setExpirySweepTimeSlice(final long expirySweepTimeSlice) {
+            this.expirySweepTimeSlice = expirySweepTimeSlice;
+            return this;
+        }
+
         public CacheConfig build() {
             return new CacheConfig(
                     maxObjectSize,
@@ -547,7 +866,17 @@ public class CacheConfig implements Cloneable {
                     asynchronousWorkersCore,
                     asynchronousWorkerIdleLifetimeSecs,
                     revalidationQueueSize,
-                    neverCacheHTTP10ResponsesWithQuery);
+                    neverCacheHTTP10ResponsesWithQuery,
+                    streamingCachingEnabled,
+                    requestCollapsingEnabled,
+                    requestCollapsingTimeout,
+                    refreshAheadEnabled,
+                    refreshAheadFactor,
+                    refreshAheadMinHitRate,
+                    refreshAheadMaxPerHost,
+                    revalidationMaxPerRoute,
+                    expirySweepInterval,
+                    expirySweepTimeSlice);
         }
 
     }
@@ -569,6 +898,16 @@ public class CacheConfig implements Cloneable {
                 .append(", asynchronousWorkerIdleLifetimeSecs=").append(this.asynchronousWorkerIdleLifetimeSecs)
                 .append(", revalidationQueueSize=").append(this.revalidationQueueSize)
                 .append(", neverCacheHTTP10ResponsesWithQuery=").append(this.neverCacheHTTP10ResponsesWithQuery)
+                .append(", streamingCachingEnabled=").append(this.streamingCachingEnabled)
+                .append(", requestCollapsingEnabled=").append(this.requestCollapsingEnabled)
+                .append(", requestCollapsingTimeout=").append(this.requestCollapsingTimeout)
+                .append(", refreshAheadEnabled=").append(this.refreshAheadEnabled)
+                .append(", refreshAheadFactor=").append(this.refreshAheadFactor)
+                .append(", refreshAheadMinHitRate=").append(this.refreshAheadMinHitRate)
+                .append(", refreshAheadMaxPerHost=").append(this.refreshAheadMaxPerHost)
+                .append(", revalidationMaxPerRoute=").append(this.revalidationMaxPerRoute)
+                .append(", expirySweepInterval=").append(this.expirySweepInterval)
+                .append(", expirySweepTimeSlice=").append(this.expirySweepTimeSlice)
                 .append("]");
         return builder.toString();
     }
@@ -33,6 +33,7 @@ import java.io.Serializable;
 import java.util.Set;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.core5.annotation.Immutable;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
@@ -87,7 +88,12 @@ class CacheEntity implements HttpEntity, Serializable {
     @Override
     public void writeTo(final OutputStream outstream) throws IOException {
         Args.notNull(outstream, "Output stream");
-        try (InputStream instream = this.cacheEntry.getResource().getInputStream()) {
+        final Resource resource = ResourceReference.unwrap(this.cacheEntry.getResource());
+        if (resource instanceof MappedFileResource) {
+            ((MappedFileResource) resource).writeTo(outstream);
+            return;
+        }
+        try (InputStream instream = resource.getInputStream()) {
             IOUtils.copy(instream, outstream);
         }
     }
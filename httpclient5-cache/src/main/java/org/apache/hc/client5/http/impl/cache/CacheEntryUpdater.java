@@ -35,8 +35,6 @@ import java.util.ListIterator;
 
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.cache.Resource;
-import org.apache.hc.client5.http.cache.ResourceFactory;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.annotation.Immutable;
 import org.apache.hc.core5.http.Header;
@@ -55,20 +53,14 @@ import org.apache.hc.core5.util.Args;
 @Immutable
 class CacheEntryUpdater {
 
-    private final ResourceFactory resourceFactory;
-
     CacheEntryUpdater() {
-        this(new HeapResourceFactory());
-    }
-
-    CacheEntryUpdater(final ResourceFactory resourceFactory) {
         super();
-        this.resourceFactory = resourceFactory;
     }
 
     /**
      * Update the entry with the new information from the response.  Should only be used for
-     * 304 responses.
+     * 304 responses. The updated entry shares the {@link org.apache.hc.client5.http.cache.Resource}
+     * of the original entry, as a 304 response never changes the response body.
      *
      * @param requestId
      * @param entry The cache Entry to be updated
@@ -76,7 +68,7 @@ class CacheEntryUpdater {
      * @param responseDate When the response was gotten
      * @param response The HttpResponse from the backend server call
      * @return HttpCacheEntry an updated version of the cache entry
-     * @throws java.io.IOException if something bad happens while trying to read the body from the original entry
+     * @throws java.io.IOException if something bad happens while trying to update the entry
      */
     public HttpCacheEntry updateCacheEntry(
             final String requestId,
@@ -87,16 +79,12 @@ class CacheEntryUpdater {
         Args.check(response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED,
                 "Response must have 304 status code");
         final Header[] mergedHeaders = mergeHeaders(entry, response);
-        Resource resource = null;
-        if (entry.getResource() != null) {
-            resource = resourceFactory.copy(requestId, entry.getResource());
-        }
         return new HttpCacheEntry(
                 requestDate,
                 responseDate,
                 entry.getStatusLine(),
                 mergedHeaders,
-                resource,
+                entry.getResource(),
                 entry.getRequestMethod());
     }
 
@@ -0,0 +1,315 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * This class maintains a background thread that proactively evicts cache
+ * entries that can no longer be served or revalidated from a
+ * {@link BasicHttpCacheStorage} or a {@link ManagedHttpCacheStorage}.
+ * Resources of entries evicted from a {@link ManagedHttpCacheStorage} are
+ * disposed of as usual.
+ * <p>
+ * An entry is considered unusable once it is stale beyond the windows
+ * granted by its {@code stale-while-revalidate} and {@code stale-if-error}
+ * directives, it carries no validator ({@code ETag} or {@code Last-Modified})
+ * that would allow it to be revalidated, and it does not hold the variant
+ * index of a resource. Note that such entries could still satisfy requests
+ * that explicitly accept stale responses by means of {@code max-stale}.
+ * </p>
+ * <p>
+ * The sweeper works incrementally. Each run walks the entries of the storage
+ * in key order, in small chunks, for at most
+ * {@link CacheConfig#getExpirySweepTimeSlice()} milliseconds and continues
+ * where it left off on the next run. The chunks are read from a concurrent
+ * index of the storage without holding the storage lock, which is held only
+ * to remove small batches of unusable entries.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public final class CacheExpirySweeper {
+
+    static final int BATCH_SIZE = 32;
+
+    /**
+     * Storage operations required by the sweeper.
+     */
+    interface Target {
+
+        /**
+         * Returns up to {@code maxCount} entries whose keys follow the given
+         * key in key order, starting with the first key if {@code fromKey}
+         * is {@code null}.
+         */
+        List<Map.Entry<String, HttpCacheEntry>> nextEntries(String fromKey, int maxCount);
+
+        /**
+         * Removes the given entries unless they have been replaced or removed
+         * since they were read.
+         * @return the number of entries removed
+         */
+        int removeEntriesIfUnchanged(List<Map.Entry<String, HttpCacheEntry>> expired);
+
+    }
+
+    /**
+     * Source of the time used to enforce the time slice of a sweep.
+     */
+    interface Ticker {
+
+        /**
+         * Returns the current value of a monotonic clock in nanoseconds.
+         */
+        long nanoTime();
+
+    }
+
+    static final Ticker SYSTEM_TICKER = new Ticker() {
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+    };
+
+    private final Target target;
+    private final Ticker ticker;
+    private final CacheValidityPolicy validityPolicy;
+    private final boolean heuristicCachingEnabled;
+    private final float heuristicCoefficient;
+    private final long heuristicDefaultLifetime;
+    private final long sleepTimeMs;
+    private final long timeSliceNanos;
+    private final Thread thread;
+    private final AtomicLong evictedCount;
+
+    private String cursor;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    CacheExpirySweeper(
+            final Target target,
+            final CacheConfig config,
+            final ThreadFactory threadFactory,
+            final Ticker ticker) {
+        this.target = Args.notNull(target, "Storage");
+        this.ticker = ticker != null ? ticker : SYSTEM_TICKER;
+        Args.notNull(config, "Cache config");
+        this.validityPolicy = new CacheValidityPolicy();
+        this.heuristicCachingEnabled = config.isHeuristicCachingEnabled();
+        this.heuristicCoefficient = config.getHeuristicCoefficient();
+        this.heuristicDefaultLifetime = config.getHeuristicDefaultLifetime();
+        this.sleepTimeMs = config.getExpirySweepInterval() > 0 ? config.getExpirySweepInterval() : 5000L;
+        this.timeSliceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, config.getExpirySweepTimeSlice()));
+        this.evictedCount = new AtomicLong();
+        this.thread = (threadFactory != null ? threadFactory : new DefaultThreadFactory()).newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(sleepTimeMs);
+                        sweep(new Date());
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (final RuntimeException ex) {
+                    log.warn("Cache expiry sweeper terminated unexpectedly", ex);
+                }
+            }
+
+        });
+    }
+
+    CacheExpirySweeper(
+            final Target target,
+            final CacheConfig config,
+            final ThreadFactory threadFactory) {
+        this(target, config, threadFactory, null);
+    }
+
+    /**
+     * Creates a sweeper for the given storage which runs every
+     * {@link CacheConfig#getExpirySweepInterval()} milliseconds once started.
+     */
+    public CacheExpirySweeper(final BasicHttpCacheStorage storage, final CacheConfig config) {
+        this(storageTarget(storage), config, null);
+    }
+
+    /**
+     * Creates a sweeper for the given storage which runs every
+     * {@link CacheConfig#getExpirySweepInterval()} milliseconds once started.
+     */
+    public CacheExpirySweeper(final ManagedHttpCacheStorage storage, final CacheConfig config) {
+        this(storageTarget(storage), config, null);
+    }
+
+    private static Target storageTarget(final BasicHttpCacheStorage storage) {
+        Args.notNull(storage, "Storage");
+        return new Target() {
+
+            @Override
+            public List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+                return storage.nextEntries(fromKey, maxCount);
+            }
+
+            @Override
+            public int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+                return storage.removeEntriesIfUnchanged(expired);
+            }
+
+        };
+    }
+
+    private static Target storageTarget(final ManagedHttpCacheStorage storage) {
+        Args.notNull(storage, "Storage");
+        return new Target() {
+
+            @Override
+            public List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+                return storage.nextEntries(fromKey, maxCount);
+            }
+
+            @Override
+            public int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+                return storage.removeEntriesIfUnchanged(expired);
+            }
+
+        };
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        thread.join((tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time));
+    }
+
+    /**
+     * Returns the number of entries evicted by this sweeper so far.
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * Runs a single time-sliced sweep.
+     * @return the number of entries evicted
+     */
+    synchronized int sweep(final Date now) {
+        final long deadline = ticker.nanoTime() + timeSliceNanos;
+        int evicted = 0;
+        final List<Map.Entry<String, HttpCacheEntry>> expired = new ArrayList<>(BATCH_SIZE);
+        boolean timeUp = false;
+        boolean passComplete = false;
+        while (!timeUp && !passComplete) {
+            final List<Map.Entry<String, HttpCacheEntry>> chunk = target.nextEntries(cursor, BATCH_SIZE);
+            int i = 0;
+            while (i < chunk.size() && !timeUp) {
+                final Map.Entry<String, HttpCacheEntry> candidate = chunk.get(i++);
+                cursor = candidate.getKey();
+                if (isUnusable(candidate.getValue(), now)) {
+                    expired.add(candidate);
+                    if (expired.size() >= BATCH_SIZE) {
+                        evicted += target.removeEntriesIfUnchanged(expired);
+                        expired.clear();
+                    }
+                }
+                timeUp = ticker.nanoTime() - deadline >= 0;
+            }
+            if (i == chunk.size() && chunk.size() < BATCH_SIZE) {
+                // start over with the next run
+                passComplete = true;
+                cursor = null;
+            }
+        }
+        if (!expired.isEmpty()) {
+            evicted += target.removeEntriesIfUnchanged(expired);
+        }
+        evictedCount.addAndGet(evicted);
+        return evicted;
+    }
+
+    /**
+     * Determines whether the given entry can no longer be served or
+     * revalidated.
+     */
+    boolean isUnusable(final HttpCacheEntry entry, final Date now) {
+        if ((entry.hasVariants() && !entry.getVariantMap().isEmpty()) || validityPolicy.isRevalidatable(entry)) {
+            return false;
+        }
+        if (validityPolicy.isResponseFresh(entry, now)) {
+            return false;
+        }
+        if (heuristicCachingEnabled && validityPolicy.isResponseHeuristicallyFresh(
+                entry, now, heuristicCoefficient, heuristicDefaultLifetime)) {
+            return false;
+        }
+        if (validityPolicy.mayReturnStaleWhileRevalidating(entry, now)) {
+            return false;
+        }
+        final int staleIfError = entry.getFreshnessInfo().getStaleIfError();
+        return staleIfError < 0 || validityPolicy.getStalenessSecs(entry, now) > staleIfError;
+    }
+
+    static class DefaultThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "Cache expiry sweeper");
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
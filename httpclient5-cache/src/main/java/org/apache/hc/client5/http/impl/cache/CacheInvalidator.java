@@ -29,12 +29,15 @@ package org.apache.hc.client5.http.impl.cache;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.Date;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationBus;
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationListener;
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.utils.DateUtils;
@@ -56,6 +59,7 @@ class CacheInvalidator implements HttpCacheInvalidator {
 
     private final HttpCacheStorage storage;
     private final CacheKeyGenerator cacheKeyGenerator;
+    private final HttpCacheInvalidationBus invalidationBus;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -69,8 +73,38 @@ class CacheInvalidator implements HttpCacheInvalidator {
     public CacheInvalidator(
             final CacheKeyGenerator uriExtractor,
             final HttpCacheStorage storage) {
+        this(uriExtractor, storage, null);
+    }
+
+    /**
+     * Create a new {@link CacheInvalidator} for a given {@link HttpCache} and
+     * {@link CacheKeyGenerator} that publishes invalidated cache keys on the
+     * given {@link HttpCacheInvalidationBus} and applies invalidations received
+     * from other cache instances to the given storage.
+     *
+     * @param uriExtractor Provides identifiers for the keys to store cache entries
+     * @param storage the cache to store items away in
+     * @param invalidationBus bus shared with other cache instances, may be {@code null}
+     *
+     * @since 5.0
+     */
+    public CacheInvalidator(
+            final CacheKeyGenerator uriExtractor,
+            final HttpCacheStorage storage,
+            final HttpCacheInvalidationBus invalidationBus) {
         this.cacheKeyGenerator = uriExtractor;
         this.storage = storage;
+        this.invalidationBus = invalidationBus;
+        if (invalidationBus != null) {
+            invalidationBus.subscribe(new HttpCacheInvalidationListener() {
+
+                @Override
+                public void invalidated(final Collection<String> cacheKeys) {
+                    flushRemotelyInvalidatedEntries(cacheKeys);
+                }
+
+            });
+        }
     }
 
     /**
@@ -89,10 +123,11 @@ class CacheInvalidator implements HttpCacheInvalidator {
             log.debug("Invalidating parent cache entry: " + parent);
             if (parent != null) {
                 for (final String variantURI : parent.getVariantMap().values()) {
-                    flushEntry(variantURI);
+                    removeEntry(variantURI);
                 }
-                flushEntry(theUri);
+                removeEntry(theUri);
             }
+            publish(theUri);
             final URL reqURL = getAbsoluteURL(theUri);
             if (reqURL == null) {
                 log.error("Couldn't transform request into valid URL");
@@ -125,6 +160,11 @@ class CacheInvalidator implements HttpCacheInvalidator {
     }
 
     private void flushEntry(final String uri) {
+        removeEntry(uri);
+        publish(uri);
+    }
+
+    private void removeEntry(final String uri) {
         try {
             storage.removeEntry(uri);
         } catch (final IOException ioe) {
@@ -132,6 +172,28 @@ class CacheInvalidator implements HttpCacheInvalidator {
         }
     }
 
+    private void publish(final String uri) {
+        if (invalidationBus != null) {
+            invalidationBus.publish(uri);
+        }
+    }
+
+    /**
+     * Removes entries invalidated by another cache instance, including the
+     * variants of any parent entry, without publishing them again.
+     */
+    void flushRemotelyInvalidatedEntries(final Collection<String> cacheKeys) {
+        for (final String uri : cacheKeys) {
+            final HttpCacheEntry entry = getEntry(uri);
+            if (entry != null) {
+                for (final String variantURI : entry.getVariantMap().values()) {
+                    removeEntry(variantURI);
+                }
+                removeEntry(uri);
+            }
+        }
+    }
+
     private HttpCacheEntry getEntry(final String theUri) {
         try {
             return storage.getEntry(theUri);
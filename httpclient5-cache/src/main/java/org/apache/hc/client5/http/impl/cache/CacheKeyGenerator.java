@@ -35,24 +35,51 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.utils.URIUtils;
-import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
 
 /**
+ * Generates cache keys for requests.
+ * <p>
+ * Request URIs consisting of a plain {@code http} or {@code https} host name, port,
+ * path and query are canonicalized in a single pass without parsing them into
+ * {@link URI} and {@link URL} instances. All other URIs take the full normalization
+ * path whose results are kept in a bounded memo. Both paths produce identical keys.
+ * </p>
+ *
  * @since 4.1
  */
-@Immutable
+@ThreadSafe
 class CacheKeyGenerator {
 
     private static final URI BASE_URI = URI.create("http://example.com/");
 
+    static final int DEFAULT_MAX_MEMO_SIZE = 1000;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final int maxMemoSize;
+    private final ConcurrentMap<String, String> memo;
+
+    CacheKeyGenerator(final int maxMemoSize) {
+        super();
+        this.maxMemoSize = maxMemoSize;
+        this.memo = new ConcurrentHashMap<>();
+    }
+
+    CacheKeyGenerator() {
+        this(DEFAULT_MAX_MEMO_SIZE);
+    }
+
     /**
      * For a given {@link HttpHost} and {@link HttpRequest} get a URI from the
      * pair that I can use as an identifier KEY into my HttpCache
@@ -62,13 +89,46 @@ class CacheKeyGenerator {
      * @return String the extracted URI
      */
     public String getURI(final HttpHost host, final HttpRequest req) {
-        if (isRelativeRequest(req)) {
-            return canonicalizeUri(String.format("%s%s", host.toString(), req.getRequestLine().getUri()));
+        final String requestUri = req.getRequestLine().getUri();
+        if (isRelativeRequest(requestUri)) {
+            if (requestUri.startsWith("/")) {
+                final String key = fastCanonicalize(
+                        host.getSchemeName(), host.getHostName(), host.getPort(), requestUri, 0);
+                if (key != null) {
+                    return key;
+                }
+            }
+            return canonicalizeUri(host.toString() + requestUri);
         }
-        return canonicalizeUri(req.getRequestLine().getUri());
+        return canonicalizeUri(requestUri);
     }
 
     public String canonicalizeUri(final String uri) {
+        final String key = fastCanonicalize(uri);
+        if (key != null) {
+            return key;
+        }
+        final String memoized = this.memo.get(uri);
+        if (memoized != null) {
+            return memoized;
+        }
+        final String canonical = normalizeUri(uri);
+        if (this.memo.size() >= this.maxMemoSize) {
+            this.memo.clear();
+        }
+        this.memo.put(uri, canonical);
+        return canonical;
+    }
+
+    int getMemoSize() {
+        return this.memo.size();
+    }
+
+    /**
+     * Canonicalizes the URI by resolving and normalizing it with {@link URIUtils}
+     * and {@link URL}. The fast path must produce identical results.
+     */
+    String normalizeUri(final String uri) {
         try {
             final URI normalized = URIUtils.resolve(BASE_URI, uri);
             final URL u = new URL(normalized.toASCIIString());
@@ -87,6 +147,254 @@ class CacheKeyGenerator {
         }
     }
 
+    private String fastCanonicalize(final String uri) {
+        final String scheme;
+        final int hostStart;
+        if (uri.regionMatches(true, 0, "http://", 0, 7)) {
+            scheme = "http";
+            hostStart = 7;
+        } else if (uri.regionMatches(true, 0, "https://", 0, 8)) {
+            scheme = "https";
+            hostStart = 8;
+        } else {
+            return null;
+        }
+        int i = hostStart;
+        while (i < uri.length() && isHostChar(uri.charAt(i))) {
+            i++;
+        }
+        final int hostEnd = i;
+        int port = -1;
+        if (i < uri.length() && uri.charAt(i) == ':') {
+            i++;
+            final int portStart = i;
+            port = 0;
+            while (i < uri.length() && i - portStart < 5 && isDigit(uri.charAt(i))) {
+                port = port * 10 + (uri.charAt(i) - '0');
+                i++;
+            }
+            if (i == portStart) {
+                return null;
+            }
+        }
+        if (i < uri.length() && uri.charAt(i) != '/' && uri.charAt(i) != '?') {
+            return null;
+        }
+        return fastCanonicalize(scheme, uri.substring(hostStart, hostEnd), port, uri, i);
+    }
+
+    /**
+     * Builds the cache key from its parts in a single pass. Returns {@code null}
+     * if the URI contains anything the full normalization might rewrite, such as
+     * dot segments, empty segments, escapes in the path, user info, fragments or
+     * host names that are not plain DNS names or IPv4 addresses.
+     */
+    private static String fastCanonicalize(
+            final String scheme, final String hostname, final int port,
+            final String uri, final int pathStart) {
+        final int canonicalPort;
+        if ("http".equalsIgnoreCase(scheme)) {
+            canonicalPort = port == -1 ? 80 : port;
+        } else if ("https".equalsIgnoreCase(scheme)) {
+            canonicalPort = port == -1 ? 443 : port;
+        } else {
+            return null;
+        }
+        if (hostname == null || !isPlainHostName(hostname)) {
+            return null;
+        }
+        final StringBuilder buf = new StringBuilder(
+                scheme.length() + hostname.length() + uri.length() - pathStart + 10);
+        for (int i = 0; i < scheme.length(); i++) {
+            buf.append(Character.toLowerCase(scheme.charAt(i)));
+        }
+        buf.append("://");
+        for (int i = 0; i < hostname.length(); i++) {
+            buf.append(Character.toLowerCase(hostname.charAt(i)));
+        }
+        buf.append(':').append(canonicalPort);
+        int i = pathStart;
+        if (i == uri.length() || uri.charAt(i) == '?') {
+            buf.append('/');
+        } else {
+            int segmentStart = i + 1;
+            buf.append('/');
+            i++;
+            for (; i < uri.length(); i++) {
+                final char ch = uri.charAt(i);
+                if (ch == '?') {
+                    break;
+                }
+                if (ch == '/') {
+                    if (!isPlainSegment(uri, segmentStart, i)) {
+                        return null;
+                    }
+                    segmentStart = i + 1;
+                } else if (!isPathChar(ch)) {
+                    return null;
+                }
+                buf.append(ch);
+            }
+            if (segmentStart < i && !isPlainSegment(uri, segmentStart, i)) {
+                return null;
+            }
+        }
+        if (i < uri.length()) {
+            // query
+            buf.append('?');
+            i++;
+            for (; i < uri.length(); i++) {
+                final char ch = uri.charAt(i);
+                if (ch == '%') {
+                    if (i + 2 >= uri.length()
+                            || !isHexDigit(uri.charAt(i + 1)) || !isHexDigit(uri.charAt(i + 2))) {
+                        return null;
+                    }
+                } else if (!isQueryChar(ch)) {
+                    return null;
+                }
+                buf.append(ch);
+            }
+        }
+        return buf.toString();
+    }
+
+    private static boolean isPlainSegment(final String s, final int start, final int end) {
+        final int len = end - start;
+        if (len == 0) {
+            return false;
+        }
+        if (len == 1 && s.charAt(start) == '.') {
+            return false;
+        }
+        return !(len == 2 && s.charAt(start) == '.' && s.charAt(start + 1) == '.');
+    }
+
+    private static boolean isPlainHostName(final String hostname) {
+        if (isIPv4Address(hostname)) {
+            return true;
+        }
+        final int len = hostname.length();
+        int labelStart = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i == len || hostname.charAt(i) == '.') {
+                if (i == labelStart || hostname.charAt(labelStart) == '-' || hostname.charAt(i - 1) == '-') {
+                    return false;
+                }
+                if (i == len) {
+                    // the top label must start with a letter
+                    return isAlpha(hostname.charAt(labelStart));
+                }
+                labelStart = i + 1;
+            } else {
+                final char ch = hostname.charAt(i);
+                if (!isAlpha(ch) && !isDigit(ch) && ch != '-') {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIPv4Address(final String hostname) {
+        final int len = hostname.length();
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i == len || hostname.charAt(i) == '.') {
+                if (digits == 0 || value > 255) {
+                    return false;
+                }
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                final char ch = hostname.charAt(i);
+                if (!isDigit(ch) || digits == 3) {
+                    return false;
+                }
+                value = value * 10 + (ch - '0');
+                digits++;
+            }
+        }
+        return octets == 4;
+    }
+
+    private static boolean isAlpha(final char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isDigit(final char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    private static boolean isHexDigit(final char ch) {
+        return isDigit(ch) || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F');
+    }
+
+    private static boolean isHostChar(final char ch) {
+        return isAlpha(ch) || isDigit(ch) || ch == '-' || ch == '.';
+    }
+
+    private static boolean isPathChar(final char ch) {
+        if (isAlpha(ch) || isDigit(ch)) {
+            return true;
+        }
+        switch (ch) {
+            case '-':
+            case '.':
+            case '_':
+            case '~':
+            case '!':
+            case '*':
+            case '\'':
+            case '(':
+            case ')':
+            case ',':
+            case ';':
+            case ':':
+            case '$':
+            case '&':
+            case '+':
+            case '=':
+            case '@':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isQueryChar(final char ch) {
+        if (isAlpha(ch) || isDigit(ch)) {
+            return true;
+        }
+        switch (ch) {
+            case '-':
+            case '.':
+            case '_':
+            case '~':
+            case '!':
+            case '*':
+            case '\'':
+            case '(':
+            case ')':
+            case ';':
+            case '/':
+            case '?':
+            case ':':
+            case '@':
+            case '&':
+            case '=':
+            case '+':
+            case '$':
+            case ',':
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private int canonicalizePort(final int port, final String protocol) {
         if (port == -1 && "http".equalsIgnoreCase(protocol)) {
             return 80;
@@ -96,8 +404,7 @@ class CacheKeyGenerator {
         return port;
     }
 
-    private boolean isRelativeRequest(final HttpRequest req) {
-        final String requestUri = req.getRequestLine().getUri();
+    private boolean isRelativeRequest(final String requestUri) {
         return ("*".equals(requestUri) || requestUri.startsWith("/"));
     }
 
@@ -152,27 +459,48 @@ class CacheKeyGenerator {
                 variantHeaderNames.add(elt.getName());
             }
         }
-        Collections.sort(variantHeaderNames);
+        if (variantHeaderNames.size() > 1) {
+            Collections.sort(variantHeaderNames);
+        }
 
-        StringBuilder buf;
-        try {
-            buf = new StringBuilder("{");
-            boolean first = true;
-            for (final String headerName : variantHeaderNames) {
-                if (!first) {
-                    buf.append("&");
-                }
-                buf.append(URLEncoder.encode(headerName, StandardCharsets.UTF_8.name()));
-                buf.append("=");
-                buf.append(URLEncoder.encode(getFullHeaderValue(req.getHeaders(headerName)),
-                        StandardCharsets.UTF_8.name()));
-                first = false;
+        final StringBuilder buf = new StringBuilder(64);
+        buf.append('{');
+        boolean first = true;
+        for (final String headerName : variantHeaderNames) {
+            if (!first) {
+                buf.append('&');
             }
-            buf.append("}");
-        } catch (final UnsupportedEncodingException uee) {
-            throw new RuntimeException("couldn't encode to UTF-8", uee);
+            appendEncoded(buf, headerName);
+            buf.append('=');
+            appendEncoded(buf, getFullHeaderValue(req.getHeaders(headerName)));
+            first = false;
         }
+        buf.append('}');
         return buf.toString();
     }
 
+    /**
+     * Appends the value encoded the same way as {@link URLEncoder} with UTF-8
+     * would do, handing over to {@link URLEncoder} only for non-ASCII content.
+     */
+    private static void appendEncoded(final StringBuilder buf, final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (isAlpha(ch) || isDigit(ch) || ch == '.' || ch == '-' || ch == '*' || ch == '_') {
+                buf.append(ch);
+            } else if (ch == ' ') {
+                buf.append('+');
+            } else if (ch < 0x80) {
+                buf.append('%').append(HEX_DIGITS[(ch >> 4) & 0x0f]).append(HEX_DIGITS[ch & 0x0f]);
+            } else {
+                try {
+                    buf.append(URLEncoder.encode(s.substring(i), StandardCharsets.UTF_8.name()));
+                } catch (final UnsupportedEncodingException uee) {
+                    throw new RuntimeException("couldn't encode to UTF-8", uee);
+                }
+                return;
+            }
+        }
+    }
+
 }
@@ -26,25 +26,100 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 
-final class CacheMap extends LinkedHashMap<String, HttpCacheEntry> {
+/**
+ * LRU map of cache entries. The entries are also indexed by key in a concurrent
+ * sorted map, which can be walked in chunks without holding the lock guarding
+ * this map and without affecting the access order. Only {@link #put(String, HttpCacheEntry)},
+ * {@link #remove(Object)} and {@link #clear()} keep the index up to date.
+ */
+class CacheMap extends LinkedHashMap<String, HttpCacheEntry> {
 
     private static final long serialVersionUID = -7750025207539768511L;
 
     private final int maxEntries;
+    private final ConcurrentNavigableMap<String, HttpCacheEntry> keyIndex;
 
     CacheMap(final int maxEntries) {
         super(20, 0.75f, true);
         this.maxEntries = maxEntries;
+        this.keyIndex = new ConcurrentSkipListMap<>();
+    }
+
+    @Override
+    public HttpCacheEntry put(final String key, final HttpCacheEntry value) {
+        // Index first as the new entry may be evicted right away
+        this.keyIndex.put(key, value);
+        return super.put(key, value);
+    }
+
+    @Override
+    public HttpCacheEntry remove(final Object key) {
+        this.keyIndex.remove(key);
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.keyIndex.clear();
+        super.clear();
     }
 
     @Override
     protected boolean removeEldestEntry(final Map.Entry<String, HttpCacheEntry> eldest) {
-        return size() > this.maxEntries;
+        if (size() > this.maxEntries) {
+            this.keyIndex.remove(eldest.getKey(), eldest.getValue());
+            evicted(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns up to {@code maxCount} entries whose keys follow the given key
+     * in key order, starting with the first key if {@code fromKey} is
+     * {@code null}. This method does not require external synchronization;
+     * the result reflects the state of the map at some point during the call.
+     */
+    List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+        final Map<String, HttpCacheEntry> tail = fromKey != null
+                ? this.keyIndex.tailMap(fromKey, false) : this.keyIndex;
+        final List<Map.Entry<String, HttpCacheEntry>> chunk = new ArrayList<>(maxCount);
+        for (final Map.Entry<String, HttpCacheEntry> entry: tail.entrySet()) {
+            if (chunk.size() >= maxCount) {
+                break;
+            }
+            chunk.add(entry);
+        }
+        return chunk;
+    }
+
+    /**
+     * Removes the entry with the given key if it is still mapped to the given
+     * value, without affecting the access order of the remaining entries.
+     * @return {@code true} if the entry has been removed
+     */
+    boolean removeIfUnchanged(final String key, final HttpCacheEntry value) {
+        if (this.keyIndex.get(key) != value) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    /**
+     * Invoked when the least recently used entry is about to be evicted
+     * in order to keep the map within its capacity.
+     */
+    void evicted(final String key, final HttpCacheEntry entry) {
     }
 
 }
@@ -0,0 +1,212 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.TrailerSupplier;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Entity representing a byte range of a cached response body. Heap, file and
+ * memory-mapped resources are sliced without reading the content preceding
+ * the range.
+ *
+ * @since 5.0
+ */
+@Immutable
+class CacheRangeEntity implements HttpEntity {
+
+    private final HttpCacheEntry cacheEntry;
+    private final long offset;
+    private final long length;
+
+    CacheRangeEntity(final HttpCacheEntry cacheEntry, final long offset, final long length) {
+        super();
+        this.cacheEntry = Args.notNull(cacheEntry, "Cache entry");
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public String getContentType() {
+        final Header header = this.cacheEntry.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+        return header != null ? header.getValue() : null;
+    }
+
+    @Override
+    public String getContentEncoding() {
+        final Header header = this.cacheEntry.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        return header != null ? header.getValue() : null;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return false;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    private ByteBuffer slice(final MappedFileResource resource) {
+        final ByteBuffer buffer = resource.getByteBuffer();
+        buffer.position((int) this.offset);
+        buffer.limit((int) (this.offset + this.length));
+        return buffer;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final Resource resource = ResourceReference.unwrap(this.cacheEntry.getResource());
+        if (resource instanceof MappedFileResource) {
+            return new MappedFileResource.ByteBufferInputStream(slice((MappedFileResource) resource));
+        }
+        if (resource instanceof HeapResource) {
+            return new ByteArrayInputStream(
+                    ((HeapResource) resource).getByteArray(), (int) this.offset, (int) this.length);
+        }
+        final InputStream instream;
+        if (resource instanceof FileResource) {
+            final FileInputStream fileStream = new FileInputStream(((FileResource) resource).getFile());
+            fileStream.getChannel().position(this.offset);
+            instream = fileStream;
+        } else {
+            instream = resource.getInputStream();
+            long remaining = this.offset;
+            while (remaining > 0) {
+                final long skipped = instream.skip(remaining);
+                if (skipped <= 0) {
+                    if (instream.read() == -1) {
+                        break;
+                    }
+                    remaining--;
+                } else {
+                    remaining -= skipped;
+                }
+            }
+        }
+        return new RangeInputStream(instream, this.length);
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+        Args.notNull(outstream, "Output stream");
+        try (InputStream instream = getContent()) {
+            IOUtils.copy(instream, outstream);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public TrailerSupplier getTrailers() {
+        return null;
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return null;
+    }
+
+    static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(final InputStream instream, final long length) {
+            super(instream);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                this.remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int n = super.read(b, off, (int) Math.min(len, this.remaining));
+            if (n > 0) {
+                this.remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(Math.min(n, this.remaining));
+            if (skipped > 0) {
+                this.remaining -= skipped;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), this.remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+    }
+
+}
@@ -28,13 +28,12 @@ package org.apache.hc.client5.http.impl.cache;
 
 import java.util.Date;
 
+import org.apache.hc.client5.http.cache.FreshnessInfo;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.annotation.Immutable;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
-import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpRequest;
 
 /**
@@ -43,7 +42,7 @@ import org.apache.hc.core5.http.HttpRequest;
 @Immutable
 class CacheValidityPolicy {
 
-    public static final long MAX_AGE = 2147483648L;
+    public static final long MAX_AGE = FreshnessInfo.MAX_AGE;
 
     CacheValidityPolicy() {
         super();
@@ -124,31 +123,17 @@ class CacheValidityPolicy {
     }
 
     public boolean mayReturnStaleWhileRevalidating(final HttpCacheEntry entry, final Date now) {
-        for (final Header h : entry.getHeaders(HeaderConstants.CACHE_CONTROL)) {
-            for(final HeaderElement elt : h.getElements()) {
-                if (HeaderConstants.STALE_WHILE_REVALIDATE.equalsIgnoreCase(elt.getName())) {
-                    try {
-                        final int allowedStalenessLifetime = Integer.parseInt(elt.getValue());
-                        if (getStalenessSecs(entry, now) <= allowedStalenessLifetime) {
-                            return true;
-                        }
-                    } catch (final NumberFormatException nfe) {
-                        // skip malformed directive
-                    }
-                }
-            }
-        }
-
-        return false;
+        final int allowedStalenessLifetime = entry.getFreshnessInfo().getStaleWhileRevalidate();
+        return allowedStalenessLifetime >= 0 && getStalenessSecs(entry, now) <= allowedStalenessLifetime;
     }
 
     public boolean mayReturnStaleIfError(final HttpRequest request,
             final HttpCacheEntry entry, final Date now) {
         final long stalenessSecs = getStalenessSecs(entry, now);
+        final int staleIfErrorSecs = entry.getFreshnessInfo().getStaleIfError();
         return mayReturnStaleIfError(request.getHeaders(HeaderConstants.CACHE_CONTROL),
                                      stalenessSecs)
-                || mayReturnStaleIfError(entry.getHeaders(HeaderConstants.CACHE_CONTROL),
-                                         stalenessSecs);
+                || (staleIfErrorSecs >= 0 && stalenessSecs <= staleIfErrorSecs);
     }
 
     private boolean mayReturnStaleIfError(final Header[] headers, final long stalenessSecs) {
@@ -172,28 +157,15 @@ class CacheValidityPolicy {
     }
 
     protected Date getLastModifiedValue(final HttpCacheEntry entry) {
-        final Header dateHdr = entry.getFirstHeader(HeaderConstants.LAST_MODIFIED);
-        if (dateHdr == null) {
-            return null;
-        }
-        return DateUtils.parseDate(dateHdr.getValue());
+        return entry.getFreshnessInfo().getLastModified();
     }
 
     protected long getContentLengthValue(final HttpCacheEntry entry) {
-        final Header cl = entry.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
-        if (cl == null) {
-            return -1;
-        }
-
-        try {
-            return Long.parseLong(cl.getValue());
-        } catch (final NumberFormatException ex) {
-            return -1;
-        }
+        return entry.getFreshnessInfo().getContentLength();
     }
 
     protected boolean hasContentLengthHeader(final HttpCacheEntry entry) {
-        return null != entry.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        return entry.getFreshnessInfo().hasContentLength();
     }
 
     /**
@@ -221,20 +193,7 @@ class CacheValidityPolicy {
     }
 
     protected long getAgeValue(final HttpCacheEntry entry) {
-        long ageValue = 0;
-        for (final Header hdr : entry.getHeaders(HeaderConstants.AGE)) {
-            long hdrAge;
-            try {
-                hdrAge = Long.parseLong(hdr.getValue());
-                if (hdrAge < 0) {
-                    hdrAge = MAX_AGE;
-                }
-            } catch (final NumberFormatException nfe) {
-                hdrAge = MAX_AGE;
-            }
-            ageValue = (hdrAge > ageValue) ? hdrAge : ageValue;
-        }
-        return ageValue;
+        return entry.getFreshnessInfo().getAge();
     }
 
     protected long getCorrectedReceivedAgeSecs(final HttpCacheEntry entry) {
@@ -258,44 +217,16 @@ class CacheValidityPolicy {
     }
 
     protected long getMaxAge(final HttpCacheEntry entry) {
-        long maxage = -1;
-        for (final Header hdr : entry.getHeaders(HeaderConstants.CACHE_CONTROL)) {
-            for (final HeaderElement elt : hdr.getElements()) {
-                if (HeaderConstants.CACHE_CONTROL_MAX_AGE.equals(elt.getName())
-                        || "s-maxage".equals(elt.getName())) {
-                    try {
-                        final long currMaxAge = Long.parseLong(elt.getValue());
-                        if (maxage == -1 || currMaxAge < maxage) {
-                            maxage = currMaxAge;
-                        }
-                    } catch (final NumberFormatException nfe) {
-                        // be conservative if can't parse
-                        maxage = 0;
-                    }
-                }
-            }
-        }
-        return maxage;
+        return entry.getFreshnessInfo().getMaxAge();
     }
 
     protected Date getExpirationDate(final HttpCacheEntry entry) {
-        final Header expiresHeader = entry.getFirstHeader(HeaderConstants.EXPIRES);
-        if (expiresHeader == null) {
-            return null;
-        }
-        return DateUtils.parseDate(expiresHeader.getValue());
+        return entry.getFreshnessInfo().getExpires();
     }
 
     public boolean hasCacheControlDirective(final HttpCacheEntry entry,
             final String directive) {
-        for (final Header h : entry.getHeaders(HeaderConstants.CACHE_CONTROL)) {
-            for(final HeaderElement elt : h.getElements()) {
-                if (directive.equalsIgnoreCase(elt.getName())) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return entry.getFreshnessInfo().hasDirective(directive);
     }
 
     public long getStalenessSecs(final HttpCacheEntry entry, final Date now) {
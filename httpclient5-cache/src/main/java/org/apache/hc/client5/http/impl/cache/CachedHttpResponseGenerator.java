@@ -26,10 +26,14 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
 import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.client5.http.utils.DateUtils;
@@ -37,6 +41,7 @@ import org.apache.hc.core5.annotation.Immutable;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.HttpVersion;
@@ -51,6 +56,8 @@ import org.apache.hc.core5.http.message.BasicHttpResponse;
 @Immutable
 class CachedHttpResponseGenerator {
 
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
     private final CacheValidityPolicy validityStrategy;
 
     CachedHttpResponseGenerator(final CacheValidityPolicy validityStrategy) {
@@ -71,15 +78,31 @@ class CachedHttpResponseGenerator {
      */
     CloseableHttpResponse generateResponse(final HttpRequestWrapper request, final HttpCacheEntry entry) {
         final Date now = new Date();
-        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, entry
-                .getStatusCode(), entry.getReasonPhrase());
+        final HttpResponse response;
+        final long[] range = responseShouldContainEntity(request, entry) ? getByteRange(request, entry) : null;
+        if (range == UNSATISFIABLE_RANGE) {
+            return generateRangeNotSatisfiableResponse(entry);
+        } else if (range != null) {
+            final long total = entry.getResource().length();
+            final long first = range[0];
+            final long last = range[1];
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpStatus.SC_PARTIAL_CONTENT, "Partial Content");
+            response.setHeaders(entry.getAllHeaders());
+            response.setHeader(HeaderConstants.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + total);
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(last - first + 1));
+            response.setEntity(new CacheRangeEntity(entry, first, last - first + 1));
+        } else {
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1, entry
+                    .getStatusCode(), entry.getReasonPhrase());
 
-        response.setHeaders(entry.getAllHeaders());
+            response.setHeaders(entry.getAllHeaders());
 
-        if (responseShouldContainEntity(request, entry)) {
-            final HttpEntity entity = new CacheEntity(entry);
-            addMissingContentLengthHeader(response, entity);
-            response.setEntity(entity);
+            if (responseShouldContainEntity(request, entry)) {
+                final HttpEntity entity = new CacheEntity(entry);
+                addMissingContentLengthHeader(response, entity);
+                response.setEntity(entity);
+            }
         }
 
         final long age = this.validityStrategy.getCurrentAgeSecs(entry, now);
@@ -91,6 +114,124 @@ class CachedHttpResponseGenerator {
             }
         }
 
+        final Resource resource = entry.getResource();
+        if (response.getEntity() != null && resource instanceof ResourceReference) {
+            return holdResource(response, (ResourceReference) resource);
+        }
+        return Proxies.enhanceResponse(response);
+    }
+
+    /**
+     * Keeps the resource of a managed cache entry from being disposed while
+     * the response body is being read, that is until the response is closed.
+     */
+    private static CloseableHttpResponse holdResource(
+            final HttpResponse response, final ResourceReference ref) {
+        if (!ref.retain()) {
+            return Proxies.enhanceResponse(response);
+        }
+        final AtomicBoolean released = new AtomicBoolean();
+        return (CloseableHttpResponse) Proxy.newProxyInstance(
+                ResponseProxyHandler.class.getClassLoader(),
+                new Class<?>[] { CloseableHttpResponse.class },
+                new ResponseProxyHandler(response) {
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                ref.release();
+                            }
+                        }
+                    }
+
+                });
+    }
+
+    /**
+     * Determines the byte range requested by a single range {@code Range} header
+     * that can be served from a complete 200 entry. Returns {@code null} if the
+     * full entity should be served instead, which includes multiple ranges and
+     * malformed headers, or {@link #UNSATISFIABLE_RANGE} if the range cannot be
+     * satisfied.
+     */
+    long[] getByteRange(final HttpRequest request, final HttpCacheEntry entry) {
+        final Header[] rangeHeaders = request.getHeaders(HeaderConstants.RANGE);
+        if (rangeHeaders.length != 1
+                || entry.getStatusCode() != HttpStatus.SC_OK
+                || request.containsHeader(HeaderConstants.IF_RANGE)
+                || entry.getFirstHeader(HeaderConstants.CONTENT_RANGE) != null) {
+            return null;
+        }
+        final String value = rangeHeaders[0].getValue().trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6) || value.indexOf(',') != -1) {
+            return null;
+        }
+        final String spec = value.substring(6).trim();
+        final int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        final long total = entry.getResource().length();
+        final String firstValue = spec.substring(0, dash).trim();
+        final String lastValue = spec.substring(dash + 1).trim();
+        final long first;
+        final long last;
+        try {
+            if (firstValue.isEmpty()) {
+                final long suffix = parseBytePosition(lastValue);
+                if (suffix == 0 || total == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                first = Math.max(0, total - suffix);
+                last = total - 1;
+            } else {
+                first = parseBytePosition(firstValue);
+                if (lastValue.isEmpty()) {
+                    last = total - 1;
+                } else {
+                    final long lastPos = parseBytePosition(lastValue);
+                    if (lastPos < first) {
+                        return null;
+                    }
+                    last = Math.min(lastPos, total - 1);
+                }
+                if (first >= total) {
+                    return UNSATISFIABLE_RANGE;
+                }
+            }
+        } catch (final NumberFormatException ex) {
+            return null;
+        }
+        return new long[] { first, last };
+    }
+
+    private static long parseBytePosition(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                throw new NumberFormatException(s);
+            }
+        }
+        return Long.parseLong(s);
+    }
+
+    /**
+     * Generate a 416 - Requested Range Not Satisfiable response for a range request
+     * that cannot be satisfied by a complete cache entry.
+     */
+    CloseableHttpResponse generateRangeNotSatisfiableResponse(final HttpCacheEntry entry) {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, "Requested Range Not Satisfiable");
+        Header dateHeader = entry.getFirstHeader(HttpHeaders.DATE);
+        if (dateHeader == null) {
+             dateHeader = new BasicHeader(HttpHeaders.DATE, DateUtils.formatCurrentDate());
+        }
+        response.addHeader(dateHeader);
+        response.setHeader(HeaderConstants.CONTENT_RANGE, "bytes */" + entry.getResource().length());
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, "0");
         return Proxies.enhanceResponse(response);
     }
 
@@ -109,7 +250,7 @@ class CachedHttpResponseGenerator {
         // - Date, unless its omission is required by section 14.8.1
         Header dateHeader = entry.getFirstHeader(HttpHeaders.DATE);
         if (dateHeader == null) {
-             dateHeader = new BasicHeader(HttpHeaders.DATE, DateUtils.formatDate(new Date()));
+             dateHeader = new BasicHeader(HttpHeaders.DATE, DateUtils.formatCurrentDate());
         }
         response.addHeader(dateHeader);
 
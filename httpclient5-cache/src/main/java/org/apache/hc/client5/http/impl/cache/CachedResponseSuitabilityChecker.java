@@ -337,11 +337,7 @@ class CachedResponseSuitabilityChecker {
      * @return  boolean Does the last modified header match
      */
     private boolean lastModifiedValidatorMatches(final HttpRequest request, final HttpCacheEntry entry, final Date now) {
-        final Header lastModifiedHeader = entry.getFirstHeader(HeaderConstants.LAST_MODIFIED);
-        Date lastModified = null;
-        if (lastModifiedHeader != null) {
-            lastModified = DateUtils.parseDate(lastModifiedHeader.getValue());
-        }
+        final Date lastModified = entry.getFreshnessInfo().getLastModified();
         if (lastModified == null) {
             return false;
         }
@@ -54,6 +54,7 @@ import org.apache.hc.client5.http.utils.URIUtils;
 import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HeaderElement;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
@@ -102,7 +103,7 @@ import org.apache.hc.core5.util.VersionInfo;
 @ThreadSafe // So long as the responseCache implementation is threadsafe
 public class CachingExec implements ClientExecChain {
 
-    private final static boolean SUPPORTS_RANGE_AND_CONTENT_RANGE_HEADERS = false;
+    private final static boolean SUPPORTS_RANGE_AND_CONTENT_RANGE_HEADERS = true;
 
     private final AtomicLong cacheHits = new AtomicLong();
     private final AtomicLong cacheMisses = new AtomicLong();
@@ -123,6 +124,9 @@ public class CachingExec implements ClientExecChain {
     private final ResponseCachingPolicy responseCachingPolicy;
 
     private final AsynchronousValidator asynchRevalidator;
+    private final CacheKeyGenerator cacheKeyGenerator;
+    private final RequestCollapser requestCollapser;
+    private final RefreshAheadPolicy refreshAheadPolicy;
 
     private final Log log = LogFactory.getLog(getClass());
 
@@ -138,6 +142,16 @@ public class CachingExec implements ClientExecChain {
             final HttpCache cache,
             final CacheConfig config,
             final AsynchronousValidator asynchRevalidator) {
+        this(backend, cache, config, asynchRevalidator,
+                config != null && config.isRequestCollapsingEnabled() ? new RequestCollapser() : null);
+    }
+
+    CachingExec(
+            final ClientExecChain backend,
+            final HttpCache cache,
+            final CacheConfig config,
+            final AsynchronousValidator asynchRevalidator,
+            final RequestCollapser requestCollapser) {
         super();
         Args.notNull(backend, "HTTP backend");
         Args.notNull(cache, "HttpCache");
@@ -155,6 +169,10 @@ public class CachingExec implements ClientExecChain {
                 this.cacheConfig.getMaxObjectSize(), this.cacheConfig.isSharedCache(),
                 this.cacheConfig.isNeverCacheHTTP10ResponsesWithQuery(), this.cacheConfig.is303CachingEnabled());
         this.asynchRevalidator = asynchRevalidator;
+        this.cacheKeyGenerator = new CacheKeyGenerator();
+        this.requestCollapser = requestCollapser;
+        this.refreshAheadPolicy = this.cacheConfig.isRefreshAheadEnabled() && asynchRevalidator != null
+                ? new RefreshAheadPolicy(this.validityPolicy, this.cacheConfig) : null;
     }
 
     public CachingExec(
@@ -194,6 +212,10 @@ public class CachingExec implements ClientExecChain {
         this.responseCompliance = responseCompliance;
         this.requestCompliance = requestCompliance;
         this.asynchRevalidator = asynchRevalidator;
+        this.cacheKeyGenerator = new CacheKeyGenerator();
+        this.requestCollapser = this.cacheConfig.isRequestCollapsingEnabled() ? new RequestCollapser() : null;
+        this.refreshAheadPolicy = this.cacheConfig.isRefreshAheadEnabled() && asynchRevalidator != null
+                ? new RefreshAheadPolicy(validityPolicy, this.cacheConfig) : null;
     }
 
     /**
@@ -223,6 +245,27 @@ public class CachingExec implements ClientExecChain {
         return cacheUpdates.get();
     }
 
+    /**
+     * Reports the number of background revalidations scheduled for hot cache
+     * entries about to expire.
+     * @return the number of refresh-ahead revalidations
+     * @see CacheConfig#isRefreshAheadEnabled()
+     */
+    public long getRefreshAheadCount() {
+        return refreshAheadPolicy != null ? refreshAheadPolicy.getRefreshesIssued() : 0;
+    }
+
+    /**
+     * Reports the number of cache hits served from an entry refreshed ahead
+     * of time after the previous revision of the entry would have expired,
+     * each of which would otherwise have required a synchronous revalidation.
+     * @return the number of synchronous revalidations saved by refresh-ahead
+     * @see CacheConfig#isRefreshAheadEnabled()
+     */
+    public long getRefreshAheadSavedMisses() {
+        return refreshAheadPolicy != null ? refreshAheadPolicy.getMissesSaved() : 0;
+    }
+
     public CloseableHttpResponse execute(
             final HttpRoute route,
             final HttpRequestWrapper request) throws IOException, HttpException {
@@ -291,6 +334,7 @@ public class CachingExec implements ClientExecChain {
         if (suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
             log.debug("Cache hit");
             out = generateCachedResponse(request, context, entry, now);
+            refreshAheadIfHot(route, request, context, execAware, entry, now);
         } else if (!mayCallBackend(request)) {
             log.debug("Cache entry not suitable but only-if-cached requested");
             out = generateGatewayTimeout(context);
@@ -309,6 +353,44 @@ public class CachingExec implements ClientExecChain {
         return out;
     }
 
+    private void refreshAheadIfHot(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry entry,
+            final Date now) {
+        if (refreshAheadPolicy == null
+                || suitabilityChecker.isConditional(request)
+                || request.containsHeader(HeaderConstants.RANGE)) {
+            return;
+        }
+        final HttpHost target = context.getTargetHost();
+        final String cacheKey = cacheKeyGenerator.getVariantURI(target, request, entry);
+        if (!refreshAheadPolicy.recordHit(cacheKey, entry, now)) {
+            return;
+        }
+        final String host = target.toHostString();
+        if (!refreshAheadPolicy.tryAcquire(host)) {
+            log.trace("Refresh-ahead limit reached for " + host);
+            return;
+        }
+        final Runnable release = new Runnable() {
+
+            @Override
+            public void run() {
+                refreshAheadPolicy.release(host);
+            }
+
+        };
+        if (asynchRevalidator.revalidateCacheEntry(this, route, request, context, execAware, entry, release)) {
+            log.trace("Refreshing hot cache entry ahead of expiry");
+            refreshAheadPolicy.refreshIssued(cacheKey, entry, now);
+        } else {
+            refreshAheadPolicy.release(host);
+        }
+    }
+
     private CloseableHttpResponse revalidateCacheEntry(
             final HttpRoute route,
             final HttpRequestWrapper request,
@@ -326,12 +408,47 @@ public class CachingExec implements ClientExecChain {
                 asynchRevalidator.revalidateCacheEntry(this, route, request, context, execAware, entry);
                 return resp;
             }
+            if (requestCollapser != null) {
+                return revalidateCollapsed(route, request, context, execAware, entry, now);
+            }
             return revalidateCacheEntry(route, request, context, execAware, entry);
         } catch (final IOException ioex) {
             return handleRevalidationFailure(request, context, entry, now);
         }
     }
 
+    private CloseableHttpResponse revalidateCollapsed(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware,
+            final HttpCacheEntry entry,
+            final Date now) throws IOException, HttpException {
+        final String cacheKey = cacheKeyGenerator.getURI(context.getTargetHost(), request);
+        if (requestCollapser.begin(cacheKey)) {
+            CloseableHttpResponse response = null;
+            try {
+                response = revalidateCacheEntry(route, request, context, execAware, entry);
+            } finally {
+                if (response == null) {
+                    requestCollapser.abandon(cacheKey);
+                }
+            }
+            return leadCollapsed(cacheKey, response);
+        }
+        if (!staleResponseNotAllowed(request, entry, now)
+                && validityPolicy.mayReturnStaleWhileRevalidating(entry, now)) {
+            log.trace("Serving stale while collapsed revalidation is in progress");
+            return generateCachedResponse(request, context, entry, now);
+        }
+        final CloseableHttpResponse collapsed = handleCollapsedRequest(
+                cacheKey, awaitCollapsed(cacheKey), route, request, context, entry);
+        if (collapsed != null) {
+            return collapsed;
+        }
+        return revalidateCacheEntry(route, request, context, execAware, entry);
+    }
+
     private CloseableHttpResponse handleCacheMiss(
             final HttpRoute route,
             final HttpRequestWrapper request,
@@ -346,7 +463,38 @@ public class CachingExec implements ClientExecChain {
                             HttpVersion.HTTP_1_1, HttpStatus.SC_GATEWAY_TIMEOUT, "Gateway Timeout"));
         }
 
-        final Map<String, Variant> variants = getExistingCacheVariants(target, request);
+        if (requestCollapser != null) {
+            final String cacheKey = cacheKeyGenerator.getURI(target, request);
+            RequestCollapser.Outcome outcome;
+            do {
+                if (requestCollapser.begin(cacheKey)) {
+                    CloseableHttpResponse response = null;
+                    try {
+                        response = fetchFromBackend(route, request, context, execAware);
+                    } finally {
+                        if (response == null) {
+                            requestCollapser.abandon(cacheKey);
+                        }
+                    }
+                    return leadCollapsed(cacheKey, response);
+                }
+                outcome = awaitCollapsed(cacheKey);
+            } while (outcome == RequestCollapser.Outcome.ABANDONED);
+            final CloseableHttpResponse collapsed = handleCollapsedRequest(
+                    cacheKey, outcome, route, request, context, null);
+            if (collapsed != null) {
+                return collapsed;
+            }
+        }
+        return fetchFromBackend(route, request, context, execAware);
+    }
+
+    private CloseableHttpResponse fetchFromBackend(
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpExecutionAware execAware) throws IOException, HttpException {
+        final Map<String, Variant> variants = getExistingCacheVariants(context.getTargetHost(), request);
         if (variants != null && !variants.isEmpty()) {
             return negotiateResponseFromVariants(route, request, context,
                     execAware, variants);
@@ -355,6 +503,90 @@ public class CachingExec implements ClientExecChain {
         return callBackend(route, request, context, execAware);
     }
 
+    /**
+     * Completes the collapsed request led by the caller. While the body of
+     * the response is still being copied into the cache the requests waiting
+     * on the same key are released only once the copy has been stored or
+     * dropped, so that they do not miss the entry in the making.
+     */
+    private CloseableHttpResponse leadCollapsed(
+            final String cacheKey,
+            final CloseableHttpResponse response) {
+        final HttpEntity entity = response.getEntity();
+        if (entity instanceof CachingTeeEntity) {
+            ((CachingTeeEntity) entity).getTeeStream().setObserver(new CachingTeeInputStream.Observer() {
+
+                @Override
+                public void completed() {
+                    requestCollapser.complete(cacheKey);
+                }
+
+                @Override
+                public void abandoned() {
+                    requestCollapser.abandon(cacheKey);
+                }
+
+            });
+        } else {
+            requestCollapser.complete(cacheKey);
+        }
+        return response;
+    }
+
+    private RequestCollapser.Outcome awaitCollapsed(final String cacheKey) {
+        try {
+            return requestCollapser.await(cacheKey, cacheConfig.getRequestCollapsingTimeout());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return RequestCollapser.Outcome.TIMED_OUT;
+        }
+    }
+
+    /**
+     * Attempts to serve the request from the cache entry freshly stored by
+     * the origin request that was in flight for the same cache key.
+     * Falls back onto the given stale entry if permitted by
+     * {@code stale-if-error}.
+     *
+     * @return the response or {@code null} if the request could not be
+     *   satisfied from the cache and must be sent to the origin.
+     */
+    private CloseableHttpResponse handleCollapsedRequest(
+            final String cacheKey,
+            final RequestCollapser.Outcome outcome,
+            final HttpRoute route,
+            final HttpRequestWrapper request,
+            final HttpClientContext context,
+            final HttpCacheEntry staleEntry) {
+        final HttpHost target = context.getTargetHost();
+        final Date now = getCurrentDate();
+        CloseableHttpResponse out = null;
+        if (outcome == RequestCollapser.Outcome.COMPLETED) {
+            final HttpCacheEntry entry = satisfyFromCache(target, request);
+            if (entry != null && suitabilityChecker.canCachedResponseBeUsed(target, request, entry, now)) {
+                log.debug("Collapsed request served from cache");
+                out = generateCachedResponse(request, context, entry, now);
+            }
+        } else if (outcome == RequestCollapser.Outcome.TIMED_OUT) {
+            log.debug("Timed out waiting for collapsed request");
+        }
+        if (out == null && staleEntry != null
+                && !staleResponseNotAllowed(request, staleEntry, now)
+                && validityPolicy.mayReturnStaleIfError(request, staleEntry, now)) {
+            log.debug("Serving stale response to collapsed request");
+            out = responseGenerator.generateResponse(request, staleEntry);
+            setResponseStatus(context, CacheResponseStatus.CACHE_HIT);
+            out.addHeader(HeaderConstants.WARNING, "110 localhost \"Response is stale\"");
+        }
+        if (out != null) {
+            context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+            context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, target);
+            context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+            context.setAttribute(HttpCoreContext.HTTP_RESPONSE, out);
+        }
+        return out;
+    }
+
     private HttpCacheEntry satisfyFromCache(
             final HttpHost target, final HttpRequestWrapper request) {
         HttpCacheEntry entry = null;
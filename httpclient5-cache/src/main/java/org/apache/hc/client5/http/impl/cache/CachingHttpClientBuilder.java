@@ -30,6 +30,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationBus;
 import org.apache.hc.client5.http.cache.HttpCacheInvalidator;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.ResourceFactory;
@@ -50,6 +51,7 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
     private CacheConfig cacheConfig;
     private SchedulingStrategy schedulingStrategy;
     private HttpCacheInvalidator httpCacheInvalidator;
+    private HttpCacheInvalidationBus httpCacheInvalidationBus;
     private boolean deleteCache;
 
     public static CachingHttpClientBuilder create() {
@@ -97,6 +99,19 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
         return this;
     }
 
+    /**
+     * Sets the bus used to exchange cache invalidations with other cache
+     * instances. The bus is not closed when the client is closed.
+     * Has no effect if a custom {@link HttpCacheInvalidator} is set.
+     *
+     * @since 5.0
+     */
+    public final CachingHttpClientBuilder setHttpCacheInvalidationBus(
+            final HttpCacheInvalidationBus invalidationBus) {
+        this.httpCacheInvalidationBus = invalidationBus;
+        return this;
+    }
+
     public CachingHttpClientBuilder setDeleteCache(final boolean deleteCache) {
         this.deleteCache = deleteCache;
         return this;
@@ -135,12 +150,13 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
                 storageCopy = managedStorage;
             }
         }
+        startExpirySweeper(storageCopy, config);
         final AsynchronousValidator revalidator = createAsynchronousRevalidator(config);
         final CacheKeyGenerator uriExtractor = new CacheKeyGenerator();
 
         HttpCacheInvalidator cacheInvalidator = this.httpCacheInvalidator;
         if (cacheInvalidator == null) {
-            cacheInvalidator = new CacheInvalidator(uriExtractor, storageCopy);
+            cacheInvalidator = new CacheInvalidator(uriExtractor, storageCopy, this.httpCacheInvalidationBus);
         }
 
         return new CachingExec(mainExec,
@@ -155,13 +171,36 @@ public class CachingHttpClientBuilder extends HttpClientBuilder {
         if (config.getAsynchronousWorkersMax() > 0) {
             final SchedulingStrategy configuredSchedulingStrategy = createSchedulingStrategy(config);
             final AsynchronousValidator revalidator = new AsynchronousValidator(
-                    configuredSchedulingStrategy);
+                    configuredSchedulingStrategy, config);
             addCloseable(revalidator);
             return revalidator;
         }
         return null;
     }
 
+    private void startExpirySweeper(final HttpCacheStorage storage, final CacheConfig config) {
+        if (config.getExpirySweepInterval() <= 0) {
+            return;
+        }
+        final CacheExpirySweeper sweeper;
+        if (storage instanceof BasicHttpCacheStorage) {
+            sweeper = new CacheExpirySweeper((BasicHttpCacheStorage) storage, config);
+        } else if (storage instanceof ManagedHttpCacheStorage) {
+            sweeper = new CacheExpirySweeper((ManagedHttpCacheStorage) storage, config);
+        } else {
+            return;
+        }
+        sweeper.start();
+        addCloseable(new Closeable() {
+
+            @Override
+            public void close() throws IOException {
+                sweeper.shutdown();
+            }
+
+        });
+    }
+
     private SchedulingStrategy createSchedulingStrategy(final CacheConfig config) {
         return schedulingStrategy != null ? schedulingStrategy : new ImmediateSchedulingStrategy(config);
     }
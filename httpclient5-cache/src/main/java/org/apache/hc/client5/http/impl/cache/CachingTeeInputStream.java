@@ -0,0 +1,266 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.NotThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link InputStream} that writes the content read from the origin stream
+ * to a {@link ResourceSink} while it is being consumed. Once the origin
+ * stream has been read to the end the resulting {@link Resource} is handed
+ * over to the {@link Callback}. The sink is aborted if the stream is closed
+ * or fails before the end of content, if the content exceeds the given
+ * limit or if the sink itself fails; the caller keeps reading the origin
+ * content in any case.
+ * <p>
+ * An optional {@link Observer} gets told once the fate of the cached copy
+ * is decided, either because the content has been handed over to the
+ * {@link Callback} or will never be, or because the stream was abandoned
+ * before its end.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+class CachingTeeInputStream extends FilterInputStream {
+
+    interface Callback {
+
+        /**
+         * Invoked once the end of content has been reached.
+         * @param resource resource holding the content read
+         */
+        void completed(Resource resource);
+
+    }
+
+    interface Observer {
+
+        /**
+         * Invoked once the content has been handed over to the
+         * {@link Callback} or has turned out not to be cacheable.
+         */
+        void completed();
+
+        /**
+         * Invoked if the stream has been closed or has failed before
+         * the end of content was reached.
+         */
+        void abandoned();
+
+    }
+
+    private final long limit;
+    private final Callback callback;
+    private final byte[] single;
+
+    private ResourceSink sink;
+    private long length;
+    private boolean eof;
+    private Observer observer;
+    private Boolean outcome;
+
+    CachingTeeInputStream(
+            final InputStream instream,
+            final ResourceSink sink,
+            final long limit,
+            final Callback callback) {
+        super(Args.notNull(instream, "Input stream"));
+        this.sink = Args.notNull(sink, "Resource sink");
+        this.limit = limit;
+        this.callback = Args.notNull(callback, "Callback");
+        this.single = new byte[1];
+    }
+
+    boolean isDiscarded() {
+        return this.sink == null && !this.eof;
+    }
+
+    boolean isCompleted() {
+        return this.eof;
+    }
+
+    /**
+     * Sets the observer to be notified of the outcome. The observer is
+     * notified immediately if the outcome has already been decided.
+     */
+    void setObserver(final Observer observer) {
+        this.observer = observer;
+        if (this.outcome != null) {
+            notifyObserver();
+        }
+    }
+
+    private void decide(final boolean completed) {
+        if (this.outcome == null) {
+            this.outcome = completed;
+            notifyObserver();
+        }
+    }
+
+    private void notifyObserver() {
+        final Observer current = this.observer;
+        this.observer = null;
+        if (current != null) {
+            if (this.outcome.booleanValue()) {
+                current.completed();
+            } else {
+                current.abandoned();
+            }
+        }
+    }
+
+    private void discard(final boolean completed) {
+        if (this.sink != null) {
+            this.sink.abort();
+            this.sink = null;
+        }
+        decide(completed);
+    }
+
+    private void discard() {
+        discard(false);
+    }
+
+    /**
+     * Discards the cached copy unless the end of content has already been
+     * reached. Unlike {@link #close()} this leaves the origin stream open.
+     */
+    void abort() {
+        if (!this.eof) {
+            discard();
+        }
+    }
+
+    private void append(final byte[] b, final int off, final int len) {
+        if (this.sink == null) {
+            return;
+        }
+        if (this.length + len > this.limit) {
+            discard(true);
+            return;
+        }
+        try {
+            this.sink.write(b, off, len);
+            this.length += len;
+        } catch (final IOException ex) {
+            discard(true);
+        }
+    }
+
+    private void endOfContent() {
+        if (this.eof) {
+            return;
+        }
+        this.eof = true;
+        final ResourceSink content = this.sink;
+        this.sink = null;
+        try {
+            if (content != null) {
+                final Resource resource;
+                try {
+                    resource = content.complete();
+                } catch (final IOException ex) {
+                    content.abort();
+                    return;
+                }
+                this.callback.completed(resource);
+            }
+        } finally {
+            decide(true);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b;
+        try {
+            b = super.read();
+        } catch (final IOException ex) {
+            discard();
+            throw ex;
+        }
+        if (b == -1) {
+            endOfContent();
+        } else {
+            this.single[0] = (byte) b;
+            append(this.single, 0, 1);
+        }
+        return b;
+    }
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int l;
+        try {
+            l = super.read(b, off, len);
+        } catch (final IOException ex) {
+            discard();
+            throw ex;
+        }
+        if (l == -1) {
+            endOfContent();
+        } else {
+            append(b, off, l);
+        }
+        return l;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        // skipped content would be missing from the cached copy
+        discard();
+        return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(final int readlimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("Mark / reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.eof) {
+            discard();
+        }
+        super.close();
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Cache resource whose content is stored compressed by another {@link Resource}
+ * and decompressed as it is being read.
+ *
+ * @since 5.0
+ */
+@Immutable
+class CompressedResource implements Resource {
+
+    private static final long serialVersionUID = 6473982245311628465L;
+
+    private final Resource resource;
+    private final long length;
+    private final boolean gzip;
+
+    /**
+     * @param resource the resource holding the compressed content.
+     * @param length the length of the uncompressed content.
+     * @param gzip {@code true} if the content is stored in gzip format,
+     *   {@code false} if it is stored as a raw deflate stream.
+     */
+    CompressedResource(final Resource resource, final long length, final boolean gzip) {
+        super();
+        this.resource = Args.notNull(resource, "Resource");
+        this.length = length;
+        this.gzip = gzip;
+    }
+
+    Resource getResource() {
+        return this.resource;
+    }
+
+    boolean isGzip() {
+        return this.gzip;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        final InputStream instream = this.resource.getInputStream();
+        if (this.gzip) {
+            return new GZIPInputStream(instream);
+        }
+        return new RawInflaterInputStream(instream);
+    }
+
+    /**
+     * Returns the length of the uncompressed content.
+     */
+    @Override
+    public long length() {
+        return this.length;
+    }
+
+    @Override
+    public void dispose() {
+        this.resource.dispose();
+    }
+
+    /**
+     * Raw deflate stream that releases its {@link Inflater} on close.
+     * {@link InflaterInputStream} only ends inflaters it created itself.
+     */
+    static class RawInflaterInputStream extends InflaterInputStream {
+
+        private boolean closed;
+
+        RawInflaterInputStream(final InputStream instream) {
+            super(instream, new Inflater(true));
+        }
+
+        Inflater getInflater() {
+            return this.inf;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                super.close();
+            } finally {
+                this.inf.end();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * {@link ResourceFactory} decorator that stores response bodies compressed using
+ * another {@link ResourceFactory}. Bodies are decompressed lazily when served.
+ * <p>
+ * As resource factories have no access to response headers, the compression
+ * strategy is chosen based on the body itself:
+ * </p>
+ * <ul>
+ * <li>bodies smaller than the minimum size are stored as they are;</li>
+ * <li>bodies that already are in a compressed format such as gzip, zip, PNG, JPEG
+ * or GIF are stored as they are, so that gzip encoded responses are served
+ * untouched;</li>
+ * <li>bodies smaller than the gzip threshold are stored as raw deflate streams,
+ * larger bodies are stored in gzip format, which adds a checksum;</li>
+ * <li>bodies that compress poorly are stored as they are.</li>
+ * </ul>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class CompressingResourceFactory implements ResourceFactory {
+
+    /** Default minimum body size in bytes for compression to be attempted.
+     */
+    public static final int DEFAULT_MIN_SIZE = 256;
+
+    /** Default body size in bytes from which gzip format is used instead of raw deflate.
+     */
+    public static final int DEFAULT_GZIP_THRESHOLD = 4096;
+
+    private final ResourceFactory resourceFactory;
+    private final int minSize;
+    private final int gzipThreshold;
+
+    private final AtomicLong originalBytes;
+    private final AtomicLong storedBytes;
+    private final AtomicLong compressedCount;
+
+    public CompressingResourceFactory(
+            final ResourceFactory resourceFactory,
+            final int minSize,
+            final int gzipThreshold) {
+        super();
+        this.resourceFactory = Args.notNull(resourceFactory, "Resource factory");
+        this.minSize = Args.notNegative(minSize, "Minimum size");
+        this.gzipThreshold = Args.notNegative(gzipThreshold, "Gzip threshold");
+        this.originalBytes = new AtomicLong();
+        this.storedBytes = new AtomicLong();
+        this.compressedCount = new AtomicLong();
+    }
+
+    public CompressingResourceFactory(final ResourceFactory resourceFactory) {
+        this(resourceFactory, DEFAULT_MIN_SIZE, DEFAULT_GZIP_THRESHOLD);
+    }
+
+    @Override
+    public Resource generate(
+            final String requestId,
+            final InputStream instream,
+            final InputLimit limit) throws IOException {
+        final ByteArrayBuffer body = new ByteArrayBuffer(2048);
+        final byte[] buf = new byte[2048];
+        long total = 0;
+        int l;
+        while ((l = instream.read(buf)) != -1) {
+            body.append(buf, 0, l);
+            total += l;
+            if (limit != null && total > limit.getValue()) {
+                limit.reached();
+                break;
+            }
+        }
+        return store(requestId, body.buffer(), body.length());
+    }
+
+    @Override
+    public Resource copy(
+            final String requestId,
+            final Resource resource) throws IOException {
+        final Resource source = ResourceReference.unwrap(resource);
+        if (source instanceof CompressedResource) {
+            final CompressedResource compressed = (CompressedResource) source;
+            return new CompressedResource(
+                    this.resourceFactory.copy(requestId, compressed.getResource()),
+                    compressed.length(),
+                    compressed.isGzip());
+        }
+        return this.resourceFactory.copy(requestId, resource);
+    }
+
+    private Resource store(final String requestId, final byte[] b, final int len) throws IOException {
+        this.originalBytes.addAndGet(len);
+        if (len >= this.minSize && !isCompressed(b, len)) {
+            final boolean gzip = len >= this.gzipThreshold;
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(len / 4);
+            if (gzip) {
+                try (GZIPOutputStream outstream = new GZIPOutputStream(buffer)) {
+                    outstream.write(b, 0, len);
+                }
+            } else {
+                final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                try (DeflaterOutputStream outstream = new DeflaterOutputStream(buffer, deflater)) {
+                    outstream.write(b, 0, len);
+                } finally {
+                    deflater.end();
+                }
+            }
+            // Not worth the decompression cost unless at least 10% is saved
+            if (buffer.size() < len - len / 10) {
+                final byte[] compressed = buffer.toByteArray();
+                this.storedBytes.addAndGet(compressed.length);
+                this.compressedCount.incrementAndGet();
+                return new CompressedResource(
+                        this.resourceFactory.generate(requestId, new ByteArrayInputStream(compressed), null),
+                        len,
+                        gzip);
+            }
+        }
+        this.storedBytes.addAndGet(len);
+        return this.resourceFactory.generate(requestId, new ByteArrayInputStream(b, 0, len), null);
+    }
+
+    /**
+     * Detects content in common compressed formats by its signature.
+     */
+    static boolean isCompressed(final byte[] b, final int len) {
+        if (len >= 2 && (b[0] & 0xff) == 0x1f && (b[1] & 0xff) == 0x8b) {
+            // gzip
+            return true;
+        }
+        if (len >= 3 && (b[0] & 0xff) == 0xff && (b[1] & 0xff) == 0xd8 && (b[2] & 0xff) == 0xff) {
+            // JPEG
+            return true;
+        }
+        if (len >= 4) {
+            final int magic = ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
+            switch (magic) {
+                case 0x504b0304: // zip
+                case 0x89504e47: // PNG
+                case 0x47494638: // GIF
+                case 0x28b52ffd: // zstd
+                case 0xfd377a58: // xz
+                case 0x52494646: // RIFF container, e.g. WebP
+                    return true;
+                default:
+                    break;
+            }
+        }
+        return len >= 3 && b[0] == 'B' && b[1] == 'Z' && b[2] == 'h';
+    }
+
+    /**
+     * Returns the total number of body bytes passed to this factory.
+     */
+    public long getOriginalBytes() {
+        return this.originalBytes.get();
+    }
+
+    /**
+     * Returns the total number of bytes stored by the underlying factory
+     * for bodies generated by this factory.
+     */
+    public long getStoredBytes() {
+        return this.storedBytes.get();
+    }
+
+    /**
+     * Returns the number of bodies that have been stored compressed.
+     */
+    public long getCompressedCount() {
+        return this.compressedCount.get();
+    }
+
+    /**
+     * Returns the ratio of original to stored body bytes, or {@code 1.0} if
+     * no body has been stored yet.
+     */
+    public double getCompressionRatio() {
+        final long stored = this.storedBytes.get();
+        if (stored == 0) {
+            return 1.0;
+        }
+        return (double) this.originalBytes.get() / stored;
+    }
+
+}
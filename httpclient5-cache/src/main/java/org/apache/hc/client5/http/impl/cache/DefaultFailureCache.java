@@ -26,15 +26,32 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
-import java.util.Map;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.core5.annotation.ThreadSafe;
 
 /**
- * Implements a bounded failure cache. The oldest entries are discarded when
- * the maximum size is exceeded.
+ * Implements a bounded failure cache. The entries that have not failed for
+ * the longest time are discarded when the maximum size is exceeded.
+ * <p>
+ * Every update of an error count is appended to an eviction queue, so that the
+ * least recently updated entry can be found in amortized constant time:
+ * queued values superseded by a later update are skipped on eviction and
+ * periodically purged from the queue.
+ * </p>
+ * <p>
+ * Error counts decay over time. Each time the configured half-life elapses
+ * without a further failure, the error count of an identifier is halved, so
+ * that identifiers of origins that have recovered eventually drop out of the
+ * cache even if no successful request resets their count.
+ * </p>
  *
  * @since 4.3
  */
@@ -43,9 +60,14 @@ public class DefaultFailureCache implements FailureCache {
 
     static final int DEFAULT_MAX_SIZE = 1000;
     static final int MAX_UPDATE_TRIES = 10;
+    static final long DEFAULT_HALF_LIFE_MILLIS = 10 * 60 * 1000L;
 
     private final int maxSize;
+    private final long halfLifeNanos;
     private final ConcurrentMap<String, FailureCacheValue> storage;
+    private final Queue<FailureCacheValue> evictionQueue;
+    private final AtomicInteger evictionQueueSize;
+    private final AtomicBoolean purging;
 
     /**
      * Create a new failure cache with the maximum size of
@@ -60,8 +82,26 @@ public class DefaultFailureCache implements FailureCache {
      * @param maxSize the maximum number of entries the cache should store
      */
     public DefaultFailureCache(final int maxSize) {
+        this(maxSize, DEFAULT_HALF_LIFE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new failure cache with the specified maximum size and error
+     * count half-life.
+     * @param maxSize the maximum number of entries the cache should store
+     * @param halfLife time after which the error count of an identifier that
+     *   has not failed again is halved; zero or less disables decay
+     * @param timeUnit the unit of {@code halfLife}
+     *
+     * @since 5.0
+     */
+    public DefaultFailureCache(final int maxSize, final long halfLife, final TimeUnit timeUnit) {
         this.maxSize = maxSize;
+        this.halfLifeNanos = halfLife > 0 ? timeUnit.toNanos(halfLife) : 0;
         this.storage = new ConcurrentHashMap<>();
+        this.evictionQueue = new ConcurrentLinkedQueue<>();
+        this.evictionQueueSize = new AtomicInteger();
+        this.purging = new AtomicBoolean();
     }
 
     @Override
@@ -70,7 +110,14 @@ public class DefaultFailureCache implements FailureCache {
             throw new IllegalArgumentException("identifier may not be null");
         }
         final FailureCacheValue storedErrorCode = storage.get(identifier);
-        return storedErrorCode != null ? storedErrorCode.getErrorCount() : 0;
+        if (storedErrorCode == null) {
+            return 0;
+        }
+        final int errorCount = getDecayedErrorCount(storedErrorCode, System.nanoTime());
+        if (errorCount == 0) {
+            storage.remove(identifier, storedErrorCode);
+        }
+        return errorCount;
     }
 
     @Override
@@ -86,11 +133,29 @@ public class DefaultFailureCache implements FailureCache {
         if (identifier == null) {
             throw new IllegalArgumentException("identifier may not be null");
         }
-        updateValue(identifier);
-        removeOldestEntryIfMapSizeExceeded();
+        final FailureCacheValue newValue = updateValue(identifier);
+        if (newValue != null) {
+            evictionQueue.add(newValue);
+            if (evictionQueueSize.incrementAndGet() > 2 * Math.max(maxSize, 16)) {
+                purgeEvictionQueue();
+            }
+        }
+        removeOldestEntriesIfMapSizeExceeded();
+    }
+
+    private int getDecayedErrorCount(final FailureCacheValue value, final long now) {
+        final int errorCount = value.getErrorCount();
+        if (halfLifeNanos == 0) {
+            return errorCount;
+        }
+        final long halvings = (now - value.getCreationTimeInNanos()) / halfLifeNanos;
+        if (halvings <= 0) {
+            return errorCount;
+        }
+        return halvings >= Integer.SIZE ? 0 : errorCount >>> halvings;
     }
 
-    private void updateValue(final String identifier) {
+    private FailureCacheValue updateValue(final String identifier) {
         /**
          * Due to concurrency it is possible that someone else is modifying an
          * entry before we could write back our updated value. So we keep
@@ -105,42 +170,62 @@ public class DefaultFailureCache implements FailureCache {
             if (oldValue == null) {
                 final FailureCacheValue newValue = new FailureCacheValue(identifier, 1);
                 if (storage.putIfAbsent(identifier, newValue) == null) {
-                    return;
+                    return newValue;
                 }
             }
             else {
-                final int errorCount = oldValue.getErrorCount();
+                final int errorCount = getDecayedErrorCount(oldValue, System.nanoTime());
                 if (errorCount == Integer.MAX_VALUE) {
-                    return;
+                    return null;
                 }
                 final FailureCacheValue newValue = new FailureCacheValue(identifier, errorCount + 1);
                 if (storage.replace(identifier, oldValue, newValue)) {
-                    return;
+                    return newValue;
                 }
             }
         }
+        return null;
     }
 
-    private void removeOldestEntryIfMapSizeExceeded() {
-        if (storage.size() > maxSize) {
-            final FailureCacheValue valueWithOldestTimestamp = findValueWithOldestTimestamp();
-            if (valueWithOldestTimestamp != null) {
-                storage.remove(valueWithOldestTimestamp.getKey(), valueWithOldestTimestamp);
+    private void removeOldestEntriesIfMapSizeExceeded() {
+        while (storage.size() > maxSize) {
+            final FailureCacheValue oldestValue = evictionQueue.poll();
+            if (oldestValue == null) {
+                return;
             }
+            evictionQueueSize.decrementAndGet();
+            // a no-op if the value has since been superseded or removed
+            storage.remove(oldestValue.getKey(), oldestValue);
         }
     }
 
-    private FailureCacheValue findValueWithOldestTimestamp() {
-        long oldestTimestamp = Long.MAX_VALUE;
-        FailureCacheValue oldestValue = null;
-        for (final Map.Entry<String, FailureCacheValue> storageEntry : storage.entrySet()) {
-            final FailureCacheValue value = storageEntry.getValue();
-            final long creationTimeInNanos = value.getCreationTimeInNanos();
-            if (creationTimeInNanos < oldestTimestamp) {
-                oldestTimestamp = creationTimeInNanos;
-                oldestValue = storageEntry.getValue();
+    /**
+     * Removes values that have been superseded or removed from the storage
+     * from the eviction queue. As this happens at most once per
+     * {@code maxSize} updates, the cost is amortized constant per update.
+     */
+    private void purgeEvictionQueue() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int remaining = 0;
+            for (final Iterator<FailureCacheValue> it = evictionQueue.iterator(); it.hasNext();) {
+                final FailureCacheValue value = it.next();
+                if (storage.get(value.getKey()) != value) {
+                    it.remove();
+                } else {
+                    remaining++;
+                }
             }
+            evictionQueueSize.set(remaining);
+        } finally {
+            purging.set(false);
         }
-        return oldestValue;
     }
+
+    int getEvictionQueueSize() {
+        return evictionQueueSize.get();
+    }
+
 }
@@ -53,7 +53,7 @@ public class FileResourceFactory implements ResourceFactory {
         this.idgen = new BasicIdGenerator();
     }
 
-    private File generateUniqueCacheFile(final String requestId) {
+    File generateUniqueCacheFile(final String requestId) {
         final StringBuilder buffer = new StringBuilder();
         this.idgen.generate(buffer);
         buffer.append('.');
@@ -88,7 +88,7 @@ public class FileResourceFactory implements ResourceFactory {
                 }
             }
         }
-        return new FileResource(file);
+        return createResource(file);
     }
 
     @Override
@@ -97,13 +97,18 @@ public class FileResourceFactory implements ResourceFactory {
             final Resource resource) throws IOException {
         final File file = generateUniqueCacheFile(requestId);
 
-        if (resource instanceof FileResource) {
-            final File src = ((FileResource) resource).getFile();
+        final Resource source = ResourceReference.unwrap(resource);
+        if (source instanceof FileResource) {
+            final File src = ((FileResource) source).getFile();
             IOUtils.copyFile(src, file);
         } else {
             final FileOutputStream out = new FileOutputStream(file);
             IOUtils.copyAndClose(resource.getInputStream(), out);
         }
+        return createResource(file);
+    }
+
+    Resource createResource(final File file) throws IOException {
         return new FileResource(file);
     }
 
@@ -68,8 +68,9 @@ public class HeapResourceFactory implements ResourceFactory {
             final String requestId,
             final Resource resource) throws IOException {
         byte[] body;
-        if (resource instanceof HeapResource) {
-            body = ((HeapResource) resource).getByteArray();
+        final Resource source = ResourceReference.unwrap(resource);
+        if (source instanceof HeapResource) {
+            body = ((HeapResource) source).getByteArray();
         } else {
             final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
             IOUtils.copyAndClose(resource.getInputStream(), outstream);
@@ -0,0 +1,119 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Tracks the recent hit rate of cache keys. The rate of each key is kept as
+ * an exponentially decaying counter with a time constant of one minute, which
+ * approximates the number of hits during the last minute without keeping
+ * individual timestamps. The number of tracked keys is bounded; all counters
+ * are discarded once the bound is reached.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class HitRateTracker {
+
+    static final int DEFAULT_MAX_TRACKED_KEYS = 10000;
+
+    private static final double DECAY_MILLIS = 60000d;
+
+    private final int maxTrackedKeys;
+    private final ConcurrentMap<String, HitRate> hitRates;
+
+    HitRateTracker(final int maxTrackedKeys) {
+        super();
+        this.maxTrackedKeys = Args.positive(maxTrackedKeys, "Max tracked keys");
+        this.hitRates = new ConcurrentHashMap<>();
+    }
+
+    HitRateTracker() {
+        this(DEFAULT_MAX_TRACKED_KEYS);
+    }
+
+    /**
+     * Records a hit on the given key.
+     * @param now current time in milliseconds
+     * @return the hit rate of the key including this hit, in hits per minute
+     */
+    double hit(final String key, final long now) {
+        HitRate hitRate = this.hitRates.get(key);
+        if (hitRate == null) {
+            if (this.hitRates.size() >= this.maxTrackedKeys) {
+                this.hitRates.clear();
+            }
+            final HitRate newHitRate = new HitRate();
+            hitRate = this.hitRates.putIfAbsent(key, newHitRate);
+            if (hitRate == null) {
+                hitRate = newHitRate;
+            }
+        }
+        return hitRate.hit(now);
+    }
+
+    /**
+     * Returns the hit rate of the given key without recording a hit.
+     * @param now current time in milliseconds
+     * @return the hit rate of the key in hits per minute
+     */
+    double getRate(final String key, final long now) {
+        final HitRate hitRate = this.hitRates.get(key);
+        return hitRate != null ? hitRate.get(now) : 0d;
+    }
+
+    int size() {
+        return this.hitRates.size();
+    }
+
+    static class HitRate {
+
+        private double rate;
+        private long lastHit;
+
+        synchronized double hit(final long now) {
+            this.rate = get(now) + 1d;
+            this.lastHit = now;
+            return this.rate;
+        }
+
+        synchronized double get(final long now) {
+            if (this.lastHit == 0) {
+                return this.rate;
+            }
+            final long elapsed = Math.max(0, now - this.lastHit);
+            return this.rate * Math.exp(-elapsed / DECAY_MILLIS);
+        }
+
+    }
+
+}
@@ -26,8 +26,9 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Comparator;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +38,9 @@ import org.apache.hc.core5.util.Args;
 /**
  * Immediately schedules any incoming validation request. Relies on
  * {@link CacheConfig} to configure the used {@link java.util.concurrent.ThreadPoolExecutor}.
+ * Requests waiting for a worker are run in order of their
+ * {@link AsynchronousValidationRequest#getPriority() priority}; no more
+ * than {@link CacheConfig#getRevalidationQueueSize()} requests wait at a time.
  *
  * @since 4.3
  */
@@ -52,16 +56,30 @@ public class ImmediateSchedulingStrategy implements SchedulingStrategy {
      * {@link CacheConfig#getAsynchronousWorkersMax()},
      * {@link CacheConfig#getAsynchronousWorkersCore()},
      * {@link CacheConfig#getAsynchronousWorkerIdleLifetimeSecs()},
-     * and {@link CacheConfig#getRevalidationQueueSize()}.
+     * and {@link CacheConfig#getRevalidationQueueSize()}. The pool is started
+     * with the maximum number of workers, as a thread pool only grows once its
+     * queue is full; when fewer core workers are configured, idle workers are
+     * reclaimed after the idle lifetime. Requests that do not fit into the full
+     * queue are rejected.
      */
     public ImmediateSchedulingStrategy(final CacheConfig cacheConfig) {
-        this(new ThreadPoolExecutor(
-                cacheConfig.getAsynchronousWorkersCore(),
-                cacheConfig.getAsynchronousWorkersMax(),
+        this(createThreadPoolFromCacheConfig(cacheConfig));
+    }
+
+    private static ThreadPoolExecutor createThreadPoolFromCacheConfig(final CacheConfig cacheConfig) {
+        final int maxWorkers = Math.max(cacheConfig.getAsynchronousWorkersMax(),
+                cacheConfig.getAsynchronousWorkersCore());
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxWorkers,
+                maxWorkers,
                 cacheConfig.getAsynchronousWorkerIdleLifetimeSecs(),
                 TimeUnit.SECONDS,
-                new ArrayBlockingQueue<Runnable>(cacheConfig.getRevalidationQueueSize()))
-        );
+                new RevalidationQueue(Math.max(1, cacheConfig.getRevalidationQueueSize())));
+        if (cacheConfig.getAsynchronousWorkersCore() < maxWorkers
+                && cacheConfig.getAsynchronousWorkerIdleLifetimeSecs() > 0) {
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
     }
 
     ImmediateSchedulingStrategy(final ExecutorService executor) {
@@ -85,4 +103,57 @@ public class ImmediateSchedulingStrategy implements SchedulingStrategy {
     void awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
         executor.awaitTermination(timeout, unit);
     }
+
+    /**
+     * Priority queue that accepts no more than the given number of elements.
+     * {@link AsynchronousValidationRequest}s are ordered by priority; any other
+     * tasks are queued behind them.
+     */
+    static class RevalidationQueue extends PriorityBlockingQueue<Runnable> {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final Comparator<Runnable> PRIORITY_ORDER = new Comparator<Runnable>() {
+
+            @Override
+            public int compare(final Runnable r1, final Runnable r2) {
+                final boolean v1 = r1 instanceof AsynchronousValidationRequest;
+                final boolean v2 = r2 instanceof AsynchronousValidationRequest;
+                if (v1 && v2) {
+                    return ((AsynchronousValidationRequest) r1).compareTo((AsynchronousValidationRequest) r2);
+                }
+                if (v1) {
+                    return -1;
+                }
+                return v2 ? 1 : 0;
+            }
+
+        };
+
+        private final int capacity;
+
+        RevalidationQueue(final int capacity) {
+            super(Args.positive(capacity, "Capacity"), PRIORITY_ORDER);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public boolean offer(final Runnable task) {
+            // Elements are only ever removed concurrently, so checking the size
+            // and adding under a common lock keeps the queue within its capacity
+            synchronized (this) {
+                if (size() >= this.capacity) {
+                    return false;
+                }
+                return super.offer(task);
+            }
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return Math.max(0, this.capacity - size());
+        }
+
+    }
+
 }
@@ -28,13 +28,15 @@ package org.apache.hc.client5.http.impl.cache;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.lang.ref.ReferenceQueue;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.Resource;
 import org.apache.hc.core5.annotation.ThreadSafe;
@@ -42,47 +44,58 @@ import org.apache.hc.core5.util.Args;
 
 /**
  * <p>
- * {@link HttpCacheStorage} implementation capable of deallocating resources associated with
+ * {@link org.apache.hc.client5.http.cache.HttpCacheStorage} implementation capable of deallocating resources associated with
  * the cache entries.
  * <p>
- * This cache keeps track of cache entries using
- * {@link java.lang.ref.PhantomReference} and maintains a collection of all resources that
- * are no longer in use. The cache, however, does not automatically deallocates associated
- * resources by invoking {@link Resource#dispose()} method. The consumer MUST periodically
- * call {@link #cleanResources()} method to trigger resource deallocation. The cache can be
- * permanently shut down using {@link #shutdown()} method. All resources associated with
- * the entries used by the cache will be deallocated.
+ * This cache keeps a reference count for every {@link Resource} held by its entries.
+ * Entries may share the same resource instance (for instance a variant parent entry and
+ * its updated revisions). Entries stored in the cache have their resource replaced with a
+ * reference counted wrapper. Cached responses generated from these entries hold on to the
+ * resource until the response is closed, so that entries removed, replaced or evicted from
+ * the cache can still be read by consumers that obtained them earlier. A resource gets
+ * deallocated by invoking {@link Resource#dispose()} as soon as neither an entry in the
+ * cache nor an open response references it any longer. Consumers MUST close the responses
+ * served from the cache for resources to be deallocated. The cache can be permanently shut
+ * down using {@link #shutdown()} method. All resources associated with the entries used by
+ * the cache will be deallocated.
  * </p>
  * <p>
- * This {@link HttpCacheStorage} implementation is intended for use with {@link FileResource}
+ * This {@link org.apache.hc.client5.http.cache.HttpCacheStorage} implementation is intended for use with {@link FileResource}
  * and similar.
  * </p>
  * <p>
- * Compatibility note. Prior to version 4.4 this storage implementation used to dispose of
- * all resource entries upon {@link #close()}. As of version 4.4 the {@link #close()} method
- * disposes only of those resources that have been explicitly removed from the cache with
- * {@link #removeEntry(String)} method.
+ * Compatibility note. Prior to version 5.0 resources were deallocated only upon explicit
+ * invocation of {@link #cleanResources()}, and a resource shared by several entries
+ * could be deallocated as soon as one of them had been reclaimed by the garbage collector.
  * </p>
  * <p>
- * The {@link #shutdown()} ()} method can still be used to shut down the storage and dispose of
- * all resources currently managed by it.
+ * The {@link #close()} method deactivates the storage without deallocating resources still
+ * referenced by cache entries. The {@link #shutdown()} method can be used to shut down
+ * the storage and dispose of all resources currently managed by it.
  * </p>
  *
  * @since 4.1
  */
 @ThreadSafe
-public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
+public class ManagedHttpCacheStorage implements BulkHttpCacheStorage, Closeable {
 
     private final CacheMap entries;
-    private final ReferenceQueue<HttpCacheEntry> morque;
-    private final Set<ResourceReference> resources;
+    private final Map<Resource, ResourceReference> resources;
     private final AtomicBoolean active;
 
     public ManagedHttpCacheStorage(final CacheConfig config) {
         super();
-        this.entries = new CacheMap(config.getMaxCacheEntries());
-        this.morque = new ReferenceQueue<>();
-        this.resources = new HashSet<>();
+        this.entries = new CacheMap(config.getMaxCacheEntries()) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            void evicted(final String key, final HttpCacheEntry entry) {
+                releaseResourceReference(entry);
+            }
+
+        };
+        this.resources = new IdentityHashMap<>();
         this.active = new AtomicBoolean(true);
     }
 
@@ -92,12 +105,87 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
         }
     }
 
-    private void keepResourceReference(final HttpCacheEntry entry) {
+    /**
+     * Returns the reference counted resource held by the given entry, or
+     * {@code null} if the entry holds no resource.
+     */
+    private ResourceReference getResourceReference(final HttpCacheEntry entry) {
         final Resource resource = entry.getResource();
-        if (resource != null) {
-            // Must deallocate the resource when the entry is no longer in used
-            final ResourceReference ref = new ResourceReference(entry, this.morque);
-            this.resources.add(ref);
+        if (resource == null) {
+            return null;
+        }
+        if (resource instanceof ResourceReference && ((ResourceReference) resource).getStorage() == this) {
+            return (ResourceReference) resource;
+        }
+        ResourceReference ref = this.resources.get(resource);
+        if (ref == null) {
+            ref = new ResourceReference(this, resource);
+            this.resources.put(resource, ref);
+        }
+        return ref;
+    }
+
+    /**
+     * Takes a reference to the resource of the given entry.
+     * @return the entry to be stored, holding the reference counted resource,
+     *   or {@code null} if its resource has already been disposed.
+     */
+    private HttpCacheEntry keepResourceReference(final HttpCacheEntry entry) {
+        final ResourceReference ref = getResourceReference(entry);
+        if (ref == null) {
+            return entry;
+        }
+        if (ref.isDisposed()) {
+            return null;
+        }
+        ref.incrementCount();
+        if (entry.getResource() == ref) {
+            return entry;
+        }
+        return new HttpCacheEntry(
+                entry.getRequestDate(),
+                entry.getResponseDate(),
+                entry.getStatusLine(),
+                entry.getAllHeaders(),
+                ref,
+                entry.getVariantMap(),
+                entry.getRequestMethod());
+    }
+
+    private void releaseResourceReference(final HttpCacheEntry entry) {
+        final Resource resource = entry.getResource();
+        if (resource instanceof ResourceReference) {
+            release((ResourceReference) resource);
+        }
+    }
+
+    synchronized boolean retain(final ResourceReference ref) {
+        if (ref.isDisposed()) {
+            return false;
+        }
+        ref.incrementCount();
+        return true;
+    }
+
+    synchronized void release(final ResourceReference ref) {
+        if (!ref.isDisposed() && ref.decrementCount() == 0) {
+            ref.markDisposed();
+            this.resources.remove(ref.getResource());
+            ref.getResource().dispose();
+        }
+    }
+
+    private void store(final String url, final HttpCacheEntry previous, final HttpCacheEntry entry) {
+        // Must reference the new entry first as it may share its resource
+        // with the entry being replaced
+        final HttpCacheEntry managed = keepResourceReference(entry);
+        if (managed != null) {
+            this.entries.put(url, managed);
+        } else {
+            this.entries.remove(url);
+        }
+        if (previous != null) {
+            releaseResourceReference(previous);
         }
     }
 
@@ -107,8 +195,11 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
         Args.notNull(entry, "Cache entry");
         ensureValidState();
         synchronized (this) {
-            this.entries.put(url, entry);
-            keepResourceReference(entry);
+            final HttpCacheEntry previous = this.entries.get(url);
+            if (previous == entry) {
+                return;
+            }
+            store(url, previous, entry);
         }
     }
 
@@ -121,14 +212,31 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
         }
     }
 
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> urls) throws IOException {
+        Args.notNull(urls, "URLs");
+        ensureValidState();
+        final Map<String, HttpCacheEntry> result = new HashMap<>(urls.size());
+        synchronized (this) {
+            for (final String url: urls) {
+                final HttpCacheEntry entry = this.entries.get(url);
+                if (entry != null) {
+                    result.put(url, entry);
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public void removeEntry(final String url) throws IOException {
         Args.notNull(url, "URL");
         ensureValidState();
         synchronized (this) {
-            // Cannot deallocate the associated resources immediately as the
-            // cache entry may still be in use
-            this.entries.remove(url);
+            final HttpCacheEntry removed = this.entries.remove(url);
+            if (removed != null) {
+                releaseResourceReference(removed);
+            }
         }
     }
 
@@ -142,50 +250,60 @@ public class ManagedHttpCacheStorage implements HttpCacheStorage, Closeable {
         synchronized (this) {
             final HttpCacheEntry existing = this.entries.get(url);
             final HttpCacheEntry updated = callback.update(existing);
-            this.entries.put(url, updated);
-            if (existing != updated) {
-                keepResourceReference(updated);
+            if (updated == existing) {
+                return;
             }
+            store(url, existing, updated);
         }
     }
 
-    public void cleanResources() {
-        if (this.active.get()) {
-            ResourceReference ref;
-            while ((ref = (ResourceReference) this.morque.poll()) != null) {
-                synchronized (this) {
-                    this.resources.remove(ref);
-                }
-                ref.getResource().dispose();
+    /**
+     * Returns the next chunk of entries in key order without locking the storage.
+     */
+    List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+        return this.entries.nextEntries(fromKey, maxCount);
+    }
+
+    synchronized int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+        int removed = 0;
+        for (final Map.Entry<String, HttpCacheEntry> entry: expired) {
+            if (this.entries.removeIfUnchanged(entry.getKey(), entry.getValue())) {
+                releaseResourceReference(entry.getValue());
+                removed++;
             }
         }
+        return removed;
+    }
+
+    synchronized int getResourceCount() {
+        return this.resources.size();
+    }
+
+    /**
+     * Has no effect; resources are deallocated as soon as they are no longer used.
+     *
+     * @deprecated (5.0) no longer needed.
+     */
+    @Deprecated
+    public void cleanResources() {
     }
 
     public void shutdown() {
         if (this.active.compareAndSet(true, false)) {
             synchronized (this) {
                 this.entries.clear();
-                for (final ResourceReference ref: this.resources) {
+                for (final ResourceReference ref: this.resources.values()) {
+                    ref.markDisposed();
                     ref.getResource().dispose();
                 }
                 this.resources.clear();
-                while (this.morque.poll() != null) {
-                }
             }
         }
     }
 
     @Override
     public void close() {
-        if (this.active.compareAndSet(true, false)) {
-            synchronized (this) {
-                ResourceReference ref;
-                while ((ref = (ResourceReference) this.morque.poll()) != null) {
-                    this.resources.remove(ref);
-                    ref.getResource().dispose();
-                }
-            }
-        }
+        this.active.set(false);
     }
 
 }
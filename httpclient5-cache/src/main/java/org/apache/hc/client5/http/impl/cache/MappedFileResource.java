@@ -0,0 +1,191 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Cache resource backed by a file that is memory-mapped once upon creation.
+ * <p>
+ * Unlike {@link FileResource} this resource does not open the file on every access.
+ * The content is served from a read-only view of the mapped buffer without locking
+ * and the length is determined only once. Bodies of
+ * {@link org.apache.hc.core5.http.HttpEntity} instances backed by this resource can be
+ * written to channels directly from the mapped buffer.
+ * </p>
+ * <p>
+ * The mapping remains valid until the resource is garbage collected even after
+ * {@link #dispose()} has deleted the underlying file. On platforms that do not
+ * permit deletion of mapped files the file may not be removed by {@link #dispose()}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class MappedFileResource extends FileResource {
+
+    private static final long serialVersionUID = -1829164726389216537L;
+
+    private final long length;
+
+    private transient volatile MappedByteBuffer buffer;
+
+    public MappedFileResource(final File file) throws IOException {
+        super(file);
+        this.buffer = map(file);
+        this.length = this.buffer.capacity();
+    }
+
+    private static MappedByteBuffer map(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            Args.check(size <= Integer.MAX_VALUE, "File too large to be memory-mapped");
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the mapped content. Each invocation returns
+     * a new view with its own position and limit.
+     */
+    public ByteBuffer getByteBuffer() {
+        return this.buffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(getByteBuffer());
+    }
+
+    @Override
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * Writes the content to the given channel directly from the mapped buffer.
+     *
+     * @return the number of bytes written.
+     */
+    public long transferTo(final WritableByteChannel channel) throws IOException {
+        Args.notNull(channel, "Channel");
+        final ByteBuffer src = getByteBuffer();
+        long total = 0;
+        while (src.hasRemaining()) {
+            total += channel.write(src);
+        }
+        return total;
+    }
+
+    /**
+     * Writes the content to the given stream. Streams that are channels themselves
+     * or are backed by a file channel are written to through the channel straight
+     * from the mapped buffer, other streams are written to in chunks copied from
+     * the mapped buffer.
+     */
+    public void writeTo(final OutputStream outstream) throws IOException {
+        Args.notNull(outstream, "Output stream");
+        if (outstream instanceof WritableByteChannel) {
+            transferTo((WritableByteChannel) outstream);
+            return;
+        }
+        if (outstream instanceof FileOutputStream) {
+            transferTo(((FileOutputStream) outstream).getChannel());
+            return;
+        }
+        final ByteBuffer src = getByteBuffer();
+        final byte[] tmp = new byte[Math.min(src.remaining(), 8192)];
+        while (src.hasRemaining()) {
+            final int chunk = Math.min(src.remaining(), tmp.length);
+            src.get(tmp, 0, chunk);
+            outstream.write(tmp, 0, chunk);
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.buffer = map(getFile());
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            final int chunk = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, chunk);
+            return chunk;
+        }
+
+        @Override
+        public long skip(final long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            final int chunk = (int) Math.min(n, this.buffer.remaining());
+            this.buffer.position(this.buffer.position() + chunk);
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+
+    }
+
+}
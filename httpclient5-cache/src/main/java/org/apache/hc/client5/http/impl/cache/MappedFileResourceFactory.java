@@ -0,0 +1,57 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.annotation.Immutable;
+
+/**
+ * Generates {@link MappedFileResource} instances whose body is stored in a temporary
+ * file and memory-mapped. Bodies too large to be mapped into a single buffer are
+ * represented by plain {@link FileResource}s.
+ *
+ * @since 5.0
+ */
+@Immutable
+public class MappedFileResourceFactory extends FileResourceFactory {
+
+    public MappedFileResourceFactory(final File cacheDir) {
+        super(cacheDir);
+    }
+
+    @Override
+    Resource createResource(final File file) throws IOException {
+        if (file.length() <= Integer.MAX_VALUE) {
+            return new MappedFileResource(file);
+        }
+        return super.createResource(file);
+    }
+
+}
@@ -0,0 +1,480 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationBus;
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationListener;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * {@link HttpCacheInvalidationBus} implementation that exchanges invalidated
+ * cache keys between cache instances by means of UDP multicast.
+ * <p>
+ * Published keys are coalesced and sent in batches every
+ * {@code batchDelayMillis} milliseconds by a background thread, so that a
+ * burst of invalidations results in a few datagrams rather than one per key.
+ * Each datagram carries a random identifier of the sending bus, which lets
+ * every instance ignore its own messages looped back by the network stack.
+ * </p>
+ * <p>
+ * Multicast delivery is unreliable: datagrams may be dropped or reordered.
+ * This bus is therefore suited for reducing the window during which peers
+ * serve stale content, not for strict cache coherence.
+ * </p>
+ * <p>
+ * Datagrams are neither authenticated nor encrypted. Any host able to send
+ * to the multicast group can make all instances drop arbitrary entries, and
+ * any host that joins the group learns the keys of invalidated entries. The
+ * bus must therefore only be used on networks where every host that can
+ * reach the group is trusted, for instance by keeping the default
+ * time-to-live of {@value #DEFAULT_TIME_TO_LIVE} and filtering the group
+ * port at the network boundary.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class MulticastInvalidationBus implements HttpCacheInvalidationBus {
+
+    static final int MAGIC = 0x48434956;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 4 + 1 + 8 + 2;
+    /** Preferred datagram size, small enough to avoid IP fragmentation on most networks. */
+    static final int MAX_DATAGRAM_SIZE = 1400;
+    /** Maximum UDP payload size. */
+    static final int MAX_UDP_PAYLOAD = 65507;
+
+    public static final int DEFAULT_TIME_TO_LIVE = 1;
+    public static final long DEFAULT_BATCH_DELAY_MILLIS = 50L;
+
+    private final InetAddress group;
+    private final int port;
+    private final NetworkInterface networkInterface;
+    private final int timeToLive;
+    private final long batchDelayMillis;
+    private final long senderId;
+    private final List<HttpCacheInvalidationListener> listeners;
+    private final Set<String> pending;
+    private final AtomicLong publishedCount;
+    private final AtomicLong messagesSent;
+    private final AtomicLong keysReceived;
+
+    private volatile DatagramChannel channel;
+    private volatile CountDownLatch stopSignal;
+    private volatile Thread sender;
+    private volatile Thread receiver;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    /**
+     * Creates a bus for the given multicast group.
+     *
+     * @param group multicast group address
+     * @param port UDP port shared by all cache instances
+     * @param networkInterface interface to join the group on, or {@code null}
+     *   for the first multicast capable interface that is up, preferring
+     *   interfaces other than loopback
+     * @param timeToLive multicast time-to-live of sent datagrams
+     * @param batchDelayMillis delay in milliseconds during which published keys
+     *   are collected before being sent
+     */
+    public MulticastInvalidationBus(
+            final InetAddress group,
+            final int port,
+            final NetworkInterface networkInterface,
+            final int timeToLive,
+            final long batchDelayMillis) {
+        Args.notNull(group, "Multicast group");
+        Args.check(group.isMulticastAddress(), "Not a multicast address: " + group);
+        Args.check(port > 0 && port < 65536, "Invalid port: " + port);
+        Args.check(timeToLive >= 0 && timeToLive <= 255, "Invalid time-to-live: " + timeToLive);
+        Args.positive(batchDelayMillis, "Batch delay");
+        this.group = group;
+        this.port = port;
+        this.networkInterface = networkInterface;
+        this.timeToLive = timeToLive;
+        this.batchDelayMillis = batchDelayMillis;
+        this.senderId = new SecureRandom().nextLong();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.pending = new LinkedHashSet<>();
+        this.publishedCount = new AtomicLong();
+        this.messagesSent = new AtomicLong();
+        this.keysReceived = new AtomicLong();
+    }
+
+    /**
+     * Creates a bus for the given multicast group on the default interface
+     * with {@link #DEFAULT_TIME_TO_LIVE} and {@link #DEFAULT_BATCH_DELAY_MILLIS}.
+     */
+    public MulticastInvalidationBus(final InetAddress group, final int port) {
+        this(group, port, null, DEFAULT_TIME_TO_LIVE, DEFAULT_BATCH_DELAY_MILLIS);
+    }
+
+    /**
+     * Joins the multicast group and starts the sender and receiver threads.
+     */
+    public synchronized void start() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        final DatagramChannel c = DatagramChannel.open(
+                group instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+        try {
+            final NetworkInterface ni = networkInterface != null ? networkInterface : defaultInterface();
+            c.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+            c.bind(new InetSocketAddress(port));
+            c.setOption(StandardSocketOptions.IP_MULTICAST_IF, ni);
+            c.setOption(StandardSocketOptions.IP_MULTICAST_TTL, Integer.valueOf(timeToLive));
+            // deliver sent datagrams to other instances on the same host as well;
+            // our own ones are recognized by the sender identifier
+            c.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, Boolean.TRUE);
+            c.join(group, ni);
+        } catch (final IOException ex) {
+            c.close();
+            throw ex;
+        }
+        final CountDownLatch stop = new CountDownLatch(1);
+        channel = c;
+        stopSignal = stop;
+        receiver = newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                receiveLoop(c);
+            }
+
+        }, "Cache invalidation receiver");
+        sender = newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    // not interrupted on shutdown, as that would close the channel
+                    while (!stop.await(batchDelayMillis, TimeUnit.MILLISECONDS)) {
+                        flush();
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        }, "Cache invalidation sender");
+        receiver.start();
+        sender.start();
+    }
+
+    private static NetworkInterface defaultInterface() throws IOException {
+        NetworkInterface loopback = null;
+        final Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while (interfaces != null && interfaces.hasMoreElements()) {
+            final NetworkInterface ni = interfaces.nextElement();
+            if (ni.isUp() && ni.supportsMulticast()) {
+                if (!ni.isLoopback()) {
+                    return ni;
+                }
+                if (loopback == null) {
+                    loopback = ni;
+                }
+            }
+        }
+        if (loopback == null) {
+            throw new SocketException("No multicast capable network interface");
+        }
+        return loopback;
+    }
+
+    private static Thread newThread(final Runnable runnable, final String name) {
+        final Thread t = new Thread(runnable, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Sends pending invalidations, leaves the multicast group and stops the
+     * background threads.
+     */
+    public synchronized void shutdown() {
+        final DatagramChannel c = channel;
+        if (c == null) {
+            return;
+        }
+        stopSignal.countDown();
+        try {
+            sender.join();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        channel = null;
+        try {
+            // closing the channel also leaves the group
+            c.close();
+        } catch (final IOException ex) {
+            log.debug("Unable to close multicast channel", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    public boolean isRunning() {
+        final Thread t = receiver;
+        return t != null && t.isAlive();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        final long millis = (tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time);
+        final Thread s = sender;
+        final Thread r = receiver;
+        if (s != null) {
+            s.join(millis);
+        }
+        if (r != null) {
+            r.join(millis);
+        }
+    }
+
+    @Override
+    public void publish(final String cacheKey) {
+        if (cacheKey == null) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(cacheKey);
+        }
+        publishedCount.incrementAndGet();
+    }
+
+    @Override
+    public void subscribe(final HttpCacheInvalidationListener listener) {
+        Args.notNull(listener, "Listener");
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the number of keys published on this bus so far, including
+     * duplicates coalesced into a single transmission.
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams sent so far.
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Returns the number of keys received from other instances so far.
+     */
+    public long getKeysReceived() {
+        return keysReceived.get();
+    }
+
+    /**
+     * Sends all pending invalidations.
+     */
+    void flush() {
+        final List<String> keys;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            keys = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (final byte[] datagram : encode(senderId, keys)) {
+            try {
+                send(datagram);
+                messagesSent.incrementAndGet();
+            } catch (final IOException ex) {
+                log.warn("Unable to send cache invalidation message", ex);
+            }
+        }
+    }
+
+    /**
+     * Transmits a single encoded datagram.
+     */
+    void send(final byte[] datagram) throws IOException {
+        final DatagramChannel c = channel;
+        if (c == null) {
+            throw new SocketException("Invalidation bus not started");
+        }
+        c.send(ByteBuffer.wrap(datagram), new InetSocketAddress(group, port));
+    }
+
+    private void receiveLoop(final DatagramChannel c) {
+        final ByteBuffer buf = ByteBuffer.allocate(MAX_UDP_PAYLOAD);
+        while (c.isOpen()) {
+            buf.clear();
+            try {
+                c.receive(buf);
+            } catch (final IOException ex) {
+                if (c.isOpen()) {
+                    log.warn("Unable to receive cache invalidation message", ex);
+                }
+                continue;
+            }
+            received(buf.array(), 0, buf.position());
+        }
+    }
+
+    /**
+     * Decodes a received datagram and notifies the listeners unless the
+     * datagram originates from this bus.
+     */
+    void received(final byte[] data, final int off, final int len) {
+        final List<String> keys = decode(data, off, len, senderId);
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        keysReceived.addAndGet(keys.size());
+        final List<String> unmodifiable = Collections.unmodifiableList(keys);
+        for (final HttpCacheInvalidationListener listener : listeners) {
+            try {
+                listener.invalidated(unmodifiable);
+            } catch (final RuntimeException ex) {
+                log.warn("Cache invalidation listener failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Encodes the given keys into as few datagrams as possible. Each datagram
+     * is kept within {@link #MAX_DATAGRAM_SIZE} unless a single key requires
+     * more; keys that do not fit into a UDP datagram at all are dropped.
+     */
+    static List<byte[]> encode(final long senderId, final List<String> keys) {
+        final List<byte[]> datagrams = new ArrayList<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(MAX_DATAGRAM_SIZE);
+        final ByteArrayOutputStream single = new ByteArrayOutputStream();
+        final DataOutputStream singleOut = new DataOutputStream(single);
+        int count = 0;
+        for (final String key : keys) {
+            single.reset();
+            try {
+                singleOut.writeUTF(key);
+            } catch (final IOException ex) {
+                // key too long for a length-prefixed string
+                continue;
+            }
+            final int keySize = single.size();
+            if (HEADER_SIZE + keySize > MAX_UDP_PAYLOAD) {
+                continue;
+            }
+            if (count > 0 && (HEADER_SIZE + body.size() + keySize > MAX_DATAGRAM_SIZE
+                    || count == 0xffff)) {
+                datagrams.add(datagram(senderId, count, body));
+                body.reset();
+                count = 0;
+            }
+            body.write(single.toByteArray(), 0, keySize);
+            count++;
+        }
+        if (count > 0) {
+            datagrams.add(datagram(senderId, count, body));
+        }
+        return datagrams;
+    }
+
+    private static byte[] datagram(final long senderId, final int count, final ByteArrayOutputStream body) {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(HEADER_SIZE + body.size());
+        final DataOutputStream out = new DataOutputStream(buf);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(senderId);
+            out.writeShort(count);
+            body.writeTo(out);
+        } catch (final IOException ex) {
+            // cannot happen with in-memory streams
+            throw new IllegalStateException(ex);
+        }
+        return buf.toByteArray();
+    }
+
+    /**
+     * Decodes a datagram produced by {@link #encode(long, List)}.
+     *
+     * @return the invalidated keys or {@code null} if the datagram is
+     *   malformed, of an unknown version or was sent by {@code ownSenderId}
+     */
+    static List<String> decode(final byte[] data, final int off, final int len, final long ownSenderId) {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, off, len));
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            if (in.readLong() == ownSenderId) {
+                return null;
+            }
+            final int count = in.readUnsignedShort();
+            final List<String> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keys.add(in.readUTF());
+            }
+            return keys;
+        } catch (final IOException ex) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Decides when a cache hit should trigger a background revalidation of a
+ * cache entry that is still fresh but about to expire. An entry qualifies
+ * once it has used up a configurable fraction of its freshness lifetime and
+ * its recent hit rate is at or above a configurable threshold. The number of
+ * refreshes in progress is limited per origin host.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class RefreshAheadPolicy {
+
+    private final CacheValidityPolicy validityPolicy;
+    private final float refreshFactor;
+    private final float minHitRate;
+    private final int maxPerHost;
+    private final int maxTrackedKeys;
+    private final HitRateTracker hitRates;
+    private final ConcurrentMap<String, AtomicInteger> inflight;
+    private final ConcurrentMap<String, Long> refreshedExpiries;
+    private final AtomicLong refreshesIssued;
+    private final AtomicLong missesSaved;
+
+    RefreshAheadPolicy(
+            final CacheValidityPolicy validityPolicy,
+            final float refreshFactor,
+            final float minHitRate,
+            final int maxPerHost,
+            final int maxTrackedKeys) {
+        super();
+        this.validityPolicy = Args.notNull(validityPolicy, "Validity policy");
+        this.refreshFactor = refreshFactor;
+        this.minHitRate = minHitRate;
+        this.maxPerHost = Args.positive(maxPerHost, "Max refreshes per host");
+        this.maxTrackedKeys = Args.positive(maxTrackedKeys, "Max tracked keys");
+        this.hitRates = new HitRateTracker(maxTrackedKeys);
+        this.inflight = new ConcurrentHashMap<>();
+        this.refreshedExpiries = new ConcurrentHashMap<>();
+        this.refreshesIssued = new AtomicLong();
+        this.missesSaved = new AtomicLong();
+    }
+
+    RefreshAheadPolicy(final CacheValidityPolicy validityPolicy, final CacheConfig config) {
+        this(validityPolicy, config.getRefreshAheadFactor(), config.getRefreshAheadMinHitRate(),
+                config.getRefreshAheadMaxPerHost(), HitRateTracker.DEFAULT_MAX_TRACKED_KEYS);
+    }
+
+    /**
+     * Records a hit served from the given fresh cache entry.
+     * @return {@code true} if the entry is hot and close enough to expiry
+     *   to be refreshed in the background.
+     */
+    boolean recordHit(final String key, final HttpCacheEntry entry, final Date now) {
+        final long nowMillis = now.getTime();
+        final Long expiry = this.refreshedExpiries.get(key);
+        if (expiry != null && nowMillis >= expiry.longValue() && this.refreshedExpiries.remove(key, expiry)) {
+            // the entry refreshed ahead of time would have expired by now
+            this.missesSaved.incrementAndGet();
+        }
+        final double rate = this.hitRates.hit(key, nowMillis);
+        if (rate < this.minHitRate) {
+            return false;
+        }
+        final long lifetime = this.validityPolicy.getFreshnessLifetimeSecs(entry);
+        if (lifetime <= 0) {
+            return false;
+        }
+        final long age = this.validityPolicy.getCurrentAgeSecs(entry, now);
+        return age < lifetime && age >= lifetime * this.refreshFactor;
+    }
+
+    /**
+     * Reserves a refresh slot for the given origin host.
+     * @return {@code true} if the slot was reserved and must be released with
+     *   {@link #release(String)}, {@code false} if the host is already at its
+     *   limit of concurrent refreshes.
+     */
+    boolean tryAcquire(final String host) {
+        AtomicInteger count = this.inflight.get(host);
+        if (count == null) {
+            final AtomicInteger newCount = new AtomicInteger();
+            count = this.inflight.putIfAbsent(host, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        for (;;) {
+            final int current = count.get();
+            if (current >= this.maxPerHost) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a refresh slot reserved with {@link #tryAcquire(String)}.
+     */
+    void release(final String host) {
+        final AtomicInteger count = this.inflight.get(host);
+        if (count != null) {
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Records that a background refresh of the given entry has been scheduled.
+     */
+    void refreshIssued(final String key, final HttpCacheEntry entry, final Date now) {
+        this.refreshesIssued.incrementAndGet();
+        final long remaining = this.validityPolicy.getFreshnessLifetimeSecs(entry)
+                - this.validityPolicy.getCurrentAgeSecs(entry, now);
+        if (this.refreshedExpiries.size() >= this.maxTrackedKeys) {
+            this.refreshedExpiries.clear();
+        }
+        this.refreshedExpiries.put(key, Long.valueOf(now.getTime() + remaining * 1000L));
+    }
+
+    /**
+     * Returns the number of background refreshes scheduled so far.
+     */
+    long getRefreshesIssued() {
+        return this.refreshesIssued.get();
+    }
+
+    /**
+     * Returns the number of cache hits served after the time the refreshed
+     * entry would have expired, each of which would otherwise have required a
+     * synchronous revalidation.
+     */
+    long getMissesSaved() {
+        return this.missesSaved.get();
+    }
+
+    int getInflightCount(final String host) {
+        final AtomicInteger count = this.inflight.get(host);
+        return count != null ? count.get() : 0;
+    }
+
+}
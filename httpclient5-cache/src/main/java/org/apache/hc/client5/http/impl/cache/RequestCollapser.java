@@ -0,0 +1,126 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * Keeps track of origin requests in flight per cache key so that
+ * concurrent cache misses and revalidations of the same resource can be
+ * collapsed into a single origin request. The first caller of
+ * {@link #begin(String)} for a given key becomes the leader and must call
+ * {@link #complete(String)} once the response has been stored in the cache
+ * or turned out not to be cacheable, or {@link #abandon(String)} if it gave
+ * up before the outcome was known; everybody else can
+ * {@link #await(String, long) wait} for the leader to finish.
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+class RequestCollapser {
+
+    enum Outcome { COMPLETED, ABANDONED, TIMED_OUT }
+
+    private final ConcurrentMap<String, Flight> inflight;
+
+    RequestCollapser() {
+        super();
+        this.inflight = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Registers an origin request for the given key.
+     * @return {@code true} if the caller is the leader and is expected to
+     *   contact the origin, {@code false} if another request for the same
+     *   key is already in flight.
+     */
+    boolean begin(final String key) {
+        return this.inflight.putIfAbsent(key, new Flight()) == null;
+    }
+
+    private void release(final String key, final Outcome outcome) {
+        final Flight flight = this.inflight.remove(key);
+        if (flight != null) {
+            flight.outcome = outcome;
+            flight.latch.countDown();
+        }
+    }
+
+    /**
+     * Signals completion of the origin request led by the caller and
+     * releases all requests waiting on the same key.
+     */
+    void complete(final String key) {
+        release(key, Outcome.COMPLETED);
+    }
+
+    /**
+     * Signals that the leader gave up before its response could be stored
+     * and releases all requests waiting on the same key so that one of them
+     * can take over.
+     */
+    void abandon(final String key) {
+        release(key, Outcome.ABANDONED);
+    }
+
+    /**
+     * Waits for the request in flight for the given key to complete.
+     * @param timeout maximum time to wait in milliseconds
+     * @return how the request in flight ended; {@link Outcome#COMPLETED} if
+     *   no request is in flight any more.
+     */
+    Outcome await(final String key, final long timeout) throws InterruptedException {
+        final Flight flight = this.inflight.get(key);
+        if (flight == null) {
+            return Outcome.COMPLETED;
+        }
+        if (!flight.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+            return Outcome.TIMED_OUT;
+        }
+        return flight.outcome;
+    }
+
+    /**
+     * Returns the number of origin requests currently in flight.
+     */
+    int getInflightCount() {
+        return this.inflight.size();
+    }
+
+    static class Flight {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile Outcome outcome;
+
+    }
+
+}
@@ -26,37 +26,109 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
-import java.lang.ref.PhantomReference;
-import java.lang.ref.ReferenceQueue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
 
-import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.Resource;
-import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.util.Args;
 
-@Immutable
-class ResourceReference extends PhantomReference<HttpCacheEntry> {
+/**
+ * {@link Resource} held by the entries of a {@link ManagedHttpCacheStorage}. The
+ * storage counts the cache entries referencing the underlying resource as well as
+ * the consumers that have {@link #retain() retained} it while reading a cached
+ * response, and disposes of the underlying resource as soon as the last of them
+ * has {@link #release() released} it.
+ * <p>
+ * The reference itself is serialized as the underlying resource.
+ */
+@ThreadSafe
+class ResourceReference implements Resource {
+
+    private static final long serialVersionUID = 6174236187240532567L;
 
+    private final transient ManagedHttpCacheStorage storage;
     private final Resource resource;
 
-    public ResourceReference(final HttpCacheEntry entry, final ReferenceQueue<HttpCacheEntry> q) {
-        super(entry, q);
-        Args.notNull(entry.getResource(), "Resource");
-        this.resource = entry.getResource();
+    // guarded by storage
+    private int count;
+    private boolean disposed;
+
+    ResourceReference(final ManagedHttpCacheStorage storage, final Resource resource) {
+        super();
+        this.storage = Args.notNull(storage, "Storage");
+        this.resource = Args.notNull(resource, "Resource");
     }
 
-    public Resource getResource() {
+    static Resource unwrap(final Resource resource) {
+        return resource instanceof ResourceReference ? ((ResourceReference) resource).getResource() : resource;
+    }
+
+    Resource getResource() {
         return this.resource;
     }
 
+    ManagedHttpCacheStorage getStorage() {
+        return this.storage;
+    }
+
+    /**
+     * Returns the number of cache entries and consumers holding the resource.
+     */
+    int getCount() {
+        return this.count;
+    }
+
+    void incrementCount() {
+        this.count++;
+    }
+
+    int decrementCount() {
+        return --this.count;
+    }
+
+    boolean isDisposed() {
+        return this.disposed;
+    }
+
+    void markDisposed() {
+        this.disposed = true;
+    }
+
+    /**
+     * Keeps the underlying resource from being disposed until {@link #release()}
+     * is called.
+     * @return {@code false} if the underlying resource has already been disposed.
+     */
+    boolean retain() {
+        return this.storage.retain(this);
+    }
+
+    void release() {
+        this.storage.release(this);
+    }
+
     @Override
-    public int hashCode() {
-        return this.resource.hashCode();
+    public InputStream getInputStream() throws IOException {
+        return this.resource.getInputStream();
     }
 
     @Override
-    public boolean equals(final Object obj) {
-        return this.resource.equals(obj);
+    public long length() {
+        return this.resource.length();
+    }
+
+    /**
+     * Has no effect; the underlying resource is disposed of by the storage
+     * once no longer held.
+     */
+    @Override
+    public void dispose() {
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return this.resource;
     }
 
 }
@@ -0,0 +1,162 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceFactory;
+import org.apache.hc.core5.annotation.NotThreadSafe;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * Destination a response body is written to chunk by chunk while it is
+ * being streamed to the caller. Once the body is complete the sink is
+ * turned into a {@link Resource}; an aborted sink releases whatever it
+ * has written so far.
+ * <p>
+ * Heap and file backed resources are written incrementally. Bodies for
+ * any other {@link ResourceFactory} are buffered and passed to
+ * {@link ResourceFactory#generate} once complete, since that contract
+ * can only pull the content from an input stream.
+ *
+ * @since 5.0
+ */
+@NotThreadSafe
+abstract class ResourceSink {
+
+    static ResourceSink open(final ResourceFactory resourceFactory, final String requestId) throws IOException {
+        if (resourceFactory instanceof HeapResourceFactory) {
+            return new HeapSink((HeapResourceFactory) resourceFactory);
+        }
+        if (resourceFactory instanceof FileResourceFactory) {
+            return new FileSink((FileResourceFactory) resourceFactory, requestId);
+        }
+        return new BufferingSink(resourceFactory, requestId);
+    }
+
+    abstract void write(byte[] b, int off, int len) throws IOException;
+
+    abstract Resource complete() throws IOException;
+
+    abstract void abort();
+
+    static class HeapSink extends ResourceSink {
+
+        private final HeapResourceFactory resourceFactory;
+        private final ByteArrayBuffer buffer;
+
+        HeapSink(final HeapResourceFactory resourceFactory) {
+            this.resourceFactory = resourceFactory;
+            this.buffer = new ByteArrayBuffer(2048);
+        }
+
+        @Override
+        void write(final byte[] b, final int off, final int len) {
+            this.buffer.append(b, off, len);
+        }
+
+        @Override
+        Resource complete() {
+            return this.resourceFactory.createResource(this.buffer.toByteArray());
+        }
+
+        @Override
+        void abort() {
+            this.buffer.clear();
+        }
+
+    }
+
+    static class FileSink extends ResourceSink {
+
+        private final FileResourceFactory resourceFactory;
+        private final File file;
+        private final FileOutputStream outstream;
+
+        FileSink(final FileResourceFactory resourceFactory, final String requestId) throws IOException {
+            this.resourceFactory = resourceFactory;
+            this.file = resourceFactory.generateUniqueCacheFile(requestId);
+            this.outstream = new FileOutputStream(this.file);
+        }
+
+        @Override
+        void write(final byte[] b, final int off, final int len) throws IOException {
+            this.outstream.write(b, off, len);
+        }
+
+        @Override
+        Resource complete() throws IOException {
+            this.outstream.close();
+            return this.resourceFactory.createResource(this.file);
+        }
+
+        @Override
+        void abort() {
+            try {
+                this.outstream.close();
+            } catch (final IOException ignore) {
+            }
+            this.file.delete();
+        }
+
+    }
+
+    static class BufferingSink extends ResourceSink {
+
+        private final ResourceFactory resourceFactory;
+        private final String requestId;
+        private final ByteArrayBuffer buffer;
+
+        BufferingSink(final ResourceFactory resourceFactory, final String requestId) {
+            this.resourceFactory = resourceFactory;
+            this.requestId = requestId;
+            this.buffer = new ByteArrayBuffer(2048);
+        }
+
+        @Override
+        void write(final byte[] b, final int off, final int len) {
+            this.buffer.append(b, off, len);
+        }
+
+        @Override
+        Resource complete() throws IOException {
+            return this.resourceFactory.generate(this.requestId,
+                    new ByteArrayInputStream(this.buffer.buffer(), 0, this.buffer.length()), null);
+        }
+
+        @Override
+        void abort() {
+            this.buffer.clear();
+        }
+
+    }
+
+}
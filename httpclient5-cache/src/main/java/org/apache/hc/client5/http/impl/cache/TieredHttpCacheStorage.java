@@ -0,0 +1,279 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * <p>
+ * {@link HttpCacheStorage} implementation that keeps a small in-process
+ * tier of recently used cache entries in front of another, usually remote,
+ * storage backend such as
+ * {@link org.apache.hc.client5.http.impl.cache.memcached.MemcachedHttpCacheStorage}
+ * or {@link org.apache.hc.client5.http.impl.cache.ehcache.EhcacheHttpCacheStorage}.
+ * Hits on the local tier avoid the round trip to the remote tier and the
+ * deserialization of the cache entry.
+ * </p>
+ * <p>
+ * Entries are written through to the remote tier and read through from it
+ * on a local miss. Local entries are invalidated whenever the entry is
+ * removed or updated through this storage. Since other processes sharing
+ * the remote tier may change entries behind its back, local entries are
+ * also expired after a configurable time to live.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class TieredHttpCacheStorage implements BulkHttpCacheStorage {
+
+    /** Default maximum number of entries held in the local tier.
+     */
+    public static final int DEFAULT_MAX_LOCAL_ENTRIES = 100;
+
+    /** Default time to live of local entries in milliseconds.
+     */
+    public static final long DEFAULT_LOCAL_TIME_TO_LIVE = 60000L;
+
+    private final HttpCacheStorage remote;
+    private final long localTimeToLive;
+    private final LocalMap local;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong remoteHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a tiered storage in front of the given backend.
+     * @param remote storage backend holding the authoritative copies
+     * @param maxLocalEntries maximum number of entries held in the local tier
+     * @param localTimeToLive maximum time in milliseconds an entry is served
+     *   from the local tier before it gets reloaded from the remote one;
+     *   a value of {@code 0} or less disables expiry
+     */
+    public TieredHttpCacheStorage(
+            final HttpCacheStorage remote,
+            final int maxLocalEntries,
+            final long localTimeToLive) {
+        super();
+        this.remote = Args.notNull(remote, "Remote storage");
+        Args.positive(maxLocalEntries, "Max local entries");
+        this.localTimeToLive = localTimeToLive;
+        this.local = new LocalMap(maxLocalEntries);
+    }
+
+    public TieredHttpCacheStorage(final HttpCacheStorage remote) {
+        this(remote, DEFAULT_MAX_LOCAL_ENTRIES, DEFAULT_LOCAL_TIME_TO_LIVE);
+    }
+
+    @Override
+    public void putEntry(final String key, final HttpCacheEntry entry) throws IOException {
+        Args.notNull(key, "Key");
+        invalidateLocal(key);
+        this.remote.putEntry(key, entry);
+        putLocal(key, entry);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(final String key) throws IOException {
+        Args.notNull(key, "Key");
+        final HttpCacheEntry localEntry = getLocal(key);
+        if (localEntry != null) {
+            this.localHits.incrementAndGet();
+            return localEntry;
+        }
+        final HttpCacheEntry remoteEntry = this.remote.getEntry(key);
+        if (remoteEntry != null) {
+            this.remoteHits.incrementAndGet();
+            putLocal(key, remoteEntry);
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return remoteEntry;
+    }
+
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        Args.notNull(keys, "Keys");
+        final Map<String, HttpCacheEntry> result = new HashMap<>(keys.size());
+        final List<String> remoteKeys = new ArrayList<>(keys.size());
+        for (final String key: keys) {
+            final HttpCacheEntry localEntry = getLocal(key);
+            if (localEntry != null) {
+                this.localHits.incrementAndGet();
+                result.put(key, localEntry);
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        if (!remoteKeys.isEmpty()) {
+            final Map<String, HttpCacheEntry> remoteEntries = BasicHttpCache.getEntries(this.remote, remoteKeys);
+            for (final String key: remoteKeys) {
+                final HttpCacheEntry remoteEntry = remoteEntries.get(key);
+                if (remoteEntry != null) {
+                    this.remoteHits.incrementAndGet();
+                    putLocal(key, remoteEntry);
+                    result.put(key, remoteEntry);
+                } else {
+                    this.misses.incrementAndGet();
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void removeEntry(final String key) throws IOException {
+        Args.notNull(key, "Key");
+        invalidateLocal(key);
+        this.remote.removeEntry(key);
+    }
+
+    @Override
+    public void updateEntry(
+            final String key,
+            final HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        Args.notNull(key, "Key");
+        invalidateLocal(key);
+        try {
+            this.remote.updateEntry(key, callback);
+        } finally {
+            // a concurrent read may have reloaded the old entry in the meantime
+            invalidateLocal(key);
+        }
+    }
+
+    /**
+     * Reports the number of lookups served from the local tier.
+     */
+    public long getLocalHits() {
+        return this.localHits.get();
+    }
+
+    /**
+     * Reports the number of lookups that missed the local tier and were
+     * served from the remote tier.
+     */
+    public long getRemoteHits() {
+        return this.remoteHits.get();
+    }
+
+    /**
+     * Reports the number of lookups that could not be served by either tier.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the number of entries currently held in the local tier.
+     */
+    public int getLocalSize() {
+        synchronized (this.local) {
+            return this.local.size();
+        }
+    }
+
+    long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    private HttpCacheEntry getLocal(final String key) {
+        synchronized (this.local) {
+            final LocalEntry localEntry = this.local.get(key);
+            if (localEntry == null) {
+                return null;
+            }
+            if (this.localTimeToLive > 0 && currentTime() - localEntry.created > this.localTimeToLive) {
+                this.local.remove(key);
+                return null;
+            }
+            return localEntry.entry;
+        }
+    }
+
+    private void putLocal(final String key, final HttpCacheEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        synchronized (this.local) {
+            this.local.put(key, new LocalEntry(entry, currentTime()));
+        }
+    }
+
+    private void invalidateLocal(final String key) {
+        synchronized (this.local) {
+            this.local.remove(key);
+        }
+    }
+
+    static class LocalEntry {
+
+        final HttpCacheEntry entry;
+        final long created;
+
+        LocalEntry(final HttpCacheEntry entry, final long created) {
+            this.entry = entry;
+            this.created = created;
+        }
+
+    }
+
+    static class LocalMap extends LinkedHashMap<String, LocalEntry> {
+
+        private static final long serialVersionUID = 4917234861287451321L;
+
+        private final int maxEntries;
+
+        LocalMap(final int maxEntries) {
+            super(20, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, LocalEntry> eldest) {
+            return size() > this.maxEntries;
+        }
+
+    }
+
+}
@@ -29,10 +29,13 @@ package org.apache.hc.client5.http.impl.cache.ehcache;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
@@ -58,7 +61,7 @@ import net.sf.ehcache.Element;
  * itself.</p>
  * @since 4.1
  */
-public class EhcacheHttpCacheStorage implements HttpCacheStorage {
+public class EhcacheHttpCacheStorage implements BulkHttpCacheStorage {
 
     private final Ehcache cache;
     private final HttpCacheEntrySerializer serializer;
@@ -119,6 +122,19 @@ public class EhcacheHttpCacheStorage implements HttpCacheStorage {
         return serializer.readFrom(new ByteArrayInputStream(data));
     }
 
+    @Override
+    public synchronized Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+        final Map<String, HttpCacheEntry> result = new HashMap<>(keys.size());
+        for (final Map.Entry<Object, Element> e: cache.getAll(keys).entrySet()) {
+            final Element element = e.getValue();
+            if (element != null) {
+                final byte[] data = (byte[])element.getObjectValue();
+                result.put((String) e.getKey(), serializer.readFrom(new ByteArrayInputStream(data)));
+            }
+        }
+        return result;
+    }
+
     @Override
     public synchronized void removeEntry(final String key) {
         cache.remove(key);
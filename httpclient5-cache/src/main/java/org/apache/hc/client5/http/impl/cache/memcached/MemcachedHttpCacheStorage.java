@@ -28,11 +28,14 @@ package org.apache.hc.client5.http.impl.cache.memcached;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
-import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateException;
 import org.apache.hc.client5.http.impl.cache.CacheConfig;
@@ -90,7 +93,7 @@ import net.spy.memcached.OperationTimeoutException;
  *
  * @since 4.1
  */
-public class MemcachedHttpCacheStorage implements HttpCacheStorage {
+public class MemcachedHttpCacheStorage implements BulkHttpCacheStorage {
 
     private static final Log log = LogFactory.getLog(MemcachedHttpCacheStorage.class);
 
@@ -216,6 +219,39 @@ public class MemcachedHttpCacheStorage implements HttpCacheStorage {
         }
     }
 
+    /**
+     * Retrieves all entries with a single multi-get request to
+     * <i>memcached</i>.
+     */
+    @Override
+    public Map<String, HttpCacheEntry> getEntries(final Collection<String> urls) throws IOException {
+        final Map<String, String> keyMap = new HashMap<>(urls.size());
+        for (final String url: urls) {
+            final String key = getCacheKey(url);
+            if (key != null) {
+                keyMap.put(key, url);
+            }
+        }
+        final Map<String, HttpCacheEntry> result = new HashMap<>(keyMap.size());
+        if (keyMap.isEmpty()) {
+            return result;
+        }
+        final Map<String, Object> values;
+        try {
+            values = client.getBulk(keyMap.keySet());
+        } catch (final OperationTimeoutException ex) {
+            throw new MemcachedOperationTimeoutException(ex);
+        }
+        for (final Map.Entry<String, Object> value: values.entrySet()) {
+            final String url = keyMap.get(value.getKey());
+            final MemcachedCacheEntry mce = reconstituteEntry(value.getValue());
+            if (url != null && mce != null && url.equals(mce.getStorageKey())) {
+                result.put(url, mce.getHttpCacheEntry());
+            }
+        }
+        return result;
+    }
+
     @Override
     public void removeEntry(final String url) throws IOException {
         final String key = getCacheKey(url);
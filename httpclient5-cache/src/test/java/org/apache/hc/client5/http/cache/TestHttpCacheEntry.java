@@ -35,6 +35,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -350,4 +354,83 @@ public class TestHttpCacheEntry {
         entry = makeEntry(headers);
         assertEquals(HeaderConstants.GET_METHOD, entry.getRequestMethod());
     }
+
+    @Test
+    public void testFreshnessInfoIsParsedFromHeaders() {
+        final Date lastModified = DateUtils.parseDate(DateUtils.formatDate(elevenSecondsAgo));
+        final Header[] headers = {
+                new BasicHeader("Cache-Control", "max-age=20, Must-Revalidate"),
+                new BasicHeader("Cache-Control", "s-maxage=10, stale-while-revalidate=5, stale-if-error=30"),
+                new BasicHeader("Age", "3"),
+                new BasicHeader("Age", "7"),
+                new BasicHeader("Expires", "asdf"),
+                new BasicHeader("Last-Modified", DateUtils.formatDate(lastModified)),
+                new BasicHeader("Content-Length", "128")
+        };
+        entry = makeEntry(headers);
+        final FreshnessInfo info = entry.getFreshnessInfo();
+        assertEquals(10, info.getMaxAge());
+        assertTrue(info.hasDirective("must-revalidate"));
+        assertTrue(info.hasDirective("S-MAXAGE"));
+        assertFalse(info.hasDirective("proxy-revalidate"));
+        assertEquals(5, info.getStaleWhileRevalidate());
+        assertEquals(30, info.getStaleIfError());
+        assertEquals(7, info.getAge());
+        assertNull(info.getExpires());
+        assertEquals(lastModified, info.getLastModified());
+        assertTrue(info.hasContentLength());
+        assertEquals(128, info.getContentLength());
+    }
+
+    @Test
+    public void testFreshnessInfoDefaultsWithoutHeaders() {
+        entry = makeEntry(new Header[] {});
+        final FreshnessInfo info = entry.getFreshnessInfo();
+        assertEquals(-1, info.getMaxAge());
+        assertEquals(-1, info.getStaleWhileRevalidate());
+        assertEquals(-1, info.getStaleIfError());
+        assertEquals(0, info.getAge());
+        assertNull(info.getExpires());
+        assertNull(info.getLastModified());
+        assertFalse(info.hasContentLength());
+        assertEquals(-1, info.getContentLength());
+    }
+
+    @Test
+    public void testMalformedFreshnessHeadersAreTreatedConservatively() {
+        final Header[] headers = {
+                new BasicHeader("Cache-Control", "max-age=foo, stale-while-revalidate=bar"),
+                new BasicHeader("Age", "-1"),
+                new BasicHeader("Content-Length", "huge")
+        };
+        entry = makeEntry(headers);
+        final FreshnessInfo info = entry.getFreshnessInfo();
+        assertEquals(0, info.getMaxAge());
+        assertEquals(-1, info.getStaleWhileRevalidate());
+        assertEquals(FreshnessInfo.MAX_AGE, info.getAge());
+        assertTrue(info.hasContentLength());
+        assertEquals(-1, info.getContentLength());
+    }
+
+    @Test
+    public void testFreshnessInfoIsSerializedWithEntry() throws Exception {
+        final Header[] headers = {
+                new BasicHeader("Cache-Control", "max-age=20, proxy-revalidate"),
+                new BasicHeader("Expires", DateUtils.formatDate(now))
+        };
+        entry = new HttpCacheEntry(elevenSecondsAgo, nineSecondsAgo,
+                statusLine, headers, null, HeaderConstants.GET_METHOD);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(entry);
+        }
+        final HttpCacheEntry copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            copy = (HttpCacheEntry) in.readObject();
+        }
+        final FreshnessInfo info = copy.getFreshnessInfo();
+        assertEquals(20, info.getMaxAge());
+        assertTrue(info.hasDirective("proxy-revalidate"));
+        assertEquals(now.getTime() / 1000L, info.getExpires().getTime() / 1000L);
+    }
 }
@@ -34,8 +34,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.HttpRoute;
 import org.apache.hc.client5.http.cache.HeaderConstants;
@@ -201,6 +204,202 @@ public class TestAsynchronousValidator {
         }
     }
 
+    @Test
+    public void testCallbackIsRunWhenRevalidationCompletes() {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+
+        when(mockCacheEntry.hasVariants()).thenReturn(false);
+        final AtomicInteger callbacks = new AtomicInteger();
+        final Runnable callback = new Runnable() {
+
+            @Override
+            public void run() {
+                callbacks.incrementAndGet();
+            }
+
+        };
+
+        Assert.assertTrue(impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry, callback));
+        Assert.assertFalse(impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry, callback));
+
+        final ArgumentCaptor<AsynchronousValidationRequest> cap = ArgumentCaptor.forClass(AsynchronousValidationRequest.class);
+        verify(mockSchedulingStrategy).schedule(cap.capture());
+        Assert.assertEquals(0, callbacks.get());
+
+        cap.getValue().run();
+
+        Assert.assertEquals(1, callbacks.get());
+        Assert.assertEquals(0, impl.getScheduledIdentifiers().size());
+    }
+
+    @Test
+    public void testRevalidationsAreLimitedPerRoute() {
+        final CacheConfig config = CacheConfig.custom()
+                .setRevalidationMaxPerRoute(2)
+                .build();
+        impl = new AsynchronousValidator(mockSchedulingStrategy, config);
+        final HttpRoute otherRoute = new HttpRoute(new HttpHost("bar.example.com", 80));
+
+        for (int i = 0; i < 3; i++) {
+            final HttpRequestWrapper req = HttpRequestWrapper.wrap(new HttpGet("/" + i), host);
+            impl.revalidateCacheEntry(mockClient, route, req, context, mockExecAware, mockCacheEntry);
+        }
+        impl.revalidateCacheEntry(mockClient, otherRoute,
+                HttpRequestWrapper.wrap(new HttpGet("/other"), host), context, mockExecAware, mockCacheEntry);
+
+        verify(mockSchedulingStrategy, times(3)).schedule(isA(AsynchronousValidationRequest.class));
+        Assert.assertEquals(2, impl.getRouteCount(route));
+        Assert.assertEquals(1, impl.getRouteCount(otherRoute));
+        Assert.assertEquals(1, impl.getRejectedCount());
+        Assert.assertEquals(3, impl.getQueueDepth());
+    }
+
+    @Test
+    public void testRevalidationsAreRejectedWhenQueueIsFull() {
+        final CacheConfig config = CacheConfig.custom()
+                .setRevalidationQueueSize(1)
+                .build();
+        impl = new AsynchronousValidator(mockSchedulingStrategy, config);
+
+        Assert.assertTrue(impl.revalidateCacheEntry(mockClient, route,
+                HttpRequestWrapper.wrap(new HttpGet("/1"), host), context, mockExecAware, mockCacheEntry, null));
+        Assert.assertFalse(impl.revalidateCacheEntry(mockClient, route,
+                HttpRequestWrapper.wrap(new HttpGet("/2"), host), context, mockExecAware, mockCacheEntry, null));
+
+        Assert.assertEquals(1, impl.getRejectedCount());
+        Assert.assertEquals(1, impl.getQueueDepth());
+    }
+
+    @Test
+    public void testRouteIsReleasedAfterRejectedExecution() {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+        doThrow(new RejectedExecutionException()).when(mockSchedulingStrategy).schedule(isA(AsynchronousValidationRequest.class));
+
+        Assert.assertFalse(impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry, null));
+
+        Assert.assertEquals(0, impl.getQueueDepth());
+        Assert.assertEquals(0, impl.getRouteCount());
+        Assert.assertEquals(1, impl.getRejectedCount());
+    }
+
+    @Test
+    public void testConcurrentRevalidationsDoNotExceedQueueSize() throws Exception {
+        final CacheConfig config = CacheConfig.custom()
+                .setRevalidationQueueSize(5)
+                .setRevalidationMaxPerRoute(100)
+                .build();
+        impl = new AsynchronousValidator(mockSchedulingStrategy, config);
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int n = i;
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException ignore) {
+                    }
+                    for (int j = 0; j < 10; j++) {
+                        final HttpRequestWrapper req = HttpRequestWrapper.wrap(new HttpGet("/" + n + "/" + j), host);
+                        impl.revalidateCacheEntry(mockClient, route, req, context, mockExecAware, mockCacheEntry);
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        verify(mockSchedulingStrategy, times(5)).schedule(isA(AsynchronousValidationRequest.class));
+        Assert.assertEquals(5, impl.getQueueDepth());
+        Assert.assertEquals(5, impl.getRouteCount(route));
+        Assert.assertEquals(threadCount * 10 - 5, impl.getRejectedCount());
+    }
+
+    @Test
+    public void testCompletedRevalidationsUpdateMetrics() {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+
+        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+
+        final ArgumentCaptor<AsynchronousValidationRequest> cap = ArgumentCaptor.forClass(AsynchronousValidationRequest.class);
+        verify(mockSchedulingStrategy).schedule(cap.capture());
+        Assert.assertEquals(1, impl.getQueueDepth());
+        Assert.assertEquals(1, impl.getRouteCount(route));
+
+        cap.getValue().run();
+
+        Assert.assertEquals(0, impl.getQueueDepth());
+        Assert.assertEquals(0, impl.getRouteCount(route));
+        Assert.assertEquals(0, impl.getRouteCount());
+        Assert.assertEquals(1, impl.getCompletedCount());
+        Assert.assertTrue(impl.getMaxLatencyMillis() >= impl.getAverageLatencyMillis());
+    }
+
+    @Test
+    public void testRevalidationPriorityReflectsHitRate() {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+        final HttpRequestWrapper hotRequest = HttpRequestWrapper.wrap(new HttpGet("/hot"), host);
+        final HttpRequestWrapper coldRequest = HttpRequestWrapper.wrap(new HttpGet("/cold"), host);
+
+        impl.revalidateCacheEntry(mockClient, route, hotRequest, context, mockExecAware, mockCacheEntry);
+        impl.markComplete(impl.getScheduledIdentifiers().iterator().next());
+        impl.revalidateCacheEntry(mockClient, route, hotRequest, context, mockExecAware, mockCacheEntry);
+        impl.revalidateCacheEntry(mockClient, route, coldRequest, context, mockExecAware, mockCacheEntry);
+
+        final ArgumentCaptor<AsynchronousValidationRequest> cap = ArgumentCaptor.forClass(AsynchronousValidationRequest.class);
+        verify(mockSchedulingStrategy, times(3)).schedule(cap.capture());
+        final AsynchronousValidationRequest hot = cap.getAllValues().get(1);
+        final AsynchronousValidationRequest cold = cap.getAllValues().get(2);
+        Assert.assertTrue(hot.getPriority() > cold.getPriority());
+        Assert.assertTrue(hot.compareTo(cold) < 0);
+
+        final PriorityBlockingQueue<AsynchronousValidationRequest> queue = new PriorityBlockingQueue<>();
+        queue.add(cold);
+        queue.add(hot);
+        Assert.assertSame(hot, queue.poll());
+    }
+
+    @Test
+    public void testConcurrentRevalidationsOfSameEntryAreCoalesced() throws Exception {
+        impl = new AsynchronousValidator(mockSchedulingStrategy);
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException ignore) {
+                    }
+                    for (int j = 0; j < 100; j++) {
+                        impl.revalidateCacheEntry(mockClient, route, request, context, mockExecAware, mockCacheEntry);
+                    }
+                }
+
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        verify(mockSchedulingStrategy).schedule(isA(AsynchronousValidationRequest.class));
+        Assert.assertEquals(1, impl.getScheduledIdentifiers().size());
+        Assert.assertEquals(1, impl.getRouteCount(route));
+        Assert.assertEquals(0, impl.getRejectedCount());
+    }
+
     @Test
     public void testSchedulingStrategyShutdownOnClose() throws IOException {
         impl = new AsynchronousValidator(mockSchedulingStrategy);
@@ -37,10 +37,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.hc.client5.http.cache.BulkHttpCacheStorage;
 import org.apache.hc.client5.http.cache.HeaderConstants;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.Resource;
@@ -328,6 +330,7 @@ public class TestBasicHttpCache {
         assertEquals(2, resultMap.size());
         assertEquals(variantCacheKey, resultMap.get(existingVariantKey));
         assertEquals(newVariantCacheKey, resultMap.get(newVariantKey));
+        assertSame(parent.getResource(), result.getResource());
     }
 
     @Test
@@ -386,6 +389,92 @@ public class TestBasicHttpCache {
         assertTrue(HttpTestUtils.semanticallyTransparent(originResponse, result));
     }
 
+    private HttpResponse makeCacheableResponse(final HttpEntity entity) {
+        final HttpResponse originResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        originResponse.setEntity(entity);
+        originResponse.setHeader("Cache-Control","public, max-age=3600");
+        originResponse.setHeader("Date", DateUtils.formatDate(new Date()));
+        originResponse.setHeader("ETag", "\"etag\"");
+        return originResponse;
+    }
+
+    @Test
+    public void testStreamedResponseIsCachedOnlyAtEndOfContent() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCachingEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final Date now = new Date();
+        final byte[] body = HttpTestUtils.getRandomBytes(CacheConfig.DEFAULT_MAX_OBJECT_SIZE_BYTES - 1);
+        final HttpResponse originResponse = makeCacheableResponse(new ByteArrayEntity(body));
+
+        final HttpResponse result = impl.cacheAndReturnResponse(host, request, originResponse, now, now);
+        assertEquals(0, backing.map.size());
+
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        result.getEntity().writeTo(outstream);
+        Assert.assertArrayEquals(body, outstream.toByteArray());
+
+        final HttpCacheEntry entry = backing.map.get((new CacheKeyGenerator()).getURI(host, request));
+        assertNotNull(entry);
+        final ByteArrayOutputStream cached = new ByteArrayOutputStream();
+        IOUtils.copy(entry.getResource().getInputStream(), cached);
+        Assert.assertArrayEquals(body, cached.toByteArray());
+    }
+
+    @Test
+    public void testTooLargeStreamedResponsesAreNotCached() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCachingEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final Date now = new Date();
+        final HttpResponse originResponse = makeCacheableResponse(
+                HttpTestUtils.makeBody(CacheConfig.DEFAULT_MAX_OBJECT_SIZE_BYTES + 1));
+
+        final HttpResponse result = impl.cacheAndReturnResponse(host, request, originResponse, now, now);
+        IOUtils.consume(result.getEntity());
+        assertEquals(0, backing.map.size());
+        assertTrue(HttpTestUtils.semanticallyTransparent(originResponse, result));
+    }
+
+    @Test
+    public void testAbortedStreamedResponsesAreNotCached() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCachingEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final Date now = new Date();
+        final BasicHttpEntity entity = new BasicHttpEntity();
+        final ConsumableInputStream inputStream = new ConsumableInputStream(
+                new ByteArrayInputStream(HttpTestUtils.getRandomBytes(128)));
+        entity.setContent(inputStream);
+        final HttpResponse originResponse = makeCacheableResponse(entity);
+
+        final HttpResponse result = impl.cacheAndReturnResponse(host, request, originResponse, now, now);
+        final InputStream content = result.getEntity().getContent();
+        content.read(new byte[16]);
+        content.close();
+
+        assertTrue(inputStream.wasClosed());
+        assertEquals(0, backing.map.size());
+    }
+
+    @Test
+    public void testIncompleteStreamedResponsesAreNotCached() throws Exception {
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing,
+                CacheConfig.custom().setStreamingCachingEnabled(true).build());
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest request = new HttpGet("http://foo.example.com/bar");
+        final Date now = new Date();
+        final HttpResponse originResponse = makeCacheableResponse(HttpTestUtils.makeBody(128));
+        originResponse.setHeader("Content-Length", "256");
+
+        final HttpResponse result = impl.cacheAndReturnResponse(host, request, originResponse, now, now);
+        IOUtils.consume(result.getEntity());
+        assertEquals(0, backing.map.size());
+    }
+
     @Test
     public void testGetCacheEntryReturnsNullOnCacheMiss() throws Exception {
         final HttpHost host = new HttpHost("foo.example.com");
@@ -498,6 +587,106 @@ public class TestBasicHttpCache {
 
     }
 
+    static class BulkSimpleHttpCacheStorage extends SimpleHttpCacheStorage implements BulkHttpCacheStorage {
+
+        @Override
+        public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+            final Map<String, HttpCacheEntry> result = new HashMap<>();
+            for (final String key: keys) {
+                final HttpCacheEntry entry = map.get(key);
+                if (entry != null) {
+                    result.put(key, entry);
+                }
+            }
+            return result;
+        }
+
+    }
+
+    @Test
+    public void testGetVariantCacheEntriesFetchesVariantsInBulk() throws Exception {
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest req = new HttpGet("http://foo.example.com/bar");
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://foo.example.com/bar");
+        variantMap.put("{Accept-Encoding=identity}", "{Accept-Encoding=identity}http://foo.example.com/bar");
+        final Date now = new Date();
+        final HttpCacheEntry root = HttpTestUtils.makeCacheEntry(now, now, new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(now)),
+                new BasicHeader("Vary", "Accept-Encoding") }, HttpTestUtils.getRandomBytes(128), variantMap);
+        final HttpCacheEntry variant1 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("ETag", "\"etag1\"") });
+        final HttpCacheEntry variant2 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("ETag", "\"etag2\"") });
+        final Counter gets = new Counter();
+        final Counter bulkGets = new Counter();
+        backing = new BulkSimpleHttpCacheStorage() {
+
+            @Override
+            public HttpCacheEntry getEntry(final String key) throws IOException {
+                gets.incr();
+                return super.getEntry(key);
+            }
+
+            @Override
+            public Map<String, HttpCacheEntry> getEntries(final Collection<String> keys) throws IOException {
+                bulkGets.incr();
+                return super.getEntries(keys);
+            }
+
+        };
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing, CacheConfig.DEFAULT);
+        backing.map.put((new CacheKeyGenerator()).getURI(host, req), root);
+        backing.map.put("{Accept-Encoding=gzip}http://foo.example.com/bar", variant1);
+        backing.map.put("{Accept-Encoding=identity}http://foo.example.com/bar", variant2);
+
+        final Map<String, Variant> variants = impl.getVariantCacheEntriesWithEtags(host, req);
+
+        assertEquals(2, variants.size());
+        assertSame(variant1, variants.get("\"etag1\"").getEntry());
+        assertSame(variant2, variants.get("\"etag2\"").getEntry());
+        assertEquals(1, gets.getCount());
+        assertEquals(1, bulkGets.getCount());
+    }
+
+    @Test
+    public void testGetVariantCacheEntriesLooksUpVariantsOneByOneWithoutBulkStorage() throws Exception {
+        final HttpHost host = new HttpHost("foo.example.com");
+        final HttpRequest req = new HttpGet("http://foo.example.com/bar");
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://foo.example.com/bar");
+        variantMap.put("{Accept-Encoding=identity}", "{Accept-Encoding=identity}http://foo.example.com/bar");
+        final Date now = new Date();
+        final HttpCacheEntry root = HttpTestUtils.makeCacheEntry(now, now, new Header[] {
+                new BasicHeader("Date", DateUtils.formatDate(now)),
+                new BasicHeader("Vary", "Accept-Encoding") }, HttpTestUtils.getRandomBytes(128), variantMap);
+        final HttpCacheEntry variant1 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("ETag", "\"etag1\"") });
+        final HttpCacheEntry variant2 = HttpTestUtils.makeCacheEntry(new Header[] {
+                new BasicHeader("ETag", "\"etag2\"") });
+        final Counter gets = new Counter();
+        backing = new SimpleHttpCacheStorage() {
+
+            @Override
+            public HttpCacheEntry getEntry(final String key) throws IOException {
+                gets.incr();
+                return super.getEntry(key);
+            }
+
+        };
+        impl = new BasicHttpCache(new HeapResourceFactory(), backing, CacheConfig.DEFAULT);
+        backing.map.put((new CacheKeyGenerator()).getURI(host, req), root);
+        backing.map.put("{Accept-Encoding=gzip}http://foo.example.com/bar", variant1);
+        backing.map.put("{Accept-Encoding=identity}http://foo.example.com/bar", variant2);
+
+        final Map<String, Variant> variants = impl.getVariantCacheEntriesWithEtags(host, req);
+
+        assertEquals(2, variants.size());
+        assertSame(variant1, variants.get("\"etag1\"").getEntry());
+        assertSame(variant2, variants.get("\"etag2\"").getEntry());
+        assertEquals(3, gets.getCount());
+    }
+
     @Test
     public void testOriginalResponseWithNoContentSizeHeaderIsReleased() throws Exception {
         final HttpHost host = new HttpHost("foo.example.com");
@@ -28,6 +28,7 @@ package org.apache.hc.client5.http.impl.cache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -84,6 +85,14 @@ public class TestCacheEntryUpdater {
         assertNotSame(newEntry, entry);
     }
 
+    @Test
+    public void testUpdateCacheEntrySharesResource() throws IOException {
+        entry = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry newEntry = impl.updateCacheEntry(null, entry,
+                requestDate, responseDate, response);
+        assertSame(entry.getResource(), newEntry.getResource());
+    }
+
     @Test
     public void testHeadersAreMergedCorrectly() throws IOException {
         final Header[] headers = {
@@ -0,0 +1,368 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCacheExpirySweeper {
+
+    private Date now;
+    private Date tenSecondsAgo;
+    private CacheConfig config;
+
+    @Before
+    public void setUp() {
+        now = new Date();
+        tenSecondsAgo = new Date(now.getTime() - 10 * 1000L);
+        config = CacheConfig.custom()
+                .setExpirySweepInterval(10)
+                .setExpirySweepTimeSlice(1000)
+                .build();
+    }
+
+    private HttpCacheEntry makeEntry(final Resource resource, final String... headers) {
+        final Header[] allHeaders = new Header[headers.length / 2 + 1];
+        allHeaders[0] = new BasicHeader("Date", DateUtils.formatDate(tenSecondsAgo));
+        for (int i = 0; i < headers.length; i += 2) {
+            allHeaders[i / 2 + 1] = new BasicHeader(headers[i], headers[i + 1]);
+        }
+        return new HttpCacheEntry(tenSecondsAgo, tenSecondsAgo, HttpTestUtils.makeStatusLine(), allHeaders,
+                resource != null ? resource : new HeapResource(new byte[] { 1 }));
+    }
+
+    private HttpCacheEntry makeEntry(final String... headers) {
+        return makeEntry(null, headers);
+    }
+
+    private CacheExpirySweeper makeSweeper(final BasicHttpCacheStorage storage) {
+        return new CacheExpirySweeper(storage, config);
+    }
+
+    @Test
+    public void testStaleEntryWithoutValidatorsIsUnusable() {
+        final CacheExpirySweeper impl = makeSweeper(new BasicHttpCacheStorage(config));
+        assertTrue(impl.isUnusable(makeEntry("Cache-Control", "max-age=5"), now));
+        assertTrue(impl.isUnusable(makeEntry(), now));
+    }
+
+    @Test
+    public void testFreshEntryIsUsable() {
+        final CacheExpirySweeper impl = makeSweeper(new BasicHttpCacheStorage(config));
+        assertFalse(impl.isUnusable(makeEntry("Cache-Control", "max-age=60"), now));
+    }
+
+    @Test
+    public void testStaleEntryWithValidatorIsUsable() {
+        final CacheExpirySweeper impl = makeSweeper(new BasicHttpCacheStorage(config));
+        assertFalse(impl.isUnusable(makeEntry("Cache-Control", "max-age=5", "ETag", "\"etag\""), now));
+        assertFalse(impl.isUnusable(makeEntry("Cache-Control", "max-age=5",
+                "Last-Modified", DateUtils.formatDate(tenSecondsAgo)), now));
+    }
+
+    @Test
+    public void testEntryWithinStaleWindowsIsUsable() {
+        final CacheExpirySweeper impl = makeSweeper(new BasicHttpCacheStorage(config));
+        assertFalse(impl.isUnusable(makeEntry("Cache-Control", "max-age=5, stale-while-revalidate=60"), now));
+        assertFalse(impl.isUnusable(makeEntry("Cache-Control", "max-age=5, stale-if-error=60"), now));
+        assertTrue(impl.isUnusable(makeEntry("Cache-Control", "max-age=5, stale-if-error=1"), now));
+    }
+
+    @Test
+    public void testHeuristicallyFreshEntryIsUsable() {
+        config = CacheConfig.custom()
+                .setHeuristicCachingEnabled(true)
+                .setHeuristicDefaultLifetime(60)
+                .build();
+        final CacheExpirySweeper impl = makeSweeper(new BasicHttpCacheStorage(config));
+        assertFalse(impl.isUnusable(makeEntry(), now));
+    }
+
+    @Test
+    public void testVariantRootEntryIsUsable() {
+        final CacheExpirySweeper impl = makeSweeper(new BasicHttpCacheStorage(config));
+        final Map<String, String> variantMap = new HashMap<>();
+        variantMap.put("{Accept-Encoding=gzip}", "{Accept-Encoding=gzip}http://foo.example.com/");
+        final HttpCacheEntry entry = makeEntry("Vary", "Accept-Encoding");
+        final HttpCacheEntry root = new HttpCacheEntry(entry.getRequestDate(), entry.getResponseDate(),
+                entry.getStatusLine(), entry.getAllHeaders(), entry.getResource(), variantMap);
+        assertFalse(impl.isUnusable(root, now));
+        assertTrue(impl.isUnusable(entry, now));
+    }
+
+    @Test
+    public void testSweepRemovesUnusableEntriesOnly() throws Exception {
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(config);
+        storage.putEntry("expired", makeEntry("Cache-Control", "max-age=5"));
+        storage.putEntry("fresh", makeEntry("Cache-Control", "max-age=60"));
+        storage.putEntry("revalidatable", makeEntry("Cache-Control", "max-age=5", "ETag", "\"etag\""));
+        final CacheExpirySweeper impl = makeSweeper(storage);
+
+        assertEquals(1, impl.sweep(now));
+
+        assertNull(storage.getEntry("expired"));
+        assertNotNull(storage.getEntry("fresh"));
+        assertNotNull(storage.getEntry("revalidatable"));
+        assertEquals(1, impl.getEvictedCount());
+    }
+
+    @Test
+    public void testSweepDisposesResourcesOfManagedStorage() throws Exception {
+        final ManagedHttpCacheStorage storage = new ManagedHttpCacheStorage(config);
+        final TestManagedHttpCacheStorage.TrackingResource expiredResource =
+                new TestManagedHttpCacheStorage.TrackingResource();
+        final TestManagedHttpCacheStorage.TrackingResource freshResource =
+                new TestManagedHttpCacheStorage.TrackingResource();
+        storage.putEntry("expired", makeEntry(expiredResource, "Cache-Control", "max-age=5"));
+        storage.putEntry("fresh", makeEntry(freshResource, "Cache-Control", "max-age=60"));
+        final CacheExpirySweeper impl = new CacheExpirySweeper(storage, config);
+
+        assertEquals(1, impl.sweep(now));
+
+        assertTrue(expiredResource.disposed);
+        assertFalse(freshResource.disposed);
+        assertEquals(1, storage.getResourceCount());
+    }
+
+    @Test
+    public void testEntryReplacedAfterReadIsNotRemoved() throws Exception {
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(config);
+        storage.putEntry("foo", makeEntry("Cache-Control", "max-age=5"));
+        final List<Map.Entry<String, HttpCacheEntry>> chunk = storage.nextEntries(null, 10);
+        final HttpCacheEntry replacement = makeEntry("Cache-Control", "max-age=5");
+        storage.putEntry("foo", replacement);
+
+        assertEquals(0, storage.removeEntriesIfUnchanged(chunk));
+        assertTrue(storage.getEntry("foo") == replacement);
+    }
+
+    @Test
+    public void testNextEntriesWalksKeysInChunksWithoutTouchingLruOrder() throws Exception {
+        final CacheConfig smallConfig = CacheConfig.custom().setMaxCacheEntries(3).build();
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(smallConfig);
+        storage.putEntry("c", makeEntry());
+        storage.putEntry("a", makeEntry());
+        storage.putEntry("b", makeEntry());
+
+        final List<Map.Entry<String, HttpCacheEntry>> chunk1 = storage.nextEntries(null, 2);
+        assertEquals(2, chunk1.size());
+        assertEquals("a", chunk1.get(0).getKey());
+        assertEquals("b", chunk1.get(1).getKey());
+        final List<Map.Entry<String, HttpCacheEntry>> chunk2 = storage.nextEntries("b", 2);
+        assertEquals(1, chunk2.size());
+        assertEquals("c", chunk2.get(0).getKey());
+
+        // "c" is still the least recently used entry
+        storage.putEntry("d", makeEntry());
+        assertNull(storage.getEntry("c"));
+        final List<Map.Entry<String, HttpCacheEntry>> all = storage.nextEntries(null, 10);
+        assertEquals(3, all.size());
+        assertEquals("d", all.get(2).getKey());
+        storage.removeEntry("a");
+        assertEquals(2, storage.nextEntries(null, 10).size());
+    }
+
+    @Test
+    public void testSweepResumesWhereTimeSliceEnded() {
+        final ManualTicker ticker = new ManualTicker();
+        final NavigableMap<String, HttpCacheEntry> entries = new TreeMap<>();
+        for (int i = 0; i < 3 * CacheExpirySweeper.BATCH_SIZE; i++) {
+            entries.put(String.format("key%03d", i), makeEntry());
+        }
+        final List<String> removed = new ArrayList<>();
+        final CacheExpirySweeper.Target target = new CacheExpirySweeper.Target() {
+
+            @Override
+            public List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+                final List<Map.Entry<String, HttpCacheEntry>> chunk = new ArrayList<>();
+                for (final Map.Entry<String, HttpCacheEntry> entry
+                        : (fromKey != null ? entries.tailMap(fromKey, false) : entries).entrySet()) {
+                    if (chunk.size() >= maxCount) {
+                        break;
+                    }
+                    chunk.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+                return chunk;
+            }
+
+            @Override
+            public int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+                for (final Map.Entry<String, HttpCacheEntry> entry: expired) {
+                    removed.add(entry.getKey());
+                }
+                // make every batch exceed the time slice
+                ticker.advance(TimeUnit.MILLISECONDS.toNanos(200));
+                return expired.size();
+            }
+
+        };
+        final CacheExpirySweeper impl = new CacheExpirySweeper(target,
+                CacheConfig.custom().setExpirySweepTimeSlice(100).build(), null, ticker);
+
+        assertEquals(CacheExpirySweeper.BATCH_SIZE, impl.sweep(now));
+        assertEquals(CacheExpirySweeper.BATCH_SIZE, impl.sweep(now));
+        assertEquals(CacheExpirySweeper.BATCH_SIZE, impl.sweep(now));
+        assertEquals(3 * CacheExpirySweeper.BATCH_SIZE, removed.size());
+        assertEquals(new ArrayList<>(entries.keySet()), removed);
+    }
+
+    @Test
+    public void testSweepStopsWhenTimeSliceEndsWithinChunk() throws Exception {
+        final ManualTicker ticker = new ManualTicker();
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(config);
+        final CacheExpirySweeper.Target target = new CacheExpirySweeper.Target() {
+
+            @Override
+            public List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+                // the time slice is over once the first chunk has been read
+                ticker.advance(TimeUnit.SECONDS.toNanos(2));
+                return storage.nextEntries(fromKey, maxCount);
+            }
+
+            @Override
+            public int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+                return storage.removeEntriesIfUnchanged(expired);
+            }
+
+        };
+        final CacheExpirySweeper impl = new CacheExpirySweeper(target, config, null, ticker);
+        storage.putEntry("a", makeEntry());
+        storage.putEntry("b", makeEntry());
+
+        assertEquals(1, impl.sweep(now));
+        assertNull(storage.getEntry("a"));
+        assertNotNull(storage.getEntry("b"));
+        assertEquals(1, impl.sweep(now));
+        assertNull(storage.getEntry("b"));
+    }
+
+    @Test
+    public void testSweepDisposesResourcesOfBasicStorage() throws Exception {
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(config);
+        final TestManagedHttpCacheStorage.TrackingResource expiredResource =
+                new TestManagedHttpCacheStorage.TrackingResource();
+        final TestManagedHttpCacheStorage.TrackingResource freshResource =
+                new TestManagedHttpCacheStorage.TrackingResource();
+        storage.putEntry("expired", makeEntry(expiredResource, "Cache-Control", "max-age=5"));
+        storage.putEntry("fresh", makeEntry(freshResource, "Cache-Control", "max-age=60"));
+
+        assertEquals(1, makeSweeper(storage).sweep(now));
+
+        assertTrue(expiredResource.disposed);
+        assertFalse(freshResource.disposed);
+    }
+
+    @Test
+    public void testRemovingExpiredEntriesDoesNotTouchLruOrder() throws Exception {
+        final CacheConfig smallConfig = CacheConfig.custom().setMaxCacheEntries(2).build();
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(smallConfig);
+        storage.putEntry("a", makeEntry());
+        storage.putEntry("b", makeEntry());
+        final List<Map.Entry<String, HttpCacheEntry>> chunk = storage.nextEntries(null, 10);
+        final List<Map.Entry<String, HttpCacheEntry>> replaced = new ArrayList<>();
+        replaced.add(new AbstractMap.SimpleImmutableEntry<>("a", makeEntry()));
+
+        assertEquals(0, storage.removeEntriesIfUnchanged(replaced));
+        // "a" is still the least recently used entry
+        storage.putEntry("c", makeEntry());
+        assertNull(storage.getEntry("a"));
+        assertEquals(1, storage.removeEntriesIfUnchanged(chunk));
+        assertNull(storage.getEntry("b"));
+        assertNotNull(storage.getEntry("c"));
+    }
+
+    @Test
+    public void testBackgroundThreadSweepsAndShutsDown() throws Exception {
+        final BasicHttpCacheStorage storage = new BasicHttpCacheStorage(config);
+        storage.putEntry("expired", makeEntry("Cache-Control", "max-age=5"));
+        final CountDownLatch swept = new CountDownLatch(1);
+        final CacheExpirySweeper.Target target = new CacheExpirySweeper.Target() {
+
+            @Override
+            public List<Map.Entry<String, HttpCacheEntry>> nextEntries(final String fromKey, final int maxCount) {
+                return storage.nextEntries(fromKey, maxCount);
+            }
+
+            @Override
+            public int removeEntriesIfUnchanged(final List<Map.Entry<String, HttpCacheEntry>> expired) {
+                final int removed = storage.removeEntriesIfUnchanged(expired);
+                swept.countDown();
+                return removed;
+            }
+
+        };
+        final CacheExpirySweeper impl = new CacheExpirySweeper(target, config, null);
+        impl.start();
+        try {
+            assertTrue(swept.await(5, TimeUnit.SECONDS));
+            assertNull(storage.getEntry("expired"));
+            assertTrue(impl.isRunning());
+        } finally {
+            impl.shutdown();
+            impl.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        assertFalse(impl.isRunning());
+    }
+
+    static class ManualTicker implements CacheExpirySweeper.Ticker {
+
+        private long nanoTime;
+
+        void advance(final long nanos) {
+            nanoTime += nanos;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanoTime;
+        }
+
+    }
+
+}
@@ -26,17 +26,22 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationBus;
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationListener;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.Header;
@@ -51,6 +56,7 @@ import org.apache.hc.core5.http.message.BasicHttpRequest;
 import org.apache.hc.core5.http.message.BasicHttpResponse;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 public class TestCacheInvalidator {
 
@@ -655,6 +661,67 @@ public class TestCacheInvalidator {
         verifyNoMoreInteractions(mockStorage);
     }
 
+    @Test
+    public void testInvalidationsArePublishedOnBus() throws Exception {
+        final HttpCacheInvalidationBus bus = mock(HttpCacheInvalidationBus.class);
+        impl = new CacheInvalidator(cacheKeyGenerator, mockStorage, bus);
+        request = new BasicHttpRequest("POST","/",HTTP_1_1);
+        request.setHeader("Content-Location", "http://foo.example.com/content");
+        final String theUri = "http://foo.example.com:80/";
+        final String variantUri = "theVariantURI";
+        cacheReturnsEntryForUri(theUri);
+        cacheEntryHasVariantMap(HttpTestUtils.makeDefaultVariantMap(variantUri, variantUri));
+
+        impl.flushInvalidatedCacheEntries(host, request);
+
+        verify(mockStorage).removeEntry(variantUri);
+        verify(bus).publish(theUri);
+        verify(bus).publish("http://foo.example.com:80/content");
+        verify(bus, never()).publish(variantUri);
+    }
+
+    @Test
+    public void testInvalidationIsPublishedEvenIfNotCachedLocally() throws Exception {
+        final HttpCacheInvalidationBus bus = mock(HttpCacheInvalidationBus.class);
+        impl = new CacheInvalidator(cacheKeyGenerator, mockStorage, bus);
+        request = new BasicHttpRequest("POST","/",HTTP_1_1);
+        final String theUri = "http://foo.example.com:80/";
+
+        impl.flushInvalidatedCacheEntries(host, request);
+
+        verify(mockStorage, never()).removeEntry(anyString());
+        verify(bus).publish(theUri);
+    }
+
+    @Test
+    public void testRemoteInvalidationsFlushEntryAndVariantsWithoutRepublishing() throws Exception {
+        final HttpCacheInvalidationBus bus = mock(HttpCacheInvalidationBus.class);
+        impl = new CacheInvalidator(cacheKeyGenerator, mockStorage, bus);
+        final ArgumentCaptor<HttpCacheInvalidationListener> captor =
+                ArgumentCaptor.forClass(HttpCacheInvalidationListener.class);
+        verify(bus).subscribe(captor.capture());
+        final String theUri = "http://foo.example.com:80/";
+        final String variantUri = "theVariantURI";
+        cacheReturnsEntryForUri(theUri);
+        cacheEntryHasVariantMap(HttpTestUtils.makeDefaultVariantMap(variantUri, variantUri));
+
+        captor.getValue().invalidated(Collections.singletonList(theUri));
+
+        verify(mockStorage).removeEntry(variantUri);
+        verify(mockStorage).removeEntry(theUri);
+        verify(bus, never()).publish(anyString());
+    }
+
+    @Test
+    public void testRemoteInvalidationOfUncachedUriIsIgnored() throws Exception {
+        final HttpCacheInvalidationBus bus = mock(HttpCacheInvalidationBus.class);
+        impl = new CacheInvalidator(cacheKeyGenerator, mockStorage, bus);
+
+        impl.flushRemotelyInvalidatedEntries(Collections.singletonList("http://foo.example.com:80/"));
+
+        verify(mockStorage).getEntry("http://foo.example.com:80/");
+        verifyNoMoreInteractions(mockStorage);
+    }
 
     // Expectations
     private void cacheEntryHasVariantMap(final Map<String,String> variantMap) {
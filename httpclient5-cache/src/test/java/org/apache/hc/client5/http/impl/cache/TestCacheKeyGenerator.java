@@ -30,6 +30,12 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.methods.HttpGet;
 import org.apache.hc.core5.http.Header;
@@ -421,4 +427,123 @@ public class TestCacheKeyGenerator {
         final HttpRequest req2 = new BasicHttpRequest("GET", "/%7Esmith%2Fhome%20folder.html", HttpVersion.HTTP_1_1);
         Assert.assertEquals(extractor.getURI(host, req1), extractor.getURI(host, req2));
     }
+
+    private static final String[] SCHEMES = { "http", "https", "HTTP", "Https", "ftp", "" };
+    private static final String[] HOSTS = {
+        "foo.example.com", "FOO.Example.COM", "localhost", "127.0.0.1", "256.1.1.1", "1.2.3",
+        "foo-bar.example.com", "-foo.example.com", "foo..example.com", "foo.example.com.",
+        "foo_bar.example.com", "123.example.com", "example.123", "[::1]", "user@foo.example.com",
+        "xn--bcher-kva.example", "b\u00fccher.example", "" };
+    private static final String[] PORTS = { "", ":80", ":443", ":8080", ":080", ":", ":99999", ":123456", ":x" };
+    private static final String[] SEGMENTS = {
+        "", ".", "..", "a", "B", "foo.html", "~smith", "%7Esmith", "%2F", "%20", "%zz", "a b",
+        "caf\u00e9", "a;b=c", "a:b", "@", "(x)", "*", "!", "'", "$&+,=", "[x]", "a|b", "a\\b", "\"" };
+    private static final String[] QUERY_PARTS = {
+        "a=b", "a=b&c=d", "", "q=%20", "q=%2", "q=%zz", "q=a+b", "x=/?:@", "q=a b", "q=[1]",
+        "q=caf\u00e9", "q=\"x\"", "q=<x>", "q={x}", "q=a|b", "q=a^b", "q=`" };
+    private static final String[] FRAGMENTS = { "", "", "", "#frag", "#", "#a b" };
+
+    private static String randomPathAndQuery(final Random rnd) {
+        final StringBuilder buf = new StringBuilder();
+        final int segments = rnd.nextInt(5);
+        for (int i = 0; i < segments; i++) {
+            buf.append('/').append(SEGMENTS[rnd.nextInt(SEGMENTS.length)]);
+        }
+        if (rnd.nextInt(4) == 0) {
+            buf.append('/');
+        }
+        if (rnd.nextInt(3) == 0) {
+            buf.append('?').append(QUERY_PARTS[rnd.nextInt(QUERY_PARTS.length)]);
+        }
+        buf.append(FRAGMENTS[rnd.nextInt(FRAGMENTS.length)]);
+        return buf.toString();
+    }
+
+    @Test
+    public void testCanonicalizeUriMatchesFullNormalizationForRandomUris() {
+        final Random rnd = new Random(20161019L);
+        for (int n = 0; n < 20000; n++) {
+            final String uri = SCHEMES[rnd.nextInt(SCHEMES.length)] + "://"
+                    + HOSTS[rnd.nextInt(HOSTS.length)] + PORTS[rnd.nextInt(PORTS.length)]
+                    + randomPathAndQuery(rnd);
+            Assert.assertEquals(uri, extractor.normalizeUri(uri), extractor.canonicalizeUri(uri));
+        }
+    }
+
+    @Test
+    public void testGetURIMatchesFullNormalizationForRandomRelativeRequests() {
+        final Random rnd = new Random(20161020L);
+        final String[] schemes = { "http", "https" };
+        final int[] ports = { -1, 80, 443, 8080 };
+        for (int n = 0; n < 20000; n++) {
+            final String hostname = HOSTS[rnd.nextInt(HOSTS.length)];
+            if (hostname.isEmpty()) {
+                continue;
+            }
+            final HttpHost host = new HttpHost(hostname,
+                    ports[rnd.nextInt(ports.length)], schemes[rnd.nextInt(schemes.length)]);
+            String requestUri = randomPathAndQuery(rnd);
+            if (!requestUri.startsWith("/")) {
+                requestUri = "/" + requestUri;
+            }
+            final HttpRequest req = new BasicHttpRequest("GET", requestUri);
+            Assert.assertEquals(host + requestUri,
+                    extractor.normalizeUri(host.toString() + requestUri), extractor.getURI(host, req));
+        }
+    }
+
+    @Test
+    public void testVariantKeyMatchesUrlEncoderForRandomHeaderValues() throws Exception {
+        final Random rnd = new Random(20161021L);
+        final String alphabet = "aZ09 .-*_~,;:=&+%/\"'\u00e9\u20ac\t";
+        when(mockEntry.getHeaders("Vary")).thenReturn(new Header[] {
+                new BasicHeader("Vary", "User-Agent, Accept-Encoding") });
+        for (int n = 0; n < 5000; n++) {
+            final String[] values = new String[2];
+            for (int i = 0; i < values.length; i++) {
+                final StringBuilder buf = new StringBuilder();
+                final int len = rnd.nextInt(12);
+                for (int j = 0; j < len; j++) {
+                    buf.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+                }
+                values[i] = buf.toString();
+            }
+            final HttpRequest req = new BasicHttpRequest("GET", "/");
+            req.addHeader("User-Agent", values[0]);
+            req.addHeader("Accept-Encoding", values[1]);
+
+            final List<String> names = new ArrayList<>();
+            names.add("User-Agent");
+            names.add("Accept-Encoding");
+            Collections.sort(names);
+            final StringBuilder expected = new StringBuilder("{");
+            for (final String name : names) {
+                if (expected.length() > 1) {
+                    expected.append("&");
+                }
+                expected.append(URLEncoder.encode(name, "UTF-8")).append("=")
+                    .append(URLEncoder.encode(req.getFirstHeader(name).getValue().trim(), "UTF-8"));
+            }
+            expected.append("}");
+            Assert.assertEquals(expected.toString(), extractor.getVariantKey(req, mockEntry));
+        }
+    }
+
+    @Test
+    public void testMemoIsBounded() {
+        extractor = new CacheKeyGenerator(10);
+        for (int i = 0; i < 25; i++) {
+            final String uri = "http://foo.example.com/%7E" + i;
+            Assert.assertEquals(extractor.normalizeUri(uri), extractor.canonicalizeUri(uri));
+            Assert.assertTrue(extractor.getMemoSize() <= 10);
+        }
+        Assert.assertTrue(extractor.getMemoSize() > 0);
+    }
+
+    @Test
+    public void testSimpleUrisDoNotPopulateMemo() {
+        extractor.canonicalizeUri("http://foo.example.com/bar?baz=1");
+        extractor.getURI(defaultHost, REQUEST_FULL_EPISODES);
+        Assert.assertEquals(0, extractor.getMemoSize());
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.entity.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCacheRangeEntity {
+
+    private File cacheDir;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("cachedir", "");
+        if (cacheDir.exists()) {
+            cacheDir.delete();
+        }
+        cacheDir.mkdir();
+        content = HttpTestUtils.getRandomBytes(10000);
+    }
+
+    @After
+    public void cleanUp() {
+        final File[] files = cacheDir.listFiles();
+        for (final File cacheFile : files) {
+            cacheFile.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private void assertRangesMatch(final Resource resource) throws Exception {
+        final HttpCacheEntry entry = new HttpCacheEntry(new Date(), new Date(),
+                HttpTestUtils.makeStatusLine(), HttpTestUtils.getStockHeaders(new Date()), resource);
+        final long[][] ranges = { { 0, 1 }, { 0, content.length }, { 1234, 4321 }, { content.length - 1, 1 } };
+        for (final long[] range : ranges) {
+            final CacheRangeEntity entity = new CacheRangeEntity(entry, range[0], range[1]);
+            final byte[] expected = Arrays.copyOfRange(content, (int) range[0], (int) (range[0] + range[1]));
+            assertEquals(range[1], entity.getContentLength());
+            assertArrayEquals(expected, EntityUtils.toByteArray(entity));
+            final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+            entity.writeTo(outstream);
+            assertArrayEquals(expected, outstream.toByteArray());
+        }
+    }
+
+    @Test
+    public void testHeapResourceRange() throws Exception {
+        assertRangesMatch(new HeapResourceFactory().generate("id", new ByteArrayInputStream(content), null));
+    }
+
+    @Test
+    public void testFileResourceRange() throws Exception {
+        assertRangesMatch(new FileResourceFactory(cacheDir).generate("id", new ByteArrayInputStream(content), null));
+    }
+
+    @Test
+    public void testMappedFileResourceRange() throws Exception {
+        assertRangesMatch(new MappedFileResourceFactory(cacheDir).generate("id", new ByteArrayInputStream(content), null));
+    }
+
+    @Test
+    public void testGenericResourceRange() throws Exception {
+        final Resource resource = new Resource() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public long length() {
+                return content.length;
+            }
+
+            @Override
+            public void dispose() {
+            }
+
+        };
+        assertRangesMatch(resource);
+    }
+
+}
@@ -32,6 +32,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 
@@ -40,6 +41,8 @@ import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.entity.EntityUtils;
 import org.apache.hc.core5.http.message.BasicHeader;
 import org.junit.Assert;
 import org.junit.Before;
@@ -168,4 +171,91 @@ public class TestCachedHttpResponseGenerator {
         Assert.assertNull(response.getEntity());
     }
 
+    private HttpRequestWrapper makeRangeRequest(final String range) {
+        final HttpRequestWrapper rangeRequest = HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host);
+        rangeRequest.setHeader("Range", range);
+        return rangeRequest;
+    }
+
+    @Test
+    public void testSingleByteRangeIsServedAsPartialContent() throws Exception {
+        final byte[] buf = HttpTestUtils.getRandomBytes(100);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(buf);
+
+        final HttpResponse response = impl.generateResponse(makeRangeRequest("bytes=10-19"), entry1);
+
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 10-19/100", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertEquals("10", response.getFirstHeader("Content-Length").getValue());
+        Assert.assertArrayEquals(Arrays.copyOfRange(buf, 10, 20), EntityUtils.toByteArray(response.getEntity()));
+    }
+
+    @Test
+    public void testOpenEndedByteRangeIsServedToTheEnd() throws Exception {
+        final byte[] buf = HttpTestUtils.getRandomBytes(100);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(buf);
+
+        final HttpResponse response = impl.generateResponse(makeRangeRequest("bytes=90-"), entry1);
+
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 90-99/100", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertArrayEquals(Arrays.copyOfRange(buf, 90, 100), EntityUtils.toByteArray(response.getEntity()));
+    }
+
+    @Test
+    public void testSuffixByteRangeIsServedFromTheEnd() throws Exception {
+        final byte[] buf = HttpTestUtils.getRandomBytes(100);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(buf);
+
+        final HttpResponse response = impl.generateResponse(makeRangeRequest("bytes=-5"), entry1);
+
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 95-99/100", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertArrayEquals(Arrays.copyOfRange(buf, 95, 100), EntityUtils.toByteArray(response.getEntity()));
+    }
+
+    @Test
+    public void testLastBytePositionIsClampedToEntityLength() throws Exception {
+        final byte[] buf = HttpTestUtils.getRandomBytes(100);
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(buf);
+
+        final HttpResponse response = impl.generateResponse(makeRangeRequest("bytes=50-1000"), entry1);
+
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 50-99/100", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertEquals("50", response.getFirstHeader("Content-Length").getValue());
+    }
+
+    @Test
+    public void testUnsatisfiableByteRangeYields416() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(100));
+
+        final HttpResponse response = impl.generateResponse(makeRangeRequest("bytes=100-"), entry1);
+
+        Assert.assertEquals(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes */100", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertNull(response.getEntity());
+    }
+
+    @Test
+    public void testMultipleOrMalformedRangesAreServedAsFullEntity() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry(HttpTestUtils.getRandomBytes(100));
+
+        for (final String range : new String[] { "bytes=0-1,5-6", "bytes=5-1", "bytes=a-b", "items=0-1", "bytes=7" }) {
+            final HttpResponse response = impl.generateResponse(makeRangeRequest(range), entry1);
+            Assert.assertEquals(range, HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            Assert.assertNull(range, response.getFirstHeader("Content-Range"));
+        }
+    }
+
+    @Test
+    public void testRangeIsIgnoredForHEADRequest() throws Exception {
+        final HttpRequestWrapper headRequest = HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultHEADRequest(), host);
+        headRequest.setHeader("Range", "bytes=0-1");
+        final HttpResponse response = impl.generateResponse(headRequest, entry);
+
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertNull(response.getEntity());
+    }
+
 }
@@ -38,14 +38,21 @@ import static org.easymock.classextension.EasyMock.replay;
 import static org.easymock.classextension.EasyMock.verify;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.cache.CacheResponseStatus;
+import org.apache.hc.client5.http.cache.HttpCacheContext;
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.impl.sync.ClientExecChain;
 import org.apache.hc.client5.http.methods.CloseableHttpResponse;
@@ -55,6 +62,7 @@ import org.apache.hc.client5.http.methods.HttpRequestWrapper;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.HeaderElements;
+import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
@@ -390,6 +398,292 @@ public class TestCachingExec extends TestCachingExecChain {
         assertTrue(HttpTestUtils.semanticallyTransparent(resp1, resp2));
     }
 
+    /**
+     * Collapser that signals when a follower starts waiting for the leader.
+     */
+    static class SignallingRequestCollapser extends RequestCollapser {
+
+        final CountDownLatch waiting = new CountDownLatch(1);
+
+        @Override
+        Outcome await(final String key, final long timeout) throws InterruptedException {
+            waiting.countDown();
+            return super.await(key, timeout);
+        }
+
+    }
+
+    /**
+     * Executes a request on a separate thread and reads the response body.
+     */
+    class RequestThread extends Thread {
+
+        final HttpCacheContext requestContext = HttpCacheContext.create();
+        volatile CloseableHttpResponse response;
+        volatile byte[] body;
+
+        @Override
+        public void run() {
+            requestContext.setTargetHost(host);
+            try {
+                response = impl.execute(route,
+                        HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), requestContext, null);
+                final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+                response.getEntity().writeTo(outstream);
+                body = outstream.toByteArray();
+            } catch (final Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+    }
+
+    @Test
+    public void testConcurrentCacheMissesAreCollapsed() throws Exception {
+        final CountDownLatch backendEntered = new CountDownLatch(1);
+        final CountDownLatch backendReleased = new CountDownLatch(1);
+        final AtomicInteger executions = new AtomicInteger();
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                executions.incrementAndGet();
+                backendEntered.countDown();
+                try {
+                    backendReleased.await(5, TimeUnit.SECONDS);
+                } catch (final InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+                final HttpResponse response = HttpTestUtils.make200Response();
+                response.setHeader("Cache-Control", "max-age=3600");
+                return Proxies.enhanceResponse(response);
+            }
+
+        };
+        final CacheConfig collapsingConfig = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .build();
+        final SignallingRequestCollapser collapser = new SignallingRequestCollapser();
+        impl = new CachingExec(backend, new BasicHttpCache(collapsingConfig), collapsingConfig, null, collapser);
+
+        final Thread leader = new RequestThread();
+        leader.start();
+        Assert.assertTrue(backendEntered.await(5, TimeUnit.SECONDS));
+
+        final RequestThread follower = new RequestThread();
+        follower.start();
+        Assert.assertTrue(collapser.waiting.await(5, TimeUnit.SECONDS));
+        backendReleased.countDown();
+        leader.join();
+        follower.join();
+
+        Assert.assertEquals(1, executions.get());
+        Assert.assertEquals(HttpStatus.SC_OK, follower.response.getStatusLine().getStatusCode());
+        Assert.assertEquals(CacheResponseStatus.CACHE_HIT, follower.requestContext.getCacheResponseStatus());
+    }
+
+    private ClientExecChain streamingBackend(final AtomicInteger executions, final byte[] body) {
+        return new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                executions.incrementAndGet();
+                final HttpResponse response = HttpTestUtils.make200Response();
+                response.setHeader("Cache-Control", "max-age=3600");
+                response.setHeader("Content-Length", Integer.toString(body.length));
+                response.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), body.length));
+                return Proxies.enhanceResponse(response);
+            }
+
+        };
+    }
+
+    @Test
+    public void testCollapsedRequestWaitsUntilStreamedResponseIsCached() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final byte[] body = HttpTestUtils.getRandomBytes(128);
+        final CacheConfig collapsingConfig = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .setStreamingCachingEnabled(true)
+                .build();
+        final SignallingRequestCollapser collapser = new SignallingRequestCollapser();
+        impl = new CachingExec(streamingBackend(executions, body),
+                new BasicHttpCache(collapsingConfig), collapsingConfig, null, collapser);
+
+        final CloseableHttpResponse leaderResponse = impl.execute(route,
+                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), context, null);
+
+        final RequestThread follower = new RequestThread();
+        follower.start();
+        Assert.assertTrue(collapser.waiting.await(5, TimeUnit.SECONDS));
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        leaderResponse.getEntity().writeTo(outstream);
+        leaderResponse.close();
+        follower.join();
+
+        Assert.assertArrayEquals(body, outstream.toByteArray());
+        Assert.assertEquals(1, executions.get());
+        Assert.assertEquals(CacheResponseStatus.CACHE_HIT, follower.requestContext.getCacheResponseStatus());
+        Assert.assertArrayEquals(body, follower.body);
+    }
+
+    @Test
+    public void testCollapsedRequestTakesOverAbandonedStreamedResponse() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final byte[] body = HttpTestUtils.getRandomBytes(128);
+        final CacheConfig collapsingConfig = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .setStreamingCachingEnabled(true)
+                .build();
+        final SignallingRequestCollapser collapser = new SignallingRequestCollapser();
+        impl = new CachingExec(streamingBackend(executions, body),
+                new BasicHttpCache(collapsingConfig), collapsingConfig, null, collapser);
+
+        final CloseableHttpResponse leaderResponse = impl.execute(route,
+                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), context, null);
+
+        final RequestThread follower = new RequestThread();
+        follower.start();
+        Assert.assertTrue(collapser.waiting.await(5, TimeUnit.SECONDS));
+        leaderResponse.close();
+        follower.join();
+
+        Assert.assertEquals(2, executions.get());
+        Assert.assertEquals(CacheResponseStatus.CACHE_MISS, follower.requestContext.getCacheResponseStatus());
+        Assert.assertArrayEquals(body, follower.body);
+        Assert.assertEquals(0, collapser.getInflightCount());
+    }
+
+    @Test
+    public void testCollapsedRequestGoesToOriginAfterTimeout() throws Exception {
+        final CountDownLatch backendEntered = new CountDownLatch(1);
+        final CountDownLatch backendReleased = new CountDownLatch(1);
+        final AtomicInteger executions = new AtomicInteger();
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                if (executions.incrementAndGet() == 1) {
+                    backendEntered.countDown();
+                    try {
+                        backendReleased.await(5, TimeUnit.SECONDS);
+                    } catch (final InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                return Proxies.enhanceResponse(HttpTestUtils.make200Response());
+            }
+
+        };
+        final CacheConfig collapsingConfig = CacheConfig.custom()
+                .setRequestCollapsingEnabled(true)
+                .setRequestCollapsingTimeout(10)
+                .build();
+        impl = new CachingExec(backend, new BasicHttpCache(collapsingConfig), collapsingConfig);
+
+        final HttpClientContext leaderContext = HttpClientContext.create();
+        leaderContext.setTargetHost(host);
+        final Thread leader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    impl.execute(route, HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host),
+                            leaderContext, null).close();
+                } catch (final Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+        });
+        leader.start();
+        Assert.assertTrue(backendEntered.await(5, TimeUnit.SECONDS));
+
+        final CloseableHttpResponse response = impl.execute(route,
+                HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), context, null);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(2, executions.get());
+        backendReleased.countDown();
+        leader.join();
+    }
+
+    @Test
+    public void testHotEntryIsRefreshedAheadOfExpiry() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        final AtomicInteger conditionalExecutions = new AtomicInteger();
+        final ClientExecChain backend = new ClientExecChain() {
+
+            @Override
+            public CloseableHttpResponse execute(
+                    final HttpRoute route,
+                    final HttpRequestWrapper request,
+                    final HttpClientContext clientContext,
+                    final HttpExecutionAware execAware) throws IOException, HttpException {
+                executions.incrementAndGet();
+                if (request.containsHeader("If-None-Match")) {
+                    conditionalExecutions.incrementAndGet();
+                }
+                final HttpResponse response = HttpTestUtils.make200Response();
+                // the origin response is 90 seconds old with a lifetime of 100 seconds
+                response.setHeader("Date", DateUtils.formatDate(new Date(System.currentTimeMillis() - 90 * 1000L)));
+                response.setHeader("Cache-Control", "max-age=100");
+                response.setHeader("ETag", "\"etag\"");
+                return Proxies.enhanceResponse(response);
+            }
+
+        };
+        final CacheConfig refreshConfig = CacheConfig.custom()
+                .setRefreshAheadEnabled(true)
+                .setRefreshAheadMinHitRate(2.0f)
+                .build();
+        final ImmediateSchedulingStrategy schedulingStrategy = new ImmediateSchedulingStrategy(refreshConfig);
+        final AsynchronousValidator validator = new AsynchronousValidator(schedulingStrategy);
+        // Freeze the clock so that hit rates do not decay between the hits
+        final Date fixedNow = new Date();
+        impl = new CachingExec(backend, new BasicHttpCache(refreshConfig), refreshConfig, validator) {
+
+            @Override
+            Date getCurrentDate() {
+                return fixedNow;
+            }
+
+        };
+
+        for (int i = 0; i < 3; i++) {
+            final HttpCacheContext hitContext = HttpCacheContext.create();
+            hitContext.setTargetHost(host);
+            impl.execute(route, HttpRequestWrapper.wrap(HttpTestUtils.makeDefaultRequest(), host), hitContext, null).close();
+        }
+        schedulingStrategy.close();
+        schedulingStrategy.awaitTermination(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, impl.getRefreshAheadCount());
+        Assert.assertEquals(2, executions.get());
+        Assert.assertEquals(1, conditionalExecutions.get());
+    }
+
+    @Test
+    public void testRefreshAheadIsDisabledWithoutValidator() throws Exception {
+        final CacheConfig refreshConfig = CacheConfig.custom()
+                .setRefreshAheadEnabled(true)
+                .build();
+        impl = new CachingExec(mockBackend, new BasicHttpCache(refreshConfig), refreshConfig);
+        Assert.assertEquals(0, impl.getRefreshAheadCount());
+        Assert.assertEquals(0, impl.getRefreshAheadSavedMisses());
+    }
+
     @Test
     public void testCallBackendMakesBackEndRequestAndHandlesResponse() throws Exception {
         mockImplMethods(GET_CURRENT_DATE, HANDLE_BACKEND_RESPONSE);
@@ -0,0 +1,285 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hc.client5.http.cache.Resource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCachingTeeInputStream {
+
+    private byte[] completed;
+    private CachingTeeInputStream.Callback callback;
+
+    @Before
+    public void setUp() {
+        completed = null;
+        callback = new CachingTeeInputStream.Callback() {
+
+            @Override
+            public void completed(final Resource resource) {
+                try {
+                    completed = readFully(resource.getInputStream());
+                } catch (final IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+        };
+    }
+
+    private static ResourceSink newSink() throws IOException {
+        return ResourceSink.open(new HeapResourceFactory(), "id");
+    }
+
+    private static byte[] readFully(final InputStream instream) throws IOException {
+        final byte[] tmp = new byte[3];
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        int l;
+        while ((l = instream.read(tmp)) != -1) {
+            outstream.write(tmp, 0, l);
+        }
+        return outstream.toByteArray();
+    }
+
+    @Test
+    public void testContentIsHandedOverAtEndOfStream() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+
+        Assert.assertArrayEquals(body, readFully(impl));
+        Assert.assertTrue(impl.isCompleted());
+        Assert.assertFalse(impl.isDiscarded());
+        Assert.assertArrayEquals(body, completed);
+    }
+
+    @Test
+    public void testContentIsNotHandedOverBeforeEndOfStream() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+
+        Assert.assertEquals(5, impl.read(new byte[5]));
+        Assert.assertNull(completed);
+        Assert.assertFalse(impl.isCompleted());
+    }
+
+    @Test
+    public void testSingleByteReadsAreBuffered() throws Exception {
+        final byte[] body = new byte[] { 1, 2, 3 };
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+
+        while (impl.read() != -1) {
+        }
+        Assert.assertArrayEquals(body, completed);
+    }
+
+    @Test
+    public void testContentExceedingLimitIsDiscardedButStillStreamed() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(11);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+
+        Assert.assertArrayEquals(body, readFully(impl));
+        Assert.assertNull(completed);
+    }
+
+    @Test
+    public void testContentIsDiscardedIfClosedBeforeEndOfStream() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10);
+        final ConsumableInputStream instream = new ConsumableInputStream(new ByteArrayInputStream(body));
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                instream, newSink(), 10, callback);
+
+        impl.read(new byte[5]);
+        impl.close();
+
+        Assert.assertTrue(instream.wasClosed());
+        Assert.assertTrue(impl.isDiscarded());
+        Assert.assertNull(completed);
+    }
+
+    @Test
+    public void testContentIsDiscardedOnReadFailure() throws Exception {
+        final InputStream instream = new InputStream() {
+
+            private int count;
+
+            @Override
+            public int read() throws IOException {
+                if (count++ < 2) {
+                    return 1;
+                }
+                throw new IOException("Oppsie");
+            }
+
+        };
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                instream, newSink(), 10, callback);
+        impl.read();
+        impl.read();
+        try {
+            impl.read();
+            Assert.fail("IOException expected");
+        } catch (final IOException expected) {
+        }
+        Assert.assertTrue(impl.isDiscarded());
+        Assert.assertNull(completed);
+    }
+
+    @Test
+    public void testSkipDiscardsContent() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+
+        impl.skip(2);
+        readFully(impl);
+        Assert.assertNull(completed);
+    }
+
+    static class RecordingObserver implements CachingTeeInputStream.Observer {
+
+        final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void completed() {
+            events.append("completed;");
+        }
+
+        @Override
+        public void abandoned() {
+            events.append("abandoned;");
+        }
+
+    }
+
+    @Test
+    public void testObserverIsToldAfterContentWasHandedOver() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+        final RecordingObserver observer = new RecordingObserver();
+        impl.setObserver(observer);
+
+        impl.read(new byte[5]);
+        Assert.assertEquals("", observer.events.toString());
+        readFully(impl);
+        impl.close();
+        Assert.assertNotNull(completed);
+        Assert.assertEquals("completed;", observer.events.toString());
+    }
+
+    @Test
+    public void testObserverIsToldWhenContentExceedsLimit() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(11);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+        final RecordingObserver observer = new RecordingObserver();
+        impl.setObserver(observer);
+
+        impl.read(new byte[11]);
+        Assert.assertEquals("completed;", observer.events.toString());
+    }
+
+    @Test
+    public void testObserverIsToldWhenStreamIsAbandoned() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10);
+        final CachingTeeInputStream impl = new CachingTeeInputStream(
+                new ByteArrayInputStream(body), newSink(), 10, callback);
+        impl.read(new byte[5]);
+        impl.abort();
+        impl.close();
+
+        final RecordingObserver observer = new RecordingObserver();
+        impl.setObserver(observer);
+        Assert.assertEquals("abandoned;", observer.events.toString());
+    }
+
+    private static File newCacheDir() throws IOException {
+        final File cacheDir = File.createTempFile("cachedir", "");
+        cacheDir.delete();
+        cacheDir.mkdir();
+        return cacheDir;
+    }
+
+    private static void deleteCacheDir(final File cacheDir) {
+        final File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (final File file: files) {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void testContentIsWrittenToFileWhileBeingRead() throws Exception {
+        final File cacheDir = newCacheDir();
+        try {
+            final byte[] body = HttpTestUtils.getRandomBytes(10);
+            final CachingTeeInputStream impl = new CachingTeeInputStream(new ByteArrayInputStream(body),
+                    ResourceSink.open(new FileResourceFactory(cacheDir), "id"), 10, callback);
+
+            Assert.assertEquals(5, impl.read(new byte[5]));
+            final File[] files = cacheDir.listFiles();
+            Assert.assertEquals(1, files.length);
+            Assert.assertEquals(5, files[0].length());
+
+            readFully(impl);
+            Assert.assertArrayEquals(body, completed);
+        } finally {
+            deleteCacheDir(cacheDir);
+        }
+    }
+
+    @Test
+    public void testDiscardedContentFileIsDeleted() throws Exception {
+        final File cacheDir = newCacheDir();
+        try {
+            final byte[] body = HttpTestUtils.getRandomBytes(11);
+            final CachingTeeInputStream impl = new CachingTeeInputStream(new ByteArrayInputStream(body),
+                    ResourceSink.open(new FileResourceFactory(cacheDir), "id"), 10, callback);
+
+            Assert.assertArrayEquals(body, readFully(impl));
+            Assert.assertNull(completed);
+            Assert.assertEquals(0, cacheDir.listFiles().length);
+        } finally {
+            deleteCacheDir(cacheDir);
+        }
+    }
+
+}
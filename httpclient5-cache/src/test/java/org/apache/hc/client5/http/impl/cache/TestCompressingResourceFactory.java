@@ -0,0 +1,232 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import org.apache.hc.client5.http.cache.InputLimit;
+import org.apache.hc.client5.http.cache.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCompressingResourceFactory {
+
+    private CompressingResourceFactory impl;
+
+    @Before
+    public void setUp() {
+        impl = new CompressingResourceFactory(new HeapResourceFactory());
+    }
+
+    private static byte[] makeText(final int len) {
+        final StringBuilder buf = new StringBuilder();
+        int i = 0;
+        while (buf.length() < len) {
+            buf.append("{\"id\":").append(i++).append(",\"name\":\"cached entry\"},");
+        }
+        return buf.substring(0, len).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readAll(final Resource resource) throws Exception {
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        try (InputStream instream = resource.getInputStream()) {
+            IOUtils.copy(instream, outstream);
+        }
+        return outstream.toByteArray();
+    }
+
+    private static long storedLength(final Resource resource) {
+        return ((CompressedResource) resource).getResource().length();
+    }
+
+    @Test
+    public void testLargeBodyIsStoredGzipped() throws Exception {
+        final byte[] body = makeText(20000);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+
+        assertTrue(resource instanceof CompressedResource);
+        assertTrue(((CompressedResource) resource).isGzip());
+        assertEquals(body.length, resource.length());
+        assertTrue(storedLength(resource) < body.length / 5);
+        assertArrayEquals(body, readAll(resource));
+    }
+
+    @Test
+    public void testMediumBodyIsStoredDeflated() throws Exception {
+        final byte[] body = makeText(1000);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+
+        assertTrue(resource instanceof CompressedResource);
+        assertFalse(((CompressedResource) resource).isGzip());
+        assertEquals(body.length, resource.length());
+        assertArrayEquals(body, readAll(resource));
+    }
+
+    @Test
+    public void testDeflatedStreamReleasesInflaterOnClose() throws Exception {
+        final byte[] body = makeText(1000);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+        assertFalse(((CompressedResource) resource).isGzip());
+
+        final InputStream instream = resource.getInputStream();
+        assertTrue(instream instanceof CompressedResource.RawInflaterInputStream);
+        final Inflater inflater = ((CompressedResource.RawInflaterInputStream) instream).getInflater();
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        IOUtils.copy(instream, outstream);
+        instream.close();
+        instream.close();
+
+        assertArrayEquals(body, outstream.toByteArray());
+        try {
+            inflater.getBytesRead();
+            fail("NullPointerException expected for an ended inflater");
+        } catch (final NullPointerException expected) {
+        }
+    }
+
+    @Test
+    public void testSmallBodyIsStoredAsIs() throws Exception {
+        final byte[] body = makeText(100);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+
+        assertFalse(resource instanceof CompressedResource);
+        assertArrayEquals(body, readAll(resource));
+    }
+
+    @Test
+    public void testGzipEncodedBodyIsPassedThroughUntouched() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (GZIPOutputStream outstream = new GZIPOutputStream(buffer)) {
+            outstream.write(makeText(20000));
+        }
+        final byte[] body = buffer.toByteArray();
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+
+        assertFalse(resource instanceof CompressedResource);
+        assertArrayEquals(body, readAll(resource));
+    }
+
+    @Test
+    public void testIncompressibleBodyIsStoredAsIs() throws Exception {
+        final byte[] body = HttpTestUtils.getRandomBytes(10000);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+
+        assertFalse(resource instanceof CompressedResource);
+        assertArrayEquals(body, readAll(resource));
+    }
+
+    @Test
+    public void testInputLimitIsEnforcedOnUncompressedBytes() throws Exception {
+        final byte[] body = makeText(20000);
+        final InputLimit limit = new InputLimit(5000);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), limit);
+
+        assertTrue(limit.isReached());
+        assertTrue(resource.length() < body.length);
+    }
+
+    @Test
+    public void testCopyKeepsContentCompressed() throws Exception {
+        final byte[] body = makeText(20000);
+        final Resource resource = impl.generate("id", new ByteArrayInputStream(body), null);
+        final Resource copy = impl.copy("id", resource);
+
+        assertTrue(copy instanceof CompressedResource);
+        assertEquals(storedLength(resource), storedLength(copy));
+        assertArrayEquals(body, readAll(copy));
+    }
+
+    @Test
+    public void testDisposeDisposesStoredResource() throws Exception {
+        final Counter disposed = new Counter();
+        final Resource stored = new HeapResource(new byte[] {}) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void dispose() {
+                disposed.incr();
+            }
+
+        };
+        new CompressedResource(stored, 0, true).dispose();
+        assertEquals(1, disposed.getCount());
+    }
+
+    @Test
+    public void testCompressionRatio() throws Exception {
+        assertEquals(1.0, impl.getCompressionRatio(), 0.0);
+
+        final byte[] body1 = makeText(20000);
+        final byte[] body2 = HttpTestUtils.getRandomBytes(1000);
+        final Resource resource1 = impl.generate("id", new ByteArrayInputStream(body1), null);
+        final Resource resource2 = impl.generate("id", new ByteArrayInputStream(body2), null);
+
+        assertEquals(body1.length + body2.length, impl.getOriginalBytes());
+        assertEquals(storedLength(resource1) + resource2.length(), impl.getStoredBytes());
+        assertEquals(1, impl.getCompressedCount());
+        assertEquals((double) impl.getOriginalBytes() / impl.getStoredBytes(), impl.getCompressionRatio(), 0.0001);
+        assertTrue(impl.getCompressionRatio() > 2.0);
+    }
+
+    @Test
+    public void testCompressedFormatsAreDetected() {
+        assertTrue(CompressingResourceFactory.isCompressed(new byte[] { 0x1f, (byte) 0x8b, 8 }, 3));
+        assertTrue(CompressingResourceFactory.isCompressed(new byte[] { (byte) 0x89, 'P', 'N', 'G' }, 4));
+        assertTrue(CompressingResourceFactory.isCompressed(new byte[] { 'P', 'K', 3, 4 }, 4));
+        assertFalse(CompressingResourceFactory.isCompressed("<html>".getBytes(StandardCharsets.US_ASCII), 6));
+        assertFalse(CompressingResourceFactory.isCompressed(new byte[] { 0x1f }, 1));
+    }
+
+    @Test
+    public void testStoredResourceIsCreatedByUnderlyingFactory() throws Exception {
+        final Resource stored = new HeapResource(new byte[] {});
+        final CompressingResourceFactory factory = new CompressingResourceFactory(new HeapResourceFactory() {
+
+            @Override
+            Resource createResource(final byte[] buf) {
+                return stored;
+            }
+
+        });
+        final Resource resource = factory.generate("id", new ByteArrayInputStream(makeText(20000)), null);
+        assertSame(stored, ((CompressedResource) resource).getResource());
+    }
+
+}
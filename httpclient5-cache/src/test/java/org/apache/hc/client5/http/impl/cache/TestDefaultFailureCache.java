@@ -26,6 +26,8 @@
  */
 package org.apache.hc.client5.http.impl.cache;
 
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -66,4 +68,78 @@ public class TestDefaultFailureCache
         final int errorCount = failureCache.getErrorCount("a");
         Assert.assertEquals(0, errorCount);
     }
+
+    @Test
+    public void testLeastRecentlyFailedEntryIsEvicted() {
+        failureCache = new DefaultFailureCache(3);
+        failureCache.increaseErrorCount("a");
+        failureCache.increaseErrorCount("b");
+        failureCache.increaseErrorCount("c");
+        failureCache.increaseErrorCount("a");
+        failureCache.increaseErrorCount("d");
+
+        Assert.assertEquals(2, failureCache.getErrorCount("a"));
+        Assert.assertEquals(0, failureCache.getErrorCount("b"));
+        Assert.assertEquals(1, failureCache.getErrorCount("c"));
+        Assert.assertEquals(1, failureCache.getErrorCount("d"));
+    }
+
+    @Test
+    public void testManyIdentifiersStayWithinMaxSize() {
+        failureCache = new DefaultFailureCache(100);
+        for (int i = 0; i < 10000; i++) {
+            failureCache.increaseErrorCount("id" + i);
+        }
+        int present = 0;
+        for (int i = 0; i < 10000; i++) {
+            present += failureCache.getErrorCount("id" + i);
+        }
+        Assert.assertEquals(100, present);
+        Assert.assertEquals(1, failureCache.getErrorCount("id9999"));
+        Assert.assertEquals(0, failureCache.getErrorCount("id9899"));
+    }
+
+    @Test
+    public void testEvictionQueueIsBoundedForRepeatedFailures() {
+        final DefaultFailureCache impl = new DefaultFailureCache(10);
+        for (int i = 0; i < 10000; i++) {
+            impl.increaseErrorCount(IDENTIFIER);
+            if (i % 3 == 0) {
+                impl.resetErrorCount(IDENTIFIER);
+            }
+        }
+        Assert.assertTrue(impl.getEvictionQueueSize() <= 2 * 16 + 1);
+    }
+
+    @Test
+    public void testErrorCountDecaysOverTime() throws Exception {
+        failureCache = new DefaultFailureCache(10, 100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 8; i++) {
+            failureCache.increaseErrorCount(IDENTIFIER);
+        }
+        Assert.assertEquals(8, failureCache.getErrorCount(IDENTIFIER));
+        Thread.sleep(250);
+        final int decayed = failureCache.getErrorCount(IDENTIFIER);
+        Assert.assertTrue(decayed > 0 && decayed <= 2);
+
+        failureCache.increaseErrorCount(IDENTIFIER);
+        Assert.assertEquals(decayed + 1, failureCache.getErrorCount(IDENTIFIER));
+    }
+
+    @Test
+    public void testRecoveredIdentifierExitsBackoff() throws Exception {
+        failureCache = new DefaultFailureCache(10, 5, TimeUnit.MILLISECONDS);
+        failureCache.increaseErrorCount(IDENTIFIER);
+        failureCache.increaseErrorCount(IDENTIFIER);
+        Thread.sleep(50);
+        Assert.assertEquals(0, failureCache.getErrorCount(IDENTIFIER));
+    }
+
+    @Test
+    public void testDecayCanBeDisabled() throws Exception {
+        failureCache = new DefaultFailureCache(10, 0, TimeUnit.MILLISECONDS);
+        failureCache.increaseErrorCount(IDENTIFIER);
+        Thread.sleep(10);
+        Assert.assertEquals(1, failureCache.getErrorCount(IDENTIFIER));
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestHitRateTracker {
+
+    @Test
+    public void testHitsAccumulatePerKey() {
+        final HitRateTracker impl = new HitRateTracker();
+        assertEquals(1d, impl.hit("a", 1000L), 0.0001);
+        assertEquals(2d, impl.hit("a", 1000L), 0.0001);
+        assertEquals(1d, impl.hit("b", 1000L), 0.0001);
+        assertEquals(2d, impl.getRate("a", 1000L), 0.0001);
+        assertEquals(0d, impl.getRate("c", 1000L), 0.0001);
+    }
+
+    @Test
+    public void testRateDecaysWithOneMinuteTimeConstant() {
+        final HitRateTracker impl = new HitRateTracker();
+        impl.hit("a", 1000L);
+        assertEquals(Math.exp(-1), impl.getRate("a", 61000L), 0.0001);
+        assertEquals(1d + Math.exp(-1), impl.hit("a", 61000L), 0.0001);
+    }
+
+    @Test
+    public void testSteadyTrafficApproximatesHitsPerMinute() {
+        final HitRateTracker impl = new HitRateTracker();
+        double rate = 0;
+        for (long now = 1000L; now < 1000L + 10 * 60000L; now += 2000L) {
+            rate = impl.hit("a", now);
+        }
+        assertTrue(rate > 25 && rate < 35);
+    }
+
+    @Test
+    public void testTrackedKeysAreBounded() {
+        final HitRateTracker impl = new HitRateTracker(10);
+        for (int i = 0; i < 25; i++) {
+            impl.hit("key" + i, 1000L);
+        }
+        assertTrue(impl.size() <= 10);
+    }
+
+}
@@ -27,9 +27,11 @@
 package org.apache.hc.client5.http.impl.cache;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.util.concurrent.ExecutorService;
 
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -52,4 +54,41 @@ public class TestImmediateSchedulingStrategy {
 
         schedulingStrategy.schedule(mockRevalidationRequest);
     }
+
+    @Test
+    public void testRevalidationQueueIsBounded() {
+        final ImmediateSchedulingStrategy.RevalidationQueue queue = new ImmediateSchedulingStrategy.RevalidationQueue(2);
+
+        Assert.assertTrue(queue.offer(mock(AsynchronousValidationRequest.class)));
+        Assert.assertTrue(queue.offer(mock(AsynchronousValidationRequest.class)));
+        Assert.assertEquals(0, queue.remainingCapacity());
+        Assert.assertFalse(queue.offer(mock(AsynchronousValidationRequest.class)));
+        Assert.assertEquals(2, queue.size());
+        queue.poll();
+        Assert.assertEquals(1, queue.remainingCapacity());
+    }
+
+    @Test
+    public void testRevalidationQueueOrdersByPriorityAndAcceptsOtherTasks() {
+        final ImmediateSchedulingStrategy.RevalidationQueue queue = new ImmediateSchedulingStrategy.RevalidationQueue(3);
+        final Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+            }
+
+        };
+        final AsynchronousValidationRequest hot = mock(AsynchronousValidationRequest.class);
+        final AsynchronousValidationRequest cold = mock(AsynchronousValidationRequest.class);
+        when(hot.compareTo(cold)).thenReturn(-1);
+        when(cold.compareTo(hot)).thenReturn(1);
+
+        Assert.assertTrue(queue.offer(task));
+        Assert.assertTrue(queue.offer(cold));
+        Assert.assertTrue(queue.offer(hot));
+
+        Assert.assertSame(hot, queue.poll());
+        Assert.assertSame(cold, queue.poll());
+        Assert.assertSame(task, queue.poll());
+    }
 }
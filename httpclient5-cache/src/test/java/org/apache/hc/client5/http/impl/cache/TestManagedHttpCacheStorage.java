@@ -0,0 +1,254 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.methods.CloseableHttpResponse;
+import org.apache.hc.client5.http.methods.HttpGet;
+import org.apache.hc.client5.http.methods.HttpRequestWrapper;
+import org.apache.hc.core5.http.HttpHost;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestManagedHttpCacheStorage {
+
+    private ManagedHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        impl = new ManagedHttpCacheStorage(CacheConfig.custom().setMaxCacheEntries(2).build());
+    }
+
+    private static HttpCacheEntry makeEntry(final Resource resource) {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        return new HttpCacheEntry(entry.getRequestDate(), entry.getResponseDate(),
+                entry.getStatusLine(), entry.getAllHeaders(), resource);
+    }
+
+    @Test
+    public void testRemovedEntryResourceIsDisposed() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        assertEquals(1, impl.getResourceCount());
+
+        impl.removeEntry("foo");
+        assertTrue(resource.disposed);
+        assertEquals(0, impl.getResourceCount());
+    }
+
+    @Test
+    public void testStoredEntryHoldsManagedResource() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        final HttpCacheEntry entry = impl.getEntry("foo");
+
+        assertTrue(entry.getResource() instanceof ResourceReference);
+        assertSame(resource, ResourceReference.unwrap(entry.getResource()));
+    }
+
+    private static CloseableHttpResponse generateResponse(final HttpCacheEntry entry) {
+        return new CachedHttpResponseGenerator().generateResponse(
+                HttpRequestWrapper.wrap(new HttpGet("/foo"), new HttpHost("foo.example.com")), entry);
+    }
+
+    @Test
+    public void testResourceOfEntryInUseIsDisposedWhenResponseIsClosed() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        final CloseableHttpResponse response = generateResponse(impl.getEntry("foo"));
+
+        impl.removeEntry("foo");
+        assertFalse(resource.disposed);
+        assertEquals(1, impl.getResourceCount());
+
+        response.close();
+        assertTrue(resource.disposed);
+        assertEquals(0, impl.getResourceCount());
+    }
+
+    @Test
+    public void testResponseClosedTwiceReleasesResourceOnce() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        final CloseableHttpResponse response1 = generateResponse(impl.getEntry("foo"));
+        final CloseableHttpResponse response2 = generateResponse(impl.getEntry("foo"));
+
+        response1.close();
+        response1.close();
+        impl.removeEntry("foo");
+        assertFalse(resource.disposed);
+
+        response2.close();
+        assertTrue(resource.disposed);
+    }
+
+    @Test
+    public void testEntryWhoseResourceWasDisposedIsNotStoredAgain() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        final HttpCacheEntry entry = impl.getEntry("foo");
+        impl.removeEntry("foo");
+        assertTrue(resource.disposed);
+
+        impl.putEntry("bar", entry);
+        assertNull(impl.getEntry("bar"));
+        assertEquals(0, impl.getResourceCount());
+    }
+
+    @Test
+    public void testReleaseAfterShutdownDoesNotDisposeTwice() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        final CloseableHttpResponse response = generateResponse(impl.getEntry("foo"));
+
+        impl.shutdown();
+        assertEquals(1, resource.disposals);
+        response.close();
+        assertEquals(1, resource.disposals);
+    }
+
+    @Test
+    public void testReplacedEntryResourceIsDisposed() throws Exception {
+        final TrackingResource resource1 = new TrackingResource();
+        final TrackingResource resource2 = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource1));
+        impl.putEntry("foo", makeEntry(resource2));
+        assertTrue(resource1.disposed);
+        assertFalse(resource2.disposed);
+        assertEquals(1, impl.getResourceCount());
+    }
+
+    @Test
+    public void testEvictedEntryResourceIsDisposed() throws Exception {
+        final TrackingResource resource1 = new TrackingResource();
+        final TrackingResource resource2 = new TrackingResource();
+        final TrackingResource resource3 = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource1));
+        impl.putEntry("bar", makeEntry(resource2));
+        impl.putEntry("baz", makeEntry(resource3));
+        assertTrue(resource1.disposed);
+        assertFalse(resource2.disposed);
+        assertFalse(resource3.disposed);
+        assertEquals(2, impl.getResourceCount());
+    }
+
+    @Test
+    public void testSharedResourceIsDisposedWithLastEntry() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        impl.putEntry("bar", makeEntry(resource));
+        assertEquals(1, impl.getResourceCount());
+
+        impl.removeEntry("foo");
+        assertFalse(resource.disposed);
+        impl.removeEntry("bar");
+        assertTrue(resource.disposed);
+        assertEquals(0, impl.getResourceCount());
+    }
+
+    @Test
+    public void testUpdateSharingResourceDoesNotDisposeIt() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                return makeEntry(existing.getResource());
+            }
+
+        });
+        assertFalse(resource.disposed);
+        assertEquals(1, impl.getResourceCount());
+
+        impl.removeEntry("foo");
+        assertTrue(resource.disposed);
+    }
+
+    @Test
+    public void testShutdownDisposesAllResources() throws Exception {
+        final TrackingResource resource1 = new TrackingResource();
+        final TrackingResource resource2 = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource1));
+        impl.putEntry("bar", makeEntry(resource2));
+        impl.shutdown();
+        assertTrue(resource1.disposed);
+        assertTrue(resource2.disposed);
+    }
+
+    @Test
+    public void testCloseDoesNotDisposeReferencedResources() throws Exception {
+        final TrackingResource resource = new TrackingResource();
+        impl.putEntry("foo", makeEntry(resource));
+        impl.close();
+        assertFalse(resource.disposed);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testStorageCannotBeUsedAfterShutdown() throws Exception {
+        impl.shutdown();
+        impl.getEntry("foo");
+    }
+
+    static class TrackingResource implements Resource {
+
+        private static final long serialVersionUID = 1L;
+
+        volatile boolean disposed;
+        volatile int disposals;
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(new byte[] {});
+        }
+
+        @Override
+        public long length() {
+            return 0;
+        }
+
+        @Override
+        public void dispose() {
+            this.disposed = true;
+            this.disposals++;
+        }
+
+    }
+
+}
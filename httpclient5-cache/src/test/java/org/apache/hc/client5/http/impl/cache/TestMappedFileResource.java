@@ -0,0 +1,210 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMappedFileResource {
+
+    private File cacheDir;
+    private byte[] content;
+    private MappedFileResourceFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("cachedir", "");
+        if (cacheDir.exists()) {
+            cacheDir.delete();
+        }
+        cacheDir.mkdir();
+        content = HttpTestUtils.getRandomBytes(20000);
+        factory = new MappedFileResourceFactory(cacheDir);
+    }
+
+    @After
+    public void cleanUp() {
+        final File[] files = cacheDir.listFiles();
+        for (final File cacheFile : files) {
+            cacheFile.delete();
+        }
+        cacheDir.delete();
+    }
+
+    private MappedFileResource generate() throws Exception {
+        final Resource resource = factory.generate("http://foo.example.com/bar",
+                new ByteArrayInputStream(content), null);
+        assertTrue(resource instanceof MappedFileResource);
+        return (MappedFileResource) resource;
+    }
+
+    private static byte[] readAll(final InputStream instream) throws Exception {
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        IOUtils.copy(instream, outstream);
+        return outstream.toByteArray();
+    }
+
+    @Test
+    public void testContentIsServedFromMapping() throws Exception {
+        final MappedFileResource resource = generate();
+        assertEquals(content.length, resource.length());
+        assertArrayEquals(content, readAll(resource.getInputStream()));
+        assertArrayEquals(content, readAll(resource.getInputStream()));
+    }
+
+    @Test
+    public void testByteBufferViewsAreIndependent() throws Exception {
+        final MappedFileResource resource = generate();
+        final ByteBuffer view1 = resource.getByteBuffer();
+        final ByteBuffer view2 = resource.getByteBuffer();
+        assertTrue(view1.isReadOnly());
+        view1.position(100);
+        assertEquals(0, view2.position());
+        assertEquals(content.length, view2.remaining());
+        assertEquals(content[100], view1.get());
+    }
+
+    @Test
+    public void testTransferToChannel() throws Exception {
+        final MappedFileResource resource = generate();
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        assertEquals(content.length, resource.transferTo(Channels.newChannel(outstream)));
+        assertArrayEquals(content, outstream.toByteArray());
+    }
+
+    @Test
+    public void testWriteToFileStreamUsesChannel() throws Exception {
+        final MappedFileResource resource = generate();
+        final File out = new File(cacheDir, "out");
+        try (FileOutputStream outstream = new FileOutputStream(out)) {
+            resource.writeTo(outstream);
+        }
+        try (FileInputStream instream = new FileInputStream(out)) {
+            assertArrayEquals(content, readAll(instream));
+        }
+    }
+
+    static class ChannelOutputStream extends ByteArrayOutputStream implements WritableByteChannel {
+
+        int channelWrites;
+
+        @Override
+        public int write(final ByteBuffer src) {
+            channelWrites++;
+            final int len = src.remaining();
+            final byte[] tmp = new byte[len];
+            src.get(tmp);
+            write(tmp, 0, len);
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+    }
+
+    @Test
+    public void testWriteToChannelStreamUsesChannel() throws Exception {
+        final MappedFileResource resource = generate();
+        final ChannelOutputStream outstream = new ChannelOutputStream();
+        resource.writeTo(outstream);
+        assertArrayEquals(content, outstream.toByteArray());
+        assertEquals(1, outstream.channelWrites);
+    }
+
+    @Test
+    public void testCacheEntityWritesMappedContent() throws Exception {
+        final MappedFileResource resource = generate();
+        final Date now = new Date();
+        final HttpCacheEntry entry = new HttpCacheEntry(now, now, HttpTestUtils.makeStatusLine(),
+                new Header[] { new BasicHeader("Content-Length", String.valueOf(content.length)) },
+                resource);
+        final CacheEntity entity = new CacheEntity(entry);
+        final ByteArrayOutputStream outstream = new ByteArrayOutputStream();
+        entity.writeTo(outstream);
+        assertArrayEquals(content, outstream.toByteArray());
+        assertEquals(content.length, entity.getContentLength());
+    }
+
+    @Test
+    public void testDisposeDeletesFile() throws Exception {
+        final MappedFileResource resource = generate();
+        final File file = resource.getFile();
+        assertTrue(file.exists());
+        resource.dispose();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testCopyIsMapped() throws Exception {
+        final MappedFileResource resource = generate();
+        final Resource copy = factory.copy("http://foo.example.com/bar", resource);
+        assertTrue(copy instanceof MappedFileResource);
+        assertArrayEquals(content, readAll(copy.getInputStream()));
+    }
+
+    @Test
+    public void testSerializedResourceIsMappedAgain() throws Exception {
+        final MappedFileResource resource = generate();
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(resource);
+        }
+        final MappedFileResource copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            copy = (MappedFileResource) in.readObject();
+        }
+        assertEquals(content.length, copy.length());
+        assertArrayEquals(content, readAll(copy.getInputStream()));
+    }
+
+}
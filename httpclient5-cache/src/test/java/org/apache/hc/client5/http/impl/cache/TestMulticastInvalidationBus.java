@@ -0,0 +1,194 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.cache.HttpCacheInvalidationListener;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMulticastInvalidationBus {
+
+    private InetAddress group;
+
+    @Before
+    public void setUp() throws Exception {
+        group = InetAddress.getByName("239.255.42.99");
+    }
+
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        final List<String> keys = Arrays.asList("http://foo.example.com:80/", "http://bar.example.com:80/é");
+        final List<byte[]> datagrams = MulticastInvalidationBus.encode(1L, keys);
+        Assert.assertEquals(1, datagrams.size());
+        final byte[] datagram = datagrams.get(0);
+        Assert.assertEquals(keys, MulticastInvalidationBus.decode(datagram, 0, datagram.length, 2L));
+    }
+
+    @Test
+    public void testOwnMessagesAreIgnored() {
+        final byte[] datagram = MulticastInvalidationBus.encode(1L, Collections.singletonList("key")).get(0);
+        Assert.assertNull(MulticastInvalidationBus.decode(datagram, 0, datagram.length, 1L));
+    }
+
+    @Test
+    public void testMalformedMessagesAreIgnored() {
+        final byte[] datagram = MulticastInvalidationBus.encode(1L, Collections.singletonList("key")).get(0);
+        Assert.assertNull(MulticastInvalidationBus.decode(datagram, 0, datagram.length - 1, 2L));
+        datagram[0] = 0;
+        Assert.assertNull(MulticastInvalidationBus.decode(datagram, 0, datagram.length, 2L));
+    }
+
+    @Test
+    public void testLargeBatchesAreSplitIntoSeveralDatagrams() {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            keys.add("http://foo.example.com:80/resource/" + i);
+        }
+        final List<byte[]> datagrams = MulticastInvalidationBus.encode(1L, keys);
+        Assert.assertTrue(datagrams.size() > 1);
+        final List<String> decoded = new ArrayList<>();
+        for (final byte[] datagram : datagrams) {
+            Assert.assertTrue(datagram.length <= MulticastInvalidationBus.MAX_DATAGRAM_SIZE);
+            decoded.addAll(MulticastInvalidationBus.decode(datagram, 0, datagram.length, 2L));
+        }
+        Assert.assertEquals(keys, decoded);
+    }
+
+    @Test
+    public void testOversizedKeyIsSentOnItsOwn() {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            buf.append('x');
+        }
+        final List<byte[]> datagrams = MulticastInvalidationBus.encode(1L,
+                Arrays.asList("a", buf.toString(), "b"));
+        Assert.assertEquals(3, datagrams.size());
+    }
+
+    @Test
+    public void testPublishedKeysAreCoalescedAndBatched() {
+        final List<byte[]> sent = new ArrayList<>();
+        final MulticastInvalidationBus bus = new MulticastInvalidationBus(group, 4446) {
+
+            @Override
+            void send(final byte[] datagram) throws IOException {
+                sent.add(datagram);
+            }
+
+        };
+        bus.publish("http://foo.example.com:80/");
+        bus.publish("http://bar.example.com:80/");
+        bus.publish("http://foo.example.com:80/");
+        bus.flush();
+        bus.flush();
+
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(3, bus.getPublishedCount());
+        Assert.assertEquals(1, bus.getMessagesSent());
+        final byte[] datagram = sent.get(0);
+        Assert.assertEquals(Arrays.asList("http://foo.example.com:80/", "http://bar.example.com:80/"),
+                MulticastInvalidationBus.decode(datagram, 0, datagram.length, 0L));
+    }
+
+    @Test
+    public void testReceivedKeysAreDeliveredToListeners() {
+        final MulticastInvalidationBus bus = new MulticastInvalidationBus(group, 4446);
+        final List<String> received = new ArrayList<>();
+        bus.subscribe(new HttpCacheInvalidationListener() {
+
+            @Override
+            public void invalidated(final Collection<String> cacheKeys) {
+                received.addAll(cacheKeys);
+            }
+
+        });
+        final byte[] datagram = MulticastInvalidationBus.encode(42L, Collections.singletonList("key")).get(0);
+        bus.received(datagram, 0, datagram.length);
+
+        Assert.assertEquals(Collections.singletonList("key"), received);
+        Assert.assertEquals(1, bus.getKeysReceived());
+    }
+
+    @Test
+    public void testInvalidationsAreExchangedOverMulticast() throws Exception {
+        final int port = 4446;
+        final MulticastInvalidationBus bus1 = new MulticastInvalidationBus(group, port, null, 0, 10L);
+        final MulticastInvalidationBus bus2 = new MulticastInvalidationBus(group, port, null, 0, 10L);
+        try {
+            try {
+                bus1.start();
+                bus2.start();
+            } catch (final IOException ex) {
+                Assume.assumeNoException(ex);
+            }
+            final CountDownLatch latch1 = new CountDownLatch(1);
+            final CountDownLatch latch2 = new CountDownLatch(1);
+            final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+            bus1.subscribe(new HttpCacheInvalidationListener() {
+
+                @Override
+                public void invalidated(final Collection<String> cacheKeys) {
+                    latch1.countDown();
+                }
+
+            });
+            bus2.subscribe(new HttpCacheInvalidationListener() {
+
+                @Override
+                public void invalidated(final Collection<String> cacheKeys) {
+                    received.addAll(cacheKeys);
+                    latch2.countDown();
+                }
+
+            });
+            bus1.publish("http://foo.example.com:80/");
+            Assume.assumeTrue("multicast not available", latch2.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Collections.singletonList("http://foo.example.com:80/"), received);
+            Assert.assertFalse(latch1.await(200, TimeUnit.MILLISECONDS));
+        } finally {
+            bus1.shutdown();
+            bus2.shutdown();
+        }
+        bus1.awaitTermination(1, TimeUnit.SECONDS);
+        bus2.awaitTermination(1, TimeUnit.SECONDS);
+        Assert.assertFalse(bus1.isRunning());
+        Assert.assertFalse(bus2.isRunning());
+    }
+
+}
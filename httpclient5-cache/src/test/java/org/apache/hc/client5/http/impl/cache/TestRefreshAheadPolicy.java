@@ -0,0 +1,139 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.utils.DateUtils;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRefreshAheadPolicy {
+
+    private Date now;
+    private RefreshAheadPolicy impl;
+
+    @Before
+    public void setUp() {
+        now = new Date();
+        impl = new RefreshAheadPolicy(new CacheValidityPolicy(), 0.8f, 3.0f, 2, 100);
+    }
+
+    private HttpCacheEntry makeEntry(final long ageSecs, final long maxAgeSecs) {
+        final Date date = new Date(now.getTime() - ageSecs * 1000L);
+        final Header[] headers = {
+                new BasicHeader("Date", DateUtils.formatDate(date)),
+                new BasicHeader("Cache-Control", "max-age=" + maxAgeSecs) };
+        return HttpTestUtils.makeCacheEntry(date, date, headers);
+    }
+
+    @Test
+    public void testColdEntryIsNotRefreshed() {
+        final HttpCacheEntry entry = makeEntry(90, 100);
+        assertFalse(impl.recordHit("key", entry, now));
+        assertFalse(impl.recordHit("key", entry, now));
+    }
+
+    @Test
+    public void testHotEntryIsRefreshedCloseToExpiry() {
+        final HttpCacheEntry entry = makeEntry(90, 100);
+        impl.recordHit("key", entry, now);
+        impl.recordHit("key", entry, now);
+        assertTrue(impl.recordHit("key", entry, now));
+    }
+
+    @Test
+    public void testHotEntryIsNotRefreshedEarlyInItsLifetime() {
+        final HttpCacheEntry entry = makeEntry(10, 100);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(impl.recordHit("key", entry, now));
+        }
+    }
+
+    @Test
+    public void testStaleEntryIsNotRefreshed() {
+        final HttpCacheEntry entry = makeEntry(110, 100);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(impl.recordHit("key", entry, now));
+        }
+    }
+
+    @Test
+    public void testHitRateDecaysOverTime() {
+        final HttpCacheEntry entry = makeEntry(90, 100);
+        impl.recordHit("key", entry, now);
+        impl.recordHit("key", entry, now);
+        final Date later = new Date(now.getTime() + 10 * 60 * 1000L);
+        assertFalse(impl.recordHit("key", makeEntry(90 - 600, 100), later));
+    }
+
+    @Test
+    public void testHitRatesAreTrackedPerKey() {
+        final HttpCacheEntry entry = makeEntry(90, 100);
+        impl.recordHit("key1", entry, now);
+        impl.recordHit("key1", entry, now);
+        assertFalse(impl.recordHit("key2", entry, now));
+        assertTrue(impl.recordHit("key1", entry, now));
+    }
+
+    @Test
+    public void testConcurrentRefreshesAreLimitedPerHost() {
+        assertTrue(impl.tryAcquire("foo.example.com"));
+        assertTrue(impl.tryAcquire("foo.example.com"));
+        assertFalse(impl.tryAcquire("foo.example.com"));
+        assertTrue(impl.tryAcquire("bar.example.com"));
+        assertEquals(2, impl.getInflightCount("foo.example.com"));
+
+        impl.release("foo.example.com");
+        assertEquals(1, impl.getInflightCount("foo.example.com"));
+        assertTrue(impl.tryAcquire("foo.example.com"));
+    }
+
+    @Test
+    public void testHitAfterFormerExpiryCountsAsSavedMiss() {
+        final HttpCacheEntry entry = makeEntry(90, 100);
+        impl.refreshIssued("key", entry, now);
+        assertEquals(1, impl.getRefreshesIssued());
+
+        impl.recordHit("key", makeEntry(0, 100), new Date(now.getTime() + 5 * 1000L));
+        assertEquals(0, impl.getMissesSaved());
+
+        impl.recordHit("key", makeEntry(0, 100), new Date(now.getTime() + 11 * 1000L));
+        assertEquals(1, impl.getMissesSaved());
+
+        impl.recordHit("key", makeEntry(0, 100), new Date(now.getTime() + 12 * 1000L));
+        assertEquals(1, impl.getMissesSaved());
+    }
+
+}
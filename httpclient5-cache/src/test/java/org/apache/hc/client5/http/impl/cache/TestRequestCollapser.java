@@ -0,0 +1,102 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRequestCollapser {
+
+    @Test
+    public void testFirstRequestLeads() throws Exception {
+        final RequestCollapser impl = new RequestCollapser();
+        Assert.assertTrue(impl.begin("key"));
+        Assert.assertFalse(impl.begin("key"));
+        Assert.assertTrue(impl.begin("other"));
+        Assert.assertEquals(2, impl.getInflightCount());
+    }
+
+    @Test
+    public void testCompletionReleasesKey() throws Exception {
+        final RequestCollapser impl = new RequestCollapser();
+        Assert.assertTrue(impl.begin("key"));
+        impl.complete("key");
+        Assert.assertEquals(0, impl.getInflightCount());
+        Assert.assertTrue(impl.begin("key"));
+    }
+
+    @Test
+    public void testAwaitReturnsImmediatelyIfNothingInFlight() throws Exception {
+        final RequestCollapser impl = new RequestCollapser();
+        Assert.assertEquals(RequestCollapser.Outcome.COMPLETED, impl.await("key", 0));
+    }
+
+    @Test
+    public void testAwaitTimesOut() throws Exception {
+        final RequestCollapser impl = new RequestCollapser();
+        impl.begin("key");
+        Assert.assertEquals(RequestCollapser.Outcome.TIMED_OUT, impl.await("key", 10));
+    }
+
+    @Test
+    public void testAwaitIsReleasedOnCompletion() throws Exception {
+        final RequestCollapser impl = new RequestCollapser();
+        impl.begin("key");
+        final CountDownLatch released = new CountDownLatch(1);
+        final Thread waiter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (impl.await("key", 5000) == RequestCollapser.Outcome.COMPLETED) {
+                        released.countDown();
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        });
+        waiter.start();
+        impl.complete("key");
+        Assert.assertTrue(released.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+
+    @Test
+    public void testAbandonReleasesKey() throws Exception {
+        final RequestCollapser impl = new RequestCollapser();
+        Assert.assertTrue(impl.begin("key"));
+        impl.abandon("key");
+        Assert.assertEquals(0, impl.getInflightCount());
+        Assert.assertTrue(impl.begin("key"));
+    }
+
+}
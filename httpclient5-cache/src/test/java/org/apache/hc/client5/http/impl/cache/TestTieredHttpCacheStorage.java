@@ -0,0 +1,147 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cache;
+
+import java.io.IOException;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTieredHttpCacheStorage {
+
+    static class CountingStorage extends SimpleHttpCacheStorage {
+
+        int gets;
+
+        @Override
+        public HttpCacheEntry getEntry(final String key) throws IOException {
+            gets++;
+            return super.getEntry(key);
+        }
+
+    }
+
+    private CountingStorage remote;
+    private long now;
+    private TieredHttpCacheStorage impl;
+
+    @Before
+    public void setUp() {
+        remote = new CountingStorage();
+        now = 0;
+        impl = new TieredHttpCacheStorage(remote, 2, 1000L) {
+
+            @Override
+            long currentTime() {
+                return now;
+            }
+
+        };
+    }
+
+    @Test
+    public void testPutWritesThrough() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry);
+        Assert.assertSame(entry, remote.map.get("foo"));
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertEquals(0, remote.gets);
+        Assert.assertEquals(1, impl.getLocalHits());
+    }
+
+    @Test
+    public void testGetReadsThrough() throws Exception {
+        final HttpCacheEntry entry = HttpTestUtils.makeCacheEntry();
+        remote.map.put("foo", entry);
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertSame(entry, impl.getEntry("foo"));
+        Assert.assertEquals(1, remote.gets);
+        Assert.assertEquals(1, impl.getRemoteHits());
+        Assert.assertEquals(1, impl.getLocalHits());
+        Assert.assertEquals(0, impl.getMisses());
+    }
+
+    @Test
+    public void testMissesAreCounted() throws Exception {
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertEquals(1, impl.getMisses());
+        Assert.assertEquals(0, impl.getLocalSize());
+    }
+
+    @Test
+    public void testRemoveInvalidatesLocalEntry() throws Exception {
+        impl.putEntry("foo", HttpTestUtils.makeCacheEntry());
+        impl.removeEntry("foo");
+        Assert.assertNull(impl.getEntry("foo"));
+        Assert.assertFalse(remote.map.containsKey("foo"));
+    }
+
+    @Test
+    public void testUpdateInvalidatesLocalEntry() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry1);
+        impl.updateEntry("foo", new HttpCacheUpdateCallback() {
+
+            @Override
+            public HttpCacheEntry update(final HttpCacheEntry existing) throws IOException {
+                Assert.assertSame(entry1, existing);
+                return entry2;
+            }
+
+        });
+        Assert.assertSame(entry2, impl.getEntry("foo"));
+        Assert.assertEquals(1, impl.getRemoteHits());
+    }
+
+    @Test
+    public void testLocalEntriesExpire() throws Exception {
+        final HttpCacheEntry entry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry entry2 = HttpTestUtils.makeCacheEntry();
+        impl.putEntry("foo", entry1);
+        // another process updates the remote tier
+        remote.map.put("foo", entry2);
+        now = 500;
+        Assert.assertSame(entry1, impl.getEntry("foo"));
+        now = 1001;
+        Assert.assertSame(entry2, impl.getEntry("foo"));
+    }
+
+    @Test
+    public void testLocalTierIsBounded() throws Exception {
+        impl.putEntry("a", HttpTestUtils.makeCacheEntry());
+        impl.putEntry("b", HttpTestUtils.makeCacheEntry());
+        impl.putEntry("c", HttpTestUtils.makeCacheEntry());
+        Assert.assertEquals(2, impl.getLocalSize());
+        Assert.assertNotNull(impl.getEntry("a"));
+        Assert.assertEquals(1, impl.getRemoteHits());
+    }
+
+}
@@ -36,6 +36,10 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheEntrySerializer;
@@ -110,6 +114,25 @@ public class TestEhcacheHttpCacheStorage extends TestCase {
         assertSame(cachedValue, resultingEntry);
     }
 
+    @Test
+    public void testCacheGetEntries() throws IOException {
+        final List<String> keys = Arrays.asList("foo", "bar");
+        final HttpCacheEntry cachedValue = HttpTestUtils.makeCacheEntry();
+        final Map<Object, Element> elements = new HashMap<>();
+        elements.put("foo", new Element("foo", new byte[]{}));
+        elements.put("bar", null);
+
+        when(mockCache.getAll(keys)).thenReturn(elements);
+        when(mockSerializer.readFrom(isA(InputStream.class)))
+                .thenReturn(cachedValue);
+
+        final Map<String, HttpCacheEntry> result = impl.getEntries(keys);
+
+        verify(mockCache).getAll(keys);
+        assertEquals(1, result.size());
+        assertSame(cachedValue, result.get("foo"));
+    }
+
     @Test
     public void testCacheRemove() {
         final String key = "foo";
@@ -34,6 +34,10 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheUpdateCallback;
@@ -193,6 +197,68 @@ public class TestMemcachedHttpCacheStorage extends TestCase {
         assertSame(cacheEntry, resultingEntry);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBulkCacheGetUsesSingleRequest() throws IOException {
+        final byte[] serialized1 = HttpTestUtils.getRandomBytes(128);
+        final byte[] serialized2 = HttpTestUtils.getRandomBytes(128);
+        final HttpCacheEntry cacheEntry1 = HttpTestUtils.makeCacheEntry();
+        final HttpCacheEntry cacheEntry2 = HttpTestUtils.makeCacheEntry();
+        final Map<String, Object> values = new HashMap<>();
+        values.put("key1", serialized1);
+        values.put("key2", serialized2);
+
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key1");
+        when(mockKeyHashingScheme.hash("bar")).thenReturn("key2");
+        when(mockKeyHashingScheme.hash("baz")).thenReturn("key3");
+        when(mockMemcachedClient.getBulk(org.mockito.Matchers.any(Collection.class))).thenReturn(values);
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry, mockMemcachedCacheEntry2);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn("foo");
+        when(mockMemcachedCacheEntry.getHttpCacheEntry()).thenReturn(cacheEntry1);
+        when(mockMemcachedCacheEntry2.getStorageKey()).thenReturn("bar");
+        when(mockMemcachedCacheEntry2.getHttpCacheEntry()).thenReturn(cacheEntry2);
+
+        final Map<String, HttpCacheEntry> result = impl.getEntries(Arrays.asList("foo", "bar", "baz"));
+
+        verify(mockMemcachedClient).getBulk(org.mockito.Matchers.any(Collection.class));
+        verify(mockMemcachedClient, times(0)).get(org.mockito.Matchers.anyString());
+        assertEquals(2, result.size());
+        final Map<String, HttpCacheEntry> expected = new HashMap<>();
+        expected.put(mockMemcachedCacheEntry.getStorageKey(), mockMemcachedCacheEntry.getHttpCacheEntry());
+        expected.put(mockMemcachedCacheEntry2.getStorageKey(), mockMemcachedCacheEntry2.getHttpCacheEntry());
+        assertEquals(expected, result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBulkCacheGetIgnoresHashCollisions() throws IOException {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("key", HttpTestUtils.getRandomBytes(128));
+
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key");
+        when(mockMemcachedClient.getBulk(org.mockito.Matchers.any(Collection.class))).thenReturn(values);
+        when(mockMemcachedCacheEntryFactory.getUnsetCacheEntry())
+            .thenReturn(mockMemcachedCacheEntry);
+        when(mockMemcachedCacheEntry.getStorageKey()).thenReturn("not-foo");
+
+        assertTrue(impl.getEntries(Arrays.asList("foo")).isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testThrowsIOExceptionIfMemcachedTimesOutOnBulkGet() {
+        when(mockKeyHashingScheme.hash("foo")).thenReturn("key");
+        when(mockMemcachedClient.getBulk(org.mockito.Matchers.any(Collection.class)))
+            .thenThrow(new OperationTimeoutException(""));
+
+        try {
+            impl.getEntries(Arrays.asList("foo"));
+            fail("should have thrown exception");
+        } catch (final IOException expected) {
+        }
+    }
+
     @Test
     public void testTreatsNoneByteArrayFromMemcachedAsCacheMiss() throws
             IOException {
@@ -0,0 +1,50 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.auth;
+
+/**
+ * {@link AuthScheme} that can create an independent copy of its current
+ * state. {@link AuthCache} implementations use copies to hand out cached
+ * schemes without resorting to serialization.
+ *
+ * @since 5.0
+ */
+public interface CopyableAuthScheme extends AuthScheme {
+
+    /**
+     * Creates a copy of this scheme. The copy may be modified without
+     * affecting the state of this scheme and vice versa, with one exception:
+     * the copy may share state that the server associates with a series of
+     * requests rather than with a single scheme instance, such as the nonce
+     * count of {@link org.apache.hc.client5.http.impl.auth.DigestScheme}.
+     * Such shared state must be safe for concurrent use.
+     *
+     * @return the copy of this scheme.
+     */
+    CopyableAuthScheme copy();
+
+}
@@ -37,9 +37,11 @@ import org.apache.hc.core5.http.protocol.HttpContext;
 public interface CookieSpecProvider {
 
     /**
-     * Creates an instance of {@link CookieSpec}.
+     * Creates an instance of {@link CookieSpec}. Implementations are
+     * encouraged to return the same thread-safe instance from every call,
+     * which allows {@code Cookie} headers formatted by it to be cached.
      *
-     * @return auth scheme.
+     * @return cookie spec.
      */
     CookieSpec create(HttpContext context);
 
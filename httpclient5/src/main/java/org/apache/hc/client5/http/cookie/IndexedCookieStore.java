@@ -0,0 +1,59 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.cookie;
+
+import java.util.List;
+
+/**
+ * {@link CookieStore} capable of looking up the cookies that may apply to
+ * a given {@link CookieOrigin} without examining its entire content, and
+ * of tracking changes to its content so that the {@code Cookie} headers
+ * formatted from it can be reused by the protocol interceptors.
+ *
+ * @since 5.0
+ */
+public interface IndexedCookieStore extends CookieStore {
+
+    /**
+     * Returns the cookies that may match the given origin. The result must
+     * include every cookie in this store that {@link CookieSpec#match(Cookie, CookieOrigin)}
+     * could accept for the origin, but may include cookies that do not match,
+     * including expired ones. Callers are still expected to apply the cookie
+     * spec and to check for expiry.
+     *
+     * @param origin the origin of the request
+     * @return candidate cookies
+     */
+    List<Cookie> getCandidates(CookieOrigin origin);
+
+    /**
+     * Returns a counter that changes whenever cookies are added to or
+     * removed from this store.
+     */
+    long getVersion();
+
+}
@@ -0,0 +1,125 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.client5.http.utils.URLEncodedFormCodec;
+import org.apache.hc.client5.http.utils.URLEncodedUtils;
+import org.apache.hc.core5.annotation.NotThreadSafe;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.entity.AbstractHttpEntity;
+import org.apache.hc.core5.http.entity.ContentType;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * An entity composed of a list of url-encoded pairs that, unlike
+ * {@link UrlEncodedFormEntity}, encodes the pairs while it is written out
+ * instead of holding the encoded form in memory. The content length is
+ * computed when the entity is created.
+ * <p>
+ * The parameters are referenced, not copied, and must not be modified
+ * while the entity is in use.
+ * </p>
+ *
+ * @since 5.0
+ */
+@NotThreadSafe // AbstractHttpEntity is not thread-safe
+public class StreamingUrlEncodedFormEntity extends AbstractHttpEntity {
+
+    private static final char QP_SEP_A = '&';
+
+    private final Iterable<? extends NameValuePair> parameters;
+    private final Charset charset;
+    private final long contentLength;
+
+    /**
+     * Constructs a new {@link StreamingUrlEncodedFormEntity} with the list
+     * of parameters in the specified encoding.
+     *
+     * @param parameters iterable collection of name/value pairs
+     * @param charset encoding the name/value pairs be encoded with,
+     *   {@link StandardCharsets#ISO_8859_1} if {@code null}
+     */
+    public StreamingUrlEncodedFormEntity(
+            final Iterable<? extends NameValuePair> parameters,
+            final Charset charset) {
+        super();
+        Args.notNull(parameters, "Parameters");
+        this.parameters = parameters;
+        this.charset = charset != null ? charset : StandardCharsets.ISO_8859_1;
+        this.contentLength = URLEncodedFormCodec.getEncodedLength(parameters, QP_SEP_A, this.charset);
+        setContentType(ContentType.create(URLEncodedUtils.CONTENT_TYPE, charset).toString());
+    }
+
+    /**
+     * Constructs a new {@link StreamingUrlEncodedFormEntity} with the list
+     * of parameters with the default encoding of {@link StandardCharsets#ISO_8859_1}
+     *
+     * @param parameters iterable collection of name/value pairs
+     */
+    public StreamingUrlEncodedFormEntity(final Iterable<? extends NameValuePair> parameters) {
+        this(parameters, null);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.contentLength;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                (int) Math.min(this.contentLength, Integer.MAX_VALUE - 8));
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+        Args.notNull(outstream, "Output stream");
+        URLEncodedFormCodec.encode(this.parameters, QP_SEP_A, this.charset, outstream);
+        outstream.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
@@ -41,6 +41,7 @@ import org.apache.hc.client5.http.SchemePortResolver;
 import org.apache.hc.client5.http.UnsupportedSchemeException;
 import org.apache.hc.client5.http.auth.AuthCache;
 import org.apache.hc.client5.http.auth.AuthScheme;
+import org.apache.hc.client5.http.auth.CopyableAuthScheme;
 import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
 import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.http.HttpHost;
@@ -48,8 +49,13 @@ import org.apache.hc.core5.util.Args;
 
 /**
  * Default implementation of {@link AuthCache}. This implements
- * expects {@link org.apache.hc.client5.http.auth.AuthScheme} to be {@link java.io.Serializable}
- * in order to be cacheable.
+ * expects {@link org.apache.hc.client5.http.auth.AuthScheme} to be {@link CopyableAuthScheme}
+ * or {@link java.io.Serializable} in order to be cacheable.
+ * <p>
+ * Copyable schemes are stored as a private snapshot and handed out as
+ * copies of the snapshot. Other schemes are stored in serialized form and
+ * de-serialized on each retrieval.
+ * </p>
  * <p>
  * Instances of this class are thread safe as of version 4.4.
  * </p>
@@ -61,7 +67,8 @@ public class BasicAuthCache implements AuthCache {
 
     private final Log log = LogFactory.getLog(getClass());
 
-    private final Map<HttpHost, byte[]> map;
+    // copyable scheme snapshots or serialized schemes
+    private final Map<HttpHost, Object> map;
     private final SchemePortResolver schemePortResolver;
 
     /**
@@ -99,6 +106,14 @@ public class BasicAuthCache implements AuthCache {
         if (authScheme == null) {
             return;
         }
+        if (authScheme instanceof CopyableAuthScheme) {
+            final CopyableAuthScheme snapshot = ((CopyableAuthScheme) authScheme).copy();
+            // subclasses that do not override copy() lose their own state
+            if (snapshot != null && snapshot.getClass() == authScheme.getClass()) {
+                this.map.put(getKey(host), snapshot);
+                return;
+            }
+        }
         if (authScheme instanceof Serializable) {
             try {
                 final ByteArrayOutputStream buf = new ByteArrayOutputStream();
@@ -121,10 +136,13 @@ public class BasicAuthCache implements AuthCache {
     @Override
     public AuthScheme get(final HttpHost host) {
         Args.notNull(host, "HTTP host");
-        final byte[] bytes = this.map.get(getKey(host));
-        if (bytes != null) {
+        final Object cached = this.map.get(getKey(host));
+        if (cached instanceof CopyableAuthScheme) {
+            return ((CopyableAuthScheme) cached).copy();
+        }
+        if (cached != null) {
             try {
-                final ByteArrayInputStream buf = new ByteArrayInputStream(bytes);
+                final ByteArrayInputStream buf = new ByteArrayInputStream((byte[]) cached);
                 try (final ObjectInputStream in = new ObjectInputStream(buf)) {
                     return (AuthScheme) in.readObject();
                 }
@@ -40,9 +40,9 @@ import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hc.client5.http.auth.AuthChallenge;
-import org.apache.hc.client5.http.auth.AuthScheme;
 import org.apache.hc.client5.http.auth.AuthScope;
 import org.apache.hc.client5.http.auth.AuthenticationException;
+import org.apache.hc.client5.http.auth.CopyableAuthScheme;
 import org.apache.hc.client5.http.auth.Credentials;
 import org.apache.hc.client5.http.auth.CredentialsProvider;
 import org.apache.hc.client5.http.auth.MalformedChallengeException;
@@ -61,7 +61,7 @@ import org.apache.hc.core5.util.CharsetUtils;
  * @since 4.0
  */
 @NotThreadSafe
-public class BasicScheme implements AuthScheme, Serializable {
+public class BasicScheme implements CopyableAuthScheme, Serializable {
 
     private static final long serialVersionUID = -1931571557597830536L;
 
@@ -87,6 +87,21 @@ public class BasicScheme implements AuthScheme, Serializable {
         this(StandardCharsets.US_ASCII);
     }
 
+    /**
+     * Creates a copy of the given scheme. Subclasses that override
+     * {@link #copy()} should use this constructor to copy the state
+     * of this class.
+     *
+     * @since 5.0
+     */
+    protected BasicScheme(final BasicScheme other) {
+        this.paramMap = new HashMap<>(other.paramMap);
+        this.charset = other.charset;
+        this.complete = other.complete;
+        this.username = other.username;
+        this.password = other.password != null ? other.password.clone() : null;
+    }
+
     public void initPreemptive(final Credentials credentials) {
         if (credentials != null) {
             this.username = credentials.getUserPrincipal().getName();
@@ -192,6 +207,17 @@ public class BasicScheme implements AuthScheme, Serializable {
     private void readObjectNoData() {
     }
 
+    /**
+     * Subclasses that maintain additional state must override this method
+     * and create their copy with {@link #BasicScheme(BasicScheme)}.
+     *
+     * @since 5.0
+     */
+    @Override
+    public BasicScheme copy() {
+        return new BasicScheme(this);
+    }
+
     @Override
     public String toString() {
         return getName() + this.paramMap.toString();
@@ -34,7 +34,7 @@ import java.security.MessageDigest;
 import java.security.Principal;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Formatter;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -42,11 +42,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hc.client5.http.auth.AuthChallenge;
-import org.apache.hc.client5.http.auth.AuthScheme;
 import org.apache.hc.client5.http.auth.AuthScope;
 import org.apache.hc.client5.http.auth.AuthenticationException;
+import org.apache.hc.client5.http.auth.CopyableAuthScheme;
 import org.apache.hc.client5.http.auth.Credentials;
 import org.apache.hc.client5.http.auth.CredentialsProvider;
 import org.apache.hc.client5.http.auth.MalformedChallengeException;
@@ -74,11 +79,18 @@ import org.apache.hc.core5.util.CharsetUtils;
  * Authentication header, the charset of the username must be compatible
  * with the HTTP element charset used by the connection.
  * </p>
+ * <p>
+ * A scheme and its {@link #copy() copies} share the state of the current
+ * nonce, that is the client nonce, the nonce count and the hashed
+ * credentials. Copies handed out by an {@link org.apache.hc.client5.http.auth.AuthCache}
+ * can therefore authenticate requests preemptively with distinct nonce
+ * counts, even when they are used by several threads at once.
+ * </p>
  *
  * @since 4.0
  */
 @NotThreadSafe
-public class DigestScheme implements AuthScheme, Serializable {
+public class DigestScheme implements CopyableAuthScheme, Serializable {
 
     private static final long serialVersionUID = 3883908186234566916L;
 
@@ -98,6 +110,13 @@ public class DigestScheme implements AuthScheme, Serializable {
     private static final int QOP_AUTH_INT = 1;
     private static final int QOP_AUTH = 2;
 
+    private static final int MAX_POOLED_DIGESTERS = 8;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final ConcurrentMap<String, BlockingQueue<MessageDigest>> DIGESTERS =
+            new ConcurrentHashMap<>();
+
     private final Map<String, String> paramMap;
     private boolean complete;
     private transient ByteArrayBuilder buffer;
@@ -111,11 +130,34 @@ public class DigestScheme implements AuthScheme, Serializable {
     private String username;
     private char[] password;
 
+    // shared with copies
+    private transient NonceSession session;
+
     public DigestScheme() {
         this.paramMap = new HashMap<>();
         this.complete = false;
     }
 
+    /**
+     * Creates a copy of the given scheme. Subclasses that override
+     * {@link #copy()} should use this constructor to copy the state
+     * of this class.
+     *
+     * @since 5.0
+     */
+    protected DigestScheme(final DigestScheme other) {
+        this.paramMap = new HashMap<>(other.paramMap);
+        this.complete = other.complete;
+        this.lastNonce = other.lastNonce;
+        this.nounceCount = other.nounceCount;
+        this.cnonce = other.cnonce;
+        this.a1 = other.a1 != null ? other.a1.clone() : null;
+        this.a2 = other.a2 != null ? other.a2.clone() : null;
+        this.username = other.username;
+        this.password = other.password != null ? other.password.clone() : null;
+        this.session = other.session;
+    }
+
     public void initPreemptive(final Credentials credentials, final String cnonce, final String realm) {
         Args.notNull(credentials, "Credentials");
         this.username = credentials.getUserPrincipal().getName();
@@ -215,13 +257,29 @@ public class DigestScheme implements AuthScheme, Serializable {
         }
     }
 
+    private static MessageDigest acquireMessageDigest(
+            final String digAlg) throws UnsupportedDigestAlgorithmException {
+        final BlockingQueue<MessageDigest> pool = DIGESTERS.get(digAlg.toUpperCase(Locale.ROOT));
+        final MessageDigest digester = pool != null ? pool.poll() : null;
+        return digester != null ? digester : createMessageDigest(digAlg);
+    }
+
+    private static void releaseMessageDigest(final String digAlg, final MessageDigest digester) {
+        digester.reset();
+        final String key = digAlg.toUpperCase(Locale.ROOT);
+        BlockingQueue<MessageDigest> pool = DIGESTERS.get(key);
+        if (pool == null) {
+            pool = new ArrayBlockingQueue<>(MAX_POOLED_DIGESTERS);
+            final BlockingQueue<MessageDigest> existing = DIGESTERS.putIfAbsent(key, pool);
+            if (existing != null) {
+                pool = existing;
+            }
+        }
+        pool.offer(digester);
+    }
+
     private String createDigestResponse(final HttpRequest request) throws AuthenticationException {
 
-        final String uri = request.getRequestLine().getUri();
-        final String method = request.getRequestLine().getMethod();
-        final String realm = this.paramMap.get("realm");
-        final String nonce = this.paramMap.get("nonce");
-        final String opaque = this.paramMap.get("opaque");
         String algorithm = this.paramMap.get("algorithm");
         // If an algorithm is not specified, default to MD5.
         if (algorithm == null) {
@@ -265,28 +323,49 @@ public class DigestScheme implements AuthScheme, Serializable {
 
         final MessageDigest digester;
         try {
-            digester = createMessageDigest(digAlg);
+            digester = acquireMessageDigest(digAlg);
         } catch (final UnsupportedDigestAlgorithmException ex) {
             throw new AuthenticationException("Unsuppported digest algorithm: " + digAlg);
         }
-
-        if (nonce.equals(this.lastNonce)) {
-            nounceCount++;
-        } else {
-            nounceCount = 1;
-            cnonce = null;
-            lastNonce = nonce;
+        try {
+            return createDigestResponse(request, digester, algorithm, charset, qop, qopset);
+        } finally {
+            releaseMessageDigest(digAlg, digester);
         }
+    }
 
-        final StringBuilder sb = new StringBuilder(8);
-        try (final Formatter formatter = new Formatter(sb, Locale.US)) {
-            formatter.format("%08x", nounceCount);
-        }
-        final String nc = sb.toString();
+    private String createDigestResponse(
+            final HttpRequest request,
+            final MessageDigest digester,
+            final String algorithm,
+            final Charset charset,
+            final int qopRequested,
+            final Set<String> qopset) throws AuthenticationException {
+
+        int qop = qopRequested;
+        final String uri = request.getRequestLine().getUri();
+        final String method = request.getRequestLine().getMethod();
+        final String realm = this.paramMap.get("realm");
+        final String nonce = this.paramMap.get("nonce");
+        final String opaque = this.paramMap.get("opaque");
 
-        if (cnonce == null) {
-            cnonce = formatHex(createCnonce());
+        NonceSession current = this.session;
+        if (current == null || !current.nonce.equals(nonce)) {
+            if (nonce.equals(this.lastNonce) && this.cnonce != null) {
+                // continue the nonce count of a de-serialized scheme
+                current = new NonceSession(nonce, this.cnonce, this.nounceCount);
+            } else {
+                current = new NonceSession(nonce, formatHex(createCnonce()), 0);
+            }
+            this.session = current;
         }
+        final long count = current.nextCount();
+        this.lastNonce = nonce;
+        this.nounceCount = count;
+        this.cnonce = current.cnonce;
+
+        final String hex = Long.toHexString(count);
+        final String nc = hex.length() < 8 ? "00000000".substring(hex.length()) + hex : hex;
 
         if (buffer == null) {
             buffer = new ByteArrayBuilder(128);
@@ -295,27 +374,33 @@ public class DigestScheme implements AuthScheme, Serializable {
         }
         buffer.charset(charset);
 
-        a1 = null;
         a2 = null;
         // 3.2.2.2: Calculating digest
-        if (algorithm.equalsIgnoreCase("MD5-sess")) {
-            // H( unq(username-value) ":" unq(realm-value) ":" passwd )
-            //      ":" unq(nonce-value)
-            //      ":" unq(cnonce-value)
-
-            // calculated one per session
-            buffer.append(username).append(":").append(realm).append(":").append(password);
-            final String checksum = formatHex(digester.digest(this.buffer.toByteArray()));
-            buffer.reset();
-            buffer.append(checksum).append(":").append(nonce).append(":").append(cnonce);
-            a1 = buffer.toByteArray();
-        } else {
-            // unq(username-value) ":" unq(realm-value) ":" passwd
-            buffer.append(username).append(":").append(realm).append(":").append(password);
-            a1 = buffer.toByteArray();
+        HashedSecret secret = current.secret;
+        if (secret == null || !secret.matches(username, realm, password, algorithm, charset)) {
+            final byte[] newA1;
+            if (algorithm.equalsIgnoreCase("MD5-sess")) {
+                // H( unq(username-value) ":" unq(realm-value) ":" passwd )
+                //      ":" unq(nonce-value)
+                //      ":" unq(cnonce-value)
+
+                // calculated one per session
+                buffer.append(username).append(":").append(realm).append(":").append(password);
+                final String checksum = formatHex(digester.digest(this.buffer.toByteArray()));
+                buffer.reset();
+                buffer.append(checksum).append(":").append(nonce).append(":").append(current.cnonce);
+                newA1 = buffer.toByteArray();
+            } else {
+                // unq(username-value) ":" unq(realm-value) ":" passwd
+                buffer.append(username).append(":").append(realm).append(":").append(password);
+                newA1 = buffer.toByteArray();
+            }
+            secret = new HashedSecret(username, realm, password, algorithm, charset,
+                    newA1, formatHex(digester.digest(newA1)));
+            current.secret = secret;
         }
-
-        final String hasha1 = formatHex(digester.digest(a1));
+        a1 = secret.a1;
+        final String hasha1 = secret.hash;
         buffer.reset();
 
         if (qop == QOP_AUTH) {
@@ -436,17 +521,88 @@ public class DigestScheme implements AuthScheme, Serializable {
     }
 
     /**
-     * Creates a random cnonce value based on the current time.
+     * Creates a random cnonce value.
      *
      * @return The cnonce value as String.
      */
     static byte[] createCnonce() {
-        final SecureRandom rnd = new SecureRandom();
         final byte[] tmp = new byte[8];
-        rnd.nextBytes(tmp);
+        RANDOM.nextBytes(tmp);
         return tmp;
     }
 
+    /**
+     * State of a server nonce shared by a scheme and its copies.
+     */
+    static final class NonceSession {
+
+        final String nonce;
+        final String cnonce;
+        private final AtomicLong nonceCount;
+        volatile HashedSecret secret;
+
+        NonceSession(final String nonce, final String cnonce, final long nonceCount) {
+            this.nonce = nonce;
+            this.cnonce = cnonce;
+            this.nonceCount = new AtomicLong(nonceCount);
+        }
+
+        long nextCount() {
+            return this.nonceCount.incrementAndGet();
+        }
+
+    }
+
+    /**
+     * A1 and its hash for a given set of credentials.
+     */
+    static final class HashedSecret {
+
+        private final String username;
+        private final String realm;
+        private final char[] password;
+        private final String algorithm;
+        private final Charset charset;
+        final byte[] a1;
+        final String hash;
+
+        HashedSecret(
+                final String username, final String realm, final char[] password,
+                final String algorithm, final Charset charset, final byte[] a1, final String hash) {
+            this.username = username;
+            this.realm = realm;
+            this.password = password != null ? password.clone() : null;
+            this.algorithm = algorithm;
+            this.charset = charset;
+            this.a1 = a1;
+            this.hash = hash;
+        }
+
+        boolean matches(
+                final String username, final String realm, final char[] password,
+                final String algorithm, final Charset charset) {
+            return equals(this.username, username) && equals(this.realm, realm)
+                    && Arrays.equals(this.password, password)
+                    && this.algorithm.equals(algorithm) && this.charset.equals(charset);
+        }
+
+        private static boolean equals(final String s1, final String s2) {
+            return s1 == null ? s2 == null : s1.equals(s2);
+        }
+
+    }
+
+    /**
+     * Subclasses that maintain additional state must override this method
+     * and create their copy with {@link #DigestScheme(DigestScheme)}.
+     *
+     * @since 5.0
+     */
+    @Override
+    public DigestScheme copy() {
+        return new DigestScheme(this);
+    }
+
     @Override
     public String toString() {
         return getName() + this.paramMap.toString();
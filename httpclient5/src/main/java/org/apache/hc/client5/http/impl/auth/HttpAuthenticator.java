@@ -54,6 +54,7 @@ import org.apache.hc.core5.http.HttpHost;
 import org.apache.hc.core5.http.HttpRequest;
 import org.apache.hc.core5.http.HttpResponse;
 import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.NameValuePair;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.message.BasicHeader;
 import org.apache.hc.core5.http.message.ParserCursor;
@@ -181,8 +182,13 @@ public class HttpAuthenticator {
             case FAILURE:
                 return false;
             case SUCCESS:
-                authExchange.reset();
-                break;
+                if (!isStale(authExchange.getAuthScheme(), challengeMap)) {
+                    authExchange.reset();
+                    break;
+                }
+                // The nonce has expired; the credentials are still valid
+                this.log.debug("Authorization challenge is stale");
+                // fall through
             case CHALLENGED:
             case HANDSHAKE:
                 Asserts.notNull(authExchange.getAuthScheme(), "AuthScheme");
@@ -252,6 +258,22 @@ public class HttpAuthenticator {
         return false;
     }
 
+    private static boolean isStale(final AuthScheme authScheme, final Map<String, AuthChallenge> challengeMap) {
+        if (authScheme == null) {
+            return false;
+        }
+        final AuthChallenge challenge = challengeMap.get(authScheme.getName().toLowerCase(Locale.ROOT));
+        final List<NameValuePair> params = challenge != null ? challenge.getParams() : null;
+        if (params != null) {
+            for (final NameValuePair param: params) {
+                if ("stale".equalsIgnoreCase(param.getName())) {
+                    return "true".equalsIgnoreCase(param.getValue());
+                }
+            }
+        }
+        return false;
+    }
+
     public void addAuthResponse(
             final HttpHost host,
             final ChallengeType challengeType,
@@ -0,0 +1,436 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cookie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieIdentityComparator;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.cookie.IndexedCookieStore;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
+import org.apache.hc.core5.annotation.GuardedBy;
+import org.apache.hc.core5.annotation.ThreadSafe;
+
+/**
+ * {@link IndexedCookieStore} implementation optimized for stores holding
+ * a large number of cookies across many domains.
+ * <p>
+ * Cookies are indexed by the registrable domain of their domain attribute,
+ * as determined by the {@link PublicSuffixMatcher}, and within each domain
+ * by their normalized path. Looking up the candidates for a request only
+ * examines the cookies of the domains and paths that could match its origin.
+ * Lookups do not block; modifications are serialized and replace the index
+ * of the affected domain as a whole. Cookies with an expiry date are also
+ * kept in expiry order, so that purging expired cookies only touches the
+ * cookies that have actually expired.
+ * </p>
+ * <p>
+ * Cookie identity is the same as that of
+ * {@link org.apache.hc.client5.http.cookie.BasicCookieStore}.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class DomainIndexedCookieStore implements IndexedCookieStore {
+
+    private static final CookieIdentityComparator IDENTITY = new CookieIdentityComparator();
+
+    private final PublicSuffixMatcher publicSuffixMatcher;
+    private final ConcurrentMap<String, Map<String, List<Cookie>>> domains;
+    private final AtomicLong version;
+    @GuardedBy("this")
+    private final TreeSet<ExpiryRef> expiryQueue;
+    @GuardedBy("this")
+    private long seq;
+
+    private volatile long nextExpiry;
+
+    /**
+     * Creates a store that indexes cookies by registrable domain.
+     *
+     * @param publicSuffixMatcher public suffix matcher used to determine
+     *   registrable domains; if {@code null} cookies are indexed by their
+     *   exact domain
+     */
+    public DomainIndexedCookieStore(final PublicSuffixMatcher publicSuffixMatcher) {
+        super();
+        this.publicSuffixMatcher = publicSuffixMatcher;
+        this.domains = new ConcurrentHashMap<>();
+        this.version = new AtomicLong();
+        this.expiryQueue = new TreeSet<>();
+        this.nextExpiry = Long.MAX_VALUE;
+    }
+
+    public DomainIndexedCookieStore() {
+        this(null);
+    }
+
+    @Override
+    public synchronized void addCookie(final Cookie cookie) {
+        if (cookie == null) {
+            return;
+        }
+        final String key = indexKey(cookie);
+        final String path = normalizePath(cookie.getPath());
+        final Map<String, List<Cookie>> current = domains.get(key);
+        final Cookie existing = current != null ? find(current.get(path), cookie) : null;
+        final boolean expired = cookie.isExpired(new Date());
+        if (existing == null && expired) {
+            return;
+        }
+        final Map<String, List<Cookie>> copy = current != null
+                ? new HashMap<>(current) : new HashMap<String, List<Cookie>>();
+        final List<Cookie> cookies = copy.containsKey(path)
+                ? new ArrayList<>(copy.get(path)) : new ArrayList<Cookie>(1);
+        if (existing != null) {
+            cookies.remove(existing);
+            unscheduleExpiry(existing);
+        }
+        if (!expired) {
+            cookies.add(cookie);
+            scheduleExpiry(cookie);
+        }
+        if (cookies.isEmpty()) {
+            copy.remove(path);
+        } else {
+            copy.put(path, Collections.unmodifiableList(cookies));
+        }
+        if (copy.isEmpty()) {
+            domains.remove(key);
+        } else {
+            domains.put(key, copy);
+        }
+        // Bump the version only once the new content has been published
+        version.incrementAndGet();
+    }
+
+    /**
+     * Adds an array of {@link Cookie HTTP cookies} in the given array order.
+     *
+     * @see #addCookie(Cookie)
+     */
+    public synchronized void addCookies(final Cookie[] cookies) {
+        if (cookies != null) {
+            for (final Cookie cookie : cookies) {
+                addCookie(cookie);
+            }
+        }
+    }
+
+    /**
+     * Returns all cookies in this store ordered as by {@link CookieIdentityComparator}.
+     */
+    @Override
+    public List<Cookie> getCookies() {
+        final List<Cookie> all = new ArrayList<>();
+        for (final Map<String, List<Cookie>> paths : domains.values()) {
+            for (final List<Cookie> cookies : paths.values()) {
+                all.addAll(cookies);
+            }
+        }
+        Collections.sort(all, IDENTITY);
+        return all;
+    }
+
+    @Override
+    public List<Cookie> getCandidates(final CookieOrigin origin) {
+        final List<Cookie> candidates = new ArrayList<>();
+        if (domains.isEmpty()) {
+            return candidates;
+        }
+        final List<String> paths = candidatePaths(origin.getPath());
+        for (final String key : indexKeys(origin)) {
+            final Map<String, List<Cookie>> index = domains.get(key);
+            if (index != null) {
+                for (final String path : paths) {
+                    final List<Cookie> cookies = index.get(path);
+                    if (cookies != null) {
+                        candidates.addAll(cookies);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the cookies stored under the given index key.
+     */
+    List<Cookie> getCookies(final String key) {
+        final List<Cookie> cookies = new ArrayList<>();
+        final Map<String, List<Cookie>> paths = domains.get(key);
+        if (paths != null) {
+            for (final List<Cookie> list : paths.values()) {
+                cookies.addAll(list);
+            }
+        }
+        return cookies;
+    }
+
+    @Override
+    public boolean clearExpired(final Date date) {
+        if (date == null || date.getTime() < nextExpiry) {
+            return false;
+        }
+        synchronized (this) {
+            boolean removed = false;
+            while (!expiryQueue.isEmpty() && expiryQueue.first().expiry <= date.getTime()) {
+                final Cookie cookie = expiryQueue.pollFirst().cookie;
+                removeFromIndex(cookie);
+                removed = true;
+            }
+            if (removed) {
+                version.incrementAndGet();
+            }
+            updateNextExpiry();
+            return removed;
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        domains.clear();
+        expiryQueue.clear();
+        nextExpiry = Long.MAX_VALUE;
+        version.incrementAndGet();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the number of cookies in this store.
+     */
+    public int size() {
+        int n = 0;
+        for (final Map<String, List<Cookie>> paths : domains.values()) {
+            for (final List<Cookie> cookies : paths.values()) {
+                n += cookies.size();
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return getCookies().toString();
+    }
+
+    private void removeFromIndex(final Cookie cookie) {
+        final String key = indexKey(cookie);
+        final String path = normalizePath(cookie.getPath());
+        final Map<String, List<Cookie>> current = domains.get(key);
+        if (current == null || !current.containsKey(path)) {
+            return;
+        }
+        final List<Cookie> cookies = new ArrayList<>(current.get(path));
+        for (final Iterator<Cookie> it = cookies.iterator(); it.hasNext();) {
+            if (it.next() == cookie) {
+                it.remove();
+            }
+        }
+        final Map<String, List<Cookie>> copy = new HashMap<>(current);
+        if (cookies.isEmpty()) {
+            copy.remove(path);
+        } else {
+            copy.put(path, Collections.unmodifiableList(cookies));
+        }
+        if (copy.isEmpty()) {
+            domains.remove(key);
+        } else {
+            domains.put(key, copy);
+        }
+    }
+
+    private void scheduleExpiry(final Cookie cookie) {
+        final Date expiryDate = cookie.getExpiryDate();
+        if (expiryDate != null) {
+            expiryQueue.add(new ExpiryRef(expiryDate.getTime(), seq++, cookie));
+            updateNextExpiry();
+        }
+    }
+
+    private void unscheduleExpiry(final Cookie cookie) {
+        final Date expiryDate = cookie.getExpiryDate();
+        if (expiryDate != null) {
+            // all refs of this expiry time lie between these bounds
+            final ExpiryRef from = new ExpiryRef(expiryDate.getTime(), Long.MIN_VALUE, null);
+            final ExpiryRef to = new ExpiryRef(expiryDate.getTime(), Long.MAX_VALUE, null);
+            for (final Iterator<ExpiryRef> it = expiryQueue.subSet(from, to).iterator(); it.hasNext();) {
+                if (it.next().cookie == cookie) {
+                    it.remove();
+                    break;
+                }
+            }
+            updateNextExpiry();
+        }
+    }
+
+    private void updateNextExpiry() {
+        nextExpiry = expiryQueue.isEmpty() ? Long.MAX_VALUE : expiryQueue.first().expiry;
+    }
+
+    private static Cookie find(final List<Cookie> cookies, final Cookie cookie) {
+        if (cookies != null) {
+            for (final Cookie candidate : cookies) {
+                if (IDENTITY.compare(candidate, cookie) == 0) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index key of the given cookie.
+     */
+    String indexKey(final Cookie cookie) {
+        return indexKey(normalizeDomain(cookie.getDomain()));
+    }
+
+    /**
+     * Returns the index keys under which cookies that may match the given
+     * origin are stored: the keys of the origin host and of each of its
+     * parent domains.
+     */
+    List<String> indexKeys(final CookieOrigin origin) {
+        final List<String> keys = new ArrayList<>(4);
+        final String host = normalizeDomain(origin.getHost());
+        if (host == null) {
+            return keys;
+        }
+        String lastKey = null;
+        for (String domain = host; domain != null; domain = parentDomain(domain)) {
+            final String key = indexKey(domain);
+            if (!key.equals(lastKey)) {
+                keys.add(key);
+                lastKey = key;
+            }
+        }
+        return keys;
+    }
+
+    private String indexKey(final String domain) {
+        if (domain == null) {
+            return "";
+        }
+        if (publicSuffixMatcher != null) {
+            final String root = publicSuffixMatcher.getDomainRoot(domain);
+            if (root != null) {
+                return root;
+            }
+        }
+        return domain;
+    }
+
+    static String normalizeDomain(final String domain) {
+        if (domain == null) {
+            return null;
+        }
+        final String s = domain.startsWith(".") ? domain.substring(1) : domain;
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static String parentDomain(final String domain) {
+        final int i = domain.indexOf('.');
+        return i >= 0 && i < domain.length() - 1 ? domain.substring(i + 1) : null;
+    }
+
+    /**
+     * Normalizes a cookie path the way {@link BasicPathHandler} does before
+     * matching it.
+     */
+    static String normalizePath(final String path) {
+        if (path == null) {
+            return "/";
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            return path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /**
+     * Returns every normalized cookie path that could path-match the given
+     * request path: the root, each prefix ending before a {@code '/'} and
+     * the path itself.
+     */
+    static List<String> candidatePaths(final String requestPath) {
+        final List<String> paths = new ArrayList<>();
+        paths.add("/");
+        if (requestPath == null) {
+            return paths;
+        }
+        for (int i = 2; i < requestPath.length(); i++) {
+            if (requestPath.charAt(i) == '/') {
+                paths.add(requestPath.substring(0, i));
+            }
+        }
+        if (requestPath.length() > 1) {
+            paths.add(requestPath);
+        }
+        return paths;
+    }
+
+    private static final class ExpiryRef implements Comparable<ExpiryRef> {
+
+        final long expiry;
+        final long seq;
+        final Cookie cookie;
+
+        ExpiryRef(final long expiry, final long seq, final Cookie cookie) {
+            this.expiry = expiry;
+            this.seq = seq;
+            this.cookie = cookie;
+        }
+
+        @Override
+        public int compareTo(final ExpiryRef other) {
+            if (expiry != other.expiry) {
+                return expiry < other.expiry ? -1 : 1;
+            }
+            return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+        }
+
+    }
+
+}
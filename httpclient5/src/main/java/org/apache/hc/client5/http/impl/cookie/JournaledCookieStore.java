@@ -0,0 +1,542 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cookie;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.cookie.IndexedCookieStore;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
+import org.apache.hc.core5.annotation.GuardedBy;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Disk-backed {@link IndexedCookieStore} that survives restarts.
+ * <p>
+ * Cookies are kept in memory in a {@link DomainIndexedCookieStore} and
+ * persisted to one journal file per registrable domain in the given
+ * directory. Every added cookie is appended to the journal of its domain;
+ * replaying a journal therefore reproduces the state of the domain,
+ * including removals, which are recorded as already expired cookies.
+ * A journal is rewritten with the live cookies of its domain only once it
+ * has accumulated enough superseded records.
+ * </p>
+ * <p>
+ * Journals are loaded lazily, the first time a domain is accessed, so that
+ * opening a store does not depend on the number of cookies it holds.
+ * {@link #getCookies()} loads all journals. Changes are written by a
+ * background thread every {@code flushIntervalMillis} milliseconds once
+ * {@link #start()} has been called; {@link #addCookie(Cookie)} never performs
+ * disk writes. Changes not yet flushed are lost if the process terminates
+ * without {@link #close()} being called.
+ * </p>
+ * <p>
+ * Only the standard cookie attributes are persisted.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+public class JournaledCookieStore implements IndexedCookieStore, Closeable {
+
+    static final int MAGIC = 0x434b4a31;
+    static final String SUFFIX = ".journal";
+    static final int MIN_COMPACTION_RECORDS = 64;
+
+    private static final String[] PERSISTENT_ATTRIBUTES = {
+        Cookie.PATH_ATTR, Cookie.DOMAIN_ATTR, Cookie.MAX_AGE_ATTR, Cookie.SECURE_ATTR,
+        Cookie.EXPIRES_ATTR, "httponly"
+    };
+
+    private final File directory;
+    private final DomainIndexedCookieStore memory;
+    private final long flushIntervalMillis;
+    private final Set<String> loaded;
+    private final Map<String, Integer> recordCounts;
+    private final Set<String> compactionRequired;
+    private final ConcurrentLinkedQueue<Cookie> pending;
+    private final Object loadLock;
+    private final Object ioLock;
+    private final Thread thread;
+
+    @GuardedBy("loadLock")
+    private volatile boolean allLoaded;
+
+    private final Log log = LogFactory.getLog(getClass());
+
+    /**
+     * Creates a store persisted in the given directory, which is created if
+     * it does not exist.
+     *
+     * @param directory directory holding the journal files
+     * @param publicSuffixMatcher public suffix matcher used to group cookies
+     *   by registrable domain; may be {@code null}
+     * @param flushIntervalMillis interval between background flushes
+     */
+    public JournaledCookieStore(
+            final File directory,
+            final PublicSuffixMatcher publicSuffixMatcher,
+            final long flushIntervalMillis) throws IOException {
+        super();
+        Args.notNull(directory, "Directory");
+        Args.positive(flushIntervalMillis, "Flush interval");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        this.directory = directory;
+        this.memory = new DomainIndexedCookieStore(publicSuffixMatcher);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.loaded = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.recordCounts = new ConcurrentHashMap<>();
+        this.compactionRequired = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.loadLock = new Object();
+        this.ioLock = new Object();
+        this.thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(JournaledCookieStore.this.flushIntervalMillis);
+                        flush();
+                    }
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        }, "Cookie store journal writer");
+        this.thread.setDaemon(true);
+    }
+
+    public JournaledCookieStore(
+            final File directory, final PublicSuffixMatcher publicSuffixMatcher) throws IOException {
+        this(directory, publicSuffixMatcher, 1000L);
+    }
+
+    /**
+     * Starts the background thread flushing changes to disk.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return thread.isAlive();
+    }
+
+    public void awaitTermination(final long time, final TimeUnit tunit) throws InterruptedException {
+        thread.join((tunit != null ? tunit : TimeUnit.MILLISECONDS).toMillis(time));
+    }
+
+    /**
+     * Stops the background thread and writes all pending changes to disk.
+     */
+    @Override
+    public void close() throws IOException {
+        shutdown();
+        try {
+            awaitTermination(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Override
+    public void addCookie(final Cookie cookie) {
+        if (cookie == null) {
+            return;
+        }
+        ensureLoaded(memory.indexKey(cookie));
+        // keep the journal order consistent with the order of updates
+        synchronized (this) {
+            memory.addCookie(cookie);
+            pending.add(cookie);
+        }
+    }
+
+    /**
+     * Returns all cookies in this store, loading all journals not yet loaded.
+     */
+    @Override
+    public List<Cookie> getCookies() {
+        ensureAllLoaded();
+        return memory.getCookies();
+    }
+
+    @Override
+    public List<Cookie> getCandidates(final CookieOrigin origin) {
+        for (final String key : memory.indexKeys(origin)) {
+            ensureLoaded(key);
+        }
+        return memory.getCandidates(origin);
+    }
+
+    @Override
+    public long getVersion() {
+        return memory.getVersion();
+    }
+
+    /**
+     * Removes expired cookies from memory. Their journal records are
+     * discarded when the journals are compacted or replayed.
+     */
+    @Override
+    public boolean clearExpired(final Date date) {
+        return memory.clearExpired(date);
+    }
+
+    /**
+     * Removes all cookies and deletes all journal files. Unlike other
+     * operations this method performs disk I/O in the calling thread.
+     */
+    @Override
+    public void clear() {
+        synchronized (loadLock) {
+            synchronized (ioLock) {
+                synchronized (this) {
+                    pending.clear();
+                    memory.clear();
+                }
+                final File[] files = directory.listFiles();
+                if (files != null) {
+                    for (final File file : files) {
+                        if (file.getName().endsWith(SUFFIX) && !file.delete()) {
+                            log.warn("Unable to delete cookie journal " + file);
+                        }
+                    }
+                }
+                recordCounts.clear();
+                compactionRequired.clear();
+                loaded.clear();
+                allLoaded = true;
+            }
+        }
+    }
+
+    /**
+     * Writes all pending changes to disk, compacting journals as needed.
+     */
+    public void flush() {
+        synchronized (ioLock) {
+            final Map<String, List<Cookie>> changes = new LinkedHashMap<>();
+            Cookie cookie;
+            while ((cookie = pending.poll()) != null) {
+                final String key = memory.indexKey(cookie);
+                List<Cookie> list = changes.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    changes.put(key, list);
+                }
+                list.add(cookie);
+            }
+            for (final String key : compactionRequired) {
+                if (!changes.containsKey(key)) {
+                    changes.put(key, Collections.<Cookie>emptyList());
+                }
+            }
+            for (final Map.Entry<String, List<Cookie>> entry : changes.entrySet()) {
+                final String key = entry.getKey();
+                try {
+                    final Integer count = recordCounts.get(key);
+                    final int records = (count != null ? count : 0) + entry.getValue().size();
+                    if (compactionRequired.remove(key) || needsCompaction(key, records)) {
+                        compact(key);
+                    } else {
+                        append(key, entry.getValue(), records);
+                    }
+                } catch (final IOException ex) {
+                    log.warn("Unable to write cookie journal for " + key, ex);
+                    compactionRequired.add(key);
+                }
+            }
+        }
+    }
+
+    private boolean needsCompaction(final String key, final int records) {
+        return records > MIN_COMPACTION_RECORDS && records > 2 * memory.getCookies(key).size();
+    }
+
+    private void append(final String key, final List<Cookie> cookies, final int records) throws IOException {
+        final File file = journalFile(key);
+        final boolean exists = file.exists();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, true)))) {
+            if (!exists) {
+                out.writeInt(MAGIC);
+            }
+            for (final Cookie cookie : cookies) {
+                writeRecord(out, cookie);
+            }
+        }
+        recordCounts.put(key, records);
+    }
+
+    /**
+     * Rewrites the journal of the given domain with its live cookies only.
+     */
+    private void compact(final String key) throws IOException {
+        final File file = journalFile(key);
+        final List<Cookie> cookies = memory.getCookies(key);
+        if (cookies.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to delete " + file);
+            }
+            recordCounts.remove(key);
+            return;
+        }
+        final File tmp = new File(directory, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            for (final Cookie cookie : cookies) {
+                writeRecord(out, cookie);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        recordCounts.put(key, cookies.size());
+    }
+
+    private void ensureLoaded(final String key) {
+        if (allLoaded || loaded.contains(key)) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (allLoaded || loaded.contains(key)) {
+                return;
+            }
+            load(key, journalFile(key));
+            loaded.add(key);
+        }
+    }
+
+    private void ensureAllLoaded() {
+        if (allLoaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (allLoaded) {
+                return;
+            }
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (final File file : files) {
+                    final String key = journalKey(file);
+                    if (key != null && !loaded.contains(key)) {
+                        load(key, file);
+                    }
+                }
+            }
+            allLoaded = true;
+            loaded.clear();
+        }
+    }
+
+    private void load(final String key, final File file) {
+        final InputStream in;
+        try {
+            in = new FileInputStream(file);
+        } catch (final FileNotFoundException ex) {
+            return;
+        }
+        int records = 0;
+        try (DataInputStream din = new DataInputStream(new BufferedInputStream(in))) {
+            if (din.readInt() != MAGIC) {
+                throw new IOException("Not a cookie journal: " + file);
+            }
+            for (;;) {
+                final int len;
+                try {
+                    len = din.readInt();
+                } catch (final EOFException ex) {
+                    break;
+                }
+                final byte[] record = new byte[len];
+                din.readFully(record);
+                memory.addCookie(decodeRecord(record));
+                records++;
+            }
+        } catch (final IOException ex) {
+            // most likely a record torn by an interrupted write;
+            // rewrite the journal from the records recovered so far
+            log.warn("Cookie journal " + file + " is damaged", ex);
+            compactionRequired.add(key);
+        }
+        recordCounts.put(key, records);
+    }
+
+    private void writeRecord(final DataOutputStream out, final Cookie cookie) throws IOException {
+        final byte[] record;
+        try {
+            record = encodeRecord(cookie);
+        } catch (final UTFDataFormatException ex) {
+            log.warn("Cookie " + cookie.getName() + " is too large to be persisted");
+            return;
+        }
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    static byte[] encodeRecord(final Cookie cookie) throws IOException {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+        final DataOutputStream rec = new DataOutputStream(buf);
+        rec.writeUTF(cookie.getName());
+        writeNullable(rec, cookie.getValue());
+        writeNullable(rec, cookie.getDomain());
+        writeNullable(rec, cookie.getPath());
+        writeDate(rec, cookie.getExpiryDate());
+        writeDate(rec, cookie.getCreationDate());
+        rec.writeBoolean(cookie.isSecure());
+        int n = 0;
+        for (final String name : PERSISTENT_ATTRIBUTES) {
+            if (cookie.containsAttribute(name)) {
+                n++;
+            }
+        }
+        rec.writeByte(n);
+        for (final String name : PERSISTENT_ATTRIBUTES) {
+            if (cookie.containsAttribute(name)) {
+                rec.writeUTF(name);
+                writeNullable(rec, cookie.getAttribute(name));
+            }
+        }
+        rec.flush();
+        return buf.toByteArray();
+    }
+
+    static Cookie decodeRecord(final byte[] record) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        final BasicClientCookie cookie = new BasicClientCookie(in.readUTF(), readNullable(in));
+        cookie.setDomain(readNullable(in));
+        cookie.setPath(readNullable(in));
+        cookie.setExpiryDate(readDate(in));
+        cookie.setCreationDate(readDate(in));
+        cookie.setSecure(in.readBoolean());
+        final int n = in.readUnsignedByte();
+        for (int i = 0; i < n; i++) {
+            cookie.setAttribute(in.readUTF(), readNullable(in));
+        }
+        return cookie;
+    }
+
+    private static void writeNullable(final DataOutputStream out, final String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullable(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate(final DataOutputStream out, final Date date) throws IOException {
+        out.writeLong(date != null ? date.getTime() : Long.MIN_VALUE);
+    }
+
+    private static Date readDate(final DataInputStream in) throws IOException {
+        final long time = in.readLong();
+        return time != Long.MIN_VALUE ? new Date(time) : null;
+    }
+
+    File journalFile(final String key) {
+        try {
+            return new File(directory, "cookies-" + URLEncoder.encode(key, "UTF-8") + SUFFIX);
+        } catch (final UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String journalKey(final File file) {
+        final String name = file.getName();
+        if (!name.startsWith("cookies-") || !name.endsWith(SUFFIX)) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(name.substring(8, name.length() - SUFFIX.length()), "UTF-8");
+        } catch (final UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of records in the journal of the given domain.
+     */
+    int getRecordCount(final String key) {
+        final Integer count = recordCounts.get(key);
+        return count != null ? count : 0;
+    }
+
+    boolean isLoaded(final String key) {
+        return allLoaded || loaded.contains(key);
+    }
+
+    @Override
+    public String toString() {
+        return memory.toString();
+    }
+
+}
@@ -28,13 +28,16 @@
 package org.apache.hc.client5.http.methods;
 
 import java.net.URI;
+import java.util.Map;
 
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.utils.URITemplate;
 import org.apache.hc.core5.annotation.NotThreadSafe;
 import org.apache.hc.core5.http.HttpVersion;
 import org.apache.hc.core5.http.ProtocolVersion;
 import org.apache.hc.core5.http.RequestLine;
 import org.apache.hc.core5.http.message.BasicRequestLine;
+import org.apache.hc.core5.util.Args;
 
 /**
  * Base implementation of {@link HttpUriRequest}.
@@ -105,6 +108,16 @@ public abstract class HttpRequestBase extends AbstractExecutionAwareRequest
         this.uri = uri;
     }
 
+    /**
+     * Sets the request URI to the expansion of the given template.
+     *
+     * @since 5.0
+     */
+    public void setURI(final URITemplate template, final Map<String, ?> variables) {
+        Args.notNull(template, "URI template");
+        this.uri = template.expandToURI(variables);
+    }
+
     /**
      * @since 4.2
      */
@@ -36,10 +36,12 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.entity.UrlEncodedFormEntity;
 import org.apache.hc.client5.http.utils.URIBuilder;
+import org.apache.hc.client5.http.utils.URITemplate;
 import org.apache.hc.client5.http.utils.URLEncodedUtils;
 import org.apache.hc.core5.annotation.NotThreadSafe;
 import org.apache.hc.core5.http.Header;
@@ -345,6 +347,17 @@ public class RequestBuilder {
         return this;
     }
 
+    /**
+     * Sets the request URI to the expansion of the given template.
+     *
+     * @since 5.0
+     */
+    public RequestBuilder setUri(final URITemplate template, final Map<String, ?> variables) {
+        Args.notNull(template, "URI template");
+        this.uri = template.expandToURI(variables);
+        return this;
+    }
+
     public Header getFirstHeader(final String name) {
         return headergroup != null ? headergroup.getFirstHeader(name) : null;
     }
@@ -0,0 +1,138 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.protocol;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.cookie.CookieSpec;
+import org.apache.hc.core5.annotation.ThreadSafe;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Cache of formatted {@code Cookie} request headers keyed by
+ * {@link CookieOrigin}. Each cached value is tagged with the version of
+ * the {@link org.apache.hc.client5.http.cookie.IndexedCookieStore} it was computed from and with the
+ * {@link CookieSpec} that produced it, and is only returned as long as
+ * neither has changed and none of the matched cookies has expired.
+ * <p>
+ * The number of cached origins is bounded; once the bound is exceeded the
+ * cache is emptied.
+ * </p>
+ *
+ * @since 5.0
+ */
+@ThreadSafe
+final class CookieHeaderCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final int maxEntries;
+    private final ConcurrentMap<String, Entry> entries;
+
+    CookieHeaderCache(final int maxEntries) {
+        this.maxEntries = Args.positive(maxEntries, "Max entries");
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    CookieHeaderCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Returns the cached headers for the given origin, or {@code null}
+     * if there are none valid for the given store version and cookie spec
+     * at the given time. An empty list means that no cookie matches.
+     */
+    List<Header> get(
+            final CookieOrigin origin, final CookieSpec cookieSpec, final long version, final Date now) {
+        final Entry entry = entries.get(key(origin));
+        if (entry != null && entry.version == version && entry.cookieSpec == cookieSpec
+                && now.getTime() < entry.expiry) {
+            return entry.headers;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the headers formatted from the given matched cookies.
+     */
+    void put(
+            final CookieOrigin origin, final CookieSpec cookieSpec, final long version,
+            final List<Cookie> matchedCookies, final List<Header> headers) {
+        long expiry = Long.MAX_VALUE;
+        for (final Cookie cookie : matchedCookies) {
+            final Date expiryDate = cookie.getExpiryDate();
+            if (expiryDate != null && expiryDate.getTime() < expiry) {
+                expiry = expiryDate.getTime();
+            }
+        }
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+        entries.put(key(origin), new Entry(cookieSpec, version, expiry,
+                Collections.unmodifiableList(headers)));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static String key(final CookieOrigin origin) {
+        final StringBuilder buf = new StringBuilder(origin.getHost().length() + origin.getPath().length() + 12);
+        buf.append(origin.isSecure() ? 's' : 'p').append(origin.getPort()).append(':')
+                .append(origin.getHost()).append(origin.getPath());
+        return buf.toString();
+    }
+
+    private static final class Entry {
+
+        final CookieSpec cookieSpec;
+        final long version;
+        final long expiry;
+        final List<Header> headers;
+
+        Entry(final CookieSpec cookieSpec, final long version, final long expiry, final List<Header> headers) {
+            this.cookieSpec = cookieSpec;
+            this.version = version;
+            this.expiry = expiry;
+            this.headers = headers;
+        }
+
+    }
+
+}
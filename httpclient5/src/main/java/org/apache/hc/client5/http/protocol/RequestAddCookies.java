@@ -31,8 +31,11 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,8 +47,9 @@ import org.apache.hc.client5.http.cookie.CookieOrigin;
 import org.apache.hc.client5.http.cookie.CookieSpec;
 import org.apache.hc.client5.http.cookie.CookieSpecProvider;
 import org.apache.hc.client5.http.cookie.CookieStore;
+import org.apache.hc.client5.http.cookie.IndexedCookieStore;
 import org.apache.hc.client5.http.methods.HttpUriRequest;
-import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpException;
 import org.apache.hc.core5.http.HttpHost;
@@ -60,14 +64,21 @@ import org.apache.hc.core5.util.TextUtils;
  * Request interceptor that matches cookies available in the current
  * {@link CookieStore} to the request being executed and generates
  * corresponding {@code Cookie} request headers.
+ * <p>
+ * Headers generated from an {@link IndexedCookieStore} are cached per store
+ * and origin until the store content changes.
+ * </p>
  *
  * @since 4.0
  */
-@Immutable
+@ThreadSafe
 public class RequestAddCookies implements HttpRequestInterceptor {
 
     private final Log log = LogFactory.getLog(getClass());
 
+    // caches are dropped along with their stores
+    private final Map<IndexedCookieStore, CookieHeaderCache> headerCaches = new WeakHashMap<>();
+
     public RequestAddCookies() {
         super();
     }
@@ -154,11 +165,63 @@ public class RequestAddCookies implements HttpRequestInterceptor {
             return;
         }
         final CookieSpec cookieSpec = provider.create(clientContext);
-        // Get all cookies available in the HTTP state
-        final List<Cookie> cookies = cookieStore.getCookies();
+        final Date now = new Date();
+        final List<Header> headers;
+        if (cookieStore instanceof IndexedCookieStore) {
+            final IndexedCookieStore indexedStore = (IndexedCookieStore) cookieStore;
+            // Obtain the version before the content, so that a concurrent
+            // change cannot be masked by the cached headers
+            final long version = indexedStore.getVersion();
+            final CookieHeaderCache headerCache = getHeaderCache(indexedStore);
+            final List<Header> cached = headerCache.get(cookieOrigin, cookieSpec, version, now);
+            if (cached != null) {
+                if (this.log.isDebugEnabled()) {
+                    this.log.debug("Cached cookie headers used for " + cookieOrigin);
+                }
+                headers = cached;
+            } else {
+                // Get only the cookies that may match the origin
+                final List<Cookie> matchedCookies = matchCookies(
+                        indexedStore, indexedStore.getCandidates(cookieOrigin), cookieSpec, cookieOrigin, now);
+                headers = formatCookies(cookieSpec, matchedCookies);
+                headerCache.put(cookieOrigin, cookieSpec, version, matchedCookies, headers);
+            }
+        } else {
+            // Get all cookies available in the HTTP state
+            final List<Cookie> matchedCookies = matchCookies(
+                    cookieStore, cookieStore.getCookies(), cookieSpec, cookieOrigin, now);
+            headers = formatCookies(cookieSpec, matchedCookies);
+        }
+        // Generate Cookie request headers
+        for (final Header header : headers) {
+            request.addHeader(header);
+        }
+
+        // Stick the CookieSpec and CookieOrigin instances to the HTTP context
+        // so they could be obtained by the response interceptor
+        context.setAttribute(HttpClientContext.COOKIE_SPEC, cookieSpec);
+        context.setAttribute(HttpClientContext.COOKIE_ORIGIN, cookieOrigin);
+    }
+
+    private CookieHeaderCache getHeaderCache(final IndexedCookieStore cookieStore) {
+        synchronized (this.headerCaches) {
+            CookieHeaderCache headerCache = this.headerCaches.get(cookieStore);
+            if (headerCache == null) {
+                headerCache = new CookieHeaderCache();
+                this.headerCaches.put(cookieStore, headerCache);
+            }
+            return headerCache;
+        }
+    }
+
+    private List<Cookie> matchCookies(
+            final CookieStore cookieStore,
+            final List<Cookie> cookies,
+            final CookieSpec cookieSpec,
+            final CookieOrigin cookieOrigin,
+            final Date now) {
         // Find cookies matching the given origin
         final List<Cookie> matchedCookies = new ArrayList<>();
-        final Date now = new Date();
         boolean expired = false;
         for (final Cookie cookie : cookies) {
             if (!cookie.isExpired(now)) {
@@ -181,18 +244,13 @@ public class RequestAddCookies implements HttpRequestInterceptor {
         if (expired) {
             cookieStore.clearExpired(now);
         }
-        // Generate Cookie request headers
-        if (!matchedCookies.isEmpty()) {
-            final List<Header> headers = cookieSpec.formatCookies(matchedCookies);
-            for (final Header header : headers) {
-                request.addHeader(header);
-            }
-        }
+        return matchedCookies;
+    }
 
-        // Stick the CookieSpec and CookieOrigin instances to the HTTP context
-        // so they could be obtained by the response interceptor
-        context.setAttribute(HttpClientContext.COOKIE_SPEC, cookieSpec);
-        context.setAttribute(HttpClientContext.COOKIE_ORIGIN, cookieOrigin);
+    private static List<Header> formatCookies(final CookieSpec cookieSpec, final List<Cookie> matchedCookies) {
+        return !matchedCookies.isEmpty()
+                ? cookieSpec.formatCookies(matchedCookies)
+                : Collections.<Header>emptyList();
     }
 
 }
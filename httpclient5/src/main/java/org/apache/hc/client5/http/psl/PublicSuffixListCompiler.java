@@ -0,0 +1,89 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.psl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Compiles a public suffix list in the text format published by
+ * <a href="http://publicsuffix.org/">publicsuffix.org</a> into the binary
+ * snapshot loaded by {@link PublicSuffixMatcherLoader#getDefault()}.
+ * <p>
+ * Invoked at build time to produce {@code mozilla/public-suffix-list.bin}
+ * from the downloaded {@code mozilla/public-suffix-list.txt}:
+ * </p>
+ * <pre>
+ * java org.apache.hc.client5.http.psl.PublicSuffixListCompiler &lt;input.txt&gt; &lt;output.bin&gt;
+ * </pre>
+ *
+ * @since 5.0
+ */
+@Immutable
+public final class PublicSuffixListCompiler {
+
+    private PublicSuffixListCompiler() {
+    }
+
+    /**
+     * Compiles the list read from the given reader into the given output
+     * stream.
+     */
+    public static void compile(final Reader reader, final OutputStream out) throws IOException {
+        Args.notNull(reader, "Reader");
+        Args.notNull(out, "Output stream");
+        final PublicSuffixMatcher matcher = new PublicSuffixMatcher(
+                new PublicSuffixListParser().parseByType(reader));
+        PublicSuffixTrieCodec.write(matcher, out);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: PublicSuffixListCompiler <input.txt> <output.bin>");
+            System.exit(1);
+            return;
+        }
+        final File input = new File(args[0]);
+        final File output = new File(args[1]);
+        try (InputStream in = new FileInputStream(input);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+            compile(new InputStreamReader(in, StandardCharsets.UTF_8), out);
+        }
+    }
+
+}
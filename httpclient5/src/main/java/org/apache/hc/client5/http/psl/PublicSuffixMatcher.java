@@ -27,11 +27,15 @@
 package org.apache.hc.client5.http.psl;
 
 import java.net.IDN;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.hc.core5.annotation.ThreadSafe;
 import org.apache.hc.core5.util.Args;
@@ -41,6 +45,14 @@ import org.apache.hc.core5.util.Args;
  * <p>
  * An up-to-date list of suffixes can be obtained from
  * <a href="http://publicsuffix.org/">publicsuffix.org</a>
+ * </p>
+ * <p>
+ * Rules are compiled into a trie of domain labels, starting with the top
+ * level label, in which each label is present both in its Unicode and in its
+ * ASCII (punycode) form. Matching a domain name walks the trie from its last
+ * label without converting or copying the name. Results for recently seen
+ * domain names are additionally cached.
+ * </p>
  *
  * @see PublicSuffixList
  *
@@ -49,8 +61,13 @@ import org.apache.hc.core5.util.Args;
 @ThreadSafe
 public final class PublicSuffixMatcher {
 
-    private final Map<String, DomainType> rules;
-    private final Map<String, DomainType> exceptions;
+    static final int MAX_CACHE_SIZE = 1024;
+
+    private static final String NO_ROOT = new String("");
+
+    private final Node root;
+    // one cache per expected domain type; index 0 for any type
+    private final ConcurrentMap<String, String>[] caches;
 
     public PublicSuffixMatcher(final Collection<String> rules, final Collection<String> exceptions) {
         this(DomainType.UNKNOWN, rules, exceptions);
@@ -63,16 +80,11 @@ public final class PublicSuffixMatcher {
             final DomainType domainType, final Collection<String> rules, final Collection<String> exceptions) {
         Args.notNull(domainType,  "Domain type");
         Args.notNull(rules,  "Domain suffix rules");
-        this.rules = new ConcurrentHashMap<>(rules.size());
-        for (final String rule: rules) {
-            this.rules.put(rule, domainType);
-        }
-        this.exceptions = new ConcurrentHashMap<>();
-        if (exceptions != null) {
-            for (final String exception: exceptions) {
-                this.exceptions.put(exception, domainType);
-            }
-        }
+        final Builder builder = new Builder();
+        builder.addRules(rules, domainType);
+        builder.addExceptions(exceptions, domainType);
+        this.root = builder.build();
+        this.caches = createCaches();
     }
 
     /**
@@ -80,41 +92,39 @@ public final class PublicSuffixMatcher {
      */
     public PublicSuffixMatcher(final Collection<PublicSuffixList> lists) {
         Args.notNull(lists,  "Domain suffix lists");
-        this.rules = new ConcurrentHashMap<>();
-        this.exceptions = new ConcurrentHashMap<>();
+        final Builder builder = new Builder();
         for (final PublicSuffixList list: lists) {
             final DomainType domainType = list.getType();
-            final List<String> rules = list.getRules();
-            for (final String rule: rules) {
-                this.rules.put(rule, domainType);
-            }
-            final List<String> exceptions = list.getExceptions();
-            if (exceptions != null) {
-                for (final String exception: exceptions) {
-                    this.exceptions.put(exception, domainType);
-                }
-            }
+            builder.addRules(list.getRules(), domainType);
+            builder.addExceptions(list.getExceptions(), domainType);
         }
+        this.root = builder.build();
+        this.caches = createCaches();
     }
 
-    private static boolean hasEntry(final Map<String, DomainType> map, final String rule, final DomainType expectedType) {
-        if (map == null) {
-            return false;
-        }
-        final DomainType domainType = map.get(rule);
-        if (domainType == null) {
-            return false;
-        } else {
-            return expectedType == null || domainType.equals(expectedType);
-        }
+    /**
+     * Creates a matcher for a precompiled rule trie.
+     */
+    PublicSuffixMatcher(final Node root) {
+        this.root = Args.notNull(root, "Rule trie");
+        this.caches = createCaches();
     }
 
-    private boolean hasRule(final String rule, final DomainType expectedType) {
-        return hasEntry(this.rules, rule, expectedType);
+    Node getRoot() {
+        return root;
     }
 
-    private boolean hasException(final String exception, final DomainType expectedType) {
-        return hasEntry(this.exceptions, exception, expectedType);
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, String>[] createCaches() {
+        final ConcurrentMap<String, String>[] caches = new ConcurrentMap[DomainType.values().length + 1];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new ConcurrentHashMap<>();
+        }
+        return caches;
+    }
+
+    private static boolean hasEntry(final DomainType domainType, final DomainType expectedType) {
+        return domainType != null && (expectedType == null || domainType.equals(expectedType));
     }
 
     /**
@@ -145,33 +155,83 @@ public final class PublicSuffixMatcher {
         if (domain.startsWith(".")) {
             return null;
         }
-        String domainName = null;
-        String segment = domain.toLowerCase(Locale.ROOT);
-        while (segment != null) {
+        final ConcurrentMap<String, String> cache = caches[expectedType != null ? expectedType.ordinal() + 1 : 0];
+        final String cached = cache.get(domain);
+        if (cached != null) {
+            return cached != NO_ROOT ? cached : null;
+        }
+        final String domainRoot = findDomainRoot(domain, expectedType);
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            cache.clear();
+        }
+        cache.put(domain, domainRoot != null ? domainRoot : NO_ROOT);
+        return domainRoot;
+    }
 
-            // An exception rule takes priority over any other matching rule.
-            if (hasException(IDN.toUnicode(segment), expectedType)) {
-                return segment;
+    /**
+     * Walks the trie from the last label of the domain. Labels are counted
+     * from the left starting with 0, so that the suffix starting at label
+     * {@code i} corresponds to the {@code i}-th iteration of the classic
+     * algorithm, which examines the suffixes from the longest one:
+     * <ul>
+     * <li>an exception rule for the suffix yields the suffix itself;</li>
+     * <li>a rule for the suffix, or a wildcard rule for the following suffix,
+     * yields the previous (one label longer) suffix, if any;</li>
+     * <li>otherwise the last suffix with more than one label is returned.</li>
+     * </ul>
+     * The first suffix, that is the deepest trie node, with a matching rule
+     * therefore decides.
+     */
+    private String findDomainRoot(final String domain, final DomainType expectedType) {
+        // start of the longest suffix with a matching rule
+        int hitStart = -1;
+        boolean hitIsException = false;
+        Node node = root;
+        int end = domain.length();
+        while (node != null) {
+            final int dot = domain.lastIndexOf('.', end - 1);
+            final int start = dot + 1;
+            node = node.child(domain, start, end);
+            if (node == null) {
+                break;
             }
-
-            if (hasRule(IDN.toUnicode(segment), expectedType)) {
+            if (hasEntry(node.exception, expectedType)) {
+                hitStart = start;
+                hitIsException = true;
+            } else if (hasEntry(node.rule, expectedType)) {
+                hitStart = start;
+                hitIsException = false;
+            }
+            if (dot < 0) {
                 break;
             }
-
-            final int nextdot = segment.indexOf('.');
-            final String nextSegment = nextdot != -1 ? segment.substring(nextdot + 1) : null;
-
-            if (nextSegment != null) {
-                if (hasRule("*." + IDN.toUnicode(nextSegment), expectedType)) {
-                    break;
-                }
+            if (hasEntry(node.wildcard, expectedType)) {
+                // wildcard rule: the suffix one label longer is public as well,
+                // unless an exception rule for it is found next
+                hitStart = domain.lastIndexOf('.', dot - 1) + 1;
+                hitIsException = false;
+            }
+            end = dot;
+        }
+        final int rootStart;
+        if (hitStart >= 0) {
+            if (hitIsException) {
+                rootStart = hitStart;
+            } else if (hitStart > 0) {
+                // one label longer than the public suffix
+                rootStart = domain.lastIndexOf('.', hitStart - 2) + 1;
+            } else {
+                return null;
             }
-            if (nextdot != -1) {
-                domainName = segment;
+        } else {
+            // implicit wildcard rule: registrable part has two labels
+            final int lastDot = domain.lastIndexOf('.');
+            if (lastDot < 0) {
+                return null;
             }
-            segment = nextSegment;
+            rootStart = domain.lastIndexOf('.', lastDot - 1) + 1;
         }
-        return domainName;
+        return domain.substring(rootStart).toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -199,4 +259,167 @@ public final class PublicSuffixMatcher {
         return domainRoot == null;
     }
 
+    /**
+     * Trie node for a domain suffix. Children are kept in arrays sorted by
+     * label so that they can be searched without allocation.
+     */
+    static final class Node {
+
+        DomainType rule;
+        DomainType wildcard;
+        DomainType exception;
+        String[] labels;
+        Node[] children;
+
+        Node child(final String domain, final int start, final int end) {
+            final String[] keys = labels;
+            if (keys == null) {
+                return null;
+            }
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int cmp = compare(keys[mid], domain, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Compares a lower case label with a region of a domain name
+         * ignoring the case of the latter.
+         */
+        static int compare(final String label, final String domain, final int start, final int end) {
+            final int len1 = label.length();
+            final int len2 = end - start;
+            final int n = Math.min(len1, len2);
+            for (int i = 0; i < n; i++) {
+                final char c1 = label.charAt(i);
+                final char c2 = Character.toLowerCase(domain.charAt(start + i));
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return len1 - len2;
+        }
+
+    }
+
+    static final class Builder {
+
+        private final MutableNode root = new MutableNode();
+
+        void addRules(final Collection<String> rules, final DomainType domainType) {
+            for (final String rule: rules) {
+                if (rule.startsWith("*.")) {
+                    for (final MutableNode node: nodes(rule.substring(2))) {
+                        node.wildcard = domainType;
+                    }
+                } else {
+                    for (final MutableNode node: nodes(rule)) {
+                        node.rule = domainType;
+                    }
+                }
+            }
+        }
+
+        void addExceptions(final Collection<String> exceptions, final DomainType domainType) {
+            if (exceptions != null) {
+                for (final String exception: exceptions) {
+                    for (final MutableNode node: nodes(exception)) {
+                        node.exception = domainType;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the nodes of all combinations of Unicode and ASCII spellings
+         * of the labels of the given suffix, creating them as necessary.
+         */
+        private List<MutableNode> nodes(final String suffix) {
+            final String[] labels = suffix.toLowerCase(Locale.ROOT).split("\\.", -1);
+            List<MutableNode> current = Arrays.asList(root);
+            for (int i = labels.length - 1; i >= 0; i--) {
+                final List<MutableNode> next = new ArrayList<>(2);
+                for (final MutableNode node: current) {
+                    for (final String form: forms(labels[i])) {
+                        final MutableNode child = node.child(form);
+                        if (!next.contains(child)) {
+                            next.add(child);
+                        }
+                    }
+                }
+                current = next;
+            }
+            return current;
+        }
+
+        private static List<String> forms(final String label) {
+            final List<String> forms = new ArrayList<>(2);
+            forms.add(label);
+            try {
+                final String unicode = IDN.toUnicode(label).toLowerCase(Locale.ROOT);
+                if (!forms.contains(unicode)) {
+                    forms.add(unicode);
+                }
+                final String ascii = IDN.toASCII(label).toLowerCase(Locale.ROOT);
+                if (!forms.contains(ascii)) {
+                    forms.add(ascii);
+                }
+            } catch (final IllegalArgumentException ignore) {
+                // not a valid IDN label; match it literally only
+            }
+            return forms;
+        }
+
+        Node build() {
+            return root.freeze();
+        }
+
+    }
+
+    private static final class MutableNode {
+
+        DomainType rule;
+        DomainType wildcard;
+        DomainType exception;
+        final Map<String, MutableNode> children = new HashMap<>();
+
+        MutableNode child(final String label) {
+            MutableNode child = children.get(label);
+            if (child == null) {
+                child = new MutableNode();
+                children.put(label, child);
+            }
+            return child;
+        }
+
+        Node freeze() {
+            final Node node = new Node();
+            node.rule = rule;
+            node.wildcard = wildcard;
+            node.exception = exception;
+            if (!children.isEmpty()) {
+                final String[] labels = children.keySet().toArray(new String[children.size()]);
+                Arrays.sort(labels);
+                final Node[] nodes = new Node[labels.length];
+                for (int i = 0; i < labels.length; i++) {
+                    nodes[i] = children.get(labels[i]).freeze();
+                }
+                node.labels = labels;
+                node.children = nodes;
+            }
+            return node;
+        }
+
+    }
+
 }
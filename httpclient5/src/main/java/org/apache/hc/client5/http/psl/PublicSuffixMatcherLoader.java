@@ -26,11 +26,14 @@
  */
 package org.apache.hc.client5.http.psl;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -69,8 +72,34 @@ public final class PublicSuffixMatcherLoader {
         }
     }
 
+    /**
+     * Loads the binary snapshot of the bundled list produced at build time
+     * by {@link PublicSuffixListCompiler} from the given location, if present.
+     */
+    private static PublicSuffixMatcher loadSnapshot(final URL url) {
+        try (InputStream in = new BufferedInputStream(url.openStream(), 32 * 1024)) {
+            return PublicSuffixTrieCodec.read(in);
+        } catch (final FileNotFoundException ex) {
+            return null;
+        } catch (final IOException ex) {
+            final Log log = LogFactory.getLog(PublicSuffixMatcherLoader.class);
+            if (log.isWarnEnabled()) {
+                log.warn("Failure loading public suffix list snapshot; falling back to text list", ex);
+            }
+            return null;
+        }
+    }
+
     private static volatile PublicSuffixMatcher DEFAULT_INSTANCE;
 
+    /**
+     * Returns the matcher for the public suffix list bundled at
+     * {@code /mozilla/public-suffix-list.txt}. A binary snapshot of the list
+     * ({@code public-suffix-list.bin}) is used instead of the text list only if
+     * it is found next to the text list, that is, in the same classpath entry,
+     * so that a text list placed earlier on the classpath always takes
+     * precedence over the bundled one.
+     */
     public static PublicSuffixMatcher getDefault() {
         if (DEFAULT_INSTANCE == null) {
             synchronized (PublicSuffixMatcherLoader.class) {
@@ -79,12 +108,19 @@ public final class PublicSuffixMatcherLoader {
                             "/mozilla/public-suffix-list.txt");
                     if (url != null) {
                         try {
-                            DEFAULT_INSTANCE = load(url);
-                        } catch (final IOException ex) {
-                            // Should never happen
-                            final Log log = LogFactory.getLog(PublicSuffixMatcherLoader.class);
-                            if (log.isWarnEnabled()) {
-                                log.warn("Failure loading public suffix list from default resource", ex);
+                            DEFAULT_INSTANCE = loadSnapshot(new URL(url, "public-suffix-list.bin"));
+                        } catch (final MalformedURLException ignore) {
+                            // not a hierarchical location, use the text list
+                        }
+                        if (DEFAULT_INSTANCE == null) {
+                            try {
+                                DEFAULT_INSTANCE = load(url);
+                            } catch (final IOException ex) {
+                                // Should never happen
+                                final Log log = LogFactory.getLog(PublicSuffixMatcherLoader.class);
+                                if (log.isWarnEnabled()) {
+                                    log.warn("Failure loading public suffix list from default resource", ex);
+                                }
                             }
                         }
                     } else {
@@ -0,0 +1,130 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.psl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reads and writes the rule trie of a {@link PublicSuffixMatcher} in a
+ * compact binary form, which can be loaded without parsing the text list or
+ * converting domain labels between their Unicode and ASCII forms.
+ * <p>
+ * The format consists of a magic number and a version followed by the
+ * nodes of the trie in depth-first order. Each node is encoded as its rule,
+ * wildcard rule and exception rule types (0 if absent, otherwise the
+ * {@link DomainType} ordinal plus one), the number of its children and, for
+ * each child in label order, the label followed by the child node.
+ * </p>
+ *
+ * @since 5.0
+ */
+final class PublicSuffixTrieCodec {
+
+    static final int MAGIC = 0x50534c54;
+    static final int VERSION = 1;
+
+    private static final DomainType[] TYPES = DomainType.values();
+
+    private PublicSuffixTrieCodec() {
+    }
+
+    static void write(final PublicSuffixMatcher matcher, final OutputStream out) throws IOException {
+        final DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeByte(VERSION);
+        writeNode(matcher.getRoot(), dout);
+        dout.flush();
+    }
+
+    private static void writeNode(final PublicSuffixMatcher.Node node, final DataOutputStream out) throws IOException {
+        out.writeByte(encode(node.rule));
+        out.writeByte(encode(node.wildcard));
+        out.writeByte(encode(node.exception));
+        final int n = node.labels != null ? node.labels.length : 0;
+        if (n > 0xffff) {
+            throw new IOException("Too many child labels: " + n);
+        }
+        out.writeShort(n);
+        for (int i = 0; i < n; i++) {
+            out.writeUTF(node.labels[i]);
+            writeNode(node.children[i], out);
+        }
+    }
+
+    static PublicSuffixMatcher read(final InputStream in) throws IOException {
+        final DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC) {
+            throw new IOException("Not a public suffix list snapshot");
+        }
+        final int version = din.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported public suffix list snapshot version: " + version);
+        }
+        return new PublicSuffixMatcher(readNode(din));
+    }
+
+    private static PublicSuffixMatcher.Node readNode(final DataInputStream in) throws IOException {
+        final PublicSuffixMatcher.Node node = new PublicSuffixMatcher.Node();
+        node.rule = decode(in.readUnsignedByte());
+        node.wildcard = decode(in.readUnsignedByte());
+        node.exception = decode(in.readUnsignedByte());
+        final int n = in.readUnsignedShort();
+        if (n > 0) {
+            final String[] labels = new String[n];
+            final PublicSuffixMatcher.Node[] children = new PublicSuffixMatcher.Node[n];
+            for (int i = 0; i < n; i++) {
+                labels[i] = in.readUTF();
+                if (i > 0 && labels[i - 1].compareTo(labels[i]) >= 0) {
+                    throw new IOException("Malformed public suffix list snapshot");
+                }
+                children[i] = readNode(in);
+            }
+            node.labels = labels;
+            node.children = children;
+        }
+        return node;
+    }
+
+    private static int encode(final DomainType domainType) {
+        return domainType != null ? domainType.ordinal() + 1 : 0;
+    }
+
+    private static DomainType decode(final int code) throws IOException {
+        if (code == 0) {
+            return null;
+        }
+        if (code > TYPES.length) {
+            throw new IOException("Unknown domain type: " + code);
+        }
+        return TYPES[code - 1];
+    }
+
+}
@@ -133,6 +133,15 @@ public final class DateUtils {
         if (v.length() > 1 && v.startsWith("'") && v.endsWith("'")) {
             v = v.substring (1, v.length() - 1);
         }
+        if (startDate == null) {
+            final int formats = fastFormats(localDateFormats);
+            if (formats != 0) {
+                final long millis = FastHttpDateFormat.parse(v, 0, v.length(), formats);
+                if (millis != FastHttpDateFormat.INVALID) {
+                    return new Date(millis);
+                }
+            }
+        }
 
         for (final String dateFormat : localDateFormats) {
             final SimpleDateFormat dateParser = DateFormatHolder.formatFor(dateFormat);
@@ -146,6 +155,26 @@ public final class DateUtils {
         return null;
     }
 
+    /**
+     * Maps the given patterns to {@link FastHttpDateFormat} formats, or returns
+     * {@code 0} if any of them is not supported by the fast parser.
+     */
+    private static int fastFormats(final String[] dateFormats) {
+        int formats = 0;
+        for (final String dateFormat : dateFormats) {
+            if (PATTERN_RFC1123.equals(dateFormat)) {
+                formats |= FastHttpDateFormat.RFC1123;
+            } else if (PATTERN_RFC1036.equals(dateFormat)) {
+                formats |= FastHttpDateFormat.RFC1036;
+            } else if (PATTERN_ASCTIME.equals(dateFormat)) {
+                formats |= FastHttpDateFormat.ASCTIME;
+            } else {
+                return 0;
+            }
+        }
+        return formats;
+    }
+
     /**
      * Formats the given date according to the RFC 1123 pattern.
      *
@@ -174,10 +203,28 @@ public final class DateUtils {
     public static String formatDate(final Date date, final String pattern) {
         Args.notNull(date, "Date");
         Args.notNull(pattern, "Pattern");
+        if (PATTERN_RFC1123.equals(pattern)) {
+            final String s = FastHttpDateFormat.format(date.getTime());
+            if (s != null) {
+                return s;
+            }
+        }
         final SimpleDateFormat formatter = DateFormatHolder.formatFor(pattern);
         return formatter.format(date);
     }
 
+    /**
+     * Returns the current date according to the RFC 1123 pattern. The value
+     * is formatted at most once per second.
+     *
+     * @return An RFC 1123 formatted date string.
+     *
+     * @since 5.0
+     */
+    public static String formatCurrentDate() {
+        return FastHttpDateFormat.formatCurrentDate();
+    }
+
     /**
      * Clears thread-local variable containing {@link java.text.DateFormat} cache.
      *
@@ -0,0 +1,473 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Hand-written parser and formatter for the date formats used by HTTP
+ * (RFC 1123, RFC 1036 / RFC 850 and ANSI C {@code asctime()}), working on
+ * epoch milliseconds in GMT.
+ * <p>
+ * The parser works on any {@link CharSequence} region and does not allocate.
+ * It only accepts well-formed dates in the Gregorian calendar with a
+ * {@code GMT}, {@code UTC} or numeric zone and returns {@link #INVALID}
+ * for anything else, in which case callers may resort to a lenient parser
+ * such as {@link java.text.SimpleDateFormat}. {@link DateUtils} does so.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Immutable
+public final class FastHttpDateFormat {
+
+    /** RFC 1123 format, for instance {@code Sun, 06 Nov 1994 08:49:37 GMT}. */
+    public static final int RFC1123 = 1;
+    /** RFC 1036 format, for instance {@code Sunday, 06-Nov-94 08:49:37 GMT}. */
+    public static final int RFC1036 = 2;
+    /** ANSI C {@code asctime()} format, for instance {@code Sun Nov  6 08:49:37 1994}. */
+    public static final int ASCTIME = 4;
+    /** All supported formats. */
+    public static final int ALL = RFC1123 | RFC1036 | ASCTIME;
+
+    /** Returned by the parse methods if the input cannot be parsed. */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final String[] DAYS = {
+        "Sunday", "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday"
+    };
+    private static final String[] MONTHS = {
+        "January", "February", "March", "April", "May", "June",
+        "July", "August", "September", "October", "November", "December"
+    };
+    private static final long MILLIS_PER_DAY = 86400000L;
+    // the Gregorian calendar of java.util is Julian before the 1582 cutover
+    private static final int MIN_YEAR = 1583;
+    private static final int MAX_YEAR = 9999;
+
+    private static volatile CurrentDate currentDate = new CurrentDate(-1L, null);
+
+    private FastHttpDateFormat() {
+    }
+
+    /**
+     * Parses a date in any of the supported formats.
+     *
+     * @return the date in milliseconds since the epoch or {@link #INVALID}
+     */
+    public static long parse(final CharSequence s) {
+        Args.notNull(s, "Date value");
+        return parse(s, 0, s.length(), ALL);
+    }
+
+    /**
+     * Parses a date in any of the given formats from a region of the given
+     * character sequence. Two-digit years are placed in the 2000s. Characters
+     * following a complete date are ignored if they start with a white space
+     * or a semicolon.
+     *
+     * @param s the character sequence
+     * @param start the start of the region
+     * @param end the end of the region
+     * @param formats a combination of {@link #RFC1123}, {@link #RFC1036}
+     *   and {@link #ASCTIME}
+     * @return the date in milliseconds since the epoch or {@link #INVALID}
+     */
+    public static long parse(final CharSequence s, final int start, final int end, final int formats) {
+        int pos = start;
+        // day of week, ignored like by lenient parsers
+        final int dayEnd = skipLetters(s, pos, end);
+        if (nameIndex(DAYS, s, pos, dayEnd) < 0 || dayEnd >= end) {
+            return INVALID;
+        }
+        pos = dayEnd;
+        final int year;
+        final int month;
+        final int day;
+        final int hour;
+        final int minute;
+        final int second;
+        if (s.charAt(pos) == ',') {
+            pos = skipSpaces(s, pos + 1, end);
+            final int dayStart = pos;
+            pos = skipDigits(s, pos, end, 2);
+            if (pos == dayStart || pos >= end) {
+                return INVALID;
+            }
+            day = toInt(s, dayStart, pos);
+            final boolean rfc1036 = s.charAt(pos) == '-';
+            if ((formats & (rfc1036 ? RFC1036 : RFC1123)) == 0) {
+                return INVALID;
+            }
+            pos = rfc1036 ? pos + 1 : skipSpaces(s, pos, end);
+            final int monthEnd = skipLetters(s, pos, end);
+            month = nameIndex(MONTHS, s, pos, monthEnd);
+            if (month < 0 || monthEnd >= end) {
+                return INVALID;
+            }
+            pos = monthEnd;
+            if (rfc1036) {
+                if (s.charAt(pos) != '-') {
+                    return INVALID;
+                }
+                pos++;
+            } else {
+                pos = skipSpaces(s, pos, end);
+            }
+            final int yearStart = pos;
+            pos = skipDigits(s, pos, end, 4);
+            final int yearDigits = pos - yearStart;
+            if (yearDigits == 4) {
+                year = toInt(s, yearStart, pos);
+            } else if (rfc1036 && yearDigits == 2) {
+                year = 2000 + toInt(s, yearStart, pos);
+            } else {
+                return INVALID;
+            }
+            pos = skipSpaces(s, pos, end);
+            final long time = parseTime(s, pos, end);
+            if (time < 0) {
+                return INVALID;
+            }
+            hour = (int) (time >>> 48);
+            minute = (int) (time >>> 32) & 0xffff;
+            second = (int) (time >>> 16) & 0xffff;
+            pos = skipSpaces(s, (int) (time & 0xffff), end);
+            final int zoneEnd = skipZone(s, pos, end);
+            if (zoneEnd < 0 || !isTerminated(s, zoneEnd, end)) {
+                return INVALID;
+            }
+            final long millis = toMillis(year, month, day, hour, minute, second);
+            return millis != INVALID ? millis - zoneOffset(s, pos, zoneEnd) : INVALID;
+        }
+        if ((formats & ASCTIME) == 0 || s.charAt(pos) != ' ') {
+            return INVALID;
+        }
+        pos = skipSpaces(s, pos, end);
+        final int monthEnd = skipLetters(s, pos, end);
+        month = nameIndex(MONTHS, s, pos, monthEnd);
+        if (month < 0) {
+            return INVALID;
+        }
+        pos = skipSpaces(s, monthEnd, end);
+        final int dayStart = pos;
+        pos = skipDigits(s, pos, end, 2);
+        if (pos == dayStart) {
+            return INVALID;
+        }
+        day = toInt(s, dayStart, pos);
+        pos = skipSpaces(s, pos, end);
+        final long time = parseTime(s, pos, end);
+        if (time < 0) {
+            return INVALID;
+        }
+        hour = (int) (time >>> 48);
+        minute = (int) (time >>> 32) & 0xffff;
+        second = (int) (time >>> 16) & 0xffff;
+        pos = skipSpaces(s, (int) (time & 0xffff), end);
+        final int yearStart = pos;
+        pos = skipDigits(s, pos, end, 4);
+        if (pos - yearStart != 4 || !isTerminated(s, pos, end)) {
+            return INVALID;
+        }
+        year = toInt(s, yearStart, pos);
+        return toMillis(year, month, day, hour, minute, second);
+    }
+
+    /**
+     * Formats the given date in RFC 1123 format.
+     *
+     * @param millis milliseconds since the epoch
+     * @return the formatted date or {@code null} if its year is outside of
+     *   the range supported by this class (1583 to 9999)
+     */
+    public static String format(final long millis) {
+        final long days = floorDiv(millis, MILLIS_PER_DAY);
+        final int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+        // civil date from days since the epoch, after H. Hinnant
+        final long z = days + 719468;
+        final long era = floorDiv(z, 146097);
+        final int doe = (int) (z - era * 146097);
+        final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final int mp = (5 * doy + 2) / 153;
+        final int day = doy - (153 * mp + 2) / 5 + 1;
+        final int month = mp < 10 ? mp + 3 : mp - 9;
+        final long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < MIN_YEAR || year > MAX_YEAR) {
+            return null;
+        }
+        final int dayOfWeek = (int) floorMod(days + 4, 7);
+        final int secondOfDay = millisOfDay / 1000;
+        final char[] buf = new char[29];
+        buf[0] = DAYS[dayOfWeek].charAt(0);
+        buf[1] = DAYS[dayOfWeek].charAt(1);
+        buf[2] = DAYS[dayOfWeek].charAt(2);
+        buf[3] = ',';
+        buf[4] = ' ';
+        put2(buf, 5, day);
+        buf[7] = ' ';
+        buf[8] = MONTHS[month - 1].charAt(0);
+        buf[9] = MONTHS[month - 1].charAt(1);
+        buf[10] = MONTHS[month - 1].charAt(2);
+        buf[11] = ' ';
+        put2(buf, 12, (int) (year / 100));
+        put2(buf, 14, (int) (year % 100));
+        buf[16] = ' ';
+        put2(buf, 17, secondOfDay / 3600);
+        buf[19] = ':';
+        put2(buf, 20, secondOfDay / 60 % 60);
+        buf[22] = ':';
+        put2(buf, 23, secondOfDay % 60);
+        buf[25] = ' ';
+        buf[26] = 'G';
+        buf[27] = 'M';
+        buf[28] = 'T';
+        return new String(buf);
+    }
+
+    /**
+     * Returns the current date formatted in RFC 1123 format, as used by the
+     * {@code Date} header. The value is computed at most once per second.
+     */
+    public static String formatCurrentDate() {
+        final long now = System.currentTimeMillis();
+        final long second = now / 1000;
+        final CurrentDate cached = currentDate;
+        if (cached.second == second) {
+            return cached.value;
+        }
+        final String value = format(second * 1000);
+        currentDate = new CurrentDate(second, value);
+        return value;
+    }
+
+    private static void put2(final char[] buf, final int off, final int value) {
+        buf[off] = (char) ('0' + value / 10);
+        buf[off + 1] = (char) ('0' + value % 10);
+    }
+
+    /**
+     * Parses {@code HH:mm:ss} with one or two digits per field.
+     *
+     * @return hour, minute, second and end position packed into 16 bit
+     *   fields, or -1 if invalid
+     */
+    private static long parseTime(final CharSequence s, final int start, final int end) {
+        int pos = start;
+        long packed = 0;
+        for (int i = 0; i < 3; i++) {
+            if (i > 0) {
+                if (pos >= end || s.charAt(pos) != ':') {
+                    return -1;
+                }
+                pos++;
+            }
+            final int fieldStart = pos;
+            pos = skipDigits(s, pos, end, 2);
+            if (pos == fieldStart) {
+                return -1;
+            }
+            final int value = toInt(s, fieldStart, pos);
+            if (value > (i == 0 ? 23 : 59)) {
+                return -1;
+            }
+            packed = (packed << 16) | value;
+        }
+        return (packed << 16) | pos;
+    }
+
+    /**
+     * Returns the end of a {@code GMT}, {@code UTC} or {@code +hhmm} zone
+     * starting at the given position, or -1.
+     */
+    private static int skipZone(final CharSequence s, final int pos, final int end) {
+        if (pos + 3 <= end && (regionMatches("GMT", s, pos) || regionMatches("UTC", s, pos))) {
+            final int zoneEnd = pos + 3;
+            // reject GMT+01:00 and the like
+            if (zoneEnd < end && (s.charAt(zoneEnd) == '+' || s.charAt(zoneEnd) == '-')) {
+                return -1;
+            }
+            return zoneEnd;
+        }
+        if (pos + 5 <= end && (s.charAt(pos) == '+' || s.charAt(pos) == '-')
+                && skipDigits(s, pos + 1, end, 4) == pos + 5) {
+            final int hours = toInt(s, pos + 1, pos + 3);
+            final int minutes = toInt(s, pos + 3, pos + 5);
+            return hours <= 23 && minutes <= 59 ? pos + 5 : -1;
+        }
+        return -1;
+    }
+
+    private static long zoneOffset(final CharSequence s, final int pos, final int end) {
+        if (end - pos != 5) {
+            return 0;
+        }
+        final long offset = (toInt(s, pos + 1, pos + 3) * 60L + toInt(s, pos + 3, pos + 5)) * 60000L;
+        return s.charAt(pos) == '-' ? -offset : offset;
+    }
+
+    private static boolean isTerminated(final CharSequence s, final int pos, final int end) {
+        if (pos >= end) {
+            return true;
+        }
+        final char ch = s.charAt(pos);
+        return ch == ' ' || ch == '\t' || ch == ';';
+    }
+
+    private static long toMillis(
+            final int year, final int month, final int day, final int hour, final int minute, final int second) {
+        if (year < MIN_YEAR || year > MAX_YEAR || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        // days since the epoch from a civil date, after H. Hinnant
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = y / 400;
+        final int yoe = y - era * 400;
+        final int mp = month > 2 ? month - 3 : month + 9;
+        final int doy = (153 * mp + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        final long days = era * 146097L + doe - 719468;
+        return days * MILLIS_PER_DAY + ((hour * 60L + minute) * 60L + second) * 1000L;
+    }
+
+    private static int daysInMonth(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Matches a short (three letter) or full name ignoring case.
+     *
+     * @return the one-based index of the name for months, the zero-based
+     *   index for days, or -1
+     */
+    private static int nameIndex(final String[] names, final CharSequence s, final int start, final int end) {
+        final int len = end - start;
+        if (len < 3) {
+            return -1;
+        }
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i];
+            if ((len == 3 || len == name.length()) && regionMatches(name, s, start, len)) {
+                return names == MONTHS ? i + 1 : i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(final String name, final CharSequence s, final int start) {
+        return regionMatches(name, s, start, name.length());
+    }
+
+    private static boolean regionMatches(final String name, final CharSequence s, final int start, final int len) {
+        for (int i = 0; i < len; i++) {
+            final char c1 = name.charAt(i);
+            final char c2 = s.charAt(start + i);
+            if (c1 != c2 && Character.toLowerCase(c1) != Character.toLowerCase(c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipLetters(final CharSequence s, final int start, final int end) {
+        int pos = start;
+        while (pos < end) {
+            final char ch = s.charAt(pos);
+            if (!((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z'))) {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipSpaces(final CharSequence s, final int start, final int end) {
+        int pos = start;
+        while (pos < end && s.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipDigits(final CharSequence s, final int start, final int end, final int max) {
+        int pos = start;
+        while (pos < end && pos - start < max) {
+            final char ch = s.charAt(pos);
+            if (ch < '0' || ch > '9') {
+                break;
+            }
+            pos++;
+        }
+        // more digits than allowed
+        if (pos < end && pos - start == max && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+            return start;
+        }
+        return pos;
+    }
+
+    private static int toInt(final CharSequence s, final int start, final int end) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            n = n * 10 + (s.charAt(i) - '0');
+        }
+        return n;
+    }
+
+    private static long floorDiv(final long x, final long y) {
+        final long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static long floorMod(final long x, final long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    private static final class CurrentDate {
+
+        final long second;
+        final String value;
+
+        CurrentDate(final long second, final String value) {
+            this.second = second;
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,434 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Precompiled URI template as defined by RFC 6570, intended for building
+ * large numbers of request URIs that differ only in a few components.
+ * <p>
+ * The template is parsed once and its literal parts are percent-encoded at
+ * compile time, so that expanding it only encodes the variable values. The
+ * following expressions are supported:
+ * </p>
+ * <ul>
+ * <li>{@code {var}} simple string expansion</li>
+ * <li>{@code {+var}} reserved expansion</li>
+ * <li>{@code {#var}} fragment expansion</li>
+ * <li>{@code {/var}} path segment expansion</li>
+ * <li>{@code {?var}} form-style query expansion</li>
+ * <li>{@code {&var}} form-style query continuation</li>
+ * </ul>
+ * <p>
+ * Expressions may list several comma separated variables. Value modifiers
+ * ({@code :n} prefixes and {@code *} explosion) are not supported. Values
+ * are converted with {@link Object#toString()} and encoded as UTF-8;
+ * {@code null} values are undefined and omitted from the expansion.
+ * </p>
+ * <pre>
+ * URITemplate template = URITemplate.compile("http://example.com/users/{id}/items{?offset,limit}");
+ * URI uri = template.expandToURI(id, offset, limit);
+ * </pre>
+ *
+ * @since 5.0
+ */
+@Immutable
+public final class URITemplate {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final int UNRESERVED = 1;
+    private static final int RESERVED = 2;
+    private static final int VARCHAR = 4;
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+
+    static {
+        for (int i = 'a'; i <= 'z'; i++) {
+            CHAR_CLASS[i] = UNRESERVED | VARCHAR;
+        }
+        for (int i = 'A'; i <= 'Z'; i++) {
+            CHAR_CLASS[i] = UNRESERVED | VARCHAR;
+        }
+        for (int i = '0'; i <= '9'; i++) {
+            CHAR_CLASS[i] = UNRESERVED | VARCHAR;
+        }
+        CHAR_CLASS['-'] = UNRESERVED;
+        CHAR_CLASS['.'] = UNRESERVED | VARCHAR;
+        CHAR_CLASS['_'] = UNRESERVED | VARCHAR;
+        CHAR_CLASS['~'] = UNRESERVED;
+        for (final char ch : ":/?#[]@!$&'()*+,;=".toCharArray()) {
+            CHAR_CLASS[ch] = RESERVED;
+        }
+        CHAR_CLASS['%'] = VARCHAR;
+    }
+
+    private final String template;
+    // pre-encoded literal Strings and Expressions
+    private final Object[] parts;
+    private final String[] variableNames;
+    private final int literalLength;
+
+    private URITemplate(
+            final String template, final Object[] parts, final String[] variableNames, final int literalLength) {
+        this.template = template;
+        this.parts = parts;
+        this.variableNames = variableNames;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * Compiles the given URI template.
+     *
+     * @param template the template.
+     * @return the compiled template.
+     * @throws IllegalArgumentException if the template is malformed or uses
+     *   unsupported features.
+     */
+    public static URITemplate compile(final String template) {
+        Args.notNull(template, "URI template");
+        final List<Object> parts = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+        int pos = 0;
+        while (pos < template.length()) {
+            final char ch = template.charAt(pos);
+            if (ch == '{') {
+                final int end = template.indexOf('}', pos + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed expression at " + pos + ": " + template);
+                }
+                if (literal.length() > 0) {
+                    literalLength += literal.length();
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                parts.add(Expression.parse(template, pos + 1, end, names));
+                pos = end + 1;
+            } else if (ch == '}') {
+                throw new IllegalArgumentException("Unexpected '}' at " + pos + ": " + template);
+            } else if (ch == '%' && isPctEncoded(template, pos)) {
+                literal.append(template, pos, pos + 3);
+                pos += 3;
+            } else if (ch < 128 && (CHAR_CLASS[ch] & (UNRESERVED | RESERVED)) != 0) {
+                literal.append(ch);
+                pos++;
+            } else {
+                pos = appendPctEncoded(template, pos, literal);
+            }
+        }
+        if (literal.length() > 0) {
+            literalLength += literal.length();
+            parts.add(literal.toString());
+        }
+        return new URITemplate(template, parts.toArray(), names.toArray(new String[names.size()]), literalLength);
+    }
+
+    /**
+     * Returns the names of the variables of this template in order of first
+     * appearance. This is the order of the values passed to
+     * {@link #expand(Object...)}.
+     */
+    public List<String> getVariableNames() {
+        final List<String> list = new ArrayList<>(variableNames.length);
+        Collections.addAll(list, variableNames);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Expands the template with variable values taken from the given map.
+     *
+     * @param variables the values by variable name; missing and {@code null}
+     *   values are undefined.
+     * @return the expanded, percent-encoded URI reference.
+     */
+    public String expand(final Map<String, ?> variables) {
+        Args.notNull(variables, "Variables");
+        final Object[] values = new Object[variableNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = variables.get(variableNames[i]);
+        }
+        return expandValues(values);
+    }
+
+    /**
+     * Expands the template with the given values in order of
+     * {@link #getVariableNames()}.
+     *
+     * @param values the values; {@code null} values are undefined.
+     * @return the expanded, percent-encoded URI reference.
+     */
+    public String expand(final Object... values) {
+        Args.notNull(values, "Values");
+        Args.check(values.length == variableNames.length,
+                "Expected %s values but got %s", variableNames.length, values.length);
+        return expandValues(values);
+    }
+
+    /**
+     * Expands the template with variable values taken from the given map.
+     *
+     * @throws IllegalArgumentException if the expansion is not a valid URI reference.
+     */
+    public URI expandToURI(final Map<String, ?> variables) {
+        return URI.create(expand(variables));
+    }
+
+    /**
+     * Expands the template with the given values in order of
+     * {@link #getVariableNames()}.
+     *
+     * @throws IllegalArgumentException if the expansion is not a valid URI reference.
+     */
+    public URI expandToURI(final Object... values) {
+        return URI.create(expand(values));
+    }
+
+    private String expandValues(final Object[] values) {
+        final StringBuilder buf = new StringBuilder(literalLength + values.length * 16);
+        for (final Object part : parts) {
+            if (part instanceof String) {
+                buf.append((String) part);
+            } else {
+                ((Expression) part).expand(values, buf);
+            }
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private static boolean isPctEncoded(final CharSequence s, final int pos) {
+        return pos + 2 < s.length()
+                && Character.digit(s.charAt(pos + 1), 16) >= 0
+                && Character.digit(s.charAt(pos + 2), 16) >= 0;
+    }
+
+    /**
+     * Appends the character at the given position as percent-encoded UTF-8.
+     *
+     * @return the position following the character.
+     */
+    private static int appendPctEncoded(final CharSequence s, final int pos, final StringBuilder buf) {
+        final char ch = s.charAt(pos);
+        if (ch < 0x80) {
+            appendPctEncoded(ch, buf);
+        } else if (ch < 0x800) {
+            appendPctEncoded(0xc0 | (ch >> 6), buf);
+            appendPctEncoded(0x80 | (ch & 0x3f), buf);
+        } else if (Character.isSurrogate(ch)) {
+            if (Character.isHighSurrogate(ch) && pos + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(pos + 1))) {
+                final int cp = Character.toCodePoint(ch, s.charAt(pos + 1));
+                appendPctEncoded(0xf0 | (cp >> 18), buf);
+                appendPctEncoded(0x80 | ((cp >> 12) & 0x3f), buf);
+                appendPctEncoded(0x80 | ((cp >> 6) & 0x3f), buf);
+                appendPctEncoded(0x80 | (cp & 0x3f), buf);
+                return pos + 2;
+            }
+            // malformed input is replaced like by Charset#encode
+            appendPctEncoded('?', buf);
+        } else {
+            appendPctEncoded(0xe0 | (ch >> 12), buf);
+            appendPctEncoded(0x80 | ((ch >> 6) & 0x3f), buf);
+            appendPctEncoded(0x80 | (ch & 0x3f), buf);
+        }
+        return pos + 1;
+    }
+
+    private static void appendPctEncoded(final int b, final StringBuilder buf) {
+        buf.append('%').append(HEX[b >> 4]).append(HEX[b & 0xf]);
+    }
+
+    private static final class Expression {
+
+        private final String first;
+        private final char separator;
+        private final boolean named;
+        private final boolean allowReserved;
+        private final String[] names;
+        private final int[] indexes;
+
+        private Expression(
+                final String first, final char separator, final boolean named, final boolean allowReserved,
+                final String[] names, final int[] indexes) {
+            this.first = first;
+            this.separator = separator;
+            this.named = named;
+            this.allowReserved = allowReserved;
+            this.names = names;
+            this.indexes = indexes;
+        }
+
+        static Expression parse(final String template, final int start, final int end, final List<String> allNames) {
+            if (start == end) {
+                throw new IllegalArgumentException("Empty expression at " + (start - 1) + ": " + template);
+            }
+            final String first;
+            final char separator;
+            final boolean named;
+            final boolean allowReserved;
+            int pos = start;
+            final char op = template.charAt(start);
+            switch (op) {
+                case '+':
+                    first = "";
+                    separator = ',';
+                    named = false;
+                    allowReserved = true;
+                    pos++;
+                    break;
+                case '#':
+                    first = "#";
+                    separator = ',';
+                    named = false;
+                    allowReserved = true;
+                    pos++;
+                    break;
+                case '/':
+                    first = "/";
+                    separator = '/';
+                    named = false;
+                    allowReserved = false;
+                    pos++;
+                    break;
+                case '?':
+                    first = "?";
+                    separator = '&';
+                    named = true;
+                    allowReserved = false;
+                    pos++;
+                    break;
+                case '&':
+                    first = "&";
+                    separator = '&';
+                    named = true;
+                    allowReserved = false;
+                    pos++;
+                    break;
+                default:
+                    if (op != '.' && op < 128 && (CHAR_CLASS[op] & VARCHAR) != 0) {
+                        first = "";
+                        separator = ',';
+                        named = false;
+                        allowReserved = false;
+                    } else {
+                        throw new IllegalArgumentException("Unsupported operator '" + op + "' at "
+                                + start + ": " + template);
+                    }
+            }
+            final List<String> names = new ArrayList<>();
+            while (true) {
+                final int comma = template.indexOf(',', pos);
+                final int nameEnd = comma >= 0 && comma < end ? comma : end;
+                if (nameEnd == pos) {
+                    throw new IllegalArgumentException("Empty variable name at " + pos + ": " + template);
+                }
+                for (int i = pos; i < nameEnd; i++) {
+                    final char ch = template.charAt(i);
+                    if (ch == ':' || ch == '*') {
+                        throw new IllegalArgumentException("Unsupported value modifier '" + ch + "' at "
+                                + i + ": " + template);
+                    }
+                    if (ch >= 128 || (CHAR_CLASS[ch] & VARCHAR) == 0) {
+                        throw new IllegalArgumentException("Invalid variable name character '" + ch + "' at "
+                                + i + ": " + template);
+                    }
+                }
+                names.add(template.substring(pos, nameEnd));
+                if (nameEnd == end) {
+                    break;
+                }
+                pos = nameEnd + 1;
+            }
+            final int[] indexes = new int[names.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                final String name = names.get(i);
+                int index = allNames.indexOf(name);
+                if (index < 0) {
+                    index = allNames.size();
+                    allNames.add(name);
+                }
+                indexes[i] = index;
+            }
+            return new Expression(first, separator, named, allowReserved,
+                    names.toArray(new String[names.size()]), indexes);
+        }
+
+        void expand(final Object[] values, final StringBuilder buf) {
+            boolean firstValue = true;
+            for (int i = 0; i < indexes.length; i++) {
+                final Object value = values[indexes[i]];
+                if (value == null) {
+                    continue;
+                }
+                if (firstValue) {
+                    buf.append(first);
+                    firstValue = false;
+                } else {
+                    buf.append(separator);
+                }
+                final String s = value.toString();
+                if (named) {
+                    buf.append(names[i]).append('=');
+                }
+                encode(s, buf);
+            }
+        }
+
+        private void encode(final String s, final StringBuilder buf) {
+            final int allowed = allowReserved ? UNRESERVED | RESERVED : UNRESERVED;
+            int pos = 0;
+            while (pos < s.length()) {
+                final char ch = s.charAt(pos);
+                if (ch < 128 && (CHAR_CLASS[ch] & allowed) != 0) {
+                    buf.append(ch);
+                    pos++;
+                } else if (allowReserved && ch == '%' && isPctEncoded(s, pos)) {
+                    buf.append(s, pos, pos + 3);
+                    pos += 3;
+                } else {
+                    pos = appendPctEncoded(s, pos, buf);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.core5.annotation.Immutable;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.apache.hc.core5.util.Args;
+
+/**
+ * Encoder and decoder for {@code application/x-www-form-urlencoded} content
+ * that works without intermediate strings.
+ * <p>
+ * Parameters are encoded with the same set of safe characters as
+ * {@link URLEncodedUtils#format(Iterable, char, Charset)} directly into an
+ * {@link OutputStream}, and the length of the encoded content can be
+ * computed up front without materializing it. UTF-8, ISO-8859-1 and
+ * US-ASCII are encoded by table lookups; other charsets are encoded
+ * one field at a time.
+ * </p>
+ *
+ * @since 5.0
+ */
+@Immutable
+public final class URLEncodedFormCodec {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final byte[] HEX = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    /**
+     * Bytes written as is, i.e. alphanumeric plus {@code "-", "_", ".", "*"}.
+     * All other bytes but the blank are percent-encoded.
+     */
+    private static final boolean[] SAFE = new boolean[256];
+
+    static {
+        for (int i = 'a'; i <= 'z'; i++) {
+            SAFE[i] = true;
+        }
+        for (int i = 'A'; i <= 'Z'; i++) {
+            SAFE[i] = true;
+        }
+        for (int i = '0'; i <= '9'; i++) {
+            SAFE[i] = true;
+        }
+        SAFE['_'] = true;
+        SAFE['-'] = true;
+        SAFE['.'] = true;
+        SAFE['*'] = true;
+    }
+
+    private URLEncodedFormCodec() {
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(Iterable, char, Charset, OutputStream)}
+     * writes for the given parameters.
+     *
+     * @param parameters the parameters to encode.
+     * @param parameterSeparator the parameter separator, by convention, {@code '&'} or {@code ';'}.
+     * @param charset the encoding to use.
+     * @return the length of the encoded content in bytes.
+     */
+    public static long getEncodedLength(
+            final Iterable<? extends NameValuePair> parameters,
+            final char parameterSeparator,
+            final Charset charset) {
+        Args.notNull(parameters, "Parameters");
+        Args.notNull(charset, "Charset");
+        Args.check(parameterSeparator < 0x80, "Parameter separator must be an ASCII character");
+        final Encoder encoder = new Encoder(null, charset);
+        try {
+            encoder.encode(parameters, parameterSeparator);
+        } catch (final IOException ex) {
+            // not thrown when counting
+            throw new IllegalStateException(ex);
+        }
+        return encoder.count;
+    }
+
+    /**
+     * Writes the given parameters as {@code application/x-www-form-urlencoded}
+     * content to the given stream. The stream is neither flushed nor closed.
+     *
+     * @param parameters the parameters to encode.
+     * @param parameterSeparator the parameter separator, by convention, {@code '&'} or {@code ';'}.
+     * @param charset the encoding to use.
+     * @param outstream the stream to write to.
+     */
+    public static void encode(
+            final Iterable<? extends NameValuePair> parameters,
+            final char parameterSeparator,
+            final Charset charset,
+            final OutputStream outstream) throws IOException {
+        Args.notNull(parameters, "Parameters");
+        Args.notNull(charset, "Charset");
+        Args.notNull(outstream, "Output stream");
+        Args.check(parameterSeparator < 0x80, "Parameter separator must be an ASCII character");
+        final Encoder encoder = new Encoder(outstream, charset);
+        encoder.encode(parameters, parameterSeparator);
+        encoder.flush();
+    }
+
+    /**
+     * Decodes {@code application/x-www-form-urlencoded} content from a region
+     * of the given character sequence. Unlike
+     * {@link URLEncodedUtils#parse(String, Charset, char...)} this method does
+     * not trim white space around names and values, and it only copies
+     * characters in order to build the resulting names and values.
+     *
+     * @param s the content to decode.
+     * @param start the start of the region.
+     * @param end the end of the region.
+     * @param charset the encoding of percent-encoded bytes, UTF-8 if {@code null}.
+     * @param separators the parameter separators, by convention, {@code '&'} and {@code ';'}.
+     * @return a list of name/value pairs; values are {@code null} for names
+     *   without {@code '='}.
+     */
+    public static List<NameValuePair> decode(
+            final CharSequence s, final int start, final int end,
+            final Charset charset, final char... separators) {
+        Args.notNull(s, "Char sequence");
+        Args.check(start >= 0 && start <= end && end <= s.length(), "Invalid region");
+        final Charset cs = charset != null ? charset : StandardCharsets.UTF_8;
+        final List<NameValuePair> list = new ArrayList<>();
+        byte[] scratch = null;
+        int pos = start;
+        while (pos < end) {
+            int eq = -1;
+            int fieldEnd = pos;
+            while (fieldEnd < end) {
+                final char ch = s.charAt(fieldEnd);
+                if (isSeparator(ch, separators)) {
+                    break;
+                }
+                if (ch == '=' && eq < 0) {
+                    eq = fieldEnd;
+                }
+                fieldEnd++;
+            }
+            final int nameEnd = eq >= 0 ? eq : fieldEnd;
+            if (nameEnd > pos) {
+                if (scratch == null && (indexOf(s, '%', pos, fieldEnd) >= 0)) {
+                    scratch = new byte[end - pos];
+                }
+                final String name = decodeField(s, pos, nameEnd, cs, scratch);
+                final String value = eq >= 0 ? decodeField(s, eq + 1, fieldEnd, cs, scratch) : null;
+                list.add(new BasicNameValuePair(name, value));
+            }
+            pos = fieldEnd + 1;
+        }
+        return list;
+    }
+
+    private static boolean isSeparator(final char ch, final char[] separators) {
+        for (final char separator : separators) {
+            if (ch == separator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(final CharSequence s, final char ch, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decodeField(
+            final CharSequence s, final int from, final int to, final Charset charset, final byte[] scratch) {
+        if (indexOf(s, '%', from, to) < 0) {
+            if (indexOf(s, '+', from, to) < 0) {
+                return s.subSequence(from, to).toString();
+            }
+            final char[] chars = new char[to - from];
+            for (int i = from; i < to; i++) {
+                final char ch = s.charAt(i);
+                chars[i - from] = ch == '+' ? ' ' : ch;
+            }
+            return new String(chars);
+        }
+        int len = 0;
+        int i = from;
+        while (i < to) {
+            final char ch = s.charAt(i);
+            if (ch == '%' && i + 2 < to) {
+                final int u = Character.digit(s.charAt(i + 1), 16);
+                final int l = Character.digit(s.charAt(i + 2), 16);
+                if (u != -1 && l != -1) {
+                    scratch[len++] = (byte) ((u << 4) + l);
+                    i += 3;
+                    continue;
+                }
+            }
+            scratch[len++] = ch == '+' ? (byte) ' ' : (byte) ch;
+            i++;
+        }
+        return new String(scratch, 0, len, charset);
+    }
+
+    /**
+     * Writes encoded bytes into a buffer that is drained into the target
+     * stream, or only counts them if there is no stream.
+     */
+    private static final class Encoder {
+
+        private final OutputStream outstream;
+        private final Charset charset;
+        private final int mode;
+        private final byte[] buffer;
+        private int pos;
+        long count;
+
+        private static final int UTF_8 = 0;
+        private static final int ISO_8859_1 = 1;
+        private static final int US_ASCII = 2;
+        private static final int OTHER = 3;
+
+        Encoder(final OutputStream outstream, final Charset charset) {
+            this.outstream = outstream;
+            this.charset = charset;
+            if (StandardCharsets.UTF_8.equals(charset)) {
+                this.mode = UTF_8;
+            } else if (StandardCharsets.ISO_8859_1.equals(charset)) {
+                this.mode = ISO_8859_1;
+            } else if (StandardCharsets.US_ASCII.equals(charset)) {
+                this.mode = US_ASCII;
+            } else {
+                this.mode = OTHER;
+            }
+            this.buffer = outstream != null ? new byte[BUFFER_SIZE] : null;
+        }
+
+        void encode(final Iterable<? extends NameValuePair> parameters, final char separator) throws IOException {
+            boolean first = true;
+            for (final NameValuePair parameter : parameters) {
+                if (!first) {
+                    write(separator);
+                }
+                first = false;
+                field(parameter.getName());
+                final String value = parameter.getValue();
+                if (value != null) {
+                    write('=');
+                    field(value);
+                }
+            }
+        }
+
+        private void field(final String s) throws IOException {
+            final int len = s.length();
+            switch (mode) {
+                case UTF_8:
+                    for (int i = 0; i < len; i++) {
+                        final char ch = s.charAt(i);
+                        if (ch < 0x80) {
+                            encodeByte(ch);
+                        } else if (ch < 0x800) {
+                            encodeByte(0xc0 | (ch >> 6));
+                            encodeByte(0x80 | (ch & 0x3f));
+                        } else if (Character.isSurrogate(ch)) {
+                            if (Character.isHighSurrogate(ch) && i + 1 < len
+                                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                                final int cp = Character.toCodePoint(ch, s.charAt(++i));
+                                encodeByte(0xf0 | (cp >> 18));
+                                encodeByte(0x80 | ((cp >> 12) & 0x3f));
+                                encodeByte(0x80 | ((cp >> 6) & 0x3f));
+                                encodeByte(0x80 | (cp & 0x3f));
+                            } else {
+                                // malformed input is replaced like by Charset#encode
+                                encodeByte('?');
+                            }
+                        } else {
+                            encodeByte(0xe0 | (ch >> 12));
+                            encodeByte(0x80 | ((ch >> 6) & 0x3f));
+                            encodeByte(0x80 | (ch & 0x3f));
+                        }
+                    }
+                    break;
+                case ISO_8859_1:
+                case US_ASCII:
+                    final int max = mode == ISO_8859_1 ? 0xff : 0x7f;
+                    for (int i = 0; i < len; i++) {
+                        final char ch = s.charAt(i);
+                        if (ch <= max) {
+                            encodeByte(ch);
+                        } else {
+                            if (Character.isHighSurrogate(ch) && i + 1 < len
+                                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                                i++;
+                            }
+                            encodeByte('?');
+                        }
+                    }
+                    break;
+                default:
+                    final ByteBuffer bb = charset.encode(s);
+                    while (bb.hasRemaining()) {
+                        encodeByte(bb.get() & 0xff);
+                    }
+            }
+        }
+
+        private void encodeByte(final int b) throws IOException {
+            if (SAFE[b]) {
+                write(b);
+            } else if (b == ' ') {
+                write('+');
+            } else {
+                write('%');
+                write(HEX[b >> 4]);
+                write(HEX[b & 0xf]);
+            }
+        }
+
+        private void write(final int b) throws IOException {
+            count++;
+            if (buffer == null) {
+                return;
+            }
+            if (pos == buffer.length) {
+                flush();
+            }
+            buffer[pos++] = (byte) b;
+        }
+
+        void flush() throws IOException {
+            if (pos > 0) {
+                outstream.write(buffer, 0, pos);
+                pos = 0;
+            }
+        }
+
+    }
+
+}
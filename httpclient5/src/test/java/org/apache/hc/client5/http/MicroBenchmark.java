@@ -0,0 +1,94 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http;
+
+import java.util.Locale;
+
+/**
+ * Minimal harness shared by the micro benchmarks of this test tree.
+ * <p>
+ * Benchmarks are not unit tests. They are plain main classes to be run manually
+ * with the test class path, for instance
+ * </p>
+ * <pre>
+ * java -cp ... org.apache.hc.client5.http.psl.PublicSuffixMatcherBenchmark [operations] [rounds]
+ * </pre>
+ * <p>
+ * Each round times every {@link Operation} over the same number of iterations
+ * and prints the average cost per iteration. Early rounds include warm-up.
+ * </p>
+ */
+public final class MicroBenchmark {
+
+    /**
+     * Code under measurement.
+     */
+    public interface Operation {
+
+        /**
+         * Runs the given number of iterations.
+         *
+         * @return a value derived from the results so that the work cannot be
+         *   eliminated as dead code.
+         */
+        int run(int iterations) throws Exception;
+
+    }
+
+    private static volatile int blackhole;
+
+    private final String[] names;
+    private final Operation[] operations;
+
+    public MicroBenchmark(final String[] names, final Operation[] operations) {
+        this.names = names;
+        this.operations = operations;
+    }
+
+    /**
+     * Runs the benchmark with the iterations and rounds given as the optional
+     * first and second command line arguments.
+     */
+    public void run(final String[] args, final int defaultIterations, final int defaultRounds) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : defaultIterations;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : defaultRounds;
+        for (int round = 0; round < rounds; round++) {
+            final StringBuilder line = new StringBuilder();
+            line.append(String.format(Locale.ROOT, "round %2d:", round));
+            for (int i = 0; i < this.operations.length; i++) {
+                final long start = System.nanoTime();
+                final int result = this.operations[i].run(iterations);
+                final long elapsed = System.nanoTime() - start;
+                blackhole += result;
+                line.append(String.format(Locale.ROOT, " %s %,9.1f ns/op;",
+                        this.names[i], (double) elapsed / iterations));
+            }
+            System.out.println(line);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.client5.http.utils.URLEncodedUtils;
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.entity.EntityUtils;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStreamingUrlEncodedFormEntity {
+
+    @Test
+    public void testMatchesUrlEncodedFormEntity() throws Exception {
+        final List<NameValuePair> params = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            params.add(new BasicNameValuePair("name " + i, "value\u00E4" + i));
+        }
+        final UrlEncodedFormEntity expected = new UrlEncodedFormEntity(params, StandardCharsets.UTF_8);
+        final StreamingUrlEncodedFormEntity entity = new StreamingUrlEncodedFormEntity(params, StandardCharsets.UTF_8);
+        Assert.assertEquals(expected.getContentType(), entity.getContentType());
+        Assert.assertEquals(expected.getContentLength(), entity.getContentLength());
+        Assert.assertTrue(entity.isRepeatable());
+        Assert.assertFalse(entity.isStreaming());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        Assert.assertArrayEquals(EntityUtils.toByteArray(expected), out.toByteArray());
+        Assert.assertArrayEquals(out.toByteArray(), EntityUtils.toByteArray(entity));
+    }
+
+    @Test
+    public void testDefaultCharset() throws Exception {
+        final List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("a", "\u00E4 b"));
+        final StreamingUrlEncodedFormEntity entity = new StreamingUrlEncodedFormEntity(params);
+        Assert.assertEquals(URLEncodedUtils.CONTENT_TYPE, entity.getContentType());
+        Assert.assertEquals("a=%E4+b", EntityUtils.toString(entity));
+        Assert.assertTrue(URLEncodedUtils.isEncoded(entity));
+    }
+
+}
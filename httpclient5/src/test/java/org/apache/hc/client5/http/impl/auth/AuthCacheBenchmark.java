@@ -0,0 +1,116 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.auth;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.apache.hc.client5.http.MicroBenchmark;
+import org.apache.hc.client5.http.auth.AuthChallenge;
+import org.apache.hc.client5.http.auth.AuthScheme;
+import org.apache.hc.client5.http.auth.UsernamePasswordCredentials;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+
+/**
+ * {@link MicroBenchmark} of the per-request cost of {@link BasicAuthCache#get(HttpHost)}
+ * for copyable schemes against the serialization round trip of earlier versions.
+ */
+public class AuthCacheBenchmark {
+
+    public static void main(final String[] args) throws Exception {
+        final HttpHost host = new HttpHost("somehost", 80);
+        final BasicScheme basicScheme = new BasicScheme();
+        basicScheme.processChallenge(new AuthChallenge("Basic", new BasicNameValuePair("realm", "test")), null);
+        basicScheme.initPreemptive(new UsernamePasswordCredentials("user", "secret".toCharArray()));
+        final DigestScheme digestScheme = new DigestScheme();
+        digestScheme.initPreemptive(new UsernamePasswordCredentials("user", "secret".toCharArray()),
+                "0a4f113b", "test");
+        digestScheme.processChallenge(new AuthChallenge("Digest",
+                new BasicNameValuePair("realm", "test"),
+                new BasicNameValuePair("nonce", "dcd98b7102dd2f0e8b11d0f600bfb0c093"),
+                new BasicNameValuePair("qop", "auth")), null);
+
+        final HttpHost basicHost = new HttpHost("basichost", 80);
+        final HttpHost digestHost = new HttpHost("digesthost", 80);
+        final BasicAuthCache cache = new BasicAuthCache();
+        cache.put(basicHost, basicScheme);
+        cache.put(digestHost, digestScheme);
+        final byte[] basicSerialized = serialize(basicScheme);
+        final byte[] digestSerialized = serialize(digestScheme);
+
+        new MicroBenchmark(
+                new String[] { "basic copy", "basic serialized", "digest copy", "digest serialized" },
+                new MicroBenchmark.Operation[] {
+                        copy(cache, basicHost), deserialize(basicSerialized),
+                        copy(cache, digestHost), deserialize(digestSerialized) })
+                .run(args, 100000, 10);
+    }
+
+    private static byte[] serialize(final AuthScheme authScheme) throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(authScheme);
+        }
+        return buf.toByteArray();
+    }
+
+    private static MicroBenchmark.Operation copy(final BasicAuthCache cache, final HttpHost host) {
+        return new MicroBenchmark.Operation() {
+
+            @Override
+            public int run(final int iterations) {
+                int n = 0;
+                for (int i = 0; i < iterations; i++) {
+                    n += cache.get(host).getRealm().length();
+                }
+                return n;
+            }
+
+        };
+    }
+
+    private static MicroBenchmark.Operation deserialize(final byte[] serialized) {
+        return new MicroBenchmark.Operation() {
+
+            @Override
+            public int run(final int iterations) throws Exception {
+                int n = 0;
+                for (int i = 0; i < iterations; i++) {
+                    try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                        n += ((AuthScheme) in.readObject()).getRealm().length();
+                    }
+                }
+                return n;
+            }
+
+        };
+    }
+
+}
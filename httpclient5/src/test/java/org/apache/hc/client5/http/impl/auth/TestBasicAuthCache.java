@@ -28,8 +28,10 @@
 package org.apache.hc.client5.http.impl.auth;
 
 import org.apache.hc.client5.http.SchemePortResolver;
+import org.apache.hc.client5.http.auth.AuthChallenge;
 import org.apache.hc.client5.http.auth.AuthScheme;
 import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -93,4 +95,81 @@ public class TestBasicAuthCache {
         Assert.assertNull(cache.get(new HttpHost("localhost", 80)));
     }
 
+    @Test
+    public void testCopyableSchemeIsCopied() throws Exception {
+        final BasicAuthCache cache = new BasicAuthCache();
+        final BasicScheme authScheme = new BasicScheme();
+        authScheme.processChallenge(new AuthChallenge("Basic", new BasicNameValuePair("realm", "test")), null);
+        cache.put(new HttpHost("localhost", 80), authScheme);
+        authScheme.processChallenge(new AuthChallenge("Basic", new BasicNameValuePair("realm", "other")), null);
+
+        final AuthScheme cached1 = cache.get(new HttpHost("localhost", 80));
+        final AuthScheme cached2 = cache.get(new HttpHost("localhost", 80));
+        Assert.assertTrue(cached1 instanceof BasicScheme);
+        Assert.assertNotSame(authScheme, cached1);
+        Assert.assertNotSame(cached1, cached2);
+        Assert.assertEquals("test", cached1.getRealm());
+        Assert.assertEquals("test", cached2.getRealm());
+    }
+
+    static class CustomScheme extends BasicScheme {
+
+        private static final long serialVersionUID = 1L;
+
+        String extra;
+
+    }
+
+    @Test
+    public void testSubclassWithoutCopyIsSerialized() throws Exception {
+        final BasicAuthCache cache = new BasicAuthCache();
+        final CustomScheme authScheme = new CustomScheme();
+        authScheme.extra = "stuff";
+        cache.put(new HttpHost("localhost", 80), authScheme);
+
+        final AuthScheme cached = cache.get(new HttpHost("localhost", 80));
+        Assert.assertTrue(cached instanceof CustomScheme);
+        Assert.assertNotSame(authScheme, cached);
+        Assert.assertEquals("stuff", ((CustomScheme) cached).extra);
+    }
+
+    static class CopyableCustomScheme extends BasicScheme {
+
+        private static final long serialVersionUID = 1L;
+
+        // would be lost by serialization
+        transient String extra;
+
+        CopyableCustomScheme() {
+            super();
+        }
+
+        CopyableCustomScheme(final CopyableCustomScheme other) {
+            super(other);
+            this.extra = other.extra;
+        }
+
+        @Override
+        public CopyableCustomScheme copy() {
+            return new CopyableCustomScheme(this);
+        }
+
+    }
+
+    @Test
+    public void testSubclassWithCopyIsCopied() throws Exception {
+        final BasicAuthCache cache = new BasicAuthCache();
+        final CopyableCustomScheme authScheme = new CopyableCustomScheme();
+        authScheme.processChallenge(new AuthChallenge("Basic", new BasicNameValuePair("realm", "test")), null);
+        authScheme.extra = "stuff";
+        cache.put(new HttpHost("localhost", 80), authScheme);
+        authScheme.extra = "other stuff";
+
+        final AuthScheme cached = cache.get(new HttpHost("localhost", 80));
+        Assert.assertTrue(cached instanceof CopyableCustomScheme);
+        Assert.assertNotSame(authScheme, cached);
+        Assert.assertEquals("test", cached.getRealm());
+        Assert.assertEquals("stuff", ((CopyableCustomScheme) cached).extra);
+    }
+
 }
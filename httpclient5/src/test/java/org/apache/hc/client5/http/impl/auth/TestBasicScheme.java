@@ -181,4 +181,24 @@ public class TestBasicScheme {
         Assert.assertEquals(basicScheme.isChallengeComplete(), authScheme.isChallengeComplete());
     }
 
+    @Test
+    public void testCopy() throws Exception {
+        final AuthChallenge authChallenge = parse("Basic realm=\"test\"");
+        final BasicScheme basicScheme = new BasicScheme(StandardCharsets.ISO_8859_1);
+        basicScheme.processChallenge(authChallenge, null);
+        final HttpHost host = new HttpHost("somehost", 80);
+        basicScheme.initPreemptive(new UsernamePasswordCredentials("testuser", "testpass".toCharArray()));
+
+        final BasicScheme copy = basicScheme.copy();
+        Assert.assertNotSame(basicScheme, copy);
+        Assert.assertEquals("test", copy.getRealm());
+        Assert.assertTrue(copy.isChallengeComplete());
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        Assert.assertEquals(basicScheme.generateAuthResponse(host, request, null),
+                copy.generateAuthResponse(host, request, null));
+
+        copy.processChallenge(parse("Basic realm=\"other\""), null);
+        Assert.assertEquals("test", basicScheme.getRealm());
+    }
+
 }
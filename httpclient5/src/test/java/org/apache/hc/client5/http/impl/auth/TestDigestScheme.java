@@ -33,9 +33,13 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.hc.client5.http.auth.AuthChallenge;
 import org.apache.hc.client5.http.auth.AuthScheme;
@@ -729,4 +733,113 @@ public class TestDigestScheme {
         Assert.assertEquals(digestScheme.getCnonce(), authScheme.getCnonce());
     }
 
+    @Test
+    public void testCopy() throws Exception {
+        final HttpRequest request = new BasicHttpRequest("Simple", "/");
+        final HttpHost host = new HttpHost("somehost", 80);
+        final AuthScope authScope = new AuthScope(host, "realm1", null);
+        final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(authScope, new UsernamePasswordCredentials("username","password".toCharArray()));
+        final String challenge = "Digest realm=\"realm1\", nonce=\"f2a3f18799759d4f1a1c068b92b573cb\", " +
+                "qop=\"auth,auth-int\"";
+        final DigestScheme digestScheme = new DigestScheme();
+        digestScheme.processChallenge(parse(challenge), null);
+        Assert.assertTrue(digestScheme.isResponseReady(host, credentialsProvider, null));
+        digestScheme.generateAuthResponse(host, request, null);
+
+        final DigestScheme copy = digestScheme.copy();
+        Assert.assertNotSame(digestScheme, copy);
+        Assert.assertEquals(digestScheme.getRealm(), copy.getRealm());
+        Assert.assertEquals(digestScheme.isChallengeComplete(), copy.isChallengeComplete());
+        Assert.assertEquals(digestScheme.getA1(), copy.getA1());
+        Assert.assertEquals(digestScheme.getA2(), copy.getA2());
+        Assert.assertEquals(digestScheme.getCnonce(), copy.getCnonce());
+
+        // copies share the nonce count of the same nonce
+        final Map<String, String> original = parseAuthResponse(digestScheme.generateAuthResponse(host, request, null));
+        final Map<String, String> copied = parseAuthResponse(copy.generateAuthResponse(host, request, null));
+        Assert.assertEquals("00000002", original.get("nc"));
+        Assert.assertEquals("00000003", copied.get("nc"));
+        Assert.assertEquals(original.get("cnonce"), copied.get("cnonce"));
+    }
+
+    @Test
+    public void testCopiesUsedConcurrentlyHaveDistinctNonceCounts() throws Exception {
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        final HttpHost host = new HttpHost("somehost", 80);
+        final AuthScope authScope = new AuthScope(host, "realm1", null);
+        final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(authScope, new UsernamePasswordCredentials("username","password".toCharArray()));
+        final String challenge = "Digest realm=\"realm1\", nonce=\"f2a3f18799759d4f1a1c068b92b573cb\", qop=auth";
+        final DigestScheme digestScheme = new DigestScheme();
+        digestScheme.processChallenge(parse(challenge), null);
+        Assert.assertTrue(digestScheme.isResponseReady(host, credentialsProvider, null));
+        digestScheme.generateAuthResponse(host, request, null);
+
+        final int threads = 4;
+        final int count = 50;
+        final Set<String> ncs = Collections.synchronizedSet(new HashSet<String>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final DigestScheme copy = digestScheme.copy();
+            workers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int n = 0; n < count; n++) {
+                            final String authResponse = copy.generateAuthResponse(host, request, null);
+                            ncs.add(parseAuthResponse(authResponse).get("nc"));
+                        }
+                    } catch (final Exception ex) {
+                        failures.add(ex);
+                    }
+                }
+
+            });
+        }
+        for (final Thread worker: workers) {
+            worker.start();
+        }
+        for (final Thread worker: workers) {
+            worker.join();
+        }
+        Assert.assertTrue(failures.isEmpty());
+        Assert.assertEquals(threads * count, ncs.size());
+        Assert.assertFalse(ncs.contains("00000001"));
+    }
+
+    @Test
+    public void testCachedA1IsRecomputedOnCredentialsChange() throws Exception {
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        final HttpHost host = new HttpHost("somehost", 80);
+        final AuthScope authScope = new AuthScope(host, "realm1", null);
+        final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(authScope, new UsernamePasswordCredentials("username","password".toCharArray()));
+        final String challenge = "Digest realm=\"realm1\", nonce=\"f2a3f18799759d4f1a1c068b92b573cb\", qop=auth";
+        final DigestScheme digestScheme = new DigestScheme();
+        digestScheme.processChallenge(parse(challenge), null);
+        Assert.assertTrue(digestScheme.isResponseReady(host, credentialsProvider, null));
+        digestScheme.generateAuthResponse(host, request, null);
+        Assert.assertEquals("username:realm1:password", digestScheme.getA1());
+
+        credentialsProvider.setCredentials(authScope, new UsernamePasswordCredentials("username","secret".toCharArray()));
+        Assert.assertTrue(digestScheme.isResponseReady(host, credentialsProvider, null));
+        final Map<String, String> table = parseAuthResponse(digestScheme.generateAuthResponse(host, request, null));
+        Assert.assertEquals("username:realm1:secret", digestScheme.getA1());
+
+        final String ha1 = md5Hex("username:realm1:secret");
+        final String ha2 = md5Hex("GET:/");
+        final String expected = md5Hex(ha1 + ":f2a3f18799759d4f1a1c068b92b573cb:" + table.get("nc") + ":"
+                + table.get("cnonce") + ":auth:" + ha2);
+        Assert.assertEquals("00000002", table.get("nc"));
+        Assert.assertEquals(expected, table.get("response"));
+    }
+
+    private static String md5Hex(final String s) throws Exception {
+        final MessageDigest md5 = MessageDigest.getInstance("MD5");
+        return DigestScheme.formatHex(md5.digest(s.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
 }
@@ -314,6 +314,25 @@ public class TestHttpAuthenticator {
         Assert.assertEquals(AuthExchange.State.HANDSHAKE, this.authExchange.getState());
     }
 
+    @Test
+    public void testStaleNonceAfterSuccessRefreshesSameScheme() throws Exception {
+        final HttpHost host = new HttpHost("somehost", 80);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_UNAUTHORIZED, "UNAUTHORIZED");
+        response.addHeader(new BasicHeader(HttpHeaders.WWW_AUTHENTICATE, "Digest realm=\"realm1\", stale=true, nonce=\"5678\""));
+
+        final DefaultAuthenticationStrategy authStrategy = new DefaultAuthenticationStrategy();
+
+        final DigestScheme digestScheme = new DigestScheme();
+        this.authExchange.setState(AuthExchange.State.SUCCESS);
+        this.authExchange.select(digestScheme);
+
+        Assert.assertTrue(this.httpAuthenticator.prepareAuthResponse(
+                host, ChallengeType.TARGET, response, authStrategy, this.authExchange, this.context));
+
+        Assert.assertEquals(AuthExchange.State.HANDSHAKE, this.authExchange.getState());
+        Assert.assertSame(digestScheme, this.authExchange.getAuthScheme());
+    }
+
     @Test
     public void testAuthenticationNoMatchingChallenge() throws Exception {
         final HttpHost host = new HttpHost("somehost", 80);
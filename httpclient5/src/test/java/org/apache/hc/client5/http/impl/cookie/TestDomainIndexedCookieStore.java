@@ -0,0 +1,235 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cookie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DomainIndexedCookieStore}.
+ */
+public class TestDomainIndexedCookieStore {
+
+    private DomainIndexedCookieStore store;
+
+    @Before
+    public void setUp() {
+        final PublicSuffixMatcher matcher = new PublicSuffixMatcher(
+                Arrays.asList("com", "co.uk", "uk"), Collections.<String>emptyList());
+        store = new DomainIndexedCookieStore(matcher);
+    }
+
+    private static BasicClientCookie cookie(final String name, final String domain, final String path) {
+        final BasicClientCookie cookie = new BasicClientCookie(name, "value");
+        cookie.setDomain(domain);
+        cookie.setPath(path);
+        return cookie;
+    }
+
+    private static Date in(final long millis) {
+        return new Date(System.currentTimeMillis() + millis);
+    }
+
+    @Test
+    public void testBasics() throws Exception {
+        store.addCookie(cookie("name1", "example.com", "/"));
+        store.addCookies(new Cookie[] {cookie("name2", "other.co.uk", "/")});
+        List<Cookie> l = store.getCookies();
+        Assert.assertEquals(2, l.size());
+        Assert.assertEquals("name1", l.get(0).getName());
+        Assert.assertEquals("name2", l.get(1).getName());
+        store.clear();
+        l = store.getCookies();
+        Assert.assertEquals(0, l.size());
+    }
+
+    @Test
+    public void testEquivalentCookieIsReplaced() throws Exception {
+        store.addCookie(cookie("name1", "example.com", "/"));
+        final BasicClientCookie replacement = cookie("name1", "EXAMPLE.com", "/");
+        replacement.setValue("other");
+        store.addCookie(replacement);
+        store.addCookie(cookie("name1", "example.com", "/stuff"));
+        Assert.assertEquals(2, store.size());
+        Assert.assertSame(replacement,
+                store.getCandidates(new CookieOrigin("example.com", 80, "/", false)).get(0));
+    }
+
+    @Test
+    public void testCandidatesByDomain() throws Exception {
+        final Cookie c1 = cookie("name1", ".example.com", "/");
+        final Cookie c2 = cookie("name2", "www.example.com", "/");
+        final Cookie c3 = cookie("name3", "other.com", "/");
+        final Cookie c4 = cookie("name4", "notexample.com", "/");
+        store.addCookies(new Cookie[] {c1, c2, c3, c4});
+
+        final List<Cookie> candidates = store.getCandidates(
+                new CookieOrigin("www.example.com", 80, "/", false));
+        Assert.assertEquals(2, candidates.size());
+        Assert.assertTrue(candidates.contains(c1));
+        Assert.assertTrue(candidates.contains(c2));
+        // candidates are looked up by registrable domain
+        Assert.assertEquals(2, store.getCandidates(
+                new CookieOrigin("example.com", 80, "/", false)).size());
+        Assert.assertEquals(Collections.singletonList(c3), store.getCandidates(
+                new CookieOrigin("www.other.com", 80, "/", false)));
+        Assert.assertTrue(store.getCandidates(
+                new CookieOrigin("example.co.uk", 80, "/", false)).isEmpty());
+    }
+
+    @Test
+    public void testCandidatesWithoutPublicSuffixMatcher() throws Exception {
+        store = new DomainIndexedCookieStore();
+        final Cookie c1 = cookie("name1", "example.com", "/");
+        final Cookie c2 = cookie("name2", "www.example.com", "/");
+        store.addCookies(new Cookie[] {c1, c2});
+        Assert.assertEquals(2, store.getCandidates(
+                new CookieOrigin("www.example.com", 80, "/", false)).size());
+        Assert.assertEquals(Collections.singletonList(c1), store.getCandidates(
+                new CookieOrigin("example.com", 80, "/", false)));
+    }
+
+    @Test
+    public void testCandidatesByPath() throws Exception {
+        final Cookie root = cookie("root", "example.com", "/");
+        final Cookie a = cookie("a", "example.com", "/a");
+        final Cookie aSlash = cookie("aslash", "example.com", "/a/");
+        final Cookie ab = cookie("ab", "example.com", "/a/b");
+        final Cookie other = cookie("other", "example.com", "/ab");
+        store.addCookies(new Cookie[] {root, a, aSlash, ab, other});
+
+        final List<Cookie> candidates = store.getCandidates(
+                new CookieOrigin("example.com", 80, "/a/b/c", false));
+        Assert.assertEquals(4, candidates.size());
+        Assert.assertFalse(candidates.contains(other));
+        Assert.assertEquals(3, store.getCandidates(
+                new CookieOrigin("example.com", 80, "/a", false)).size());
+        Assert.assertEquals(Collections.singletonList(root), store.getCandidates(
+                new CookieOrigin("example.com", 80, "/", false)));
+    }
+
+    @Test
+    public void testCandidatePaths() {
+        Assert.assertEquals(Arrays.asList("/"), DomainIndexedCookieStore.candidatePaths("/"));
+        Assert.assertEquals(Arrays.asList("/", "/a", "/a/"), DomainIndexedCookieStore.candidatePaths("/a/"));
+        Assert.assertEquals(Arrays.asList("/", "/a", "/a/b"), DomainIndexedCookieStore.candidatePaths("/a/b"));
+    }
+
+    @Test
+    public void testVersionChangesOnModification() throws Exception {
+        final long v0 = store.getVersion();
+        final BasicClientCookie cookie = cookie("name1", "example.com", "/");
+        cookie.setExpiryDate(in(1000L));
+        store.addCookie(cookie);
+        final long v1 = store.getVersion();
+        Assert.assertTrue(v1 != v0);
+        Assert.assertFalse(store.clearExpired(new Date()));
+        Assert.assertEquals(v1, store.getVersion());
+        Assert.assertTrue(store.clearExpired(in(2000L)));
+        final long v2 = store.getVersion();
+        Assert.assertTrue(v2 != v1);
+        store.clear();
+        Assert.assertTrue(store.getVersion() != v2);
+    }
+
+    @Test
+    public void testLookupDuringAddIsNotTaggedWithNewVersion() throws Exception {
+        final CookieOrigin origin = new CookieOrigin("www.example.com", 80, "/", false);
+        final long[] versions = new long[1];
+        final List<Cookie> candidates = new ArrayList<>();
+        @SuppressWarnings("serial")
+        final BasicClientCookie cookie = new BasicClientCookie("name1", "value") {
+
+            @Override
+            public Date getExpiryDate() {
+                // Look up the candidates the way RequestAddCookies does
+                // while the store is in the middle of adding this cookie
+                versions[0] = store.getVersion();
+                candidates.addAll(store.getCandidates(origin));
+                return super.getExpiryDate();
+            }
+
+        };
+        cookie.setDomain("example.com");
+        cookie.setPath("/");
+        cookie.setExpiryDate(in(60000L));
+        store.addCookie(cookie);
+
+        // headers formatted from the candidates must not be cached under the final version
+        Assert.assertTrue(versions[0] != store.getVersion() || !candidates.isEmpty());
+    }
+
+    @Test
+    public void testExpiredCookieIsNotAdded() throws Exception {
+        final BasicClientCookie cookie = cookie("name1", "example.com", "/");
+        store.addCookie(cookie);
+        final BasicClientCookie expired = cookie("name1", "example.com", "/");
+        expired.setExpiryDate(in(-1000L));
+        store.addCookie(expired);
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testClearExpired() throws Exception {
+        final BasicClientCookie c1 = cookie("name1", "example.com", "/");
+        c1.setExpiryDate(in(1000L));
+        final BasicClientCookie c2 = cookie("name2", "example.com", "/");
+        c2.setExpiryDate(in(2000L));
+        final BasicClientCookie c3 = cookie("name3", "example.com", "/");
+        store.addCookies(new Cookie[] {c1, c2, c3});
+
+        Assert.assertFalse(store.clearExpired(new Date()));
+        Assert.assertEquals(3, store.size());
+        Assert.assertTrue(store.clearExpired(in(1500L)));
+        Assert.assertEquals(Arrays.<Cookie>asList(c2, c3), store.getCookies());
+        Assert.assertTrue(store.clearExpired(in(10000L)));
+        Assert.assertEquals(Collections.<Cookie>singletonList(c3), store.getCookies());
+    }
+
+    @Test
+    public void testReplacedCookieIsNoLongerScheduledForExpiry() throws Exception {
+        final BasicClientCookie c1 = cookie("name1", "example.com", "/");
+        c1.setExpiryDate(in(1000L));
+        store.addCookie(c1);
+        final BasicClientCookie c2 = cookie("name1", "example.com", "/");
+        store.addCookie(c2);
+
+        Assert.assertFalse(store.clearExpired(in(1500L)));
+        Assert.assertEquals(Collections.<Cookie>singletonList(c2), store.getCookies());
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.impl.cookie;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.psl.PublicSuffixMatcher;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link JournaledCookieStore}.
+ */
+public class TestJournaledCookieStore {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private PublicSuffixMatcher matcher;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        matcher = new PublicSuffixMatcher(Arrays.asList("com"), Collections.<String>emptyList());
+        dir = tmp.newFolder("cookies");
+    }
+
+    private static BasicClientCookie cookie(final String name, final String value, final String domain) {
+        final BasicClientCookie cookie = new BasicClientCookie(name, value);
+        cookie.setDomain(domain);
+        cookie.setPath("/");
+        cookie.setAttribute(Cookie.DOMAIN_ATTR, domain);
+        return cookie;
+    }
+
+    @Test
+    public void testCookiesArePersisted() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        final BasicClientCookie c1 = cookie("name1", "value1", "www.example.com");
+        c1.setSecure(true);
+        c1.setExpiryDate(new Date(System.currentTimeMillis() + 60000L));
+        store.addCookie(c1);
+        store.addCookie(cookie("name2", "value2", "other.com"));
+        store.close();
+
+        final JournaledCookieStore reopened = new JournaledCookieStore(dir, matcher);
+        final List<Cookie> cookies = reopened.getCookies();
+        Assert.assertEquals(2, cookies.size());
+        final Cookie restored = cookies.get(0);
+        Assert.assertEquals("name1", restored.getName());
+        Assert.assertEquals("value1", restored.getValue());
+        Assert.assertEquals("www.example.com", restored.getDomain());
+        Assert.assertEquals("/", restored.getPath());
+        Assert.assertTrue(restored.isSecure());
+        Assert.assertEquals(c1.getExpiryDate(), restored.getExpiryDate());
+        Assert.assertEquals("www.example.com", restored.getAttribute(Cookie.DOMAIN_ATTR));
+    }
+
+    @Test
+    public void testDomainsAreLoadedLazily() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        store.addCookie(cookie("name1", "value1", "example.com"));
+        store.addCookie(cookie("name2", "value2", "other.com"));
+        store.close();
+
+        final JournaledCookieStore reopened = new JournaledCookieStore(dir, matcher);
+        Assert.assertFalse(reopened.isLoaded("example.com"));
+        final List<Cookie> candidates = reopened.getCandidates(
+                new CookieOrigin("www.example.com", 80, "/", false));
+        Assert.assertEquals(1, candidates.size());
+        Assert.assertEquals("name1", candidates.get(0).getName());
+        Assert.assertTrue(reopened.isLoaded("example.com"));
+        Assert.assertFalse(reopened.isLoaded("other.com"));
+    }
+
+    @Test
+    public void testChangesAreWrittenOnFlushOnly() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        store.addCookie(cookie("name1", "value1", "example.com"));
+        final File journal = store.journalFile("example.com");
+        Assert.assertFalse(journal.exists());
+        store.flush();
+        Assert.assertTrue(journal.exists());
+        Assert.assertEquals(1, store.getRecordCount("example.com"));
+    }
+
+    @Test
+    public void testBackgroundFlush() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher, 10L);
+        store.start();
+        try {
+            store.addCookie(cookie("name1", "value1", "example.com"));
+            final File journal = store.journalFile("example.com");
+            for (int i = 0; i < 100 && !journal.exists(); i++) {
+                Thread.sleep(20);
+            }
+            Assert.assertTrue(journal.exists());
+        } finally {
+            store.close();
+        }
+        Assert.assertFalse(store.isRunning());
+    }
+
+    @Test
+    public void testRemovalsAndReplacementsSurviveReload() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        store.addCookie(cookie("name1", "value1", "example.com"));
+        store.addCookie(cookie("name2", "value2", "example.com"));
+        store.addCookie(cookie("name1", "value3", "example.com"));
+        final BasicClientCookie removal = cookie("name2", "", "example.com");
+        removal.setExpiryDate(new Date(System.currentTimeMillis() - 1000L));
+        store.addCookie(removal);
+        store.close();
+
+        final List<Cookie> cookies = new JournaledCookieStore(dir, matcher).getCookies();
+        Assert.assertEquals(1, cookies.size());
+        Assert.assertEquals("value3", cookies.get(0).getValue());
+    }
+
+    @Test
+    public void testJournalIsCompacted() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        for (int i = 0; i < JournaledCookieStore.MIN_COMPACTION_RECORDS; i++) {
+            store.addCookie(cookie("name", "value" + i, "example.com"));
+        }
+        store.flush();
+        Assert.assertEquals(JournaledCookieStore.MIN_COMPACTION_RECORDS, store.getRecordCount("example.com"));
+        store.addCookie(cookie("name", "last", "example.com"));
+        store.flush();
+        Assert.assertEquals(1, store.getRecordCount("example.com"));
+
+        final List<Cookie> cookies = new JournaledCookieStore(dir, matcher).getCookies();
+        Assert.assertEquals(1, cookies.size());
+        Assert.assertEquals("last", cookies.get(0).getValue());
+    }
+
+    @Test
+    public void testDamagedJournalIsRecovered() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        store.addCookie(cookie("name1", "value1", "example.com"));
+        store.addCookie(cookie("name2", "value2", "example.com"));
+        store.close();
+        final File journal = store.journalFile("example.com");
+        try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        final JournaledCookieStore reopened = new JournaledCookieStore(dir, matcher);
+        Assert.assertEquals(1, reopened.getCookies().size());
+        reopened.addCookie(cookie("name3", "value3", "example.com"));
+        reopened.close();
+        Assert.assertEquals(2, new JournaledCookieStore(dir, matcher).getCookies().size());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        final JournaledCookieStore store = new JournaledCookieStore(dir, matcher);
+        store.addCookie(cookie("name1", "value1", "example.com"));
+        store.flush();
+        store.clear();
+        Assert.assertTrue(store.getCookies().isEmpty());
+        Assert.assertFalse(store.journalFile("example.com").exists());
+        store.addCookie(cookie("name2", "value2", "example.com"));
+        store.close();
+        Assert.assertEquals(1, new JournaledCookieStore(dir, matcher).getCookies().size());
+    }
+
+}
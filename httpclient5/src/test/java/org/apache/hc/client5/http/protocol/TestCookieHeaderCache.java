@@ -0,0 +1,101 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.protocol;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hc.client5.http.cookie.Cookie;
+import org.apache.hc.client5.http.cookie.CookieOrigin;
+import org.apache.hc.client5.http.cookie.CookieSpec;
+import org.apache.hc.client5.http.impl.cookie.BasicClientCookie;
+import org.apache.hc.client5.http.impl.cookie.RFC6265LaxSpec;
+import org.apache.hc.core5.http.Header;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test cases for {@link CookieHeaderCache}.
+ */
+public class TestCookieHeaderCache {
+
+    private final CookieSpec cookieSpec = new RFC6265LaxSpec();
+    private final CookieOrigin origin = new CookieOrigin("www.example.com", 80, "/", false);
+
+    private List<Header> format(final Cookie cookie) {
+        return cookieSpec.formatCookies(Collections.singletonList(cookie));
+    }
+
+    @Test
+    public void testCacheHitAndMiss() {
+        final CookieHeaderCache cache = new CookieHeaderCache();
+        final Date now = new Date();
+        Assert.assertNull(cache.get(origin, cookieSpec, 1L, now));
+        final Cookie cookie = new BasicClientCookie("name", "value");
+        final List<Header> headers = format(cookie);
+        cache.put(origin, cookieSpec, 1L, Collections.singletonList(cookie), headers);
+
+        Assert.assertEquals(headers, cache.get(origin, cookieSpec, 1L, now));
+        Assert.assertEquals(headers, cache.get(
+                new CookieOrigin("www.example.com", 80, "/", false), cookieSpec, 1L, now));
+        Assert.assertNull(cache.get(origin, cookieSpec, 2L, now));
+        Assert.assertNull(cache.get(origin, new RFC6265LaxSpec(), 1L, now));
+        Assert.assertNull(cache.get(new CookieOrigin("www.example.com", 80, "/", true), cookieSpec, 1L, now));
+        Assert.assertNull(cache.get(new CookieOrigin("www.example.com", 80, "/x", false), cookieSpec, 1L, now));
+    }
+
+    @Test
+    public void testNoMatchIsCached() {
+        final CookieHeaderCache cache = new CookieHeaderCache();
+        cache.put(origin, cookieSpec, 1L, Collections.<Cookie>emptyList(), Collections.<Header>emptyList());
+        final List<Header> headers = cache.get(origin, cookieSpec, 1L, new Date());
+        Assert.assertNotNull(headers);
+        Assert.assertTrue(headers.isEmpty());
+    }
+
+    @Test
+    public void testEntryExpiresWithFirstMatchedCookie() {
+        final CookieHeaderCache cache = new CookieHeaderCache();
+        final BasicClientCookie cookie = new BasicClientCookie("name", "value");
+        cookie.setExpiryDate(new Date(1000L));
+        cache.put(origin, cookieSpec, 1L, Collections.<Cookie>singletonList(cookie), format(cookie));
+        Assert.assertNotNull(cache.get(origin, cookieSpec, 1L, new Date(999L)));
+        Assert.assertNull(cache.get(origin, cookieSpec, 1L, new Date(1000L)));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        final CookieHeaderCache cache = new CookieHeaderCache(2);
+        for (int i = 0; i < 3; i++) {
+            cache.put(new CookieOrigin("host" + i, 80, "/", false), cookieSpec, 1L,
+                    Collections.<Cookie>emptyList(), Collections.<Header>emptyList());
+        }
+        Assert.assertEquals(1, cache.size());
+    }
+
+}
@@ -34,11 +34,13 @@ import org.apache.hc.client5.http.RouteInfo.TunnelType;
 import org.apache.hc.client5.http.config.CookieSpecs;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.cookie.Cookie;
 import org.apache.hc.client5.http.cookie.CookieOrigin;
 import org.apache.hc.client5.http.cookie.CookieSpec;
 import org.apache.hc.client5.http.cookie.CookieSpecProvider;
 import org.apache.hc.client5.http.cookie.CookieStore;
 import org.apache.hc.client5.http.impl.cookie.BasicClientCookie;
+import org.apache.hc.client5.http.impl.cookie.DomainIndexedCookieStore;
 import org.apache.hc.client5.http.impl.cookie.IgnoreSpecProvider;
 import org.apache.hc.client5.http.impl.cookie.RFC6265CookieSpecProvider;
 import org.apache.hc.client5.http.impl.cookie.RFC6265StrictSpec;
@@ -128,6 +130,120 @@ public class TestRequestAddCookies {
         Assert.assertFalse(cookieOrigin.isSecure());
     }
 
+    @Test
+    public void testAddCookiesFromIndexedStore() throws Exception {
+        final DomainIndexedCookieStore indexedStore = new DomainIndexedCookieStore();
+        indexedStore.addCookies(this.cookieStore.getCookies().toArray(new Cookie[0]));
+        final BasicClientCookie otherDomain = new BasicClientCookie("name3", "value3");
+        otherDomain.setDomain("otherhost.local");
+        otherDomain.setPath("/");
+        indexedStore.addCookie(otherDomain);
+        final BasicClientCookie otherPath = new BasicClientCookie("name4", "value4");
+        otherPath.setDomain("localhost.local");
+        otherPath.setPath("/stuff");
+        indexedStore.addCookie(otherPath);
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+
+        final HttpRoute route = new HttpRoute(this.target, null, false);
+
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, this.target);
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        context.setAttribute(HttpClientContext.COOKIE_STORE, indexedStore);
+        context.setAttribute(HttpClientContext.COOKIESPEC_REGISTRY, this.cookieSpecRegistry);
+
+        final HttpRequestInterceptor interceptor = new RequestAddCookies();
+        interceptor.process(request, context);
+
+        final Header[] headers = request.getHeaders("Cookie");
+        Assert.assertNotNull(headers);
+        Assert.assertEquals(1, headers.length);
+        Assert.assertEquals("name1=value1; name2=value2", headers[0].getValue());
+    }
+
+    @Test
+    public void testCookieHeadersAreCachedUntilStoreChanges() throws Exception {
+        final DomainIndexedCookieStore indexedStore = new DomainIndexedCookieStore();
+        indexedStore.addCookies(this.cookieStore.getCookies().toArray(new Cookie[0]));
+        final HttpRoute route = new HttpRoute(this.target, null, false);
+        final HttpRequestInterceptor interceptor = new RequestAddCookies();
+
+        final Header[] headers = new Header[3];
+        for (int i = 0; i < headers.length; i++) {
+            if (i == 2) {
+                final BasicClientCookie cookie3 = new BasicClientCookie("name3", "value3");
+                cookie3.setDomain("localhost.local");
+                cookie3.setPath("/");
+                indexedStore.addCookie(cookie3);
+            }
+            final HttpRequest request = new BasicHttpRequest("GET", "/");
+            final HttpClientContext context = HttpClientContext.create();
+            context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, this.target);
+            context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+            context.setAttribute(HttpClientContext.COOKIE_STORE, indexedStore);
+            context.setAttribute(HttpClientContext.COOKIESPEC_REGISTRY, this.cookieSpecRegistry);
+            interceptor.process(request, context);
+            Assert.assertNotNull(context.getCookieSpec());
+            headers[i] = request.getFirstHeader("Cookie");
+        }
+
+        Assert.assertEquals("name1=value1; name2=value2", headers[0].getValue());
+        Assert.assertSame(headers[0], headers[1]);
+        Assert.assertEquals("name1=value1; name2=value2; name3=value3", headers[2].getValue());
+    }
+
+    @Test
+    public void testCachedCookieHeadersAreNotSharedBetweenStores() throws Exception {
+        final DomainIndexedCookieStore indexedStore1 = new DomainIndexedCookieStore();
+        indexedStore1.addCookies(this.cookieStore.getCookies().toArray(new Cookie[0]));
+        final DomainIndexedCookieStore indexedStore2 = new DomainIndexedCookieStore();
+        final HttpRoute route = new HttpRoute(this.target, null, false);
+        final HttpRequestInterceptor interceptor = new RequestAddCookies();
+
+        final DomainIndexedCookieStore[] stores = { indexedStore1, indexedStore2 };
+        final HttpRequest[] requests = new HttpRequest[stores.length];
+        for (int i = 0; i < stores.length; i++) {
+            requests[i] = new BasicHttpRequest("GET", "/");
+            final HttpClientContext context = HttpClientContext.create();
+            context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, this.target);
+            context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+            context.setAttribute(HttpClientContext.COOKIE_STORE, stores[i]);
+            context.setAttribute(HttpClientContext.COOKIESPEC_REGISTRY, this.cookieSpecRegistry);
+            interceptor.process(requests[i], context);
+        }
+
+        Assert.assertEquals(1, requests[0].getHeaders("Cookie").length);
+        Assert.assertEquals(0, requests[1].getHeaders("Cookie").length);
+    }
+
+    @Test
+    public void testCachedCookieHeadersExpire() throws Exception {
+        final DomainIndexedCookieStore indexedStore = new DomainIndexedCookieStore();
+        final BasicClientCookie cookie = new BasicClientCookie("name1", "value1");
+        cookie.setDomain("localhost.local");
+        cookie.setPath("/");
+        cookie.setExpiryDate(new Date(System.currentTimeMillis() + 200L));
+        indexedStore.addCookie(cookie);
+        final HttpRoute route = new HttpRoute(this.target, null, false);
+        final HttpRequestInterceptor interceptor = new RequestAddCookies();
+
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/");
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, this.target);
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        context.setAttribute(HttpClientContext.COOKIE_STORE, indexedStore);
+        context.setAttribute(HttpClientContext.COOKIESPEC_REGISTRY, this.cookieSpecRegistry);
+        interceptor.process(request1, context);
+        Assert.assertEquals(1, request1.getHeaders("Cookie").length);
+
+        Thread.sleep(300L);
+        final HttpRequest request2 = new BasicHttpRequest("GET", "/");
+        interceptor.process(request2, context);
+        Assert.assertEquals(0, request2.getHeaders("Cookie").length);
+        Assert.assertTrue(indexedStore.getCookies().isEmpty());
+    }
+
     @Test
     public void testCookiesForConnectRequest() throws Exception {
         final HttpRequest request = new BasicHttpRequest("CONNECT", "www.somedomain.com");
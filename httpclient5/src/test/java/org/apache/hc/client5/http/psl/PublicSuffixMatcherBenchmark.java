@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.psl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hc.client5.http.MicroBenchmark;
+
+/**
+ * {@link MicroBenchmark} of {@link PublicSuffixMatcher#getDomainRoot(String)}
+ * against the suffix-by-suffix algorithm of earlier versions. Uses the bundled
+ * public suffix list if present on the class path, a small built-in list otherwise.
+ */
+public class PublicSuffixMatcherBenchmark {
+
+    private static final List<String> RULES = Arrays.asList(
+            "com", "net", "org", "io", "de", "jp", "ac.jp", "co.jp", "*.tokyo.jp", "uk", "co.uk", "org.uk",
+            "no", "h\u00E5.no", "*.compute.amazonaws.com", "s3.amazonaws.com", "blogspot.com",
+            "github.io", "herokuapp.com", "cloudfront.net", "\u0440\u0444");
+    private static final List<String> EXCEPTIONS = Arrays.asList("metro.tokyo.jp");
+
+    private static final String[] HOSTS = {
+        "www.example.com", "api.github.com", "octocat.github.io", "www.bbc.co.uk", "news.bbc.co.uk",
+        "d111111abcdef8.cloudfront.net", "ec2-1-2-3-4.eu-west-1.compute.amazonaws.com",
+        "bucket.s3.amazonaws.com", "myapp.herokuapp.com", "example.blogspot.com", "www.google.de",
+        "www.metro.tokyo.jp", "shop.example.tokyo.jp", "www.example.co.jp", "www.h\u00E5.no",
+        "www.xn--h-2fa.no", "xn--80ak6aa92e.xn--p1ai", "localhost", "intranet.local", "WWW.EXAMPLE.ORG"
+    };
+
+    public static void main(final String[] args) throws Exception {
+        final int hostCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        final PublicSuffixMatcher defaultMatcher = PublicSuffixMatcherLoader.getDefault();
+        final PublicSuffixMatcher matcher = defaultMatcher != null
+                ? defaultMatcher : new PublicSuffixMatcher(RULES, EXCEPTIONS);
+        final TestPublicSuffixMatcher.ReferenceMatcher reference =
+                new TestPublicSuffixMatcher.ReferenceMatcher(RULES, EXCEPTIONS);
+
+        // mostly hot hosts plus a long tail of distinct subdomains
+        final Random random = new Random(1L);
+        final List<String> corpus = new ArrayList<>(hostCount);
+        for (int i = 0; i < hostCount; i++) {
+            final String host = HOSTS[random.nextInt(HOSTS.length)];
+            corpus.add(random.nextInt(4) == 0 ? "h" + i + "." + host : host);
+        }
+
+        new MicroBenchmark(
+                new String[] { "trie", "reference" },
+                new MicroBenchmark.Operation[] {
+                        new MicroBenchmark.Operation() {
+
+                            @Override
+                            public int run(final int iterations) {
+                                int n = 0;
+                                for (int i = 0; i < iterations; i++) {
+                                    final String root = matcher.getDomainRoot(corpus.get(i));
+                                    n += root != null ? root.length() : 0;
+                                }
+                                return n;
+                            }
+
+                        },
+                        new MicroBenchmark.Operation() {
+
+                            @Override
+                            public int run(final int iterations) {
+                                int n = 0;
+                                for (int i = 0; i < iterations; i++) {
+                                    final String root = reference.getDomainRoot(corpus.get(i));
+                                    n += root != null ? root.length() : 0;
+                                }
+                                return n;
+                            }
+
+                        } })
+                .run(args, hostCount, 10);
+    }
+
+}
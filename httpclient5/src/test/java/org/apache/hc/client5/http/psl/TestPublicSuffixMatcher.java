@@ -29,7 +29,16 @@ package org.apache.hc.client5.http.psl;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.IDN;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -89,4 +98,114 @@ public class TestPublicSuffixMatcher {
         Assert.assertTrue(matcher.matches(".xn--h-2fa.no"));
     }
 
+    @Test
+    public void testMixedCase() throws Exception {
+        Assert.assertEquals("metro.tokyo.jp", matcher.getDomainRoot("www.Metro.TOKYO.jp"));
+        Assert.assertEquals("blah.ac.jp", matcher.getDomainRoot("WWW.BLAH.AC.JP"));
+        Assert.assertNull(matcher.getDomainRoot("Any.Tokyo.JP"));
+    }
+
+    @Test
+    public void testAsciiAndUnicodeForms() throws Exception {
+        final PublicSuffixMatcher asciiMatcher = new PublicSuffixMatcher(
+                Arrays.asList("xn--h-2fa.no", "no"), Collections.<String>emptyList());
+        Assert.assertEquals("blah.h\u00E5.no", asciiMatcher.getDomainRoot("www.blah.h\u00E5.no"));
+        Assert.assertEquals("blah.xn--h-2fa.no", asciiMatcher.getDomainRoot("www.blah.xn--h-2fa.no"));
+        Assert.assertEquals("blah.h\u00E5.no", matcher.getDomainRoot("blah.h\u00E5.no"));
+        Assert.assertEquals("blah.xn--h-2fa.no", matcher.getDomainRoot("blah.xn--h-2fa.no"));
+    }
+
+    @Test
+    public void testExpectedType() throws Exception {
+        final PublicSuffixMatcher typedMatcher = new PublicSuffixMatcher(Arrays.asList(
+                new PublicSuffixList(DomainType.ICANN, Arrays.asList("com"), Collections.<String>emptyList()),
+                new PublicSuffixList(DomainType.PRIVATE, Arrays.asList("blogspot.com"),
+                        Collections.<String>emptyList())));
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("example.blogspot.com", typedMatcher.getDomainRoot("www.example.blogspot.com"));
+            Assert.assertEquals("example.blogspot.com", typedMatcher.getDomainRoot(
+                    "www.example.blogspot.com", DomainType.PRIVATE));
+            Assert.assertEquals("blogspot.com", typedMatcher.getDomainRoot(
+                    "www.example.blogspot.com", DomainType.ICANN));
+            Assert.assertNull(typedMatcher.getDomainRoot("blogspot.com", DomainType.PRIVATE));
+            Assert.assertEquals("blogspot.com", typedMatcher.getDomainRoot("blogspot.com", DomainType.ICANN));
+        }
+    }
+
+    @Test
+    public void testMatchesReferenceImplementation() throws Exception {
+        final List<String> rules = Arrays.asList(
+                "jp", "ac.jp", "*.tokyo.jp", "*.kawasaki.jp", "com", "co.uk", "uk", "*.ck",
+                "no", "h\u00E5.no", "*.compute.amazonaws.com", "blogspot.com", "a.b.c", "*.b.c");
+        final List<String> exceptions = Arrays.asList("metro.tokyo.jp", "city.kawasaki.jp", "www.ck", "x.b.c");
+        final PublicSuffixMatcher trieMatcher = new PublicSuffixMatcher(rules, exceptions);
+        final ReferenceMatcher reference = new ReferenceMatcher(rules, exceptions);
+        final String[] labels = {
+                "www", "example", "jp", "ac", "tokyo", "metro", "kawasaki", "city", "com", "co", "uk",
+                "ck", "no", "h\u00E5", "xn--h-2fa", "compute", "amazonaws", "blogspot", "a", "b", "c",
+                "x", "WWW", "Tokyo", ""};
+        final Random random = new Random(42L);
+        for (int i = 0; i < 20000; i++) {
+            final StringBuilder buf = new StringBuilder();
+            final int n = 1 + random.nextInt(5);
+            for (int j = 0; j < n; j++) {
+                if (j > 0) {
+                    buf.append('.');
+                }
+                buf.append(labels[random.nextInt(labels.length)]);
+            }
+            final String domain = buf.toString();
+            Assert.assertEquals(domain, reference.getDomainRoot(domain), trieMatcher.getDomainRoot(domain));
+        }
+    }
+
+    /**
+     * The suffix-by-suffix algorithm used by earlier versions of the matcher.
+     */
+    static class ReferenceMatcher {
+
+        private final Map<String, DomainType> rules;
+        private final Map<String, DomainType> exceptions;
+
+        ReferenceMatcher(final Collection<String> rules, final Collection<String> exceptions) {
+            this.rules = new HashMap<>();
+            for (final String rule: rules) {
+                this.rules.put(rule, DomainType.UNKNOWN);
+            }
+            this.exceptions = new HashMap<>();
+            for (final String exception: exceptions) {
+                this.exceptions.put(exception, DomainType.UNKNOWN);
+            }
+        }
+
+        String getDomainRoot(final String domain) {
+            if (domain == null || domain.startsWith(".")) {
+                return null;
+            }
+            String domainName = null;
+            String segment = domain.toLowerCase(Locale.ROOT);
+            while (segment != null) {
+                if (exceptions.containsKey(IDN.toUnicode(segment))) {
+                    return segment;
+                }
+                if (rules.containsKey(IDN.toUnicode(segment))) {
+                    break;
+                }
+                final int nextdot = segment.indexOf('.');
+                final String nextSegment = nextdot != -1 ? segment.substring(nextdot + 1) : null;
+                if (nextSegment != null) {
+                    if (rules.containsKey("*." + IDN.toUnicode(nextSegment))) {
+                        break;
+                    }
+                }
+                if (nextdot != -1) {
+                    domainName = segment;
+                }
+                segment = nextSegment;
+            }
+            return domainName;
+        }
+
+    }
+
 }
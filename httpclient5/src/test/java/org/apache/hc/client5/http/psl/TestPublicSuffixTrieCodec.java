@@ -0,0 +1,123 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.psl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestPublicSuffixTrieCodec {
+
+    private static final String SOURCE_FILE = "suffixlist2.txt";
+
+    private static final String[] DOMAINS = {
+        "example.XX", "www.example.XX", "xx", "jp", "example", "ac.jp", "any.tokyo.jp",
+        "metro.tokyo.jp", "www.metro.tokyo.jp", "blah.blah.tokyo.jp", "blah.blah.ac.jp",
+        "googleapis.com", "www.foo.googleapis.com", "www.googlecode.com"
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Reader openSource() {
+        final InputStream in = getClass().getClassLoader().getResourceAsStream(SOURCE_FILE);
+        Assert.assertNotNull(in);
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final PublicSuffixMatcher matcher;
+        try (Reader reader = openSource()) {
+            matcher = new PublicSuffixMatcher(new PublicSuffixListParser().parseByType(reader));
+        }
+        Assert.assertEquals("metro.tokyo.jp", matcher.getDomainRoot("www.metro.tokyo.jp"));
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        PublicSuffixTrieCodec.write(matcher, buf);
+        final PublicSuffixMatcher copy = PublicSuffixTrieCodec.read(new ByteArrayInputStream(buf.toByteArray()));
+        for (final String domain : DOMAINS) {
+            Assert.assertEquals(domain, matcher.getDomainRoot(domain), copy.getDomainRoot(domain));
+            for (final DomainType domainType : DomainType.values()) {
+                Assert.assertEquals(domain, matcher.getDomainRoot(domain, domainType),
+                        copy.getDomainRoot(domain, domainType));
+            }
+        }
+    }
+
+    @Test
+    public void testCompiler() throws Exception {
+        final File output = tmp.newFile("suffixlist.bin");
+        final File input = tmp.newFile("suffixlist2.txt");
+        try (Reader reader = openSource()) {
+            final char[] chars = new char[4096];
+            final StringBuilder buf = new StringBuilder();
+            int n;
+            while ((n = reader.read(chars)) != -1) {
+                buf.append(chars, 0, n);
+            }
+            Files.write(input.toPath(), buf.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        PublicSuffixListCompiler.main(new String[] {input.getPath(), output.getPath()});
+        final PublicSuffixMatcher matcher;
+        try (InputStream in = new FileInputStream(output)) {
+            matcher = PublicSuffixTrieCodec.read(in);
+        }
+        Assert.assertEquals("example.xx", matcher.getDomainRoot("www.example.XX"));
+        Assert.assertEquals("metro.tokyo.jp", matcher.getDomainRoot("www.metro.tokyo.jp"));
+        Assert.assertEquals("foo.googleapis.com", matcher.getDomainRoot("www.foo.googleapis.com"));
+        Assert.assertEquals("foo.googleapis.com", matcher.getDomainRoot(
+                "www.foo.googleapis.com", DomainType.PRIVATE));
+        Assert.assertNull(matcher.getDomainRoot("any.tokyo.jp", DomainType.ICANN));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidMagic() throws Exception {
+        PublicSuffixTrieCodec.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedSnapshot() throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        PublicSuffixTrieCodec.write(new PublicSuffixMatcher(Arrays.asList("com", "co.uk"), null), buf);
+        final byte[] b = buf.toByteArray();
+        PublicSuffixTrieCodec.read(new ByteArrayInputStream(Arrays.copyOf(b, b.length - 2)));
+    }
+
+}
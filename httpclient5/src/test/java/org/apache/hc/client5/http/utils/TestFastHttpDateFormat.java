@@ -0,0 +1,137 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FastHttpDateFormat}.
+ */
+public class TestFastHttpDateFormat {
+
+    private static final long DATE = 784111777000L; // Sun, 06 Nov 1994 08:49:37 GMT
+
+    @Test
+    public void testParseFormats() throws Exception {
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sun, 06 Nov 1994 08:49:37 GMT"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sun Nov  6 08:49:37 1994"));
+        // two digit years are placed in the 2000s
+        Assert.assertEquals(FastHttpDateFormat.parse("Sat, 06 Nov 2094 08:49:37 GMT"),
+                FastHttpDateFormat.parse("Sunday, 06-Nov-94 08:49:37 GMT"));
+    }
+
+    @Test
+    public void testParseVariants() throws Exception {
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("sun, 6 nov 1994 8:49:37 gmt"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sunday, 06 November 1994 08:49:37 UTC"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sun, 06-Nov-1994 08:49:37 GMT"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sun, 06 Nov 1994 09:49:37 +0100"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sun, 06 Nov 1994 07:19:37 -0130"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("Sun, 06 Nov 1994 08:49:37 GMT; path=/"));
+        Assert.assertEquals(DATE, FastHttpDateFormat.parse("xSun, 06 Nov 1994 08:49:37 GMTx", 1, 30,
+                FastHttpDateFormat.RFC1123));
+    }
+
+    @Test
+    public void testParseInvalid() throws Exception {
+        final String[] invalid = {
+                "",
+                "Sun",
+                "Sun,",
+                "Foo, 06 Nov 1994 08:49:37 GMT",
+                "Sun, 06 Foo 1994 08:49:37 GMT",
+                "Sun, 31 Nov 1994 08:49:37 GMT",
+                "Sun, 29 Feb 1900 08:49:37 GMT",
+                "Sun, 06 Nov 1994 24:49:37 GMT",
+                "Sun, 06 Nov 1994 08:60:37 GMT",
+                "Sun, 06 Nov 1994 08:49:37 PST",
+                "Sun, 06 Nov 1994 08:49:37 GMT+01:00",
+                "Sun, 06 Nov 1994 08:49:37 GMTX",
+                "Sun, 06 Nov 94 08:49:37 GMT",
+                "Sun, 006 Nov 1994 08:49:37 GMT",
+                "Sun, 06 Nov 1500 08:49:37 GMT",
+                "Sun, 06 Nov 1994 08:49",
+                "Sun Nov  6 08:49:37 94",
+                "Sun Nov  6 08:49:37 19940"
+        };
+        for (final String s : invalid) {
+            Assert.assertEquals(s, FastHttpDateFormat.INVALID, FastHttpDateFormat.parse(s));
+        }
+        Assert.assertEquals(FastHttpDateFormat.INVALID, FastHttpDateFormat.parse(
+                "Sunday, 06-Nov-94 08:49:37 GMT", 0, 30, FastHttpDateFormat.RFC1123));
+        Assert.assertEquals(FastHttpDateFormat.INVALID, FastHttpDateFormat.parse(
+                "Sun Nov  6 08:49:37 1994", 0, 24, FastHttpDateFormat.RFC1123 | FastHttpDateFormat.RFC1036));
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        Assert.assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", FastHttpDateFormat.format(DATE));
+        Assert.assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", FastHttpDateFormat.format(DATE + 999));
+        Assert.assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", FastHttpDateFormat.format(0));
+        Assert.assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", FastHttpDateFormat.format(-1));
+        Assert.assertNull(FastHttpDateFormat.format(Long.MAX_VALUE));
+        Assert.assertNull(FastHttpDateFormat.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testFormatCurrentDate() throws Exception {
+        final long before = System.currentTimeMillis() / 1000 * 1000;
+        final String s = FastHttpDateFormat.formatCurrentDate();
+        final long after = System.currentTimeMillis();
+        final long parsed = FastHttpDateFormat.parse(s);
+        Assert.assertTrue(parsed >= before && parsed <= after);
+    }
+
+    @Test
+    public void testAgreesWithSimpleDateFormat() throws Exception {
+        final SimpleDateFormat rfc1123 = new SimpleDateFormat(DateUtils.PATTERN_RFC1123, Locale.US);
+        rfc1123.setTimeZone(DateUtils.GMT);
+        final SimpleDateFormat asctime = new SimpleDateFormat(DateUtils.PATTERN_ASCTIME, Locale.US);
+        asctime.setTimeZone(DateUtils.GMT);
+        final long min = -11670912000000L; // 1600
+        final long max = 253402300799000L; // 9999
+        final Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            final long millis = min + (long) (random.nextDouble() * (max - min)) / 1000 * 1000;
+            final Date date = new Date(millis);
+            final String s = rfc1123.format(date);
+            Assert.assertEquals(s, FastHttpDateFormat.format(millis));
+            Assert.assertEquals(s, millis, FastHttpDateFormat.parse(s));
+            final String s2 = asctime.format(date);
+            final ParsePosition pos = new ParsePosition(0);
+            Assert.assertEquals(s2, asctime.parse(s2, pos).getTime(), FastHttpDateFormat.parse(s2));
+        }
+    }
+
+}
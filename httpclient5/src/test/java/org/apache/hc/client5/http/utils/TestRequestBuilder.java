@@ -27,9 +27,12 @@
 package org.apache.hc.client5.http.utils;
 
 
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.hc.client5.http.methods.HttpUriRequest;
 import org.apache.hc.client5.http.methods.RequestBuilder;
@@ -40,6 +43,17 @@ import org.junit.Test;
 
 public class TestRequestBuilder {
 
+    @Test
+    public void testBuildWithURITemplate() throws Exception {
+        final URITemplate template = URITemplate.compile("https://somehost.com/stuff/{id}{?q}");
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put("id", "a b");
+        variables.put("q", "x&y");
+        final HttpUriRequest request = RequestBuilder.get().setUri(template, variables).build();
+        Assert.assertEquals(new URI("https://somehost.com/stuff/a%20b?q=x%26y"), request.getURI());
+        Assert.assertEquals("/stuff/a b", request.getURI().getPath());
+    }
+
     @Test
     public void testBuildGETwithUTF8() throws Exception {
         assertBuild(StandardCharsets.UTF_8);
@@ -0,0 +1,128 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestURITemplate {
+
+    private static final Map<String, Object> VARIABLES = new HashMap<>();
+
+    static {
+        VARIABLES.put("var", "value");
+        VARIABLES.put("hello", "Hello World!");
+        VARIABLES.put("path", "/foo/bar");
+        VARIABLES.put("empty", "");
+        VARIABLES.put("x", 1024);
+        VARIABLES.put("y", 768);
+    }
+
+    private static String expand(final String template) {
+        return URITemplate.compile(template).expand(VARIABLES);
+    }
+
+    @Test
+    public void testSimpleExpansion() throws Exception {
+        Assert.assertEquals("value", expand("{var}"));
+        Assert.assertEquals("Hello%20World%21", expand("{hello}"));
+        Assert.assertEquals("OX", expand("O{empty}X"));
+        Assert.assertEquals("OX", expand("O{undef}X"));
+        Assert.assertEquals("map?1024,768", expand("map?{x,y}"));
+        Assert.assertEquals("1024,Hello%20World%21,768", expand("{x,hello,y}"));
+        Assert.assertEquals("%2Ffoo%2Fbar", expand("{path}"));
+    }
+
+    @Test
+    public void testReservedExpansion() throws Exception {
+        Assert.assertEquals("Hello%20World!", expand("{+hello}"));
+        Assert.assertEquals("/foo/bar/here", expand("{+path}/here"));
+        Assert.assertEquals("here?ref=/foo/bar", expand("here?ref={+path}"));
+        Assert.assertEquals("/foo/bar,1024/here", expand("{+path,x}/here"));
+        Assert.assertEquals("#1024,Hello%20World!,768", expand("{#x,hello,y}"));
+        Assert.assertEquals("#value", expand("{#var}"));
+        Assert.assertEquals("", expand("{#undef}"));
+    }
+
+    @Test
+    public void testPathAndQueryExpansion() throws Exception {
+        Assert.assertEquals("/value", expand("{/var}"));
+        Assert.assertEquals("/value/1024/here", expand("{/var,x}/here"));
+        Assert.assertEquals("/value", expand("{/undef,var}"));
+        Assert.assertEquals("?x=1024&y=768", expand("{?x,y}"));
+        Assert.assertEquals("?x=1024&y=768&empty=", expand("{?x,y,empty}"));
+        Assert.assertEquals("", expand("{?undef}"));
+        Assert.assertEquals("?fixed=yes&x=1024", expand("?fixed=yes{&x}"));
+        Assert.assertEquals("&x=1024&y=768&empty=", expand("{&x,y,empty}"));
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put("q", "Gr\u00FC\u00DFe \u20AC \uD83D\uDE00 & %41");
+        Assert.assertEquals("/caf%C3%A9/%41?q=Gr%C3%BC%C3%9Fe%20%E2%82%AC%20%F0%9F%98%80%20%26%20%2541",
+                URITemplate.compile("/caf\u00E9/%41{?q}").expand(variables));
+        Assert.assertEquals("Gr%C3%BC%C3%9Fe%20%E2%82%AC%20%F0%9F%98%80%20&%20%41",
+                URITemplate.compile("{+q}").expand(variables));
+        Assert.assertEquals("%3F", URITemplate.compile("{x}").expand("\uD800"));
+    }
+
+    @Test
+    public void testPositionalValues() throws Exception {
+        final URITemplate template = URITemplate.compile("http://example.com/users/{id}/items{?offset,limit,id}");
+        Assert.assertEquals(Arrays.asList("id", "offset", "limit"), template.getVariableNames());
+        final URI uri = template.expandToURI("j doe", 20, null);
+        Assert.assertEquals(URI.create("http://example.com/users/j%20doe/items?offset=20&id=j%20doe"), uri);
+        Assert.assertEquals("/users/j doe/items", uri.getPath());
+        Assert.assertEquals("http://example.com/users/{id}/items{?offset,limit,id}", template.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfValues() throws Exception {
+        URITemplate.compile("{a}{b}").expand("a");
+    }
+
+    @Test
+    public void testInvalidTemplates() throws Exception {
+        final String[] invalid = {
+                "{", "}", "/{a", "{}", "{a,}", "{,a}", "{a b}", "{;a}", "{.a}", "{=a}", "{a:3}", "{a*}"
+        };
+        for (final String template : invalid) {
+            try {
+                URITemplate.compile(template);
+                Assert.fail("IllegalArgumentException expected for " + template);
+            } catch (final IllegalArgumentException expected) {
+            }
+        }
+    }
+
+}
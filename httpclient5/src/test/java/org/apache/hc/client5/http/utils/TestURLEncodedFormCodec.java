@@ -0,0 +1,155 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.hc.client5.http.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hc.core5.http.NameValuePair;
+import org.apache.hc.core5.http.message.BasicNameValuePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestURLEncodedFormCodec {
+
+    private static String encode(final List<NameValuePair> params, final Charset charset) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        URLEncodedFormCodec.encode(params, '&', charset, out);
+        Assert.assertEquals(out.size(), URLEncodedFormCodec.getEncodedLength(params, '&', charset));
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static void assertPairs(final List<NameValuePair> expected, final List<NameValuePair> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            Assert.assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+        }
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        final List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("Name1", "Value1"));
+        params.add(new BasicNameValuePair("Name2", null));
+        params.add(new BasicNameValuePair("Name 3", "a+b=c&d"));
+        params.add(new BasicNameValuePair("Name4", ""));
+        Assert.assertEquals("Name1=Value1&Name2&Name+3=a%2Bb%3Dc%26d&Name4=",
+                encode(params, StandardCharsets.UTF_8));
+        Assert.assertEquals("", encode(new ArrayList<NameValuePair>(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEncodeNonAscii() throws Exception {
+        final List<NameValuePair> params = Arrays.<NameValuePair>asList(
+                new BasicNameValuePair("ru", "\u0412\u0441\u0435\u043C_\u043F\u0440\u0438\u0432\u0435\u0442"),
+                new BasicNameValuePair("ch", "Gr\u00FCezi_z\u00E4m\u00E4"),
+                new BasicNameValuePair("emoji", "\uD83D\uDE00"),
+                new BasicNameValuePair("lone", "\uD83D-"));
+        for (final Charset charset : new Charset[] {
+                StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII,
+                StandardCharsets.UTF_16, Charset.forName("windows-1251") }) {
+            Assert.assertEquals(charset.name(), URLEncodedUtils.format(params, '&', charset), encode(params, charset));
+        }
+    }
+
+    @Test
+    public void testEncodeMatchesFormat() throws Exception {
+        final Random random = new Random(0);
+        final List<NameValuePair> params = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            params.add(new BasicNameValuePair(randomString(random), random.nextInt(10) == 0 ? null : randomString(random)));
+        }
+        Assert.assertEquals(URLEncodedUtils.format(params, ';', StandardCharsets.UTF_8),
+                new String(encodeBytes(params, ';'), StandardCharsets.US_ASCII));
+        final List<NameValuePair> decoded = URLEncodedFormCodec.decode(
+                URLEncodedUtils.format(params, '&', StandardCharsets.UTF_8), 0,
+                URLEncodedUtils.format(params, '&', StandardCharsets.UTF_8).length(), StandardCharsets.UTF_8, '&');
+        final List<NameValuePair> expected = new ArrayList<>();
+        for (final NameValuePair param : params) {
+            if (!param.getName().isEmpty()) {
+                expected.add(param);
+            }
+        }
+        assertPairs(expected, decoded);
+    }
+
+    private static byte[] encodeBytes(final List<NameValuePair> params, final char separator) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        URLEncodedFormCodec.encode(params, separator, StandardCharsets.UTF_8, out);
+        return out.toByteArray();
+    }
+
+    private static String randomString(final Random random) {
+        final char[] chars = new char[random.nextInt(8)];
+        for (int i = 0; i < chars.length; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    chars[i] = (char) (0x20 + random.nextInt(0x5f));
+                    break;
+                case 1:
+                    chars[i] = (char) (0x80 + random.nextInt(0x780));
+                    break;
+                case 2:
+                    chars[i] = (char) (0x800 + random.nextInt(0xd000));
+                    break;
+                default:
+                    chars[i] = (char) ('a' + random.nextInt(26));
+            }
+        }
+        return new String(chars);
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        final String s = "xx Name0&Name1=Value1;Name2&&Name+3=a%2Bb%3Dc%26d=e&=ignored&Name4=&Name5=%zz%2yyy";
+        final List<NameValuePair> result = URLEncodedFormCodec.decode(s, 3, s.length(), null, '&', ';');
+        assertPairs(Arrays.<NameValuePair>asList(
+                new BasicNameValuePair("Name0", null),
+                new BasicNameValuePair("Name1", "Value1"),
+                new BasicNameValuePair("Name2", null),
+                new BasicNameValuePair("Name 3", "a+b=c&d=e"),
+                new BasicNameValuePair("Name4", ""),
+                new BasicNameValuePair("Name5", "%zz%2yyy")), result);
+    }
+
+    @Test
+    public void testDecodeCharset() throws Exception {
+        final StringBuilder sb = new StringBuilder("a=%D0%92%D1%81%D0%B5%D0%BC+b");
+        assertPairs(Arrays.<NameValuePair>asList(new BasicNameValuePair("a", "\u0412\u0441\u0435\u043C b")),
+                URLEncodedFormCodec.decode(sb, 0, sb.length(), StandardCharsets.UTF_8, '&'));
+        assertPairs(Arrays.<NameValuePair>asList(new BasicNameValuePair("a", "\u00FC")),
+                URLEncodedFormCodec.decode("a=%FC", 0, 5, StandardCharsets.ISO_8859_1, '&'));
+        Assert.assertTrue(URLEncodedFormCodec.decode("", 0, 0, null, '&').isEmpty());
+    }
+
+}